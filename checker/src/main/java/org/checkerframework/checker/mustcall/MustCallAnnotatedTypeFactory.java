@@ -123,6 +123,17 @@ public class MustCallAnnotatedTypeFactory extends BaseAnnotatedTypeFactory
     this.postInit();
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The Resource Leak Checker reads the must-call type of a resource alias where the alias goes
+   * out of scope, after its last use, so the stores of this factory must not be sparse.
+   */
+  @Override
+  public boolean supportsSparseDataflow() {
+    return false;
+  }
+
   @Override
   public void setRoot(@Nullable CompilationUnitTree root) {
     super.setRoot(root);
@@ -96,6 +96,18 @@ public class ResourceLeakAnnotatedTypeFactory extends CalledMethodsAnnotatedType
     return createAccumulatorAnnotation(Arrays.asList(val));
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The {@link MustCallConsistencyAnalyzer} decides whether a resource alias is in scope by
+   * looking it up in the store of a block, and reads its called-methods type where it goes out of
+   * scope, after its last use. So the stores of this factory must not be sparse.
+   */
+  @Override
+  public boolean supportsSparseDataflow() {
+    return false;
+  }
+
   @Override
   public void postAnalyze(ControlFlowGraph cfg) {
     MustCallConsistencyAnalyzer mustCallConsistencyAnalyzer =
@@ -0,0 +1,29 @@
+package org.checkerframework.checker.test.junit;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.checker.lock.LockChecker;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Tests for the Lock Checker -- testing the {@code -AsparseDataflow} command-line argument. The
+ * expected diagnostics are the same as without the argument, because a lock that a
+ * {@code @GuardedBy} annotation names stays live.
+ */
+public class LockSparseDataflowTest extends CheckerFrameworkPerDirectoryTest {
+
+  /**
+   * Create a LockSparseDataflowTest.
+   *
+   * @param testFiles the files containing test code, which will be type-checked
+   */
+  public LockSparseDataflowTest(List<File> testFiles) {
+    super(testFiles, LockChecker.class, "lock", "-Anomsgtext", "-AsparseDataflow");
+  }
+
+  @Parameters
+  public static String[] getTestDirs() {
+    return new String[] {"lock"};
+  }
+}
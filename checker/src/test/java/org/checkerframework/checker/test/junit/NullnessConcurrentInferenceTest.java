@@ -0,0 +1,231 @@
+package org.checkerframework.checker.test.junit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.checkerframework.checker.nullness.NullnessChecker;
+import org.checkerframework.common.wholeprograminference.WholeProgramInferenceJavaParserStorage;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that compilations that run concurrently in one JVM with {@code -AinferConcurrent} write
+ * the same ajava file without failing, and that the file contains the annotations that either of
+ * them inferred.
+ */
+public class NullnessConcurrentInferenceTest {
+
+  /** The package of the test sources, which names the directory of the ajava files. */
+  private static final String PACKAGE = "inferconcurrenttest";
+
+  /** The number of compilations that run at the same time. */
+  private static final int WRITERS = 4;
+
+  /** The directory that holds the sources. */
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  /** The directory of the ajava files of the test sources. */
+  private final Path ajavaDir =
+      Paths.get(WholeProgramInferenceJavaParserStorage.AJAVA_FILES_PATH, PACKAGE);
+
+  /** The class whose ajava file all compilations write. */
+  private File shared;
+
+  /** A class that passes null to the method of {@link #shared}. */
+  private File nullCaller;
+
+  /** A class that passes a non-null value to the method of {@link #shared}. */
+  private File nonNullCaller;
+
+  /**
+   * Creates the source files and deletes the ajava files of earlier runs.
+   *
+   * @throws IOException if a file cannot be written or deleted
+   */
+  @Before
+  public void setUp() throws IOException {
+    deleteAjavaFiles();
+    shared = folder.newFile("Shared.java");
+    nullCaller = folder.newFile("NullCaller.java");
+    nonNullCaller = folder.newFile("NonNullCaller.java");
+    write(
+        shared, "package " + PACKAGE + ";", "public class Shared {", "  void m(Object o) {}", "}");
+    write(
+        nullCaller,
+        "package " + PACKAGE + ";",
+        "class NullCaller {",
+        "  void f(Shared s) {",
+        "    s.m(null);",
+        "  }",
+        "}");
+    write(
+        nonNullCaller,
+        "package " + PACKAGE + ";",
+        "class NonNullCaller {",
+        "  void f(Shared s) {",
+        "    s.m(\"\");",
+        "  }",
+        "}");
+  }
+
+  /**
+   * Deletes the ajava files that the test wrote.
+   *
+   * @throws IOException if a file cannot be deleted
+   */
+  @After
+  public void deleteAjavaFiles() throws IOException {
+    if (!Files.exists(ajavaDir)) {
+      return;
+    }
+    try (Stream<Path> files = Files.walk(ajavaDir)) {
+      for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  /**
+   * Compilations that infer different types for the same parameter write the same ajava file at
+   * the same time.
+   *
+   * @throws Exception if a compilation fails or is interrupted
+   */
+  @Test
+  public void testConcurrentWriters() throws Exception {
+    CyclicBarrier start = new CyclicBarrier(WRITERS);
+    ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+    List<Future<List<String>>> results = new ArrayList<>();
+    try {
+      for (int i = 0; i < WRITERS; i++) {
+        File caller = i % 2 == 0 ? nullCaller : nonNullCaller;
+        Callable<List<String>> compilation =
+            () -> {
+              start.await();
+              return errors(compile(caller));
+            };
+        results.add(executor.submit(compilation));
+      }
+      for (Future<List<String>> result : results) {
+        Assert.assertEquals(Arrays.asList(), result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    Path ajavaFile =
+        ajavaDir.resolve("Shared-" + NullnessChecker.class.getCanonicalName() + ".ajava");
+    String contents = new String(Files.readAllBytes(ajavaFile), StandardCharsets.UTF_8);
+    // The least upper bound of the parameter types that the two kinds of callers lead to.
+    Assert.assertTrue(contents, contents.contains("Nullable Object o"));
+  }
+
+  /**
+   * An ajava file written for an earlier version of the shared class is not merged, but
+   * overwritten.
+   *
+   * @throws IOException if a file cannot be read or written
+   */
+  @Test
+  public void testStaleFile() throws IOException {
+    Files.createDirectories(ajavaDir);
+    Path ajavaFile =
+        ajavaDir.resolve("Shared-" + NullnessChecker.class.getCanonicalName() + ".ajava");
+    write(
+        ajavaFile.toFile(),
+        "package " + PACKAGE + ";",
+        "public class Shared {",
+        "  void m(@org.checkerframework.checker.nullness.qual.Nullable Object o, int i) {}",
+        "}");
+    Assert.assertEquals(Arrays.asList(), errors(compile(nonNullCaller)));
+    String contents = new String(Files.readAllBytes(ajavaFile), StandardCharsets.UTF_8);
+    Assert.assertFalse(contents, contents.contains("int i"));
+    Assert.assertFalse(contents, contents.contains("Nullable"));
+  }
+
+  /**
+   * Runs the Nullness Checker with whole-program inference on the shared class and a caller.
+   *
+   * @param caller the source file of the caller
+   * @return the diagnostics that were issued
+   */
+  private List<Diagnostic<? extends JavaFileObject>> compile(File caller) {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    try (StandardJavaFileManager fileManager =
+        compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+      List<String> options =
+          Arrays.asList(
+              "-proc:only",
+              "-classpath",
+              System.getProperty("java.class.path"),
+              "-Anomsgtext",
+              "-Awarns",
+              "-Ainfer=ajava",
+              "-AinferConcurrent");
+      JavaCompiler.CompilationTask task =
+          compiler.getTask(
+              null,
+              fileManager,
+              diagnostics,
+              options,
+              null,
+              fileManager.getJavaFileObjects(shared, caller));
+      task.setProcessors(Arrays.asList(new NullnessChecker()));
+      task.call();
+    } catch (IOException e) {
+      throw new Error(e);
+    }
+    return diagnostics.getDiagnostics();
+  }
+
+  /**
+   * Returns the errors among the given diagnostics, as strings.
+   *
+   * @param diagnostics diagnostics issued by a compilation
+   * @return the errors among {@code diagnostics}
+   */
+  private static List<String> errors(List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+    List<String> result = new ArrayList<>();
+    for (Diagnostic<? extends JavaFileObject> d : diagnostics) {
+      if (d.getKind() == Diagnostic.Kind.ERROR) {
+        result.add(d.toString());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Writes the given lines to the given file.
+   *
+   * @param file the file to write
+   * @param lines the lines to write
+   * @throws IOException if the file cannot be written
+   */
+  private static void write(File file, String... lines) throws IOException {
+    Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+  }
+}
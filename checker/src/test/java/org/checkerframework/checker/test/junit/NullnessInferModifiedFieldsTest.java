@@ -0,0 +1,32 @@
+package org.checkerframework.checker.test.junit;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * JUnit tests for the Nullness Checker -- testing the {@code -AinferModifiedFields} command-line
+ * argument.
+ */
+public class NullnessInferModifiedFieldsTest extends CheckerFrameworkPerDirectoryTest {
+
+  /**
+   * Create a NullnessInferModifiedFieldsTest.
+   *
+   * @param testFiles the files containing test code, which will be type-checked
+   */
+  public NullnessInferModifiedFieldsTest(List<File> testFiles) {
+    super(
+        testFiles,
+        org.checkerframework.checker.nullness.NullnessChecker.class,
+        "nullness",
+        "-Anomsgtext",
+        "-AinferModifiedFields");
+  }
+
+  @Parameters
+  public static String[] getTestDirs() {
+    return new String[] {"nullness-infermodifiedfields"};
+  }
+}
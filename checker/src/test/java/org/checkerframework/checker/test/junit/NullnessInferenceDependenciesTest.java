@@ -0,0 +1,233 @@
+package org.checkerframework.checker.test.junit;
+
+import com.sun.source.util.TreePath;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Stream;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.checkerframework.checker.nullness.NullnessChecker;
+import org.checkerframework.common.wholeprograminference.WholeProgramInferenceJavaParserStorage;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that {@code -AinferFixpoint} type-checks again exactly the classes that read an inferred
+ * annotation that changed, or that declare it, and skips the other classes.
+ */
+public class NullnessInferenceDependenciesTest {
+
+  /** The package of the test sources, which names the directory of the ajava files. */
+  private static final String PACKAGE = "inferdependenciestest";
+
+  /** The marker that {@link RecordingChecker} records between the first round and later ones. */
+  private static final String END_OF_FIRST_ROUND = "|";
+
+  /** The simple names of the classes that {@link RecordingChecker} type-checked, in order. */
+  private static List<String> checked;
+
+  /** A Nullness Checker that records the classes that it type-checks. */
+  public static class RecordingChecker extends NullnessChecker {
+    @Override
+    public void typeProcess(TypeElement element, TreePath tree) {
+      checked.add(element.getSimpleName().toString());
+      super.typeProcess(element, tree);
+    }
+
+    @Override
+    public void typeProcessingOver() {
+      // Javac has handed every class to the checker once; later rounds happen in super.
+      checked.add(END_OF_FIRST_ROUND);
+      super.typeProcessingOver();
+    }
+  }
+
+  /** The directory that holds the sources. */
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  /** The directory of the ajava files of the test sources. */
+  private final Path ajavaDir =
+      Paths.get(WholeProgramInferenceJavaParserStorage.AJAVA_FILES_PATH, PACKAGE);
+
+  /**
+   * Creates the source files and deletes the ajava files of earlier runs.
+   *
+   * @throws IOException if a file cannot be written or deleted
+   */
+  @Before
+  public void setUp() throws IOException {
+    deleteAjavaFiles();
+    checked = new ArrayList<>();
+  }
+
+  /**
+   * Deletes the ajava files that the test wrote.
+   *
+   * @throws IOException if a file cannot be deleted
+   */
+  @After
+  public void deleteAjavaFiles() throws IOException {
+    if (!Files.exists(ajavaDir)) {
+      return;
+    }
+    try (Stream<Path> files = Files.walk(ajavaDir)) {
+      for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  /**
+   * The first round infers that the callee may return null. Only the callee, which declares the
+   * method, and the caller, which reads its return type, are type-checked again.
+   *
+   * @throws IOException if a file cannot be written
+   */
+  @Test
+  public void testCallerAndCallee() throws IOException {
+    File callee = folder.newFile("Callee.java");
+    File caller = folder.newFile("Caller.java");
+    File unrelated = folder.newFile("Unrelated.java");
+    write(
+        callee,
+        "package " + PACKAGE + ";",
+        "class Callee {",
+        "  Object get() {",
+        "    return null;",
+        "  }",
+        "}");
+    write(
+        caller,
+        "package " + PACKAGE + ";",
+        "class Caller {",
+        "  Object use(Callee c) {",
+        "    return c.get();",
+        "  }",
+        "}");
+    write(
+        unrelated,
+        "package " + PACKAGE + ";",
+        "class Unrelated {",
+        "  void run() {",
+        "    System.out.println();",
+        "  }",
+        "}");
+    List<Diagnostic<? extends JavaFileObject>> diagnostics = compile(callee, caller, unrelated);
+    Assert.assertEquals(diagnostics.toString(), Arrays.asList(), errors(diagnostics));
+
+    int end = checked.indexOf(END_OF_FIRST_ROUND);
+    Assert.assertEquals(
+        checked.toString(),
+        new HashSet<>(Arrays.asList("Callee", "Caller", "Unrelated")),
+        new HashSet<>(checked.subList(0, end)));
+    Assert.assertEquals(checked.toString(), 3, end);
+    List<String> rechecked = checked.subList(end + 1, checked.size());
+    Assert.assertEquals(
+        checked.toString(),
+        new HashSet<>(Arrays.asList("Callee", "Caller")),
+        new HashSet<>(rechecked));
+  }
+
+  /**
+   * When the first round infers nothing new, no class is type-checked again.
+   *
+   * @throws IOException if a file cannot be written
+   */
+  @Test
+  public void testNothingChanges() throws IOException {
+    File unrelated = folder.newFile("Unrelated.java");
+    write(
+        unrelated,
+        "package " + PACKAGE + ";",
+        "class Unrelated {",
+        "  void run() {",
+        "    System.out.println();",
+        "  }",
+        "}");
+    compile(unrelated);
+    Assert.assertEquals(Arrays.asList("Unrelated", END_OF_FIRST_ROUND), checked);
+  }
+
+  /**
+   * Runs the {@link RecordingChecker} with whole-program inference to a fixpoint on the given
+   * source files.
+   *
+   * @param sources the source files
+   * @return the diagnostics that were issued
+   */
+  private List<Diagnostic<? extends JavaFileObject>> compile(File... sources) {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    try (StandardJavaFileManager fileManager =
+        compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+      List<String> options =
+          Arrays.asList(
+              "-proc:only",
+              "-classpath",
+              System.getProperty("java.class.path"),
+              "-Anomsgtext",
+              "-Awarns",
+              "-Ainfer=ajava",
+              "-AinferFixpoint",
+              "-XDcompilePolicy=simple");
+      JavaCompiler.CompilationTask task =
+          compiler.getTask(
+              null,
+              fileManager,
+              diagnostics,
+              options,
+              null,
+              fileManager.getJavaFileObjects(sources));
+      task.setProcessors(Arrays.asList(new RecordingChecker()));
+      task.call();
+    } catch (IOException e) {
+      throw new Error(e);
+    }
+    return diagnostics.getDiagnostics();
+  }
+
+  /**
+   * Returns the errors among the given diagnostics, as strings.
+   *
+   * @param diagnostics diagnostics issued by a compilation
+   * @return the errors among {@code diagnostics}
+   */
+  private static List<String> errors(List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+    List<String> result = new ArrayList<>();
+    for (Diagnostic<? extends JavaFileObject> d : diagnostics) {
+      if (d.getKind() == Diagnostic.Kind.ERROR) {
+        result.add(d.toString());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Writes the given lines to the given file.
+   *
+   * @param file the file to write
+   * @param lines the lines to write
+   * @throws IOException if the file cannot be written
+   */
+  private static void write(File file, String... lines) throws IOException {
+    Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+  }
+}
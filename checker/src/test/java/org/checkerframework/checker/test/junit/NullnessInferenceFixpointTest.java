@@ -0,0 +1,277 @@
+package org.checkerframework.checker.test.junit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.checkerframework.checker.nullness.NullnessChecker;
+import org.checkerframework.common.wholeprograminference.WholeProgramInferenceJavaParserStorage;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that {@code -AinferFixpoint} runs whole-program inference until the inferred annotations
+ * no longer change, stops at its bound on the number of rounds, and infers the same annotations as
+ * running javac again and again with {@code -Aajava}, as {@code wpi.sh} does.
+ */
+public class NullnessInferenceFixpointTest {
+
+  /** The package of the test sources, which names the directory of the ajava files. */
+  private static final String PACKAGE = "inferfixpointtest";
+
+  /** The note that reports the number of rounds, with the number as its group. */
+  private static final Pattern FIXPOINT_NOTE =
+      Pattern.compile("reached a fixpoint in (\\d+) rounds");
+
+  /** The directory that holds the sources and the ajava files of the wpi.sh-style rounds. */
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  /** The directory of the ajava files of the test sources. */
+  private final Path ajavaDir =
+      Paths.get(WholeProgramInferenceJavaParserStorage.AJAVA_FILES_PATH, PACKAGE);
+
+  /**
+   * The source files. Each method returns the result of the previous one, so each round of
+   * inference can only learn that one more method may return null.
+   */
+  private List<File> sources;
+
+  /**
+   * Creates the source files and deletes the ajava files of earlier runs.
+   *
+   * @throws IOException if a file cannot be written or deleted
+   */
+  @Before
+  public void setUp() throws IOException {
+    deleteAjavaFiles();
+    File first = folder.newFile("First.java");
+    File second = folder.newFile("Second.java");
+    write(
+        first,
+        "package " + PACKAGE + ";",
+        "class First {",
+        "  Object a() {",
+        "    return null;",
+        "  }",
+        "  Object c(Second s) {",
+        "    return s.b(this);",
+        "  }",
+        "}");
+    write(
+        second,
+        "package " + PACKAGE + ";",
+        "class Second {",
+        "  Object b(First f) {",
+        "    return f.a();",
+        "  }",
+        "  Object d(First f) {",
+        "    return f.c(this);",
+        "  }",
+        "}");
+    sources = Arrays.asList(first, second);
+  }
+
+  /**
+   * Deletes the ajava files that the test wrote.
+   *
+   * @throws IOException if a file cannot be deleted
+   */
+  @After
+  public void deleteAjavaFiles() throws IOException {
+    if (!Files.exists(ajavaDir)) {
+      return;
+    }
+    try (Stream<Path> files = Files.walk(ajavaDir)) {
+      for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  /**
+   * The fixpoint loop needs a round for each method of the chain, and its result is the same as
+   * that of running javac until the ajava files no longer change.
+   *
+   * @throws IOException if a file cannot be read or written
+   */
+  @Test
+  public void testSameAsRepeatedCompilations() throws IOException {
+    List<Diagnostic<? extends JavaFileObject>> diagnostics =
+        compile("-AinferFixpoint", "-XDcompilePolicy=simple", "-AresourceStats");
+    Assert.assertEquals(diagnostics.toString(), Arrays.asList(), errors(diagnostics));
+    int rounds = -1;
+    for (Diagnostic<? extends JavaFileObject> d : diagnostics) {
+      Matcher matcher = FIXPOINT_NOTE.matcher(d.getMessage(null));
+      if (matcher.find()) {
+        rounds = Integer.parseInt(matcher.group(1));
+      }
+    }
+    // a, b, c, and d are inferred to return @Nullable in successive rounds.
+    Assert.assertTrue(diagnostics.toString(), rounds >= 4);
+    Assert.assertTrue(diagnostics.toString(), rounds < 10);
+    Map<String, String> fixpoint = ajavaFiles();
+    String secondAjava =
+        fixpoint.get("Second-" + NullnessChecker.class.getCanonicalName() + ".ajava");
+    Assert.assertNotNull(fixpoint.toString(), secondAjava);
+    Assert.assertTrue(secondAjava, secondAjava.contains("Nullable Object d("));
+
+    // The wpi.sh flow: compile again, reading the ajava files of the previous compilation, until
+    // they no longer change.
+    deleteAjavaFiles();
+    Map<String, String> previous = null;
+    Map<String, String> current = new TreeMap<>();
+    int compilations = 0;
+    while (!current.equals(previous)) {
+      Assert.assertTrue("no fixpoint after " + compilations + " compilations", compilations < 10);
+      File packageDir = folder.newFolder("round" + compilations, PACKAGE);
+      File previousDir = packageDir.getParentFile();
+      for (Map.Entry<String, String> file : current.entrySet()) {
+        write(new File(packageDir, file.getKey()), file.getValue());
+      }
+      compile("-Aajava=" + previousDir);
+      compilations++;
+      previous = current;
+      current = ajavaFiles();
+    }
+    Assert.assertEquals(fixpoint, current);
+  }
+
+  /**
+   * The fixpoint loop stops after the given number of rounds, and warns that it did not reach a
+   * fixpoint.
+   *
+   * @throws IOException if a file cannot be read
+   */
+  @Test
+  public void testRoundBound() throws IOException {
+    List<Diagnostic<? extends JavaFileObject>> diagnostics =
+        compile("-AinferFixpoint=2", "-XDcompilePolicy=simple");
+    boolean warned = false;
+    for (Diagnostic<? extends JavaFileObject> d : diagnostics) {
+      warned |=
+          d.getKind() == Diagnostic.Kind.WARNING
+              && d.getMessage(null).contains("did not reach a fixpoint in 2 rounds");
+    }
+    Assert.assertTrue(diagnostics.toString(), warned);
+    String secondAjava =
+        ajavaFiles().get("Second-" + NullnessChecker.class.getCanonicalName() + ".ajava");
+    Assert.assertNotNull(secondAjava);
+    // Two rounds are not enough to learn that d may return null.
+    Assert.assertFalse(secondAjava, secondAjava.contains("Nullable Object d("));
+  }
+
+  @Test
+  public void testBinaryFormatRejected() {
+    // The later -Ainfer option overrides the -Ainfer=ajava that compile passes.
+    List<Diagnostic<? extends JavaFileObject>> diagnostics =
+        compile("-Ainfer=binary", "-AinferFixpoint", "-XDcompilePolicy=simple");
+    String errors = errors(diagnostics).toString();
+    Assert.assertTrue(
+        errors, errors.contains("-AinferFixpoint cannot be used with -Ainfer=binary"));
+  }
+
+  /**
+   * Returns the contents of the ajava files of the test sources.
+   *
+   * @return the contents of the ajava files, by file name
+   * @throws IOException if a file cannot be read
+   */
+  private Map<String, String> ajavaFiles() throws IOException {
+    Map<String, String> result = new TreeMap<>();
+    if (!Files.exists(ajavaDir)) {
+      return result;
+    }
+    try (Stream<Path> files = Files.list(ajavaDir)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        String name = file.getFileName().toString();
+        if (name.endsWith(".ajava")) {
+          result.put(name, new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Runs the Nullness Checker with whole-program inference on the source files.
+   *
+   * @param extraOptions options to pass in addition to the default ones
+   * @return the diagnostics that were issued
+   */
+  private List<Diagnostic<? extends JavaFileObject>> compile(String... extraOptions) {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    try (StandardJavaFileManager fileManager =
+        compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+      List<String> options = new ArrayList<>();
+      options.add("-proc:only");
+      options.add("-classpath");
+      options.add(System.getProperty("java.class.path"));
+      options.add("-Anomsgtext");
+      options.add("-Awarns");
+      options.add("-Ainfer=ajava");
+      options.addAll(Arrays.asList(extraOptions));
+      JavaCompiler.CompilationTask task =
+          compiler.getTask(
+              null,
+              fileManager,
+              diagnostics,
+              options,
+              null,
+              fileManager.getJavaFileObjectsFromFiles(sources));
+      task.setProcessors(Arrays.asList(new NullnessChecker()));
+      task.call();
+    } catch (IOException e) {
+      throw new Error(e);
+    }
+    return diagnostics.getDiagnostics();
+  }
+
+  /**
+   * Returns the errors among the given diagnostics, as strings.
+   *
+   * @param diagnostics diagnostics issued by a compilation
+   * @return the errors among {@code diagnostics}
+   */
+  private static List<String> errors(List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+    List<String> result = new ArrayList<>();
+    for (Diagnostic<? extends JavaFileObject> d : diagnostics) {
+      if (d.getKind() == Diagnostic.Kind.ERROR) {
+        result.add(d.toString());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Writes the given lines to the given file.
+   *
+   * @param file the file to write
+   * @param lines the lines to write
+   * @throws IOException if the file cannot be written
+   */
+  private static void write(File file, String... lines) throws IOException {
+    Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+  }
+}
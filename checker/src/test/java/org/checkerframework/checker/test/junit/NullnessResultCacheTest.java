@@ -0,0 +1,314 @@
+package org.checkerframework.checker.test.junit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.checkerframework.checker.nullness.NullnessChecker;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that {@code -AresultCache} replays the diagnostics of unchanged classes, type-checks a
+ * class again when a class that it depends on changes, and deletes entries that are no longer
+ * useful.
+ */
+public class NullnessResultCacheTest {
+
+  /** The directory that holds the sources and the cache. */
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  /** The cache directory. */
+  private File cacheDir;
+
+  /** The source file of the dependent class. */
+  private File userFile;
+
+  /** The source file of the class that the dependent class uses. */
+  private File libFile;
+
+  /** The source files to compile. */
+  private List<File> sources;
+
+  /**
+   * Creates the cache directory and the source files.
+   *
+   * @throws IOException if a file cannot be written
+   */
+  @Before
+  public void setUp() throws IOException {
+    cacheDir = folder.newFolder("cache");
+    userFile = folder.newFile("User.java");
+    libFile = folder.newFile("Lib.java");
+    write(userFile, "class User {", "  String use(Lib lib) {", "    return lib.get();", "  }", "}");
+    write(libFile, "class Lib {", "  String get() {", "    return \"\";", "  }", "}");
+    sources = new ArrayList<>(Arrays.asList(userFile, libFile));
+  }
+
+  /**
+   * Editing the signature of a dependency reveals an error in the dependent class.
+   *
+   * @throws IOException if a file cannot be written
+   */
+  @Test
+  public void testSignatureChange() throws IOException {
+    Assert.assertEquals(Arrays.asList(), errors(compile()));
+    Assert.assertEquals(Arrays.asList(), errors(compile()));
+    write(
+        libFile,
+        "import org.checkerframework.checker.nullness.qual.Nullable;",
+        "class Lib {",
+        "  @Nullable String get() {",
+        "    return null;",
+        "  }",
+        "}");
+    List<String> errors = errors(compile());
+    Assert.assertEquals(errors.toString(), 1, errors.size());
+    Assert.assertTrue(errors.get(0), errors.get(0).contains("User.java"));
+    Assert.assertTrue(errors.get(0), errors.get(0).contains("return.type.incompatible"));
+  }
+
+  /**
+   * Editing a method body or a private member of a dependency changes the cache key of the
+   * dependent class too, because checkers may consult them.
+   *
+   * @throws IOException if a file cannot be written
+   */
+  @Test
+  public void testBodyChange() throws IOException {
+    compile();
+    Assert.assertEquals(2, cacheFiles());
+    compile();
+    Assert.assertEquals(2, cacheFiles());
+    write(
+        libFile,
+        "class Lib {",
+        "  private int count;",
+        "  String get() {",
+        "    count++;",
+        "    return \"\" + count;",
+        "  }",
+        "}");
+    compile();
+    // The new entries replace the old ones.
+    Assert.assertEquals(2, cacheFiles());
+  }
+
+  /**
+   * Editing a class that the dependent class does not refer to, but that appears in the signature
+   * of a class that it refers to, changes the cache key of the dependent class.
+   *
+   * @throws IOException if a file cannot be written
+   */
+  @Test
+  public void testTransitiveChange() throws IOException {
+    File midFile = folder.newFile("Mid.java");
+    write(midFile, "class Mid {", "  String name() {", "    return \"\";", "  }", "}");
+    write(
+        libFile,
+        "class Lib {",
+        "  String get() {",
+        "    return \"\";",
+        "  }",
+        "  Mid mid() {",
+        "    return new Mid();",
+        "  }",
+        "}");
+    sources.add(midFile);
+    compile();
+    List<String> before = entries("User");
+    Assert.assertEquals(1, before.size());
+    write(
+        midFile,
+        "import org.checkerframework.checker.nullness.qual.Nullable;",
+        "class Mid {",
+        "  @Nullable String name() {",
+        "    return null;",
+        "  }",
+        "}");
+    compile();
+    List<String> after = entries("User");
+    Assert.assertEquals(1, after.size());
+    Assert.assertNotEquals(before, after);
+  }
+
+  /**
+   * A corrupt cache file, for instance one whose message length is larger than the file, is
+   * treated as a cache miss.
+   *
+   * @throws IOException if a file cannot be written
+   */
+  @Test
+  public void testCorruptFile() throws IOException {
+    write(libFile, "class Lib {", "  String get() {", "    return null;", "  }", "}");
+    Assert.assertEquals(1, errors(compile()).size());
+    // The number of messages, which follows the magic number and the URI of the source file.
+    corruptLibEntry(0);
+    Assert.assertEquals(1, errors(compile()).size());
+    // The length of the first message, which follows its kind and its tree index.
+    corruptLibEntry(4 + 2 + "ERROR".length() + 4);
+    Assert.assertEquals(1, errors(compile()).size());
+  }
+
+  /**
+   * Overwrites an int in the cache file of {@code Lib} with the largest int.
+   *
+   * @param offset the offset of the int, relative to the end of the URI of the source file
+   * @throws IOException if the file cannot be read or written
+   */
+  private void corruptLibEntry(int offset) throws IOException {
+    List<String> libEntries = entries("Lib");
+    Assert.assertEquals(1, libEntries.size());
+    Path file = new File(new File(cacheDir, "Lib"), libEntries.get(0)).toPath();
+    byte[] contents = Files.readAllBytes(file);
+    int uriLength = ((contents[4] & 0xFF) << 8) | (contents[5] & 0xFF);
+    int start = 6 + uriLength + offset;
+    contents[start] = 0x7F;
+    for (int i = start + 1; i < start + 4; i++) {
+      contents[i] = (byte) 0xFF;
+    }
+    Files.write(file, contents);
+  }
+
+  /**
+   * The entries of a class whose source file was deleted are deleted too.
+   *
+   * @throws IOException if a file cannot be written
+   */
+  @Test
+  public void testDeletedSource() throws IOException {
+    File otherFile = folder.newFile("Other.java");
+    write(otherFile, "class Other {}");
+    sources.add(otherFile);
+    compile();
+    Assert.assertEquals(1, entries("Other").size());
+    Assert.assertTrue(otherFile.delete());
+    sources.remove(otherFile);
+    compile();
+    Assert.assertFalse(new File(cacheDir, "Other").exists());
+    Assert.assertEquals(1, entries("User").size());
+  }
+
+  /**
+   * Replaying the diagnostics of a class prints the same {@code -Afilenames} notes as
+   * type-checking it.
+   *
+   * @throws IOException if a file cannot be written
+   */
+  @Test
+  public void testFilenamesOnReplay() throws IOException {
+    compile();
+    List<Diagnostic<? extends JavaFileObject>> diagnostics = compile("-Afilenames");
+    int notes = 0;
+    for (Diagnostic<? extends JavaFileObject> d : diagnostics) {
+      if (d.getKind() == Diagnostic.Kind.NOTE && d.getMessage(null).contains("is type-checking")) {
+        notes++;
+      }
+    }
+    Assert.assertEquals(diagnostics.toString(), 2, notes);
+  }
+
+  /**
+   * Runs the Nullness Checker with a result cache on the two source files.
+   *
+   * @param extraOptions options to pass in addition to the default ones
+   * @return the diagnostics that were issued
+   */
+  private List<Diagnostic<? extends JavaFileObject>> compile(String... extraOptions) {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    try (StandardJavaFileManager fileManager =
+        compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+      List<String> options = new ArrayList<>();
+      options.add("-proc:only");
+      options.add("-classpath");
+      options.add(System.getProperty("java.class.path"));
+      options.add("-Anomsgtext");
+      options.add("-AresultCache=" + cacheDir);
+      options.addAll(Arrays.asList(extraOptions));
+      JavaCompiler.CompilationTask task =
+          compiler.getTask(
+              null,
+              fileManager,
+              diagnostics,
+              options,
+              null,
+              fileManager.getJavaFileObjectsFromFiles(sources));
+      task.setProcessors(Arrays.asList(new NullnessChecker()));
+      task.call();
+    } catch (IOException e) {
+      throw new Error(e);
+    }
+    return diagnostics.getDiagnostics();
+  }
+
+  /**
+   * Returns the errors among the given diagnostics, as strings.
+   *
+   * @param diagnostics diagnostics issued by a compilation
+   * @return the errors among {@code diagnostics}
+   */
+  private static List<String> errors(List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+    List<String> result = new ArrayList<>();
+    for (Diagnostic<? extends JavaFileObject> d : diagnostics) {
+      if (d.getKind() == Diagnostic.Kind.ERROR) {
+        result.add(d.toString());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of files in the cache directory and its subdirectories.
+   *
+   * @return the number of files in the cache directory
+   */
+  private int cacheFiles() {
+    int result = 0;
+    File[] classDirs = cacheDir.listFiles();
+    if (classDirs != null) {
+      for (File classDir : classDirs) {
+        result += entries(classDir.getName()).size();
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the names of the cache files of the given class.
+   *
+   * @param className the name of a class
+   * @return the names of the cache files of the class, sorted
+   */
+  private List<String> entries(String className) {
+    String[] files = new File(cacheDir, className).list();
+    List<String> result = files == null ? new ArrayList<>() : new ArrayList<>(Arrays.asList(files));
+    Collections.sort(result);
+    return result;
+  }
+
+  /**
+   * Writes the given lines to the given file.
+   *
+   * @param file the file to write
+   * @param lines the lines to write
+   * @throws IOException if the file cannot be written
+   */
+  private static void write(File file, String... lines) throws IOException {
+    Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+  }
+}
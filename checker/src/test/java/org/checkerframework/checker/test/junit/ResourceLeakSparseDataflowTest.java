@@ -0,0 +1,37 @@
+package org.checkerframework.checker.test.junit;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.checker.resourceleak.ResourceLeakChecker;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Tests for the Resource Leak Checker -- testing the {@code -AsparseDataflow} command-line
+ * argument, which the checker ignores. The expected diagnostics are the same as without the
+ * argument.
+ */
+public class ResourceLeakSparseDataflowTest extends CheckerFrameworkPerDirectoryTest {
+
+  /**
+   * Create a ResourceLeakSparseDataflowTest.
+   *
+   * @param testFiles the files containing test code, which will be type-checked
+   */
+  public ResourceLeakSparseDataflowTest(List<File> testFiles) {
+    super(
+        testFiles,
+        ResourceLeakChecker.class,
+        "resourceleak",
+        "-Anomsgtext",
+        "-AsparseDataflow",
+        "-nowarn",
+        "-encoding",
+        "UTF-8");
+  }
+
+  @Parameters
+  public static String[] getTestDirs() {
+    return new String[] {"resourceleak"};
+  }
+}
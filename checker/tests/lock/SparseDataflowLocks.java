@@ -0,0 +1,34 @@
+// Test that -AsparseDataflow keeps the facts about a local variable that an annotation names, even
+// where the variable itself is not read. LockSparseDataflowTest runs this directory with that
+// option.
+
+import org.checkerframework.checker.lock.qual.GuardedBy;
+
+public class SparseDataflowLocks {
+
+  static class MyClass {
+    Object field = new Object();
+  }
+
+  void guardedByLocal() {
+    final Object lock = new Object();
+    @GuardedBy("lock") MyClass guarded = new MyClass();
+    // :: error: (lock.not.held)
+    guarded.field = new Object();
+    synchronized (lock) {
+      // The lock is not read in the synchronized block, but it must still be known to be held.
+      guarded.field = new Object();
+      guarded.field = new Object();
+    }
+  }
+
+  void guardedByLocalInLoop(int n) {
+    final Object lock = new Object();
+    @GuardedBy("lock") MyClass guarded = new MyClass();
+    synchronized (lock) {
+      for (int i = 0; i < n; i++) {
+        guarded.field = new Object();
+      }
+    }
+  }
+}
@@ -0,0 +1,89 @@
+// Test case for the -AinferModifiedFields command-line option.
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+class ModifiedFields {
+
+  @Nullable Object f;
+
+  int count;
+
+  private void increment() {
+    count++;
+  }
+
+  private void clearF() {
+    f = null;
+  }
+
+  void keepsRefinement() {
+    if (f != null) {
+      increment();
+      f.toString();
+    }
+  }
+
+  void invalidatesRefinement() {
+    if (f != null) {
+      clearF();
+      // :: error: (dereference.of.nullable)
+      f.toString();
+    }
+  }
+
+  private void touchInitializingClass() {
+    ClearsOnInit.count = 1;
+  }
+
+  void staticFieldOfClassWithInitializer() {
+    if (Holder.shared != null) {
+      // Accessing ClearsOnInit.count may run its static initializer.
+      touchInitializingClass();
+      // :: error: (dereference.of.nullable)
+      Holder.shared.toString();
+    }
+  }
+
+  void staticMethodOfClassWithInitializer() {
+    if (Holder.shared != null) {
+      // The first call of a static method runs the static initializer of its class.
+      ClearsOnInit.bump();
+      // :: error: (dereference.of.nullable)
+      Holder.shared.toString();
+    }
+  }
+
+  void staticMethodOfClassWithoutInitializer() {
+    if (Holder.shared != null) {
+      Counter.bump();
+      Holder.shared.toString();
+    }
+  }
+}
+
+class Holder {
+  static @Nullable Object shared;
+}
+
+class ClearsOnInit {
+  static {
+    Holder.shared = null;
+  }
+
+  static int count;
+
+  static void bump() {
+    count++;
+  }
+}
+
+class Counter {
+  // Compile-time constants are assigned without running code.
+  static final int STEP = 1;
+
+  static int count;
+
+  static void bump() {
+    count += STEP;
+  }
+}
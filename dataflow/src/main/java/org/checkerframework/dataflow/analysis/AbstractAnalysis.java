@@ -3,13 +3,17 @@ package org.checkerframework.dataflow.analysis;
 import com.sun.source.tree.ClassTree;
 import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.StringJoiner;
 import javax.lang.model.element.Element;
 import javax.lang.model.type.TypeMirror;
 import org.checkerframework.checker.interning.qual.FindDistinct;
@@ -428,47 +432,59 @@ public abstract class AbstractAnalysis<
    * @param b the block to add to {@link #worklist}
    */
   protected void addToWorklist(Block b) {
-    // TODO: use a more efficient way to check if b is already present
-    if (!worklist.contains(b)) {
-      worklist.add(b);
-    }
+    worklist.add(b);
   }
 
   /**
    * A worklist is a priority queue of blocks in which the order is given by depth-first ordering to
-   * place non-loop predecessors ahead of successors.
+   * place non-loop predecessors ahead of successors. The depth-first ordering is the order of the
+   * block ids (see {@link Block#getId}), so the worklist is a bit set of block ids.
    */
   protected static class Worklist {
 
-    /** Map all blocks in the CFG to their depth-first order. */
-    protected final IdentityHashMap<Block, Integer> depthFirstOrder = new IdentityHashMap<>();
-
     /**
      * Comparators to allow priority queue to order blocks by their depth-first order, using by
      * forward analysis.
+     *
+     * @deprecated the depth-first order of a block is its id; compare {@link Block#getId} instead
      */
+    @Deprecated // 2026-10-18
     public class ForwardDFOComparator implements Comparator<Block> {
-      @SuppressWarnings("nullness:unboxing.of.nullable")
       @Override
       public int compare(Block b1, Block b2) {
-        return depthFirstOrder.get(b1) - depthFirstOrder.get(b2);
+        return Integer.compare(b1.getId(), b2.getId());
       }
     }
 
     /**
      * Comparators to allow priority queue to order blocks by their depth-first order, using by
      * backward analysis.
+     *
+     * @deprecated the depth-first order of a block is its id; compare {@link Block#getId} instead
      */
+    @Deprecated // 2026-10-18
     public class BackwardDFOComparator implements Comparator<Block> {
-      @SuppressWarnings("nullness:unboxing.of.nullable")
       @Override
       public int compare(Block b1, Block b2) {
-        return depthFirstOrder.get(b2) - depthFirstOrder.get(b1);
+        return Integer.compare(b2.getId(), b1.getId());
       }
     }
 
-    /** The backing priority queue. */
-    protected final PriorityQueue<Block> queue;
+    /** The direction of the analysis. */
+    protected final Direction direction;
+
+    /** The blocks of the control flow graph, indexed by their ids. */
+    protected List<Block> blocks = Collections.emptyList();
+
+    /** The ids of the blocks in the worklist. */
+    protected final BitSet ids = new BitSet();
+
+    /**
+     * The blocks in the worklist that are not reachable from the entry block of the control flow
+     * graph, and so have no id. The analysis never reaches such blocks, but a client may add them.
+     * They are polled after all other blocks.
+     */
+    protected final ArrayDeque<Block> unreachableBlocks = new ArrayDeque<>();
 
     /**
      * Create a Worklist.
@@ -476,77 +492,105 @@ public abstract class AbstractAnalysis<
      * @param direction the direction (forward or backward)
      */
     public Worklist(Direction direction) {
-      if (direction == Direction.FORWARD) {
-        queue = new PriorityQueue<>(new ForwardDFOComparator());
-      } else if (direction == Direction.BACKWARD) {
-        queue = new PriorityQueue<>(new BackwardDFOComparator());
-      } else {
+      if (direction != Direction.FORWARD && direction != Direction.BACKWARD) {
         throw new BugInCF("Unexpected Direction meet: " + direction.name());
       }
+      this.direction = direction;
     }
 
     /**
-     * Process the control flow graph, add the blocks to {@link #depthFirstOrder}.
+     * Process the control flow graph, whose blocks can then be added to the worklist.
      *
      * @param cfg the control flow graph to process
      */
     public void process(ControlFlowGraph cfg) {
-      depthFirstOrder.clear();
-      int count = 1;
-      for (Block b : cfg.getDepthFirstOrderedBlocks()) {
-        depthFirstOrder.put(b, count++);
-      }
+      blocks = cfg.getBlocksById();
+      ids.clear();
+      unreachableBlocks.clear();
+    }
 
-      queue.clear();
+    /**
+     * Returns true if the given block is a block of the processed control flow graph that is
+     * reachable from its entry block.
+     *
+     * @param block a block
+     * @return true if {@code block} is reachable in the processed control flow graph
+     */
+    public boolean isReachable(Block block) {
+      int id = block.getId();
+      return id >= 0 && id < blocks.size() && blocks.get(id) == block;
     }
 
     /**
-     * See {@link PriorityQueue#isEmpty}.
+     * Returns true if the worklist is empty.
      *
-     * @see PriorityQueue#isEmpty
-     * @return true if {@link #queue} is empty else false
+     * @return true if the worklist is empty
      */
     @Pure
     @EnsuresNonNullIf(result = false, expression = "poll()")
     @SuppressWarnings("nullness:contracts.conditional.postcondition") // forwarded
     public boolean isEmpty() {
-      return queue.isEmpty();
+      return ids.isEmpty() && unreachableBlocks.isEmpty();
     }
 
     /**
-     * Check if {@link #queue} contains the block which is passed as the argument.
+     * Check if the worklist contains the block which is passed as the argument.
      *
      * @param block the given block to check
-     * @return true if {@link #queue} contains the given block
+     * @return true if the worklist contains the given block
      */
     public boolean contains(Block block) {
-      return queue.contains(block);
+      if (isReachable(block)) {
+        return ids.get(block.getId());
+      }
+      for (Block b : unreachableBlocks) {
+        if (b == block) {
+          return true;
+        }
+      }
+      return false;
     }
 
     /**
-     * Add the given block to {@link #queue}. Adds unconditionally: does not check containment
-     * first.
+     * Add the given block to the worklist. Does nothing if the block is already in the worklist.
      *
-     * @param block the block to add to {@link #queue}
+     * @param block the block to add to the worklist
      */
     public void add(Block block) {
-      queue.add(block);
+      if (isReachable(block)) {
+        ids.set(block.getId());
+      } else if (!contains(block)) {
+        unreachableBlocks.add(block);
+      }
     }
 
     /**
-     * See {@link PriorityQueue#poll}.
+     * Removes and returns the first block of the worklist: the block with the smallest id for a
+     * forward analysis, and the block with the largest id for a backward analysis. Blocks that are
+     * not reachable from the entry block come last.
      *
-     * @see PriorityQueue#poll
-     * @return the head of {@link #queue}
+     * @return the first block of the worklist, or null if the worklist is empty
      */
     @Pure
     public @Nullable Block poll() {
-      return queue.poll();
+      int id = direction == Direction.FORWARD ? ids.nextSetBit(0) : ids.length() - 1;
+      if (id < 0) {
+        return unreachableBlocks.poll();
+      }
+      ids.clear(id);
+      return blocks.get(id);
     }
 
     @Override
     public String toString() {
-      return "Worklist(" + queue + ")";
+      StringJoiner result = new StringJoiner(", ", "Worklist(", ")");
+      for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+        result.add(blocks.get(id).toString());
+      }
+      for (Block b : unreachableBlocks) {
+        result.add(b.toString());
+      }
+      return result.toString();
     }
   }
 }
@@ -0,0 +1,277 @@
+package org.checkerframework.dataflow.analysis;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A store for analyses whose facts are drawn from a finite set, such as the set of variables that
+ * are live at a program point. The facts are interned into a {@link Domain} that maps each fact to
+ * a dense index, and a store is a bit set over those indices. Therefore {@link #copy}, {@link
+ * #leastUpperBound}, and {@link #equals} are word-wide operations on a bit set, rather than
+ * operations on a hash set.
+ *
+ * <p>All stores of one analysis run should share a single domain; usually the transfer function
+ * creates the domain together with the initial store. Stores over different domains can still be
+ * joined and compared, but more slowly.
+ *
+ * <p>The lattice is the powerset of the domain ordered by inclusion, so it has finite height and
+ * {@link #widenedUpperBound} is the least upper bound.
+ *
+ * @param <K> the type of the facts
+ * @param <S> the type of the store returned by {@code copy} and that is used in {@code
+ *     leastUpperBound}. It is the implementing class itself.
+ */
+public abstract class BitSetStore<K, S extends BitSetStore<K, S>> implements Store<S> {
+
+  /**
+   * The facts that the stores of an analysis run can contain. Each fact is assigned a dense index
+   * the first time it is added to a store.
+   *
+   * @param <K> the type of the facts
+   */
+  public static class Domain<K> {
+
+    /** Maps each fact to its index. */
+    private final Map<K, Integer> indices = new HashMap<>();
+
+    /** The facts, in the order of their indices. */
+    private final List<K> facts = new ArrayList<>();
+
+    /** Creates an empty domain. */
+    public Domain() {}
+
+    /**
+     * Returns the index of the given fact, assigning a new index if the fact has none yet.
+     *
+     * @param fact a fact
+     * @return the index of {@code fact}
+     */
+    public int intern(K fact) {
+      Integer index = indices.get(fact);
+      if (index == null) {
+        index = facts.size();
+        indices.put(fact, index);
+        facts.add(fact);
+      }
+      return index;
+    }
+
+    /**
+     * Returns the index of the given fact, or -1 if it has never been added to a store.
+     *
+     * @param fact a fact
+     * @return the index of {@code fact}, or -1
+     */
+    public int indexOf(K fact) {
+      Integer index = indices.get(fact);
+      return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the fact with the given index.
+     *
+     * @param index the index of a fact
+     * @return the fact with the given index
+     */
+    public K get(int index) {
+      return facts.get(index);
+    }
+
+    /**
+     * Returns the number of facts in this domain.
+     *
+     * @return the number of facts in this domain
+     */
+    public int size() {
+      return facts.size();
+    }
+  }
+
+  /** The domain of the facts in this store. */
+  protected final Domain<K> domain;
+
+  /** The indices (in {@link #domain}) of the facts in this store. */
+  protected final BitSet facts;
+
+  /**
+   * Creates a new store.
+   *
+   * @param domain the domain of the facts in the store
+   * @param facts the indices of the facts in the store; the store takes ownership of it
+   */
+  protected BitSetStore(Domain<K> domain, BitSet facts) {
+    this.domain = domain;
+    this.facts = facts;
+  }
+
+  /**
+   * Creates a new store of the same class as this one.
+   *
+   * @param domain the domain of the facts in the new store
+   * @param facts the indices of the facts in the new store; the new store takes ownership of it
+   * @return a new store with the given facts
+   */
+  protected abstract S create(Domain<K> domain, BitSet facts);
+
+  /**
+   * Adds a fact to this store.
+   *
+   * @param fact the fact to add
+   * @return true if the store did not already contain the fact
+   */
+  public boolean add(K fact) {
+    int index = domain.intern(fact);
+    if (facts.get(index)) {
+      return false;
+    }
+    facts.set(index);
+    return true;
+  }
+
+  /**
+   * Removes a fact from this store.
+   *
+   * @param fact the fact to remove
+   * @return true if the store contained the fact
+   */
+  public boolean remove(K fact) {
+    int index = domain.indexOf(fact);
+    if (index == -1 || !facts.get(index)) {
+      return false;
+    }
+    facts.clear(index);
+    return true;
+  }
+
+  /**
+   * Returns true if this store contains the given fact.
+   *
+   * @param fact a fact
+   * @return true if this store contains {@code fact}
+   */
+  public boolean contains(K fact) {
+    int index = domain.indexOf(fact);
+    return index != -1 && facts.get(index);
+  }
+
+  /**
+   * Returns true if this store contains no facts.
+   *
+   * @return true if this store contains no facts
+   */
+  public boolean isEmpty() {
+    return facts.isEmpty();
+  }
+
+  /**
+   * Returns the facts in this store, in the order in which they were added to the domain.
+   *
+   * @return the facts in this store
+   */
+  public List<K> getFacts() {
+    if (facts.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<K> result = new ArrayList<>(facts.cardinality());
+    for (int i = facts.nextSetBit(0); i >= 0; i = facts.nextSetBit(i + 1)) {
+      result.add(domain.get(i));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the facts of the given store as indices into this store's domain.
+   *
+   * @param other a store
+   * @return the facts of {@code other}, as indices into {@link #domain}; must not be modified
+   */
+  private BitSet factsInThisDomain(BitSetStore<K, S> other) {
+    if (other.domain == this.domain) {
+      return other.facts;
+    }
+    BitSet result = new BitSet(domain.size());
+    for (K fact : other.getFacts()) {
+      result.set(domain.intern(fact));
+    }
+    return result;
+  }
+
+  @Override
+  public S copy() {
+    return create(domain, (BitSet) facts.clone());
+  }
+
+  @Override
+  public S leastUpperBound(S other) {
+    BitSet lub = (BitSet) facts.clone();
+    lub.or(factsInThisDomain(other));
+    return create(domain, lub);
+  }
+
+  /** The lattice has finite height, so this is the least upper bound. */
+  @Override
+  public S widenedUpperBound(S previous) {
+    return leastUpperBound(previous);
+  }
+
+  /**
+   * Returns true if this store contains every fact in the given store.
+   *
+   * @param other a store
+   * @return true if this store is a superset of {@code other}
+   */
+  public boolean supersetOf(S other) {
+    if (other.domain == this.domain) {
+      BitSet missing = (BitSet) other.facts.clone();
+      missing.andNot(facts);
+      return missing.isEmpty();
+    }
+    for (K fact : other.getFacts()) {
+      if (!contains(fact)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean equals(@Nullable Object obj) {
+    if (obj == null || obj.getClass() != this.getClass()) {
+      return false;
+    }
+    @SuppressWarnings("unchecked")
+    BitSetStore<K, S> other = (BitSetStore<K, S>) obj;
+    if (other.domain == this.domain) {
+      return other.facts.equals(this.facts);
+    }
+    if (other.facts.cardinality() != this.facts.cardinality()) {
+      return false;
+    }
+    for (K fact : other.getFacts()) {
+      if (!contains(fact)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    // Consistent with equals for stores over different domains.
+    int result = 0;
+    for (int i = facts.nextSetBit(0); i >= 0; i = facts.nextSetBit(i + 1)) {
+      result += domain.get(i).hashCode();
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return getFacts().toString();
+  }
+}
@@ -2,6 +2,7 @@ package org.checkerframework.dataflow.analysis;
 
 import com.sun.source.tree.LambdaExpressionTree;
 import com.sun.source.tree.MethodTree;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.List;
@@ -41,10 +42,11 @@ public class ForwardAnalysisImpl<
     extends AbstractAnalysis<V, S, T> implements ForwardAnalysis<V, S, T> {
 
   /**
-   * Number of times each block has been analyzed since the last time widening was applied. Null if
-   * maxCountBeforeWidening is -1, which implies widening isn't used for this analysis.
+   * Number of times each block has been analyzed since the last time widening was applied, indexed
+   * by block id. Null if maxCountBeforeWidening is -1, which implies widening isn't used for this
+   * analysis.
    */
-  protected final @Nullable IdentityHashMap<Block, Integer> blockCount;
+  protected int @Nullable [] blockCount;
 
   /**
    * Number of times a block can be analyzed before widening. -1 implies that widening shouldn't be
@@ -52,11 +54,25 @@ public class ForwardAnalysisImpl<
    */
   protected final int maxCountBeforeWidening;
 
-  /** Then stores before every basic block (assumed to be 'no information' if not present). */
-  protected final IdentityHashMap<Block, S> thenStores;
+  /**
+   * Then stores before every basic block, indexed by block id (assumed to be 'no information' if
+   * null).
+   */
+  protected @Nullable S[] thenStores;
+
+  /**
+   * Else stores before every basic block, indexed by block id (assumed to be 'no information' if
+   * null).
+   */
+  protected @Nullable S[] elseStores;
 
-  /** Else stores before every basic block (assumed to be 'no information' if not present). */
-  protected final IdentityHashMap<Block, S> elseStores;
+  /**
+   * The indices in {@link #thenStores}, {@link #elseStores}, and {@link #blockCount} of the blocks
+   * that are not reachable from the entry block of the control flow graph, and so have no id. They
+   * come after the ids of the reachable blocks. The analysis never reaches such blocks, but a
+   * client may add stores for them.
+   */
+  private final IdentityHashMap<Block, Integer> unreachableBlockIndices;
 
   /** The stores after every return statement. */
   protected final IdentityHashMap<ReturnNode, TransferResult<V, S>> storesAtReturnStatements;
@@ -72,9 +88,10 @@ public class ForwardAnalysisImpl<
   public ForwardAnalysisImpl(int maxCountBeforeWidening) {
     super(Direction.FORWARD);
     this.maxCountBeforeWidening = maxCountBeforeWidening;
-    this.blockCount = maxCountBeforeWidening == -1 ? null : new IdentityHashMap<>();
-    this.thenStores = new IdentityHashMap<>();
-    this.elseStores = new IdentityHashMap<>();
+    this.blockCount = maxCountBeforeWidening == -1 ? null : new int[0];
+    this.thenStores = newStoreTable(0);
+    this.elseStores = newStoreTable(0);
+    this.unreachableBlockIndices = new IdentityHashMap<>();
     this.storesAtReturnStatements = new IdentityHashMap<>();
   }
 
@@ -319,13 +336,55 @@ public class ForwardAnalysisImpl<
     }
   }
 
+  /**
+   * Creates a table of stores, indexed by block id.
+   *
+   * @param <S> the store type
+   * @param size the number of blocks
+   * @return an array of {@code size} null stores
+   */
+  @SuppressWarnings("unchecked") // the erasure of S is Store
+  private static <S extends Store<S>> @Nullable S[] newStoreTable(int size) {
+    return (@Nullable S[]) new Store<?>[size];
+  }
+
+  /**
+   * Returns the index of the given block in {@link #thenStores}, {@link #elseStores}, and {@link
+   * #blockCount}: its id if it is reachable from the entry block of the control flow graph.
+   *
+   * @param b a block
+   * @param add whether to give {@code b} an index, growing the tables, if it has none yet
+   * @return the index of {@code b}, or -1 if it has none and {@code add} is false
+   */
+  private int tableIndex(Block b, boolean add) {
+    if (worklist.isReachable(b)) {
+      return b.getId();
+    }
+    Integer index = unreachableBlockIndices.get(b);
+    if (index != null) {
+      return index;
+    } else if (!add) {
+      return -1;
+    }
+    int newIndex = thenStores.length;
+    unreachableBlockIndices.put(b, newIndex);
+    thenStores = Arrays.copyOf(thenStores, newIndex + 1);
+    elseStores = Arrays.copyOf(elseStores, newIndex + 1);
+    if (blockCount != null) {
+      blockCount = Arrays.copyOf(blockCount, newIndex + 1);
+    }
+    return newIndex;
+  }
+
   @Override
   protected void initFields(ControlFlowGraph cfg) {
-    thenStores.clear();
-    elseStores.clear();
+    int numberOfBlocks = cfg.getNumberOfBlocks();
+    thenStores = newStoreTable(numberOfBlocks);
+    elseStores = newStoreTable(numberOfBlocks);
     if (blockCount != null) {
-      blockCount.clear();
+      blockCount = new int[numberOfBlocks];
     }
+    unreachableBlockIndices.clear();
     storesAtReturnStatements.clear();
     super.initFields(cfg);
   }
@@ -340,8 +399,8 @@ public class ForwardAnalysisImpl<
     List<LocalVariableNode> parameters = getParameters(underlyingAST);
     assert transferFunction != null : "@AssumeAssertion(nullness): invariant";
     S initialStore = transferFunction.initialStore(underlyingAST, parameters);
-    thenStores.put(entry, initialStore);
-    elseStores.put(entry, initialStore);
+    thenStores[entry.getId()] = initialStore;
+    elseStores[entry.getId()] = initialStore;
     inputs.put(entry, new TransferInput<>(null, this, initialStore));
   }
 
@@ -437,16 +496,17 @@ public class ForwardAnalysisImpl<
    */
   protected void addStoreBefore(
       Block b, @Nullable Node node, S s, Store.Kind kind, boolean addBlockToWorklist) {
-    S thenStore = getStoreBefore(b, Store.Kind.THEN);
-    S elseStore = getStoreBefore(b, Store.Kind.ELSE);
+    int id = tableIndex(b, true);
+    S thenStore = thenStores[id];
+    S elseStore = elseStores[id];
     boolean shouldWiden = false;
     if (blockCount != null) {
-      Integer count = blockCount.getOrDefault(b, 0);
+      int count = blockCount[id];
       shouldWiden = count >= maxCountBeforeWidening;
       if (shouldWiden) {
-        blockCount.put(b, 0);
+        blockCount[id] = 0;
       } else {
-        blockCount.put(b, count + 1);
+        blockCount[id] = count + 1;
       }
     }
     switch (kind) {
@@ -455,7 +515,7 @@ public class ForwardAnalysisImpl<
           // Update the then store
           S newThenStore = mergeStores(s, thenStore, shouldWiden);
           if (!newThenStore.equals(thenStore)) {
-            thenStores.put(b, newThenStore);
+            thenStores[id] = newThenStore;
             if (elseStore != null) {
               inputs.put(b, new TransferInput<>(node, this, newThenStore, elseStore));
               addBlockToWorklist = true;
@@ -468,7 +528,7 @@ public class ForwardAnalysisImpl<
           // Update the else store
           S newElseStore = mergeStores(s, elseStore, shouldWiden);
           if (!newElseStore.equals(elseStore)) {
-            elseStores.put(b, newElseStore);
+            elseStores[id] = newElseStore;
             if (thenStore != null) {
               inputs.put(b, new TransferInput<>(node, this, thenStore, newElseStore));
               addBlockToWorklist = true;
@@ -483,8 +543,8 @@ public class ForwardAnalysisImpl<
           // Currently there is only one regular store
           S newStore = mergeStores(s, thenStore, shouldWiden);
           if (!newStore.equals(thenStore)) {
-            thenStores.put(b, newStore);
-            elseStores.put(b, newStore);
+            thenStores[id] = newStore;
+            elseStores[id] = newStore;
             inputs.put(b, new TransferInput<>(node, this, newStore));
             addBlockToWorklist = true;
           }
@@ -492,12 +552,12 @@ public class ForwardAnalysisImpl<
           boolean storeChanged = false;
           S newThenStore = mergeStores(s, thenStore, shouldWiden);
           if (!newThenStore.equals(thenStore)) {
-            thenStores.put(b, newThenStore);
+            thenStores[id] = newThenStore;
             storeChanged = true;
           }
           S newElseStore = mergeStores(s, elseStore, shouldWiden);
           if (!newElseStore.equals(elseStore)) {
-            elseStores.put(b, newElseStore);
+            elseStores[id] = newElseStore;
             storeChanged = true;
           }
           if (storeChanged) {
@@ -537,11 +597,15 @@ public class ForwardAnalysisImpl<
    * @return the store corresponding to the location right before the basic block {@code b}
    */
   protected @Nullable S getStoreBefore(Block b, Store.Kind kind) {
+    int id = tableIndex(b, false);
+    if (id == -1) {
+      return null;
+    }
     switch (kind) {
       case THEN:
-        return readFromStore(thenStores, b);
+        return thenStores[id];
       case ELSE:
-        return readFromStore(elseStores, b);
+        return elseStores[id];
       default:
         throw new BugInCF("Unexpected Store.Kind: " + kind);
     }
@@ -21,6 +21,7 @@ import org.checkerframework.checker.initialization.qual.UnknownInitialization;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.dataflow.analysis.AnalysisResult;
 import org.checkerframework.dataflow.cfg.block.Block;
+import org.checkerframework.dataflow.cfg.block.BlockImpl;
 import org.checkerframework.dataflow.cfg.block.ConditionalBlock;
 import org.checkerframework.dataflow.cfg.block.ExceptionBlock;
 import org.checkerframework.dataflow.cfg.block.RegularBlock;
@@ -106,6 +107,12 @@ public class ControlFlowGraph implements UniqueId {
    */
   protected final List<LambdaExpressionTree> declaredLambdas;
 
+  /**
+   * The blocks that are reachable from the entry block, indexed by their ids; null until {@link
+   * #assignBlockIds} is called.
+   */
+  private @Nullable List<Block> blocksById = null;
+
   public ControlFlowGraph(
       SpecialBlock entryBlock,
       SpecialBlockImpl regularExitBlock,
@@ -254,6 +261,57 @@ public class ControlFlowGraph implements UniqueId {
     return dfsOrderResult;
   }
 
+  /**
+   * Assigns each block that is reachable from the entry block a dense id (see {@link
+   * Block#getId}). The ids follow the reversed depth-first postorder of {@link
+   * #getDepthFirstOrderedBlocks}, so that an analysis that processes blocks in the order of their
+   * ids visits non-loop predecessors before their successors.
+   *
+   * <p>This method is called once the graph is complete, at the end of its construction.
+   */
+  public void assignBlockIds() {
+    List<Block> order = getDepthFirstOrderedBlocks();
+    // A block can appear more than once in the order; its position is that of its last occurrence.
+    IdentityHashMap<Block, Integer> lastOccurrence = new IdentityHashMap<>();
+    for (int i = 0; i < order.size(); i++) {
+      lastOccurrence.put(order.get(i), i);
+    }
+    List<Block> result = new ArrayList<>(lastOccurrence.size());
+    for (int i = 0; i < order.size(); i++) {
+      Block b = order.get(i);
+      @SuppressWarnings("nullness:unboxing.of.nullable") // every block in order is a key
+      int last = lastOccurrence.get(b);
+      if (last == i) {
+        ((BlockImpl) b).setId(result.size());
+        result.add(b);
+      }
+    }
+    blocksById = Collections.unmodifiableList(result);
+  }
+
+  /**
+   * Returns the number of blocks that are reachable from the entry block. Their ids range from 0 to
+   * the result - 1.
+   *
+   * @return the number of blocks that are reachable from the entry block
+   */
+  public int getNumberOfBlocks() {
+    return getBlocksById().size();
+  }
+
+  /**
+   * Returns the blocks that are reachable from the entry block, indexed by their ids.
+   *
+   * @return the blocks that are reachable from the entry block, indexed by their ids
+   */
+  public List<Block> getBlocksById() {
+    if (blocksById == null) {
+      assignBlockIds();
+      assert blocksById != null : "@AssumeAssertion(nullness): set by assignBlockIds";
+    }
+    return blocksById;
+  }
+
   /**
    * Returns the copied tree-lookup map. Ignores convertedTreeLookup, though {@link
    * #getNodesCorrespondingToTree} uses that field.
@@ -33,6 +33,17 @@ public interface Block extends UniqueId {
    */
   BlockType getType();
 
+  /**
+   * Returns the id of this basic block. The ids of the blocks of a control flow graph are dense:
+   * they number the blocks that are reachable from the entry block from 0 to {@link
+   * org.checkerframework.dataflow.cfg.ControlFlowGraph#getNumberOfBlocks} - 1, in reverse
+   * depth-first postorder. Analyses use them to index per-block tables.
+   *
+   * @return the id of this basic block, or -1 if it is not reachable from the entry block of its
+   *     control flow graph or if the control flow graph has not been completed yet
+   */
+  int getId();
+
   /**
    * Returns the predecessors of this basic block.
    *
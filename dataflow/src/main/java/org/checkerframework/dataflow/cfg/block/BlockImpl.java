@@ -28,6 +28,9 @@ public abstract class BlockImpl implements Block {
     return uid;
   }
 
+  /** The id of this block in its control flow graph, or -1 if it has none. */
+  protected int id = -1;
+
   /**
    * Create a new BlockImpl.
    *
@@ -43,6 +46,21 @@ public abstract class BlockImpl implements Block {
     return type;
   }
 
+  @Override
+  public int getId() {
+    return id;
+  }
+
+  /**
+   * Sets the id of this block. Only {@link
+   * org.checkerframework.dataflow.cfg.ControlFlowGraph#assignBlockIds} should call this method.
+   *
+   * @param id the id of this block, or -1 if it has none
+   */
+  public void setId(int id) {
+    this.id = id;
+  }
+
   @Override
   public Set<Block> getPredecessors() {
     // Not "Collections.unmodifiableSet(predecessors)" which has nondeterministic iteration order.
@@ -1346,9 +1346,7 @@ public class CFGTranslationPhaseOne extends TreePathScanner<Node, Void> {
 
     /* Check for the TerminatesExecution annotation. */
     Element methodElement = TreeUtils.elementFromTree(tree);
-    boolean terminatesExecution =
-        annotationProvider.getDeclAnnotation(methodElement, TerminatesExecution.class) != null;
-    if (terminatesExecution) {
+    if (terminatesExecution(methodElement)) {
       extendedNode.setTerminatesExecution(true);
     }
 
@@ -1395,6 +1393,17 @@ public class CFGTranslationPhaseOne extends TreePathScanner<Node, Void> {
     return null;
   }
 
+  /**
+   * Returns true if the given method never returns normally, because it is annotated with {@link
+   * TerminatesExecution}.
+   *
+   * @param methodElement the element of an invoked method
+   * @return true if an invocation of {@code methodElement} terminates execution
+   */
+  protected boolean terminatesExecution(Element methodElement) {
+    return annotationProvider.getDeclAnnotation(methodElement, TerminatesExecution.class) != null;
+  }
+
   /**
    * Should assertions be assumed to be executed for a given {@link AssertTree}? False by default.
    */
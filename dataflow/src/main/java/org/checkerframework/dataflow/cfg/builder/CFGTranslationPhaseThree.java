@@ -142,6 +142,7 @@ public class CFGTranslationPhaseThree {
         }
       }
     }
+    cfg.assignBlockIds();
     return cfg;
   }
 
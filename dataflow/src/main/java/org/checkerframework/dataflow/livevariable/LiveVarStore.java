@@ -1,11 +1,9 @@
 package org.checkerframework.dataflow.livevariable;
 
-import java.util.HashSet;
-import java.util.LinkedHashSet;
+import java.util.BitSet;
 import java.util.Set;
 import java.util.StringJoiner;
-import org.checkerframework.checker.nullness.qual.Nullable;
-import org.checkerframework.dataflow.analysis.Store;
+import org.checkerframework.dataflow.analysis.BitSetStore;
 import org.checkerframework.dataflow.cfg.node.BinaryOperationNode;
 import org.checkerframework.dataflow.cfg.node.FieldAccessNode;
 import org.checkerframework.dataflow.cfg.node.InstanceOfNode;
@@ -18,24 +16,51 @@ import org.checkerframework.dataflow.cfg.visualize.CFGVisualizer;
 import org.checkerframework.dataflow.expression.JavaExpression;
 import org.checkerframework.javacutil.BugInCF;
 
-/** A live variable store contains a set of live variables represented by nodes. */
-public class LiveVarStore implements Store<LiveVarStore> {
+/**
+ * A live variable store contains a set of live variables represented by nodes. The set is a bit set
+ * over a {@link BitSetStore.Domain} that is shared by all the stores of one analysis run.
+ */
+public class LiveVarStore extends BitSetStore<LiveVarValue, LiveVarStore> {
 
-  /** A set of live variable abstract values. */
-  private final Set<LiveVarValue> liveVarValueSet;
-
-  /** Create a new LiveVarStore. */
+  /** Create a new LiveVarStore, with its own domain. */
   public LiveVarStore() {
-    liveVarValueSet = new LinkedHashSet<>();
+    this(new Domain<>());
   }
 
   /**
-   * Create a new LiveVarStore.
+   * Create a new LiveVarStore, with its own domain.
    *
    * @param liveVarValueSet a set of live variable abstract values
    */
   public LiveVarStore(Set<LiveVarValue> liveVarValueSet) {
-    this.liveVarValueSet = liveVarValueSet;
+    this(new Domain<>());
+    for (LiveVarValue liveVarValue : liveVarValueSet) {
+      add(liveVarValue);
+    }
+  }
+
+  /**
+   * Create a new, empty LiveVarStore.
+   *
+   * @param domain the live variables that the stores of the analysis can contain
+   */
+  public LiveVarStore(Domain<LiveVarValue> domain) {
+    this(domain, new BitSet());
+  }
+
+  /**
+   * Create a new LiveVarStore.
+   *
+   * @param domain the live variables that the stores of the analysis can contain
+   * @param liveVars the indices, in {@code domain}, of the live variables
+   */
+  private LiveVarStore(Domain<LiveVarValue> domain, BitSet liveVars) {
+    super(domain, liveVars);
+  }
+
+  @Override
+  protected LiveVarStore create(Domain<LiveVarValue> domain, BitSet facts) {
+    return new LiveVarStore(domain, facts);
   }
 
   /**
@@ -44,7 +69,7 @@ public class LiveVarStore implements Store<LiveVarStore> {
    * @param variable a live variable
    */
   public void putLiveVar(LiveVarValue variable) {
-    liveVarValueSet.add(variable);
+    add(variable);
   }
 
   /**
@@ -53,7 +78,7 @@ public class LiveVarStore implements Store<LiveVarStore> {
    * @param variable a live variable
    */
   public void killLiveVar(LiveVarValue variable) {
-    liveVarValueSet.remove(variable);
+    remove(variable);
   }
 
   /**
@@ -87,34 +112,6 @@ public class LiveVarStore implements Store<LiveVarStore> {
     }
   }
 
-  @Override
-  public boolean equals(@Nullable Object obj) {
-    if (!(obj instanceof LiveVarStore)) {
-      return false;
-    }
-    LiveVarStore other = (LiveVarStore) obj;
-    return other.liveVarValueSet.equals(this.liveVarValueSet);
-  }
-
-  @Override
-  public int hashCode() {
-    return this.liveVarValueSet.hashCode();
-  }
-
-  @Override
-  public LiveVarStore copy() {
-    return new LiveVarStore(new HashSet<>(liveVarValueSet));
-  }
-
-  @Override
-  public LiveVarStore leastUpperBound(LiveVarStore other) {
-    Set<LiveVarValue> liveVarValueSetLub =
-        new HashSet<>(this.liveVarValueSet.size() + other.liveVarValueSet.size());
-    liveVarValueSetLub.addAll(this.liveVarValueSet);
-    liveVarValueSetLub.addAll(other.liveVarValueSet);
-    return new LiveVarStore(liveVarValueSetLub);
-  }
-
   /** It should not be called since it is not used by the backward analysis. */
   @Override
   public LiveVarStore widenedUpperBound(LiveVarStore previous) {
@@ -129,18 +126,13 @@ public class LiveVarStore implements Store<LiveVarStore> {
   @Override
   public String visualize(CFGVisualizer<?, LiveVarStore, ?> viz) {
     String key = "live variables";
-    if (liveVarValueSet.isEmpty()) {
+    if (isEmpty()) {
       return viz.visualizeStoreKeyVal(key, "none");
     }
     StringJoiner sjStoreVal = new StringJoiner(", ");
-    for (LiveVarValue liveVarValue : liveVarValueSet) {
+    for (LiveVarValue liveVarValue : getFacts()) {
       sjStoreVal.add(liveVarValue.toString());
     }
     return viz.visualizeStoreKeyVal(key, sjStoreVal.toString());
   }
-
-  @Override
-  public String toString() {
-    return liveVarValueSet.toString();
-  }
 }
@@ -3,6 +3,7 @@ package org.checkerframework.dataflow.livevariable;
 import java.util.List;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.dataflow.analysis.BackwardTransferFunction;
+import org.checkerframework.dataflow.analysis.BitSetStore;
 import org.checkerframework.dataflow.analysis.RegularTransferResult;
 import org.checkerframework.dataflow.analysis.TransferInput;
 import org.checkerframework.dataflow.analysis.TransferResult;
@@ -21,15 +22,36 @@ public class LiveVarTransfer
         TransferResult<LiveVarValue, LiveVarStore>, TransferInput<LiveVarValue, LiveVarStore>>
     implements BackwardTransferFunction<LiveVarValue, LiveVarStore> {
 
+  /** The live variables of the analysis of {@link #domainAST}, shared by all its stores. */
+  private BitSetStore.Domain<LiveVarValue> domain = new BitSetStore.Domain<>();
+
+  /** The AST whose analysis uses {@link #domain}, or null if none has been analyzed yet. */
+  private @Nullable UnderlyingAST domainAST = null;
+
+  /**
+   * Returns the domain shared by the stores of the analysis of the given AST. A new domain is
+   * created for each AST, so that the bit sets stay small.
+   *
+   * @param underlyingAST the AST being analyzed
+   * @return the domain for the stores of the analysis of {@code underlyingAST}
+   */
+  private BitSetStore.Domain<LiveVarValue> getDomain(UnderlyingAST underlyingAST) {
+    if (domainAST == null || !domainAST.equals(underlyingAST)) {
+      domain = new BitSetStore.Domain<>();
+      domainAST = underlyingAST;
+    }
+    return domain;
+  }
+
   @Override
   public LiveVarStore initialNormalExitStore(
       UnderlyingAST underlyingAST, @Nullable List<ReturnNode> returnNodes) {
-    return new LiveVarStore();
+    return new LiveVarStore(getDomain(underlyingAST));
   }
 
   @Override
   public LiveVarStore initialExceptionalExitStore(UnderlyingAST underlyingAST) {
-    return new LiveVarStore();
+    return new LiveVarStore(getDomain(underlyingAST));
   }
 
   @Override
@@ -0,0 +1,755 @@
+package org.checkerframework.dataflow.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A mutable map whose contents are a persistent hash array mapped trie (HAMT). Copying the map
+ * with {@link #PersistentHashMap(Map)} takes constant time, because the copy shares the trie with
+ * the original; a later update of either map copies only the O(log n) nodes on the path to the
+ * updated key.
+ *
+ * <p>Maps that were copied from one another share the subtries that neither has updated since.
+ * {@link #intersection} and {@link #containsAllEntriesOf} skip such shared subtries without
+ * visiting their entries, which makes joining and comparing two similar dataflow stores
+ * proportional to the number of differences between them rather than to their size.
+ *
+ * <p>Does not support {@code null} keys. Iteration order is unspecified. An iterator reflects the
+ * contents of the map when the iterator was created; modifying the map through the iterator or
+ * its entries is permitted, and modifying the map directly does not invalidate the iterator.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+  /** The number of hash bits consumed by each level of the trie. */
+  private static final int BITS = 5;
+
+  /** The mask for the hash bits of one level of the trie. */
+  private static final int MASK = (1 << BITS) - 1;
+
+  /**
+   * The root of the trie: {@code null} if the map is empty, otherwise a {@link Leaf}, a {@link
+   * BitmapNode}, or a {@link CollisionNode}. Tries are never modified, only replaced.
+   */
+  private @Nullable Object root;
+
+  /** The entry set view, created lazily. */
+  private @Nullable Set<Map.Entry<K, V>> entrySet;
+
+  /** Creates an empty map. */
+  public PersistentHashMap() {
+    this.root = null;
+  }
+
+  /**
+   * Creates a map with the same mappings as the given map. If {@code m} is a {@code
+   * PersistentHashMap}, this takes constant time.
+   *
+   * @param m the map whose mappings to copy
+   */
+  public PersistentHashMap(Map<? extends K, ? extends V> m) {
+    this.root = null;
+    putAll(m);
+  }
+
+  /** A key-value pair. Leaves are immutable. */
+  private static final class Leaf<K, V> {
+    /** The spread hash code of {@link #key}. */
+    final int hash;
+    /** The key. */
+    final K key;
+    /** The value. */
+    final V value;
+
+    /**
+     * Creates a leaf.
+     *
+     * @param hash the spread hash code of {@code key}
+     * @param key the key
+     * @param value the value
+     */
+    Leaf(int hash, K key, V value) {
+      this.hash = hash;
+      this.key = key;
+      this.value = value;
+    }
+  }
+
+  /**
+   * An inner node of the trie. Each bit set in {@link #bitmap} corresponds to a non-null element of
+   * {@link #slots}, which is a {@link Leaf}, a {@link BitmapNode}, or a {@link CollisionNode}.
+   */
+  private static final class BitmapNode {
+    /** The positions of the non-empty children of this node. */
+    final int bitmap;
+    /** The non-empty children of this node, ordered by position. */
+    final Object[] slots;
+    /** The number of leaves below this node. */
+    final int size;
+
+    /**
+     * Creates an inner node.
+     *
+     * @param bitmap the positions of the children
+     * @param slots the children, ordered by position
+     */
+    BitmapNode(int bitmap, Object[] slots) {
+      this.bitmap = bitmap;
+      this.slots = slots;
+      int size = 0;
+      for (Object slot : slots) {
+        size += size(slot);
+      }
+      this.size = size;
+    }
+  }
+
+  /** The leaves whose keys have the same spread hash code. There are always at least two. */
+  private static final class CollisionNode {
+    /** The spread hash code of all the keys in this node. */
+    final int hash;
+    /** The leaves. */
+    final Leaf<?, ?>[] leaves;
+
+    /**
+     * Creates a collision node.
+     *
+     * @param hash the spread hash code of all the keys
+     * @param leaves the leaves
+     */
+    CollisionNode(int hash, Leaf<?, ?>[] leaves) {
+      this.hash = hash;
+      this.leaves = leaves;
+    }
+  }
+
+  /**
+   * Returns the spread hash code of a key.
+   *
+   * @param key a key
+   * @return the hash code of {@code key}, with its high bits mixed into its low bits
+   */
+  private static int hash(Object key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Returns the bit that selects the child for a hash code at a level of the trie.
+   *
+   * @param hash a spread hash code
+   * @param shift the number of hash bits consumed by the levels above
+   * @return the bit for {@code hash} at the level
+   */
+  private static int bit(int hash, int shift) {
+    return 1 << ((hash >>> shift) & MASK);
+  }
+
+  /**
+   * Returns the index in {@link BitmapNode#slots} of the child with the given bit.
+   *
+   * @param bitmap the bitmap of a node
+   * @param bit the bit of a child
+   * @return the index of the child
+   */
+  private static int index(int bitmap, int bit) {
+    return Integer.bitCount(bitmap & (bit - 1));
+  }
+
+  /**
+   * Returns the number of leaves in a trie.
+   *
+   * @param slot a trie, possibly empty
+   * @return the number of leaves in {@code slot}
+   */
+  private static int size(@Nullable Object slot) {
+    if (slot == null) {
+      return 0;
+    } else if (slot instanceof Leaf) {
+      return 1;
+    } else if (slot instanceof BitmapNode) {
+      return ((BitmapNode) slot).size;
+    } else {
+      return ((CollisionNode) slot).leaves.length;
+    }
+  }
+
+  /**
+   * Returns the leaf for a key.
+   *
+   * @param slot a trie, possibly empty
+   * @param shift the number of hash bits consumed by the levels above {@code slot}
+   * @param hash the spread hash code of {@code key}
+   * @param key a key
+   * @return the leaf for {@code key} in {@code slot}, or {@code null} if there is none
+   */
+  private static @Nullable Leaf<?, ?> find(@Nullable Object slot, int shift, int hash, Object key) {
+    while (slot instanceof BitmapNode) {
+      BitmapNode node = (BitmapNode) slot;
+      int bit = bit(hash, shift);
+      if ((node.bitmap & bit) == 0) {
+        return null;
+      }
+      slot = node.slots[index(node.bitmap, bit)];
+      shift += BITS;
+    }
+    if (slot instanceof Leaf) {
+      Leaf<?, ?> leaf = (Leaf<?, ?>) slot;
+      return leaf.hash == hash && leaf.key.equals(key) ? leaf : null;
+    } else if (slot instanceof CollisionNode) {
+      CollisionNode node = (CollisionNode) slot;
+      if (node.hash == hash) {
+        for (Leaf<?, ?> leaf : node.leaves) {
+          if (leaf.key.equals(key)) {
+            return leaf;
+          }
+        }
+      }
+      return null;
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Returns a trie that maps the key of {@code leaf} to its value, and is otherwise like {@code
+   * slot}.
+   *
+   * @param slot a trie, possibly empty
+   * @param shift the number of hash bits consumed by the levels above {@code slot}
+   * @param leaf the mapping to add
+   * @return the updated trie; {@code slot} itself if it already contains the mapping
+   */
+  private static Object put(@Nullable Object slot, int shift, Leaf<?, ?> leaf) {
+    if (slot == null) {
+      return leaf;
+    } else if (slot instanceof Leaf) {
+      Leaf<?, ?> old = (Leaf<?, ?>) slot;
+      if (old.hash == leaf.hash && old.key.equals(leaf.key)) {
+        return old.value == leaf.value ? old : leaf;
+      }
+      return pair(old, leaf, shift);
+    } else if (slot instanceof BitmapNode) {
+      BitmapNode node = (BitmapNode) slot;
+      int bit = bit(leaf.hash, shift);
+      int index = index(node.bitmap, bit);
+      if ((node.bitmap & bit) == 0) {
+        Object[] slots = new Object[node.slots.length + 1];
+        System.arraycopy(node.slots, 0, slots, 0, index);
+        slots[index] = leaf;
+        System.arraycopy(node.slots, index, slots, index + 1, node.slots.length - index);
+        return new BitmapNode(node.bitmap | bit, slots);
+      }
+      Object child = node.slots[index];
+      Object newChild = put(child, shift + BITS, leaf);
+      if (newChild == child) {
+        return node;
+      }
+      Object[] slots = node.slots.clone();
+      slots[index] = newChild;
+      return new BitmapNode(node.bitmap, slots);
+    } else {
+      CollisionNode node = (CollisionNode) slot;
+      if (node.hash != leaf.hash) {
+        // Push the collision node one level down and retry.
+        BitmapNode wrapper = new BitmapNode(bit(node.hash, shift), new Object[] {node});
+        return put(wrapper, shift, leaf);
+      }
+      for (int i = 0; i < node.leaves.length; i++) {
+        Leaf<?, ?> old = node.leaves[i];
+        if (old.key.equals(leaf.key)) {
+          if (old.value == leaf.value) {
+            return node;
+          }
+          Leaf<?, ?>[] leaves = node.leaves.clone();
+          leaves[i] = leaf;
+          return new CollisionNode(node.hash, leaves);
+        }
+      }
+      Leaf<?, ?>[] leaves = new Leaf<?, ?>[node.leaves.length + 1];
+      System.arraycopy(node.leaves, 0, leaves, 0, node.leaves.length);
+      leaves[node.leaves.length] = leaf;
+      return new CollisionNode(node.hash, leaves);
+    }
+  }
+
+  /**
+   * Returns a trie that contains exactly two leaves with different keys.
+   *
+   * @param a a leaf
+   * @param b a leaf
+   * @param shift the number of hash bits consumed by the levels above the result
+   * @return a trie containing {@code a} and {@code b}
+   */
+  private static Object pair(Leaf<?, ?> a, Leaf<?, ?> b, int shift) {
+    if (a.hash == b.hash) {
+      return new CollisionNode(a.hash, new Leaf<?, ?>[] {a, b});
+    }
+    int bitA = bit(a.hash, shift);
+    int bitB = bit(b.hash, shift);
+    if (bitA == bitB) {
+      return new BitmapNode(bitA, new Object[] {pair(a, b, shift + BITS)});
+    }
+    // The bits are compared as unsigned, because bit 31 is negative.
+    Object[] slots =
+        Integer.compareUnsigned(bitA, bitB) < 0 ? new Object[] {a, b} : new Object[] {b, a};
+    return new BitmapNode(bitA | bitB, slots);
+  }
+
+  /**
+   * Returns a trie that is like {@code slot}, but has no mapping for {@code key}.
+   *
+   * @param slot a trie, possibly empty
+   * @param shift the number of hash bits consumed by the levels above {@code slot}
+   * @param hash the spread hash code of {@code key}
+   * @param key the key to remove
+   * @return the updated trie, possibly empty; {@code slot} itself if it contains no mapping for
+   *     {@code key}
+   */
+  private static @Nullable Object remove(@Nullable Object slot, int shift, int hash, Object key) {
+    if (slot == null) {
+      return null;
+    } else if (slot instanceof Leaf) {
+      Leaf<?, ?> leaf = (Leaf<?, ?>) slot;
+      return leaf.hash == hash && leaf.key.equals(key) ? null : leaf;
+    } else if (slot instanceof BitmapNode) {
+      BitmapNode node = (BitmapNode) slot;
+      int bit = bit(hash, shift);
+      if ((node.bitmap & bit) == 0) {
+        return node;
+      }
+      int index = index(node.bitmap, bit);
+      Object child = node.slots[index];
+      Object newChild = remove(child, shift + BITS, hash, key);
+      if (newChild == child) {
+        return node;
+      }
+      if (newChild != null) {
+        if (node.slots.length == 1 && newChild instanceof Leaf) {
+          return newChild;
+        }
+        Object[] slots = node.slots.clone();
+        slots[index] = newChild;
+        return new BitmapNode(node.bitmap, slots);
+      }
+      if (node.slots.length == 1) {
+        return null;
+      }
+      if (node.slots.length == 2 && node.slots[1 - index] instanceof Leaf) {
+        return node.slots[1 - index];
+      }
+      Object[] slots = new Object[node.slots.length - 1];
+      System.arraycopy(node.slots, 0, slots, 0, index);
+      System.arraycopy(node.slots, index + 1, slots, index, slots.length - index);
+      return new BitmapNode(node.bitmap & ~bit, slots);
+    } else {
+      CollisionNode node = (CollisionNode) slot;
+      if (node.hash != hash) {
+        return node;
+      }
+      for (int i = 0; i < node.leaves.length; i++) {
+        if (node.leaves[i].key.equals(key)) {
+          if (node.leaves.length == 2) {
+            return node.leaves[1 - i];
+          }
+          Leaf<?, ?>[] leaves = new Leaf<?, ?>[node.leaves.length - 1];
+          System.arraycopy(node.leaves, 0, leaves, 0, i);
+          System.arraycopy(node.leaves, i + 1, leaves, i, leaves.length - i);
+          return new CollisionNode(node.hash, leaves);
+        }
+      }
+      return node;
+    }
+  }
+
+  /**
+   * Returns a trie whose keys are those in both given tries, and whose values are computed by a
+   * merge function. Subtries that the two tries share are included without calling the merge
+   * function.
+   *
+   * @param a a trie, possibly empty
+   * @param b a trie, possibly empty
+   * @param shift the number of hash bits consumed by the levels above {@code a} and {@code b}
+   * @param merge the merge function
+   * @return the intersection of {@code a} and {@code b}, possibly empty
+   */
+  private static <K, V> @Nullable Object intersect(
+      @Nullable Object a,
+      @Nullable Object b,
+      int shift,
+      BiFunction<? super V, ? super V, ? extends @Nullable V> merge) {
+    if (a == b) {
+      return a;
+    } else if (a == null || b == null) {
+      return null;
+    } else if (a instanceof Leaf) {
+      @SuppressWarnings("unchecked")
+      Leaf<K, V> leafA = (Leaf<K, V>) a;
+      @SuppressWarnings("unchecked")
+      Leaf<K, V> leafB = (Leaf<K, V>) find(b, shift, leafA.hash, leafA.key);
+      return leafB == null ? null : mergeLeaves(leafA, leafB, merge);
+    } else if (b instanceof Leaf) {
+      @SuppressWarnings("unchecked")
+      Leaf<K, V> leafB = (Leaf<K, V>) b;
+      @SuppressWarnings("unchecked")
+      Leaf<K, V> leafA = (Leaf<K, V>) find(a, shift, leafB.hash, leafB.key);
+      return leafA == null ? null : mergeLeaves(leafA, leafB, merge);
+    } else if (a instanceof BitmapNode && b instanceof BitmapNode) {
+      BitmapNode nodeA = (BitmapNode) a;
+      BitmapNode nodeB = (BitmapNode) b;
+      int common = nodeA.bitmap & nodeB.bitmap;
+      int bitmap = 0;
+      Object[] slots = new Object[Integer.bitCount(common)];
+      int count = 0;
+      boolean sameAsA = common == nodeA.bitmap;
+      for (int rest = common; rest != 0; rest &= rest - 1) {
+        int bit = rest & -rest;
+        Object childA = nodeA.slots[index(nodeA.bitmap, bit)];
+        Object childB = nodeB.slots[index(nodeB.bitmap, bit)];
+        Object child = intersect(childA, childB, shift + BITS, merge);
+        sameAsA &= child == childA;
+        if (child != null) {
+          bitmap |= bit;
+          slots[count++] = child;
+        }
+      }
+      if (sameAsA) {
+        return nodeA;
+      } else if (count == 0) {
+        return null;
+      } else if (count == 1 && slots[0] instanceof Leaf) {
+        return slots[0];
+      }
+      if (count < slots.length) {
+        Object[] trimmed = new Object[count];
+        System.arraycopy(slots, 0, trimmed, 0, count);
+        slots = trimmed;
+      }
+      return new BitmapNode(bitmap, slots);
+    } else {
+      // At least one of the tries is a collision node, so this subtrie is small.
+      Object result = null;
+      for (LeafIterator it = new LeafIterator(a); it.hasNext(); ) {
+        @SuppressWarnings("unchecked")
+        Leaf<K, V> leafA = (Leaf<K, V>) it.next();
+        @SuppressWarnings("unchecked")
+        Leaf<K, V> leafB = (Leaf<K, V>) find(b, shift, leafA.hash, leafA.key);
+        if (leafB != null) {
+          Leaf<K, V> merged = mergeLeaves(leafA, leafB, merge);
+          if (merged != null) {
+            result = put(result, shift, merged);
+          }
+        }
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Merges two leaves with the same key.
+   *
+   * @param a a leaf
+   * @param b a leaf with the same key
+   * @param merge the merge function
+   * @return a leaf with the merged value, or {@code null} if the merge function returned {@code
+   *     null}
+   */
+  private static <K, V> @Nullable Leaf<K, V> mergeLeaves(
+      Leaf<K, V> a, Leaf<K, V> b, BiFunction<? super V, ? super V, ? extends @Nullable V> merge) {
+    if (a == b || a.value == b.value) {
+      return a;
+    }
+    V value = merge.apply(a.value, b.value);
+    if (value == null) {
+      return null;
+    } else if (value == a.value) {
+      return a;
+    } else if (value == b.value) {
+      return b;
+    } else {
+      return new Leaf<>(a.hash, a.key, value);
+    }
+  }
+
+  /**
+   * Returns true if trie {@code a} contains every mapping of trie {@code b}, comparing values with
+   * {@code equals}. Subtries that the two tries share are not visited.
+   *
+   * @param a a trie, possibly empty
+   * @param b a trie, possibly empty
+   * @param shift the number of hash bits consumed by the levels above {@code a} and {@code b}
+   * @return true if {@code a} contains every mapping of {@code b}
+   */
+  private static boolean containsAll(@Nullable Object a, @Nullable Object b, int shift) {
+    if (a == b || b == null) {
+      return true;
+    } else if (a == null || size(a) < size(b)) {
+      return false;
+    } else if (b instanceof Leaf) {
+      Leaf<?, ?> leafB = (Leaf<?, ?>) b;
+      Leaf<?, ?> leafA = find(a, shift, leafB.hash, leafB.key);
+      return leafA != null && (leafA == leafB || Objects.equals(leafA.value, leafB.value));
+    } else if (a instanceof BitmapNode && b instanceof BitmapNode) {
+      BitmapNode nodeA = (BitmapNode) a;
+      BitmapNode nodeB = (BitmapNode) b;
+      if ((nodeB.bitmap & ~nodeA.bitmap) != 0) {
+        return false;
+      }
+      for (int rest = nodeB.bitmap; rest != 0; rest &= rest - 1) {
+        int bit = rest & -rest;
+        if (!containsAll(
+            nodeA.slots[index(nodeA.bitmap, bit)],
+            nodeB.slots[index(nodeB.bitmap, bit)],
+            shift + BITS)) {
+          return false;
+        }
+      }
+      return true;
+    } else {
+      for (LeafIterator it = new LeafIterator(b); it.hasNext(); ) {
+        if (!containsAll(a, it.next(), shift)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /** Iterates over the leaves of a trie, in depth-first order. */
+  private static final class LeafIterator implements Iterator<Leaf<?, ?>> {
+    /** The tries whose leaves have not been visited yet. */
+    private final ArrayDeque<Object> pending = new ArrayDeque<>();
+
+    /**
+     * Creates an iterator over the leaves of a trie.
+     *
+     * @param root a trie, possibly empty
+     */
+    LeafIterator(@Nullable Object root) {
+      if (root != null) {
+        pending.push(root);
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      // Tries are never empty, so every pending trie contains a leaf.
+      return !pending.isEmpty();
+    }
+
+    @Override
+    public Leaf<?, ?> next() {
+      if (pending.isEmpty()) {
+        throw new NoSuchElementException();
+      }
+      Object slot = pending.pop();
+      while (!(slot instanceof Leaf)) {
+        Object[] children =
+            slot instanceof BitmapNode ? ((BitmapNode) slot).slots : ((CollisionNode) slot).leaves;
+        for (int i = children.length - 1; i > 0; i--) {
+          pending.push(children[i]);
+        }
+        slot = children[0];
+      }
+      return (Leaf<?, ?>) slot;
+    }
+  }
+
+  /**
+   * Returns a new map whose keys are the keys that {@code a} and {@code b} have in common, and
+   * whose value for each key is {@code merge.apply(a.get(key), b.get(key))}. Keys for which the
+   * merge function returns {@code null} are omitted.
+   *
+   * <p>The merge function must be idempotent: if the two values are the same object, it is not
+   * called and the value is used as is. The same holds for all the entries of subtries that {@code
+   * a} and {@code b} share, which are not visited at all.
+   *
+   * @param <K> the type of keys
+   * @param <V> the type of values
+   * @param a a map
+   * @param b a map
+   * @param merge the merge function
+   * @return the intersection of {@code a} and {@code b}
+   */
+  public static <K, V> PersistentHashMap<K, V> intersection(
+      PersistentHashMap<K, V> a,
+      PersistentHashMap<K, V> b,
+      BiFunction<? super V, ? super V, ? extends @Nullable V> merge) {
+    PersistentHashMap<K, V> result = new PersistentHashMap<>();
+    result.root = PersistentHashMap.<K, V>intersect(a.root, b.root, 0, merge);
+    return result;
+  }
+
+  /**
+   * Returns true if this map contains every mapping of the given map, comparing values with {@code
+   * equals}. Subtries that the two maps share are not visited.
+   *
+   * @param other a map
+   * @return true if this map contains every mapping of {@code other}
+   */
+  public boolean containsAllEntriesOf(PersistentHashMap<K, V> other) {
+    return containsAll(this.root, other.root, 0);
+  }
+
+  @Override
+  public int size() {
+    return size(root);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return root == null;
+  }
+
+  @Override
+  public boolean containsKey(@Nullable Object key) {
+    return key != null && find(root, 0, hash(key), key) != null;
+  }
+
+  @Override
+  public @Nullable V get(@Nullable Object key) {
+    if (key == null) {
+      return null;
+    }
+    @SuppressWarnings("unchecked")
+    Leaf<K, V> leaf = (Leaf<K, V>) find(root, 0, hash(key), key);
+    return leaf == null ? null : leaf.value;
+  }
+
+  @Override
+  public @Nullable V put(K key, V value) {
+    int hash = hash(Objects.requireNonNull(key, "key"));
+    @SuppressWarnings("unchecked")
+    Leaf<K, V> old = (Leaf<K, V>) find(root, 0, hash, key);
+    root = put(root, 0, new Leaf<>(hash, key, value));
+    return old == null ? null : old.value;
+  }
+
+  @Override
+  public void putAll(Map<? extends K, ? extends V> m) {
+    if (m instanceof PersistentHashMap) {
+      PersistentHashMap<?, ?> other = (PersistentHashMap<?, ?>) m;
+      if (root == null) {
+        root = other.root;
+        return;
+      }
+      for (LeafIterator it = new LeafIterator(other.root); it.hasNext(); ) {
+        root = put(root, 0, it.next());
+      }
+      return;
+    }
+    for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+      put(e.getKey(), e.getValue());
+    }
+  }
+
+  @Override
+  public @Nullable V remove(@Nullable Object key) {
+    if (key == null) {
+      return null;
+    }
+    int hash = hash(key);
+    @SuppressWarnings("unchecked")
+    Leaf<K, V> old = (Leaf<K, V>) find(root, 0, hash, key);
+    if (old == null) {
+      return null;
+    }
+    root = remove(root, 0, hash, key);
+    return old.value;
+  }
+
+  @Override
+  public void clear() {
+    root = null;
+  }
+
+  @Override
+  public Set<Map.Entry<K, V>> entrySet() {
+    if (entrySet == null) {
+      entrySet = new EntrySet();
+    }
+    return entrySet;
+  }
+
+  /** The entry set view of this map. */
+  private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+    @Override
+    public int size() {
+      return PersistentHashMap.this.size();
+    }
+
+    @Override
+    public void clear() {
+      PersistentHashMap.this.clear();
+    }
+
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+      return new EntryIterator();
+    }
+  }
+
+  /** An iterator over the entries of this map, as of the creation of the iterator. */
+  private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+    /** The iterator over the leaves of the trie. */
+    private final LeafIterator leaves = new LeafIterator(root);
+
+    /** The key of the entry returned by the last call to {@link #next}, or null. */
+    private @Nullable K lastKey = null;
+
+    @Override
+    public boolean hasNext() {
+      return leaves.hasNext();
+    }
+
+    @Override
+    public Map.Entry<K, V> next() {
+      @SuppressWarnings("unchecked")
+      Leaf<K, V> leaf = (Leaf<K, V>) leaves.next();
+      lastKey = leaf.key;
+      return new Entry(leaf.key, leaf.value);
+    }
+
+    @Override
+    public void remove() {
+      if (lastKey == null) {
+        throw new IllegalStateException();
+      }
+      PersistentHashMap.this.remove(lastKey);
+      lastKey = null;
+    }
+  }
+
+  /** An entry of this map; {@link #setValue} writes through to the map. */
+  private final class Entry extends AbstractMap.SimpleEntry<K, V> {
+
+    /** Serial version UID, required by {@link AbstractMap.SimpleEntry}. */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates an entry.
+     *
+     * @param key the key
+     * @param value the value
+     */
+    Entry(K key, V value) {
+      super(key, value);
+    }
+
+    @Override
+    public V setValue(V value) {
+      PersistentHashMap.this.put(getKey(), value);
+      return super.setValue(value);
+    }
+  }
+}
@@ -0,0 +1,180 @@
+package org.checkerframework.dataflow.analysis;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.JavacTask;
+import com.sun.tools.javac.api.BasicJavacTask;
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import org.checkerframework.dataflow.analysis.Analysis.Direction;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.block.Block;
+import org.checkerframework.dataflow.cfg.block.ExceptionBlock;
+import org.checkerframework.dataflow.cfg.block.RegularBlockImpl;
+import org.checkerframework.dataflow.cfg.builder.CFGBuilder;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Tests the worklist of {@link AbstractAnalysis}, which is a bit set of block ids. */
+public class WorklistTest {
+
+  /** A method with exceptional successors and a loop. */
+  private static final String SOURCE =
+      String.join(
+          "\n",
+          "class Test {",
+          "  int m(boolean b) {",
+          "    int x = 0;",
+          "    try {",
+          "      x = Integer.parseInt(\"1\");",
+          "    } catch (NumberFormatException e) {",
+          "      x = -1;",
+          "    }",
+          "    while (b) {",
+          "      x++;",
+          "    }",
+          "    return x;",
+          "  }",
+          "}");
+
+  /** The control flow graph of the method of {@link #SOURCE}. */
+  private static ControlFlowGraph cfg;
+
+  /**
+   * Builds the control flow graph of the method of {@link #SOURCE}.
+   *
+   * @throws IOException if the source cannot be compiled
+   */
+  @BeforeClass
+  public static void buildCfg() throws IOException {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    JavaFileObject source =
+        new SimpleJavaFileObject(URI.create("string:///Test.java"), JavaFileObject.Kind.SOURCE) {
+          @Override
+          public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return SOURCE;
+          }
+        };
+    JavacTask task =
+        (JavacTask)
+            compiler.getTask(
+                null, null, null, Arrays.asList("-proc:none"), null, Arrays.asList(source));
+    CompilationUnitTree root = task.parse().iterator().next();
+    task.analyze();
+    ProcessingEnvironment env =
+        JavacProcessingEnvironment.instance(((BasicJavacTask) task).getContext());
+    ClassTree classTree = (ClassTree) root.getTypeDecls().get(0);
+    MethodTree method = null;
+    for (Tree member : classTree.getMembers()) {
+      if (member instanceof MethodTree && ((MethodTree) member).getName().contentEquals("m")) {
+        method = (MethodTree) member;
+      }
+    }
+    Assert.assertNotNull(method);
+    cfg = CFGBuilder.build(root, method, classTree, env);
+  }
+
+  /**
+   * Adds the given blocks to the given worklist, and returns the blocks that it then polls, in
+   * order.
+   *
+   * @param worklist a worklist that has processed {@link #cfg}
+   * @param blocks the blocks to add
+   * @return the blocks polled from the worklist, in order
+   */
+  private static List<Block> addAndPoll(AbstractAnalysis.Worklist worklist, List<Block> blocks) {
+    for (Block b : blocks) {
+      worklist.add(b);
+      Assert.assertTrue(b.toString(), worklist.contains(b));
+    }
+    List<Block> result = new ArrayList<>();
+    while (!worklist.isEmpty()) {
+      result.add(worklist.poll());
+    }
+    Assert.assertNull(worklist.poll());
+    return result;
+  }
+
+  @Test
+  public void testOrder() {
+    List<Block> blocks = cfg.getBlocksById();
+    List<Block> shuffled = new ArrayList<>(blocks);
+    Collections.reverse(shuffled);
+    // Adding a block that is already in the worklist does nothing.
+    shuffled.addAll(blocks);
+
+    AbstractAnalysis.Worklist forward = new AbstractAnalysis.Worklist(Direction.FORWARD);
+    forward.process(cfg);
+    Assert.assertEquals(blocks, addAndPoll(forward, shuffled));
+
+    AbstractAnalysis.Worklist backward = new AbstractAnalysis.Worklist(Direction.BACKWARD);
+    backward.process(cfg);
+    List<Block> reversed = new ArrayList<>(blocks);
+    Collections.reverse(reversed);
+    Assert.assertEquals(reversed, addAndPoll(backward, shuffled));
+  }
+
+  @Test
+  public void testExceptionalSuccessors() {
+    AbstractAnalysis.Worklist worklist = new AbstractAnalysis.Worklist(Direction.FORWARD);
+    worklist.process(cfg);
+    boolean sawExceptionalSuccessor = false;
+    for (Block b : cfg.getBlocksById()) {
+      if (!(b instanceof ExceptionBlock)) {
+        continue;
+      }
+      for (Set<Block> successors : ((ExceptionBlock) b).getExceptionalSuccessors().values()) {
+        for (Block succ : successors) {
+          sawExceptionalSuccessor = true;
+          // An exceptional successor is reachable, so it has an id, and it comes after the block
+          // that throws.
+          Assert.assertTrue(succ.toString(), worklist.isReachable(succ));
+          List<Block> polled = addAndPoll(worklist, Arrays.asList(succ, b));
+          Assert.assertEquals(Arrays.asList(b, succ), polled);
+        }
+      }
+    }
+    Assert.assertTrue(sawExceptionalSuccessor);
+  }
+
+  @Test
+  public void testUnreachableBlocks() {
+    AbstractAnalysis.Worklist worklist = new AbstractAnalysis.Worklist(Direction.FORWARD);
+    worklist.process(cfg);
+    Block first = cfg.getBlocksById().get(0);
+    Block last = cfg.getBlocksById().get(cfg.getBlocksById().size() - 1);
+    // A block that no control flow graph contains has no id.
+    Block unreachable = new RegularBlockImpl();
+    // A block of another control flow graph whose id is also an id of this one.
+    RegularBlockImpl other = new RegularBlockImpl();
+    other.setId(0);
+    Assert.assertFalse(worklist.isReachable(unreachable));
+    Assert.assertFalse(worklist.isReachable(other));
+    Assert.assertFalse(worklist.contains(unreachable));
+
+    List<Block> polled = addAndPoll(worklist, Arrays.asList(unreachable, last, other, unreachable));
+    // Unreachable blocks come last, in the order in which they were added, and only once.
+    Assert.assertEquals(Arrays.asList(last, unreachable, other), polled);
+    Assert.assertFalse(worklist.contains(first));
+
+    // Processing a control flow graph empties the worklist.
+    worklist.add(unreachable);
+    worklist.add(first);
+    worklist.process(cfg);
+    Assert.assertTrue(worklist.isEmpty());
+  }
+}
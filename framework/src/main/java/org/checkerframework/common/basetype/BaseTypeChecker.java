@@ -7,6 +7,8 @@ import com.sun.source.util.TreePath;
 import com.sun.tools.javac.processing.JavacProcessingEnvironment;
 import com.sun.tools.javac.util.Context;
 import com.sun.tools.javac.util.Log;
+import com.sun.tools.javac.util.Options;
+import java.io.File;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
@@ -15,6 +17,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -32,6 +35,9 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.checker.signature.qual.ClassGetName;
 import org.checkerframework.common.reflection.MethodValChecker;
+import org.checkerframework.common.wholeprograminference.WholeProgramInference;
+import org.checkerframework.common.wholeprograminference.WholeProgramInferenceDependencies;
+import org.checkerframework.common.wholeprograminference.WholeProgramInferenceJavaParserStorage;
 import org.checkerframework.dataflow.cfg.visualize.CFGVisualizer;
 import org.checkerframework.framework.qual.SubtypeOf;
 import org.checkerframework.framework.source.SourceChecker;
@@ -44,6 +50,7 @@ import org.checkerframework.javacutil.AbstractTypeProcessor;
 import org.checkerframework.javacutil.AnnotationProvider;
 import org.checkerframework.javacutil.BugInCF;
 import org.checkerframework.javacutil.InternalUtils;
+import org.checkerframework.javacutil.Pair;
 import org.checkerframework.javacutil.TypeSystemError;
 import org.checkerframework.javacutil.UserError;
 import org.plumelib.util.CollectionsPlume;
@@ -112,6 +119,10 @@ public abstract class BaseTypeChecker extends SourceChecker {
     }
 
     super.initChecker();
+
+    if (parentChecker == null && hasOption("inferFixpoint")) {
+      initInferenceFixpoint();
+    }
   }
 
   /**
@@ -508,6 +519,13 @@ public abstract class BaseTypeChecker extends SourceChecker {
   // AbstractTypeProcessor delegation
   @Override
   public void typeProcess(TypeElement element, TreePath tree) {
+    if (replayCachedResults(element, tree)) {
+      return;
+    }
+    if (inferenceClasses != null) {
+      inferenceClasses.add(Pair.of(element, tree));
+    }
+
     if (!getSubcheckers().isEmpty()) {
       // TODO: I expected this to only be necessary if (parentChecker == null).
       // However, the NestedAggregateChecker fails otherwise.
@@ -546,6 +564,8 @@ public abstract class BaseTypeChecker extends SourceChecker {
       // Update errsOnLastExit to reflect the errors issued.
       this.errsOnLastExit = log.nerrors;
     }
+
+    cacheResults();
   }
 
   /**
@@ -786,8 +806,160 @@ public abstract class BaseTypeChecker extends SourceChecker {
     }
   }
 
+  /**
+   * The classes that javac has handed to this checker, in order, if whole-program inference
+   * re-checks the program until the inferred annotations no longer change (see {@code
+   * -AinferFixpoint}); null otherwise. Only the outermost checker records the classes.
+   */
+  private @Nullable List<Pair<TypeElement, TreePath>> inferenceClasses = null;
+
+  /** The default maximum number of rounds of whole-program inference with -AinferFixpoint. */
+  private static final int DEFAULT_INFERENCE_ROUNDS = 10;
+
+  /**
+   * Prepares to run whole-program inference to a fixpoint: checks the options, starts recording
+   * the classes to re-check, and defers diagnostics until the last round.
+   */
+  private void initInferenceFixpoint() {
+    String infer = getOption("infer");
+    if ("binary".equals(infer)) {
+      // Each round reads the annotations inferred by the previous round with -Aajava, which cannot
+      // read .wpi files.
+      throw new UserError(
+          "-AinferFixpoint cannot be used with -Ainfer=binary, because .wpi files cannot be read"
+              + " back by the checker; use -Ainfer=ajava instead");
+    }
+    if (!"ajava".equals(infer)) {
+      throw new UserError("-AinferFixpoint requires -Ainfer=ajava");
+    }
+    Context context = ((JavacProcessingEnvironment) processingEnv).getContext();
+    if (!"simple".equals(Options.instance(context).get("compilePolicy"))) {
+      // Under javac's default policy, a class is lowered as soon as it has been type-checked, and
+      // lowered trees cannot be type-checked again.
+      throw new UserError("-AinferFixpoint requires the javac option -XDcompilePolicy=simple");
+    }
+    getInferenceRounds();
+    inferenceClasses = new ArrayList<>();
+    deferredMessages = new LinkedHashMap<>();
+  }
+
+  /**
+   * Returns the maximum number of rounds of whole-program inference with -AinferFixpoint.
+   *
+   * @return the maximum number of rounds of whole-program inference
+   */
+  private int getInferenceRounds() {
+    String rounds = getOption("inferFixpoint");
+    if (rounds == null) {
+      return DEFAULT_INFERENCE_ROUNDS;
+    }
+    try {
+      int result = Integer.parseInt(rounds);
+      if (result > 0) {
+        return result;
+      }
+    } catch (NumberFormatException e) {
+      // fall through to the error
+    }
+    throw new UserError(
+        "-AinferFixpoint=%s: the number of rounds must be a positive integer", rounds);
+  }
+
+  /**
+   * Type-checks the classes of the compilation again and again, until whole-program inference no
+   * longer changes any inferred annotation or the maximum number of rounds is reached. This has the
+   * effect of running {@code wpi.sh}, but javac parses and attributes the program only once, and
+   * the inference results stay in memory between rounds.
+   *
+   * <p>Each round type-checks only the compilation units that read an inferred annotation that
+   * changed in the previous round, as recorded by {@link WholeProgramInferenceDependencies}. It
+   * reads the ajava files that the previous round wrote, like {@code wpi.sh} does via {@code
+   * -Aajava}. For each compilation unit, only the diagnostics of the last round that type-checked
+   * it are printed.
+   */
+  private void runInferenceToFixpoint() {
+    List<Pair<TypeElement, TreePath>> classes = inferenceClasses;
+    // Stop recording classes.
+    inferenceClasses = null;
+    List<BaseTypeChecker> checkers = new ArrayList<>(getSubcheckers());
+    checkers.add(this);
+
+    int maxRounds = getInferenceRounds();
+    int round = 1;
+    Set<CompilationUnitTree> worklist = takeInferenceWorklist(checkers);
+    while (!worklist.isEmpty() && round < maxRounds && !javacErrored) {
+      if (round == 1) {
+        String ajava = getOption("ajava");
+        String inferred = WholeProgramInferenceJavaParserStorage.AJAVA_FILES_PATH;
+        Map<String, String> ajavaOption =
+            Collections.singletonMap(
+                "ajava", ajava == null ? inferred : ajava + File.pathSeparator + inferred);
+        for (BaseTypeChecker checker : checkers) {
+          checker.addOptions(ajavaOption);
+        }
+      }
+      round++;
+      for (BaseTypeChecker checker : checkers) {
+        checker.getTypeFactory().reloadAjavaFiles();
+        // Make typeProcess call setRoot, which reads the ajava file of the compilation unit.
+        checker.currentRoot = null;
+      }
+      for (CompilationUnitTree root : worklist) {
+        deferredMessages.remove(root);
+      }
+      for (Pair<TypeElement, TreePath> clazz : classes) {
+        if (worklist.contains(clazz.second.getCompilationUnit())) {
+          typeProcess(clazz.first, clazz.second);
+        }
+      }
+      worklist = takeInferenceWorklist(checkers);
+    }
+
+    Map<CompilationUnitTree, List<Runnable>> messages = deferredMessages;
+    deferredMessages = null;
+    for (Pair<TypeElement, TreePath> clazz : classes) {
+      List<Runnable> messagesOfRoot = messages.remove(clazz.second.getCompilationUnit());
+      if (messagesOfRoot != null) {
+        for (Runnable printMessage : messagesOfRoot) {
+          printMessage.run();
+        }
+      }
+    }
+    if (!worklist.isEmpty() && !javacErrored) {
+      message(
+          Diagnostic.Kind.WARNING,
+          "Whole-program inference did not reach a fixpoint in %d rounds",
+          maxRounds);
+    } else if (hasOption("resourceStats")) {
+      message(
+          Diagnostic.Kind.NOTE, "Whole-program inference reached a fixpoint in %d rounds", round);
+    }
+  }
+
+  /**
+   * Returns the compilation units that must be type-checked again because whole-program inference
+   * changed annotations that they read, according to any of the given checkers, and empties the
+   * worklists of the checkers.
+   *
+   * @param checkers a checker and its subcheckers
+   * @return the compilation units that must be type-checked again
+   */
+  private static Set<CompilationUnitTree> takeInferenceWorklist(List<BaseTypeChecker> checkers) {
+    Set<CompilationUnitTree> result = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (BaseTypeChecker checker : checkers) {
+      WholeProgramInference wpi = checker.getTypeFactory().getWholeProgramInference();
+      if (wpi != null) {
+        result.addAll(wpi.getDependencies().takeWorklist());
+      }
+    }
+    return result;
+  }
+
   @Override
   public void typeProcessingOver() {
+    if (inferenceClasses != null) {
+      runInferenceToFixpoint();
+    }
     for (BaseTypeChecker checker : getSubcheckers()) {
       checker.typeProcessingOver();
     }
@@ -187,6 +187,15 @@ public interface WholeProgramInference {
    */
   void addMethodDeclarationAnnotation(ExecutableElement methodElt, AnnotationMirror anno);
 
+  /**
+   * Returns the dependencies between the inferred annotations and the compilation units that read
+   * them. Type-checking a compilation unit again is only necessary if the annotations that it reads
+   * have changed; see {@link WholeProgramInferenceDependencies#takeWorklist}.
+   *
+   * @return the dependencies between inferred annotations and the code that reads them
+   */
+  WholeProgramInferenceDependencies getDependencies();
+
   /**
    * Writes the inferred results to a file. Ideally, it should be called at the end of the
    * type-checking process. In practice, it is called after each class, because we don't know which
@@ -224,5 +233,12 @@ public interface WholeProgramInference {
      * -Aajava option.
      */
     AJAVA(),
+
+    /**
+     * Output the results of whole-program inference as a compact binary file that is rewritten
+     * incrementally. See {@link WholeProgramInferenceBinaryFormat}, which can also convert it to an
+     * ajava file.
+     */
+    BINARY(),
   }
 }
@@ -0,0 +1,506 @@
+package org.checkerframework.common.wholeprograminference;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.ReceiverParameter;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.AnnotationExpr;
+import com.github.javaparser.ast.expr.Name;
+import com.github.javaparser.ast.type.Type;
+import com.github.javaparser.printer.DefaultPrettyPrinter;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import org.checkerframework.framework.util.JavaParserUtil;
+import org.checkerframework.javacutil.BugInCF;
+import org.checkerframework.javacutil.UserError;
+
+/**
+ * Reads and writes the binary output format of whole-program inference, {@code -Ainfer=binary}.
+ *
+ * <p>Each source file has one binary file per checker, which is a table of records. The key of a
+ * record names a location, such as the third parameter of a method, and its value is the list of
+ * inferred annotations at the location, or the annotated type of the location. The records are
+ * computed from the ajava representation of the source file that {@link
+ * WholeProgramInferenceJavaParserStorage} maintains, so a binary file contains the same information
+ * as the ajava file that {@code -Ainfer=ajava} would write.
+ *
+ * <p>The file is append-only. Whole-program inference writes the files of all modified source
+ * files after each class is type-checked, so a file is usually written many times in one
+ * compilation. Each time, only the records that changed since the last write are appended, and a
+ * record that no longer exists is overwritten by an empty record. The file is rewritten from
+ * scratch, dropping the overwritten records, when it is first written by a JVM and when most of its
+ * records are overwritten ones.
+ *
+ * <p>The file starts with the int {@link #MAGIC}, the int {@link #VERSION}, the canonical name of
+ * the checker, and the path of the source file. Then follow the records: for each, the key, the
+ * number of values, and the values. Strings are an int length followed by that many bytes of UTF-8.
+ * When a key occurs more than once, the last record wins.
+ *
+ * <p>{@link #read} maps the file into memory instead of reading it through a stream. {@link #main}
+ * converts binary files to ajava files for human review. The checker itself never reads binary
+ * files, so {@code -AinferFixpoint}, whose rounds read the previous round's files with {@code
+ * -Aajava}, cannot be used with {@code -Ainfer=binary}.
+ */
+public class WholeProgramInferenceBinaryFormat {
+
+  /** The extension of the binary files. */
+  public static final String FILE_EXTENSION = ".wpi";
+
+  /** The first int of a binary file. */
+  private static final int MAGIC = 0x43465749; // "CFWI"
+
+  /** The version of the binary file format. */
+  private static final int VERSION = 1;
+
+  /** The separator between the name of a class and the rest of a key. */
+  private static final String SEPARATOR = "#";
+
+  /** The key suffix of the declaration annotations of a method or constructor. */
+  private static final String DECLARATION = SEPARATOR + "decl";
+
+  /** The key suffix of the return type of a method. */
+  private static final String RETURN = SEPARATOR + "return";
+
+  /** The key suffix of the receiver type of a method. */
+  private static final String RECEIVER = SEPARATOR + "receiver";
+
+  /** The key suffix of a parameter, followed by its index. */
+  private static final String PARAMETER = SEPARATOR + "param";
+
+  /** The key infix of a field, followed by its name. */
+  private static final String FIELD = SEPARATOR + "field:";
+
+  /**
+   * The number of overwritten records that a file may contain, in addition to as many as it has
+   * live records, before it is rewritten.
+   */
+  private static final int COMPACTION_SLACK = 64;
+
+  /** Map from the path of each binary file written by this object to its live records. */
+  private final Map<String, Map<String, List<String>>> writtenRecords = new HashMap<>();
+
+  /**
+   * Map from the path of each binary file written by this object to the number of records in it,
+   * including overwritten ones.
+   */
+  private final Map<String, Integer> recordCounts = new HashMap<>();
+
+  /** The contents of a binary file. */
+  public static class Table {
+    /** The canonical name of the checker whose annotations the file contains. */
+    public final String checker;
+
+    /** The path of the source file. */
+    public final String sourceFile;
+
+    /** Map from a key to its live value, sorted by key. */
+    public final Map<String, List<String>> records;
+
+    /**
+     * Creates a table.
+     *
+     * @param checker the canonical name of the checker
+     * @param sourceFile the path of the source file
+     * @param records map from key to value
+     */
+    public Table(String checker, String sourceFile, Map<String, List<String>> records) {
+      this.checker = checker;
+      this.sourceFile = sourceFile;
+      this.records = Collections.unmodifiableMap(records);
+    }
+  }
+
+  /**
+   * Writes the records of a compilation unit to a binary file. Appends only the records that
+   * changed since the last call for the same file, unless the file must be rewritten.
+   *
+   * @param outputPath the path of the binary file
+   * @param sourceFile the path of the source file
+   * @param checker the canonical name of the checker
+   * @param compilationUnit the ajava representation of the source file, with the inferred
+   *     annotations and no others
+   */
+  public void write(
+      String outputPath, String sourceFile, String checker, CompilationUnit compilationUnit) {
+    Map<String, List<String>> records = getRecords(compilationUnit);
+    Map<String, List<String>> previous = writtenRecords.get(outputPath);
+    int count = recordCounts.getOrDefault(outputPath, 0);
+    try {
+      if (previous == null || count > 2 * records.size() + COMPACTION_SLACK) {
+        // Also overwrites a file written by an earlier JVM, whose records are not known.
+        try (DataOutputStream out = open(outputPath, false)) {
+          out.writeInt(MAGIC);
+          out.writeInt(VERSION);
+          writeString(out, checker);
+          writeString(out, sourceFile);
+          for (Map.Entry<String, List<String>> record : records.entrySet()) {
+            writeRecord(out, record.getKey(), record.getValue());
+          }
+        }
+        recordCounts.put(outputPath, records.size());
+      } else {
+        Map<String, List<String>> changed = new TreeMap<>();
+        for (Map.Entry<String, List<String>> record : records.entrySet()) {
+          if (!record.getValue().equals(previous.get(record.getKey()))) {
+            changed.put(record.getKey(), record.getValue());
+          }
+        }
+        for (String key : previous.keySet()) {
+          if (!records.containsKey(key)) {
+            changed.put(key, Collections.emptyList());
+          }
+        }
+        if (!changed.isEmpty()) {
+          try (DataOutputStream out = open(outputPath, true)) {
+            for (Map.Entry<String, List<String>> record : changed.entrySet()) {
+              writeRecord(out, record.getKey(), record.getValue());
+            }
+          }
+          recordCounts.put(outputPath, count + changed.size());
+        }
+      }
+    } catch (IOException e) {
+      throw new BugInCF("Error while writing binary inference file " + outputPath, e);
+    }
+    writtenRecords.put(outputPath, records);
+  }
+
+  /**
+   * Opens a binary file for writing.
+   *
+   * @param path the path of the file
+   * @param append whether to append to the file rather than to truncate it
+   * @return a stream that writes to the file
+   * @throws FileNotFoundException if the file cannot be opened
+   */
+  private static DataOutputStream open(String path, boolean append) throws FileNotFoundException {
+    return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path, append)));
+  }
+
+  /**
+   * Writes a record.
+   *
+   * @param out the stream to write to
+   * @param key the key of the record
+   * @param value the value of the record; empty to overwrite an earlier record with the same key
+   * @throws IOException if writing fails
+   */
+  private static void writeRecord(DataOutputStream out, String key, List<String> value)
+      throws IOException {
+    writeString(out, key);
+    out.writeInt(value.size());
+    for (String s : value) {
+      writeString(out, s);
+    }
+  }
+
+  /**
+   * Writes a string as its length in bytes followed by its UTF-8 encoding.
+   *
+   * @param out the stream to write to
+   * @param s the string to write
+   * @throws IOException if writing fails
+   */
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Reads a binary file. A record that is cut off at the end of the file, because the compiler was
+   * stopped while appending it, is ignored.
+   *
+   * @param file the binary file
+   * @return the contents of the file
+   * @throws UserError if the file is not a binary file of this version, or is corrupt
+   */
+  public static Table read(Path file) {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        throw new UserError(
+            "%s is not a whole-program inference file of this version of the Checker Framework",
+            file);
+      }
+      String checker = readString(buffer, file);
+      String sourceFile = readString(buffer, file);
+      Map<String, List<String>> records = new TreeMap<>();
+      try {
+        while (buffer.hasRemaining()) {
+          String key = readString(buffer, file);
+          int size = buffer.getInt();
+          if (size < 0) {
+            throw new UserError("%s is corrupt: a record has %d values", file, size);
+          }
+          if (size > buffer.remaining() / 4) {
+            // Each value takes at least 4 bytes, so the record is cut off.
+            throw new BufferUnderflowException();
+          }
+          List<String> value = new ArrayList<>(size);
+          for (int i = 0; i < size; i++) {
+            value.add(readString(buffer, file));
+          }
+          if (value.isEmpty()) {
+            records.remove(key);
+          } else {
+            records.put(key, value);
+          }
+        }
+      } catch (BufferUnderflowException e) {
+        // The last record was being appended when the compiler was stopped; ignore it.
+      }
+      return new Table(checker, sourceFile, records);
+    } catch (IOException | BufferUnderflowException e) {
+      throw new UserError("Cannot read " + file + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Reads a string written by {@link #writeString}.
+   *
+   * @param buffer the buffer to read from
+   * @param file the file that {@code buffer} maps, for error messages
+   * @return the string
+   * @throws BufferUnderflowException if the string is cut off at the end of the buffer
+   * @throws UserError if the length of the string is negative
+   */
+  private static String readString(MappedByteBuffer buffer, Path file) {
+    int length = buffer.getInt();
+    if (length < 0) {
+      throw new UserError("%s is corrupt: a string has length %d", file, length);
+    }
+    if (length > buffer.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns the records of a compilation unit: the annotations on the methods, constructors, and
+   * fields of its classes. Locations without annotations have no record.
+   *
+   * @param compilationUnit the ajava representation of a source file
+   * @return map from key to value, sorted by key
+   */
+  static Map<String, List<String>> getRecords(CompilationUnit compilationUnit) {
+    Map<String, List<String>> records = new TreeMap<>();
+    for (TypeDeclaration<?> type : compilationUnit.findAll(TypeDeclaration.class)) {
+      Optional<String> typeName = type.getFullyQualifiedName();
+      if (!typeName.isPresent()) {
+        // A local class, whose members whole-program inference does not annotate.
+        continue;
+      }
+      for (BodyDeclaration<?> member : type.getMembers()) {
+        if (member.isCallableDeclaration()) {
+          CallableDeclaration<?> callable = member.asCallableDeclaration();
+          String key = typeName.get() + SEPARATOR + signature(callable);
+          if (!callable.getAnnotations().isEmpty()) {
+            records.put(key + DECLARATION, toStrings(callable.getAnnotations()));
+          }
+          if (callable.isMethodDeclaration()) {
+            putType(records, key + RETURN, callable.asMethodDeclaration().getType());
+          }
+          Optional<ReceiverParameter> receiver = callable.getReceiverParameter();
+          if (receiver.isPresent()) {
+            putType(records, key + RECEIVER, receiver.get().getType());
+          }
+          NodeList<Parameter> parameters = callable.getParameters();
+          for (int i = 0; i < parameters.size(); i++) {
+            Parameter parameter = parameters.get(i);
+            if (hasAnnotations(parameter.getType())
+                || !parameter.getVarArgsAnnotations().isEmpty()) {
+              List<String> value = new ArrayList<>();
+              value.add(parameter.getType().toString());
+              value.addAll(toStrings(parameter.getVarArgsAnnotations()));
+              records.put(key + PARAMETER + i, value);
+            }
+          }
+        } else if (member.isFieldDeclaration()) {
+          for (VariableDeclarator variable : member.asFieldDeclaration().getVariables()) {
+            String key = typeName.get() + FIELD + variable.getNameAsString();
+            putType(records, key, variable.getType());
+          }
+        }
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Adds a record for a type, if it contains annotations.
+   *
+   * @param records the records
+   * @param key the key of the location of the type
+   * @param type an annotated type
+   */
+  private static void putType(Map<String, List<String>> records, String key, Type type) {
+    if (hasAnnotations(type)) {
+      records.put(key, Collections.singletonList(type.toString()));
+    }
+  }
+
+  /**
+   * Returns true if the given type contains an annotation.
+   *
+   * @param type a type
+   * @return true if {@code type} contains an annotation
+   */
+  private static boolean hasAnnotations(Type type) {
+    return !type.findAll(AnnotationExpr.class).isEmpty();
+  }
+
+  /**
+   * Returns the given annotations as strings.
+   *
+   * @param annotations annotations
+   * @return the string representation of each annotation
+   */
+  private static List<String> toStrings(NodeList<AnnotationExpr> annotations) {
+    List<String> result = new ArrayList<>(annotations.size());
+    for (AnnotationExpr annotation : annotations) {
+      result.add(annotation.toString());
+    }
+    return result;
+  }
+
+  /**
+   * Returns the signature of a method or constructor without annotations, such as {@code
+   * m(int,java.util.List<String>...)}, which identifies it among the members of its class.
+   *
+   * @param callable a method or constructor
+   * @return the signature of {@code callable}
+   */
+  private static String signature(CallableDeclaration<?> callable) {
+    StringJoiner result = new StringJoiner(",", callable.getNameAsString() + "(", ")");
+    for (Parameter parameter : callable.getParameters()) {
+      Type type = parameter.getType().clone();
+      JavaParserUtil.clearAnnotations(type);
+      result.add(type.asString() + (parameter.isVarArgs() ? "..." : ""));
+    }
+    return result.toString();
+  }
+
+  /**
+   * Inserts the annotations of a binary file into the source file that it was inferred for, which
+   * yields the ajava file that {@code -Ainfer=ajava} would have written.
+   *
+   * @param table the contents of a binary file
+   * @param source the source file of {@code table}; is side-effected
+   */
+  public static void insertAnnotations(Table table, CompilationUnit source) {
+    JavaParserUtil.clearAnnotations(source);
+    for (TypeDeclaration<?> type : source.getTypes()) {
+      type.addSingleMemberAnnotation(
+          "org.checkerframework.framework.qual.AnnotatedFor", "\"" + table.checker + "\"");
+    }
+    for (TypeDeclaration<?> type : source.findAll(TypeDeclaration.class)) {
+      Optional<String> typeName = type.getFullyQualifiedName();
+      if (!typeName.isPresent()) {
+        continue;
+      }
+      for (BodyDeclaration<?> member : type.getMembers()) {
+        if (member.isCallableDeclaration()) {
+          CallableDeclaration<?> callable = member.asCallableDeclaration();
+          String key = typeName.get() + SEPARATOR + signature(callable);
+          List<String> value = table.records.get(key + DECLARATION);
+          if (value != null) {
+            for (String annotation : value) {
+              callable.addAnnotation(JavaParserUtil.parseAnnotation(annotation));
+            }
+          }
+          value = table.records.get(key + RETURN);
+          if (value != null && callable.isMethodDeclaration()) {
+            callable.asMethodDeclaration().setType(JavaParserUtil.parseType(value.get(0)));
+          }
+          value = table.records.get(key + RECEIVER);
+          if (value != null) {
+            callable.setReceiverParameter(
+                new ReceiverParameter(JavaParserUtil.parseType(value.get(0)), new Name("this")));
+          }
+          NodeList<Parameter> parameters = callable.getParameters();
+          for (int i = 0; i < parameters.size(); i++) {
+            value = table.records.get(key + PARAMETER + i);
+            if (value != null) {
+              parameters.get(i).setType(JavaParserUtil.parseType(value.get(0)));
+              for (String annotation : value.subList(1, value.size())) {
+                parameters
+                    .get(i)
+                    .getVarArgsAnnotations()
+                    .add(JavaParserUtil.parseAnnotation(annotation));
+              }
+            }
+          }
+        } else if (member.isFieldDeclaration()) {
+          for (VariableDeclarator variable : member.asFieldDeclaration().getVariables()) {
+            List<String> value =
+                table.records.get(typeName.get() + FIELD + variable.getNameAsString());
+            if (value != null) {
+              variable.setType(JavaParserUtil.parseType(value.get(0)));
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Converts binary files to ajava files, for human review. Each ajava file is written next to its
+   * binary file. The source file that a binary file was inferred for must still exist.
+   *
+   * @param args the binary files to convert
+   */
+  public static void main(String[] args) {
+    if (args.length == 0) {
+      System.err.println(
+          "Usage: java " + WholeProgramInferenceBinaryFormat.class.getName() + " file.wpi ...");
+      System.exit(1);
+    }
+    for (String arg : args) {
+      Table table = read(Paths.get(arg));
+      CompilationUnit source;
+      try {
+        source = JavaParserUtil.parseCompilationUnit(new File(table.sourceFile));
+      } catch (FileNotFoundException e) {
+        throw new UserError("Cannot find source file " + table.sourceFile + " of " + arg);
+      }
+      insertAnnotations(table, source);
+      String outputPath =
+          (arg.endsWith(FILE_EXTENSION)
+                  ? arg.substring(0, arg.length() - FILE_EXTENSION.length())
+                  : arg)
+              + ".ajava";
+      try (FileWriter writer = new FileWriter(outputPath)) {
+        writer.write(new DefaultPrettyPrinter().print(source));
+      } catch (IOException e) {
+        throw new BugInCF("Error while writing ajava file " + outputPath, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package org.checkerframework.common.wholeprograminference;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.Trees;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.javacutil.ElementUtils;
+
+/**
+ * The dependencies between the annotations that whole-program inference infers and the compilation
+ * units that use them, and the worklist of compilation units that must be type-checked again
+ * because annotations that they use have changed.
+ *
+ * <p>Whole-program inference updates the types of a method or field as a side effect of
+ * type-checking other code: for example, the parameter types of a method are updated at its call
+ * sites. A compilation unit depends on a method or field if it reads the type or the declaration
+ * annotations of the method or field, or declares it. When an inferred annotation of a method or
+ * field changes, the compilation units that depend on it are added to the worklist.
+ *
+ * <p>Parameters are represented by their method. Dependencies are never removed: a compilation unit
+ * that read a method or field in one round of inference still depends on it in later rounds.
+ */
+public class WholeProgramInferenceDependencies {
+
+  /** Used to find the compilation unit that declares an element. */
+  private final Trees trees;
+
+  /** Map from a method or field to the compilation units that read its annotations. */
+  private final Map<Element, Set<CompilationUnitTree>> readers = new HashMap<>();
+
+  /** The compilation units that must be type-checked again. */
+  private final Set<CompilationUnitTree> worklist =
+      Collections.newSetFromMap(new IdentityHashMap<>());
+
+  /**
+   * Creates an empty dependency graph.
+   *
+   * @param trees the Trees instance of the compilation
+   */
+  public WholeProgramInferenceDependencies(Trees trees) {
+    this.trees = trees;
+  }
+
+  /**
+   * Records that a compilation unit reads the annotations of an element. Does nothing if the element
+   * is not a method, constructor, field, or parameter from source code.
+   *
+   * @param element an element whose type or declaration annotations are being read
+   * @param reader the compilation unit that is being type-checked
+   */
+  public void recordRead(Element element, CompilationUnitTree reader) {
+    Element key = dependencyKey(element);
+    if (key != null) {
+      readers
+          .computeIfAbsent(key, k -> Collections.newSetFromMap(new IdentityHashMap<>()))
+          .add(reader);
+    }
+  }
+
+  /**
+   * Records that an inferred annotation of an element has changed. Adds the compilation units that
+   * read the annotations of the element, and the one that declares it, to the worklist.
+   *
+   * @param element the method, constructor, field, or parameter whose inferred annotations changed
+   */
+  public void recordUpdate(Element element) {
+    Element key = dependencyKey(element);
+    if (key == null) {
+      return;
+    }
+    Set<CompilationUnitTree> dependents = readers.get(key);
+    if (dependents != null) {
+      worklist.addAll(dependents);
+    }
+    TreePath declaration = trees.getPath(key);
+    if (declaration != null) {
+      worklist.add(declaration.getCompilationUnit());
+    }
+  }
+
+  /**
+   * Returns true if no compilation unit must be type-checked again.
+   *
+   * @return true if the worklist is empty
+   */
+  public boolean isWorklistEmpty() {
+    return worklist.isEmpty();
+  }
+
+  /**
+   * Returns the compilation units that must be type-checked again, and empties the worklist.
+   *
+   * @return the compilation units whose inferred inputs have changed since the last call
+   */
+  public Set<CompilationUnitTree> takeWorklist() {
+    Set<CompilationUnitTree> result = Collections.newSetFromMap(new IdentityHashMap<>());
+    result.addAll(worklist);
+    worklist.clear();
+    return result;
+  }
+
+  /**
+   * Returns the element that represents the given element in the dependency graph, or null if
+   * whole-program inference infers no annotations for it.
+   *
+   * @param element an element
+   * @return the method, constructor, or field that represents {@code element}, or null
+   */
+  private static @Nullable Element dependencyKey(Element element) {
+    switch (element.getKind()) {
+      case PARAMETER:
+        Element enclosing = element.getEnclosingElement();
+        if (!(enclosing instanceof ExecutableElement)
+            || !((ExecutableElement) enclosing).getParameters().contains(element)) {
+          // For example, the parameter of a lambda expression.
+          return null;
+        }
+        return ElementUtils.isElementFromSourceCode(enclosing) ? enclosing : null;
+      case METHOD:
+      case CONSTRUCTOR:
+      case FIELD:
+        return ElementUtils.isElementFromSourceCode(element) ? element : null;
+      default:
+        return null;
+    }
+  }
+}
@@ -3,6 +3,7 @@ package org.checkerframework.common.wholeprograminference;
 import com.sun.source.tree.ClassTree;
 import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
+import com.sun.source.util.Trees;
 import com.sun.tools.javac.code.Symbol.ClassSymbol;
 import java.util.HashSet;
 import java.util.List;
@@ -99,6 +100,9 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
   /** Whether to ignore assignments where the rhs is null. */
   private final boolean ignoreNullAssignments;
 
+  /** The compilation units that read inferred annotations, and those that must be re-checked. */
+  private final WholeProgramInferenceDependencies dependencies;
+
   /**
    * Constructs a new {@code WholeProgramInferenceImplementation} that has not yet inferred any
    * annotations.
@@ -113,6 +117,8 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
     boolean isNullness =
         atypeFactory.getClass().getSimpleName().equals("NullnessAnnotatedTypeFactory");
     this.ignoreNullAssignments = !isNullness;
+    this.dependencies =
+        new WholeProgramInferenceDependencies(Trees.instance(atypeFactory.getProcessingEnv()));
   }
 
   /**
@@ -211,7 +217,8 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
       atypeFactory.wpiAdjustForUpdateNonField(argATM);
       T paramAnnotations =
           storage.getParameterAnnotations(methodElt, i, paramATM, ve, atypeFactory);
-      updateAnnotationSet(paramAnnotations, TypeUseLocation.PARAMETER, argATM, paramATM, file);
+      updateAnnotationSet(
+          paramAnnotations, TypeUseLocation.PARAMETER, argATM, paramATM, file, methodElt);
     }
   }
 
@@ -273,7 +280,13 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
       }
       String file = storage.getFileForElement(methodElt);
       updateAnnotationSet(
-          preOrPostConditionAnnos, TypeUseLocation.FIELD, inferredType, fieldDeclType, file, false);
+          preOrPostConditionAnnos,
+          TypeUseLocation.FIELD,
+          inferredType,
+          fieldDeclType,
+          file,
+          methodElt,
+          false);
     }
     // Method parameters (other than the receiver parameter "this"):
     // This loop is 1-indexed to match the syntax used in annotation arguments.
@@ -309,6 +322,7 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
             inferredType,
             declType,
             file,
+            methodElt,
             false);
       }
     }
@@ -339,6 +353,7 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
               inferredType,
               declaredType,
               file,
+              methodElt,
               false);
         }
       }
@@ -379,7 +394,8 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
       atypeFactory.wpiAdjustForUpdateNonField(argATM);
       T paramAnnotations =
           storage.getParameterAnnotations(methodElt, i, paramATM, ve, atypeFactory);
-      updateAnnotationSet(paramAnnotations, TypeUseLocation.PARAMETER, argATM, paramATM, file);
+      updateAnnotationSet(
+          paramAnnotations, TypeUseLocation.PARAMETER, argATM, paramATM, file, methodElt);
     }
 
     AnnotatedDeclaredType argADT = overriddenMethod.getReceiverType();
@@ -387,7 +403,8 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
       AnnotatedTypeMirror paramATM = atypeFactory.getAnnotatedType(methodTree).getReceiverType();
       if (paramATM != null) {
         T receiver = storage.getReceiverAnnotations(methodElt, paramATM, atypeFactory);
-        updateAnnotationSet(receiver, TypeUseLocation.RECEIVER, argADT, paramATM, file);
+        updateAnnotationSet(
+            receiver, TypeUseLocation.RECEIVER, argADT, paramATM, file, methodElt);
       }
     }
   }
@@ -419,7 +436,8 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
     T paramAnnotations =
         storage.getParameterAnnotations(methodElt, i, paramATM, paramElt, atypeFactory);
     String file = storage.getFileForElement(methodElt);
-    updateAnnotationSet(paramAnnotations, TypeUseLocation.PARAMETER, argATM, paramATM, file);
+    updateAnnotationSet(
+        paramAnnotations, TypeUseLocation.PARAMETER, argATM, paramATM, file, methodElt);
   }
 
   @Override
@@ -464,7 +482,7 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
     AnnotatedTypeMirror lhsATM = atypeFactory.getAnnotatedType(lhsTree);
     T fieldAnnotations = storage.getFieldAnnotations(element, fieldName, lhsATM, atypeFactory);
 
-    updateAnnotationSet(fieldAnnotations, TypeUseLocation.FIELD, rhsATM, lhsATM, file);
+    updateAnnotationSet(fieldAnnotations, TypeUseLocation.FIELD, rhsATM, lhsATM, file, element);
   }
 
   /**
@@ -532,7 +550,8 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
         ((GenericAnnotatedTypeFactory) atypeFactory).getDependentTypesHelper();
     dependentTypesHelper.delocalize(rhsATM, methodDeclTree);
     T returnTypeAnnos = storage.getReturnAnnotations(methodElt, lhsATM, atypeFactory);
-    updateAnnotationSet(returnTypeAnnos, TypeUseLocation.RETURN, rhsATM, lhsATM, file);
+    updateAnnotationSet(
+        returnTypeAnnos, TypeUseLocation.RETURN, rhsATM, lhsATM, file, methodElt);
 
     // Now, update return types of overridden methods based on the implementation we just saw.
     // This inference is similar to the inference procedure for method parameters: both are
@@ -571,7 +590,8 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
           TypeUseLocation.RETURN,
           rhsATM,
           overriddenMethodReturnType,
-          superClassFile);
+          superClassFile,
+          overriddenMethodElement);
     }
   }
 
@@ -587,6 +607,7 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
     boolean isNewAnnotation = storage.addMethodDeclarationAnnotation(methodElt, anno);
     if (isNewAnnotation) {
       storage.setFileModified(file);
+      dependencies.recordUpdate(methodElt);
     }
   }
 
@@ -608,14 +629,17 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
    * @param lhsATM the LHS of the annotated type on the source code
    * @param file the annotation file containing the executable; used for marking the scene as
    *     modified (needing to be written to disk)
+   * @param element the method, constructor, or field whose annotations are updated; used for
+   *     finding the code that must be type-checked again if the annotations change
    */
   protected void updateAnnotationSet(
       T annotationsToUpdate,
       TypeUseLocation defLoc,
       AnnotatedTypeMirror rhsATM,
       AnnotatedTypeMirror lhsATM,
-      String file) {
-    updateAnnotationSet(annotationsToUpdate, defLoc, rhsATM, lhsATM, file, true);
+      String file,
+      Element element) {
+    updateAnnotationSet(annotationsToUpdate, defLoc, rhsATM, lhsATM, file, element, true);
   }
 
   /**
@@ -636,6 +660,8 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
    * @param lhsATM the LHS of the annotated type on the source code
    * @param file annotation file containing the executable; used for marking the scene as modified
    *     (needing to be written to disk)
+   * @param element the method, constructor, or field whose annotations are updated; used for
+   *     finding the code that must be type-checked again if the annotations change
    * @param ignoreIfAnnotated if true, don't update any type that is explicitly annotated in the
    *     source code
    */
@@ -645,12 +671,15 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
       AnnotatedTypeMirror rhsATM,
       AnnotatedTypeMirror lhsATM,
       String file,
+      Element element,
       boolean ignoreIfAnnotated) {
     if (rhsATM instanceof AnnotatedNullType && ignoreNullAssignments) {
       return;
     }
     AnnotatedTypeMirror atmFromStorage =
         storage.atmFromStorageLocation(rhsATM.getUnderlyingType(), annotationsToUpdate);
+    // The storage may return the storage location itself, which the update modifies.
+    AnnotatedTypeMirror previous = atmFromStorage.deepCopy();
     updateAtmWithLub(rhsATM, atmFromStorage);
     if (lhsATM instanceof AnnotatedTypeVariable) {
       Set<AnnotationMirror> upperAnnos =
@@ -665,6 +694,10 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
     storage.updateStorageLocationFromAtm(
         rhsATM, lhsATM, annotationsToUpdate, defLoc, ignoreIfAnnotated);
     storage.setFileModified(file);
+    if (!previous.equals(
+        storage.atmFromStorageLocation(rhsATM.getUnderlyingType(), annotationsToUpdate))) {
+      dependencies.recordUpdate(element);
+    }
   }
 
   /**
@@ -728,6 +761,11 @@ public class WholeProgramInferenceImplementation<T> implements WholeProgramInfer
     sourceCodeATM.replaceAnnotations(annosToReplace);
   }
 
+  @Override
+  public WholeProgramInferenceDependencies getDependencies() {
+    return dependencies;
+  }
+
   @Override
   public void writeResultsToFile(OutputFormat outputFormat, BaseTypeChecker checker) {
     storage.writeResultsToFile(outputFormat, checker);
@@ -1,5 +1,6 @@
 package org.checkerframework.common.wholeprograminference;
 
+import com.github.javaparser.ParseProblemException;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.NodeList;
 import com.github.javaparser.ast.body.CallableDeclaration;
@@ -30,13 +31,24 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
@@ -55,10 +67,12 @@ import org.checkerframework.framework.ajava.AnnotationTransferVisitor;
 import org.checkerframework.framework.ajava.DefaultJointVisitor;
 import org.checkerframework.framework.ajava.JointJavacJavaParserVisitor;
 import org.checkerframework.framework.qual.TypeUseLocation;
+import org.checkerframework.framework.stub.AnnotationFileParser;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
 import org.checkerframework.framework.type.AnnotatedTypeMirror;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedArrayType;
 import org.checkerframework.framework.type.GenericAnnotatedTypeFactory;
+import org.checkerframework.framework.type.QualifierHierarchy;
 import org.checkerframework.framework.util.JavaParserUtil;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.BugInCF;
@@ -70,7 +84,7 @@ import scenelib.annotations.util.JVMNames;
 /**
  * This is an implementation of {@link WholeProgramInferenceStorage} that stores annotations
  * directly with the JavaParser node corresponding to the annotation's location. It outputs ajava
- * files.
+ * files, or binary files in the format of {@link WholeProgramInferenceBinaryFormat}.
  */
 public class WholeProgramInferenceJavaParserStorage
     implements WholeProgramInferenceStorage<AnnotatedTypeMirror> {
@@ -97,9 +111,35 @@ public class WholeProgramInferenceJavaParserStorage
    */
   private Set<String> modifiedFiles = new HashSet<>();
 
+  /** Writes the binary files for {@code -Ainfer=binary}, and remembers what they contain. */
+  private final WholeProgramInferenceBinaryFormat binaryFormat =
+      new WholeProgramInferenceBinaryFormat();
+
   /** Mapping from source file to the wrapper for the compilation unit parsed from that file. */
   private Map<String, CompilationUnitAnnos> sourceToAnnos = new HashMap<>();
 
+  /**
+   * True if other javac processes may write the same ajava files concurrently, as with {@code
+   * -AinferConcurrent}. If so, each ajava file is locked while it is written, and the annotations
+   * that another process has written to it are merged into this storage first.
+   */
+  private final boolean concurrentWriters;
+
+  /**
+   * Map from the path of each ajava file written by this storage to the SHA-256 digest of its
+   * contents. Only used if {@link #concurrentWriters} is true. If the file has a different digest
+   * when it is written again, another process has written it in the meantime.
+   */
+  private final Map<String, byte[]> writtenFileDigests = new HashMap<>();
+
+  /**
+   * Map from the absolute path of an ajava file to the lock that the storages of this JVM hold
+   * while they write it. A {@link FileChannel#lock file lock} only excludes other processes: a
+   * second attempt to lock the file from the same JVM throws {@link
+   * java.nio.channels.OverlappingFileLockException}.
+   */
+  private static final Map<Path, ReentrantLock> fileLocks = new ConcurrentHashMap<>();
+
   /**
    * Constructs a new {@code WholeProgramInferenceJavaParser} that has not yet inferred any
    * annotations.
@@ -108,6 +148,7 @@ public class WholeProgramInferenceJavaParserStorage
    */
   public WholeProgramInferenceJavaParserStorage(AnnotatedTypeFactory atypeFactory) {
     this.atypeFactory = atypeFactory;
+    this.concurrentWriters = atypeFactory.getChecker().hasOption("inferConcurrent");
   }
 
   @Override
@@ -351,6 +392,7 @@ public class WholeProgramInferenceJavaParserStorage
         sourceAnnos.getClassOrInterfaceDeclarationByName(toplevelClass.getSimpleName().toString());
     ClassTree toplevelClassTree = atypeFactory.getTreeUtils().getTree(toplevelClass);
     createWrappersForClass(toplevelClassTree, javaParserNode, sourceAnnos);
+    sourceAnnos.addToplevelClass(toplevelClass);
   }
 
   /**
@@ -519,6 +561,7 @@ public class WholeProgramInferenceJavaParserStorage
     TypeDeclaration<?> javaParserNode =
         sourceAnnos.getClassOrInterfaceDeclarationByName(toplevelClass.getSimpleName().toString());
     createWrappersForClass(toplevelClassTree, javaParserNode, sourceAnnos);
+    sourceAnnos.addToplevelClass(toplevelClass);
     return path;
   }
 
@@ -566,7 +609,7 @@ public class WholeProgramInferenceJavaParserStorage
 
   @Override
   public void writeResultsToFile(OutputFormat outputFormat, BaseTypeChecker checker) {
-    if (outputFormat != OutputFormat.AJAVA) {
+    if (outputFormat != OutputFormat.AJAVA && outputFormat != OutputFormat.BINARY) {
       throw new BugInCF("WholeProgramInferenceJavaParser used with format " + outputFormat);
     }
 
@@ -577,8 +620,6 @@ public class WholeProgramInferenceJavaParserStorage
 
     for (String path : modifiedFiles) {
       CompilationUnitAnnos root = sourceToAnnos.get(path);
-      prepareCompilationUnitForWriting(root);
-      root.transferAnnotations(checker);
       String packageDir = AJAVA_FILES_PATH;
       if (root.compilationUnit.getPackageDeclaration().isPresent()) {
         packageDir +=
@@ -600,8 +641,21 @@ public class WholeProgramInferenceJavaParserStorage
         name = name.substring(0, name.length() - ".java".length());
       }
 
-      name += "-" + checker.getClass().getCanonicalName() + ".ajava";
-      String outputPath = packageDir + File.separator + name;
+      name += "-" + checker.getClass().getCanonicalName();
+      if (outputFormat == OutputFormat.AJAVA && concurrentWriters) {
+        writeAjavaFileConcurrently(root, packageDir + File.separator + name + ".ajava", checker);
+        continue;
+      }
+      prepareCompilationUnitForWriting(root);
+      root.transferAnnotations(checker);
+      if (outputFormat == OutputFormat.BINARY) {
+        String outputPath =
+            packageDir + File.separator + name + WholeProgramInferenceBinaryFormat.FILE_EXTENSION;
+        binaryFormat.write(
+            outputPath, path, checker.getClass().getCanonicalName(), root.compilationUnit);
+        continue;
+      }
+      String outputPath = packageDir + File.separator + name + ".ajava";
       try {
         FileWriter writer = new FileWriter(outputPath);
 
@@ -622,6 +676,288 @@ public class WholeProgramInferenceJavaParserStorage
     modifiedFiles.clear();
   }
 
+  /**
+   * Writes the ajava file for a compilation unit while holding a lock on the file. If another
+   * process has written the file since this storage last wrote it, first merges the annotations in
+   * the file into this storage, so that neither process loses the other's results.
+   *
+   * @param root the compilation unit to write
+   * @param outputPath the path of the ajava file
+   * @param checker the checker whose name to include in the @AnnotatedFor annotation
+   */
+  private void writeAjavaFileConcurrently(
+      CompilationUnitAnnos root, String outputPath, BaseTypeChecker checker) {
+    Path path = Paths.get(outputPath).toAbsolutePath().normalize();
+    ReentrantLock jvmLock = fileLocks.computeIfAbsent(path, p -> new ReentrantLock());
+    // Blocks until no other thread of this JVM writes the file.
+    jvmLock.lock();
+    try (FileChannel channel =
+        FileChannel.open(
+            path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+      // Blocks until no other process holds the lock. Closing the channel releases the lock.
+      channel.lock();
+      ByteBuffer contents = ByteBuffer.allocate((int) channel.size());
+      while (contents.hasRemaining() && channel.read(contents) >= 0) {
+        // Read the rest of the file.
+      }
+      byte[] writtenDigest = writtenFileDigests.get(outputPath);
+      if (contents.capacity() != 0
+          && (writtenDigest == null
+              || !MessageDigest.isEqual(digest(contents.array()), writtenDigest))) {
+        mergeAjavaFile(root, new String(contents.array(), StandardCharsets.UTF_8), outputPath);
+      }
+
+      prepareCompilationUnitForWriting(root);
+      root.transferAnnotations(checker);
+      byte[] output =
+          new DefaultPrettyPrinter().print(root.compilationUnit).getBytes(StandardCharsets.UTF_8);
+      channel.truncate(0);
+      channel.position(0);
+      ByteBuffer buffer = ByteBuffer.wrap(output);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      writtenFileDigests.put(outputPath, digest(output));
+    } catch (IOException e) {
+      throw new BugInCF("Error while writing ajava file " + outputPath, e);
+    } finally {
+      jvmLock.unlock();
+    }
+  }
+
+  /**
+   * Returns the SHA-256 digest of the given bytes.
+   *
+   * @param bytes the contents of a file
+   * @return the SHA-256 digest of {@code bytes}
+   */
+  private static byte[] digest(byte[] bytes) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(bytes);
+    } catch (NoSuchAlgorithmException e) {
+      throw new BugInCF("SHA-256 is not available", e);
+    }
+  }
+
+  /**
+   * Merges the annotations in an ajava file that another process wrote for a compilation unit into
+   * the inferred types of this storage. In each type hierarchy, the merged annotation of a location
+   * is the least upper bound of the annotations that the two processes inferred for it. The merged
+   * declaration annotations of a method are the union of those of both processes.
+   *
+   * @param root the compilation unit
+   * @param contents the contents of the ajava file for {@code root}
+   * @param ajavaPath the path of the ajava file, for diagnostic messages
+   */
+  private void mergeAjavaFile(CompilationUnitAnnos root, String contents, String ajavaPath) {
+    CompilationUnit otherRoot;
+    try {
+      otherRoot = JavaParserUtil.parseCompilationUnit(contents);
+    } catch (ParseProblemException e) {
+      // Not an ajava file written by whole-program inference; it is overwritten.
+      return;
+    }
+    JavaParserUtil.concatenateAddedStringLiterals(otherRoot);
+    if (!sameCodeWithoutAnnotations(root.compilationUnit, otherRoot)) {
+      // The ajava file was written for another version of the source file, so its declarations do
+      // not match the classes of this storage. It is overwritten.
+      return;
+    }
+
+    JointJavacJavaParserVisitor visitor =
+        new DefaultJointVisitor() {
+          @Override
+          public void processMethod(MethodTree javacTree, MethodDeclaration javaParserNode) {
+            mergeCallableDeclaration(javacTree, javaParserNode, ajavaPath);
+          }
+
+          @Override
+          public void processMethod(MethodTree javacTree, ConstructorDeclaration javaParserNode) {
+            mergeCallableDeclaration(javacTree, javaParserNode, ajavaPath);
+          }
+
+          @Override
+          public void processVariable(VariableTree javacTree, VariableDeclarator javaParserNode) {
+            // See the comment in createWrappersForClass.
+            if (TreeUtils.elementFromTree(javacTree) == null) {
+              return;
+            }
+            VariableElement elt = TreeUtils.elementFromDeclaration(javacTree);
+            if (!elt.getKind().isField() || !hasAnnotations(javaParserNode.getType())) {
+              return;
+            }
+            ClassOrInterfaceAnnos classAnnos =
+                classToAnnos.get(ElementUtils.getEnclosingClassName(elt));
+            FieldAnnos fieldAnnos =
+                classAnnos == null ? null : classAnnos.fields.get(javacTree.getName().toString());
+            if (fieldAnnos != null) {
+              AnnotatedTypeMirror type =
+                  AnnotatedTypeMirror.createType(elt.asType(), atypeFactory, false);
+              mergeType(
+                  fieldAnnos.getType(type, atypeFactory), javaParserNode.getType(), ajavaPath);
+            }
+          }
+        };
+    for (TypeElement toplevelClass : root.toplevelClasses) {
+      ClassTree javacTree = atypeFactory.getTreeUtils().getTree(toplevelClass);
+      if (javacTree == null) {
+        continue;
+      }
+      TypeDeclaration<?> javaParserNode =
+          JavaParserUtil.getTypeDeclarationByName(
+              otherRoot, toplevelClass.getSimpleName().toString());
+      visitor.visitClass(javacTree, javaParserNode);
+    }
+  }
+
+  /**
+   * Returns true if the two compilation units contain the same code, apart from annotations. The
+   * compilation units are not modified.
+   *
+   * @param root a compilation unit
+   * @param otherRoot another compilation unit
+   * @return true if {@code root} and {@code otherRoot} are the same without annotations
+   */
+  private static boolean sameCodeWithoutAnnotations(
+      CompilationUnit root, CompilationUnit otherRoot) {
+    CompilationUnit rootCopy = root.clone();
+    CompilationUnit otherRootCopy = otherRoot.clone();
+    JavaParserUtil.clearAnnotations(rootCopy);
+    JavaParserUtil.clearAnnotations(otherRootCopy);
+    // Compares the printed code rather than the nodes, because printing the ajava file and parsing
+    // it again may change nodes in ways that do not affect the printed code.
+    DefaultPrettyPrinter printer = new DefaultPrettyPrinter();
+    return printer.print(rootCopy).equals(printer.print(otherRootCopy));
+  }
+
+  /**
+   * Merges the annotations on a method or constructor in an ajava file written by another process
+   * into the inferred types of this storage.
+   *
+   * @param javacTree the declaration of the method or constructor
+   * @param javaParserNode the declaration of the same method or constructor in the ajava file
+   * @param ajavaPath the path of the ajava file, for diagnostic messages
+   */
+  private void mergeCallableDeclaration(
+      MethodTree javacTree, CallableDeclaration<?> javaParserNode, String ajavaPath) {
+    ExecutableElement elt = TreeUtils.elementFromDeclaration(javacTree);
+    ClassOrInterfaceAnnos classAnnos = classToAnnos.get(ElementUtils.getEnclosingClassName(elt));
+    CallableDeclarationAnnos methodAnnos =
+        classAnnos == null
+            ? null
+            : classAnnos.callableDeclarations.get(JVMNames.getJVMMethodSignature(javacTree));
+    if (methodAnnos == null) {
+      return;
+    }
+
+    List<AnnotationMirror> contractAnnos =
+        atypeFactory instanceof GenericAnnotatedTypeFactory<?, ?, ?, ?>
+            ? ((GenericAnnotatedTypeFactory<?, ?, ?, ?>) atypeFactory)
+                .getContractAnnotations(methodAnnos)
+            : Collections.emptyList();
+    for (AnnotationMirror anno :
+        AnnotationFileParser.getFullyQualifiedAnnotations(
+            ajavaPath,
+            javaParserNode.getAnnotations(),
+            atypeFactory,
+            atypeFactory.getProcessingEnv())) {
+      if (!atypeFactory.isSupportedQualifier(anno)
+          && !AnnotationUtils.containsSame(contractAnnos, anno)) {
+        methodAnnos.addDeclarationAnnotation(anno);
+      }
+    }
+
+    if (javaParserNode.isMethodDeclaration()) {
+      Type returnType = javaParserNode.asMethodDeclaration().getType();
+      if (hasAnnotations(returnType)) {
+        AnnotatedTypeMirror type =
+            AnnotatedTypeMirror.createType(elt.getReturnType(), atypeFactory, false);
+        mergeType(methodAnnos.getReturnType(type, atypeFactory), returnType, ajavaPath);
+      }
+      Optional<ReceiverParameter> receiver = javaParserNode.getReceiverParameter();
+      if (receiver.isPresent() && hasAnnotations(receiver.get().getType())) {
+        AnnotatedTypeMirror type =
+            AnnotatedTypeMirror.createType(elt.getEnclosingElement().asType(), atypeFactory, false);
+        mergeType(
+            methodAnnos.getReceiverType(type, atypeFactory), receiver.get().getType(), ajavaPath);
+      }
+    }
+
+    NodeList<Parameter> parameters = javaParserNode.getParameters();
+    for (int i = 0; i < parameters.size(); i++) {
+      Parameter param = parameters.get(i);
+      if (!hasAnnotations(param.getType()) && param.getVarArgsAnnotations().isEmpty()) {
+        continue;
+      }
+      AnnotatedTypeMirror type =
+          AnnotatedTypeMirror.createType(elt.getParameters().get(i).asType(), atypeFactory, false);
+      AnnotatedTypeMirror paramType =
+          methodAnnos.getParameterTypeInitialized(type, i, atypeFactory);
+      if (param.isVarArgs() && paramType.getKind() == TypeKind.ARRAY) {
+        mergeAnnotations(paramType, param.getVarArgsAnnotations(), ajavaPath);
+        mergeType(((AnnotatedArrayType) paramType).getComponentType(), param.getType(), ajavaPath);
+      } else {
+        mergeType(paramType, param.getType(), ajavaPath);
+      }
+    }
+  }
+
+  /**
+   * Merges the annotations on a type in an ajava file written by another process into an inferred
+   * type of this storage. Merges the primary annotations and, for arrays, those of the component
+   * types.
+   *
+   * @param inferred an inferred type of this storage; is side-effected
+   * @param other the same type in the ajava file
+   * @param ajavaPath the path of the ajava file, for diagnostic messages
+   */
+  private void mergeType(AnnotatedTypeMirror inferred, Type other, String ajavaPath) {
+    mergeAnnotations(inferred, other.getAnnotations(), ajavaPath);
+    if (inferred.getKind() == TypeKind.ARRAY && other.isArrayType()) {
+      mergeType(
+          ((AnnotatedArrayType) inferred).getComponentType(),
+          other.asArrayType().getComponentType(),
+          ajavaPath);
+    }
+  }
+
+  /**
+   * Replaces each primary annotation of an inferred type by its least upper bound with the
+   * annotation in the same hierarchy among the given ones. Adds the annotations in hierarchies for
+   * which nothing has been inferred.
+   *
+   * @param inferred an inferred type of this storage; is side-effected
+   * @param annotations annotations in an ajava file written by another process
+   * @param ajavaPath the path of the ajava file, for diagnostic messages
+   */
+  private void mergeAnnotations(
+      AnnotatedTypeMirror inferred, List<AnnotationExpr> annotations, String ajavaPath) {
+    QualifierHierarchy qualHierarchy = atypeFactory.getQualifierHierarchy();
+    for (AnnotationMirror other :
+        AnnotationFileParser.getFullyQualifiedAnnotations(
+            ajavaPath, annotations, atypeFactory, atypeFactory.getProcessingEnv())) {
+      if (!atypeFactory.isSupportedQualifier(other)) {
+        continue;
+      }
+      AnnotationMirror current = inferred.getAnnotationInHierarchy(other);
+      if (current == null) {
+        inferred.addAnnotation(other);
+      } else {
+        inferred.replaceAnnotation(qualHierarchy.leastUpperBound(current, other));
+      }
+    }
+  }
+
+  /**
+   * Returns true if the given JavaParser type contains an annotation.
+   *
+   * @param type a type
+   * @return true if {@code type} contains an annotation
+   */
+  private static boolean hasAnnotations(Type type) {
+    return !type.findAll(AnnotationExpr.class).isEmpty();
+  }
+
   /**
    * Adds an explicit receiver type to a JavaParser method declaration.
    *
@@ -688,6 +1024,8 @@ public class WholeProgramInferenceJavaParserStorage
     public CompilationUnit compilationUnit;
     /** Wrappers for classes and interfaces in {@code compilationUnit}. */
     public List<ClassOrInterfaceAnnos> types;
+    /** The top-level classes in {@code compilationUnit} for which wrappers have been created. */
+    public List<TypeElement> toplevelClasses = new ArrayList<>(1);
 
     /**
      * Constructs a wrapper around the given compilation unit.
@@ -718,6 +1056,17 @@ public class WholeProgramInferenceJavaParserStorage
       }
     }
 
+    /**
+     * Records that wrappers have been created for the given top-level class.
+     *
+     * @param toplevelClass a top-level class in the wrapped compilation unit
+     */
+    public void addToplevelClass(TypeElement toplevelClass) {
+      if (!toplevelClasses.contains(toplevelClass)) {
+        toplevelClasses.add(toplevelClass);
+      }
+    }
+
     /**
      * Returns the top-level type declaration named {@code name} in the compilation unit.
      *
@@ -1,6 +1,9 @@
 package org.checkerframework.framework.flow;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import javax.annotation.processing.ProcessingEnvironment;
@@ -11,8 +14,12 @@ import javax.lang.model.util.Types;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.dataflow.analysis.ForwardAnalysisImpl;
+import org.checkerframework.dataflow.analysis.Store;
 import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.block.Block;
+import org.checkerframework.dataflow.cfg.node.Node;
 import org.checkerframework.dataflow.expression.FieldAccess;
+import org.checkerframework.dataflow.expression.LocalVariable;
 import org.checkerframework.framework.source.SourceChecker;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
 import org.checkerframework.framework.type.AnnotatedTypeMirror;
@@ -99,6 +106,18 @@ public abstract class CFAbstractAnalysis<
   /** Instance of the types utility. */
   protected final Types types;
 
+  /**
+   * True if the -AsparseDataflow command-line option was supplied and the type factory {@link
+   * GenericAnnotatedTypeFactory#supportsSparseDataflow supports it}.
+   */
+  private final boolean sparse;
+
+  /**
+   * The live local variables of the control flow graph being analyzed, or null if the analysis is
+   * not {@link #isSparse sparse}.
+   */
+  private @Nullable LiveLocalVariables liveLocalVariables = null;
+
   /**
    * Create a CFAbstractAnalysis.
    *
@@ -120,6 +139,7 @@ public abstract class CFAbstractAnalysis<
     this.checker = checker;
     this.transferFunction = createTransferFunction();
     this.fieldValues = new ArrayList<>();
+    this.sparse = checker.hasOption("sparseDataflow") && factory.supportsSparseDataflow();
   }
 
   /**
@@ -146,6 +166,105 @@ public abstract class CFAbstractAnalysis<
     super.performAnalysis(cfg);
   }
 
+  /**
+   * Returns true if this analysis is sparse: a store contains information about a local variable
+   * only where the variable is live, that is, where it may be read before it is next assigned. This
+   * makes stores smaller and lets information about a variable flow only from its definitions to its
+   * uses, which speeds up the analysis of large methods with many local variables. The analysis is
+   * sparse if the -AsparseDataflow command-line option was supplied and the type factory {@link
+   * GenericAnnotatedTypeFactory#supportsSparseDataflow supports it}.
+   *
+   * @return true if this analysis is sparse
+   * @see LiveLocalVariables
+   */
+  public boolean isSparse() {
+    return sparse;
+  }
+
+  @Override
+  protected void initFields(ControlFlowGraph cfg) {
+    super.initFields(cfg);
+    liveLocalVariables = sparse ? new LiveLocalVariables(cfg) : null;
+  }
+
+  @Override
+  protected void addStoreBefore(
+      Block b, @Nullable Node node, S s, Store.Kind kind, boolean addBlockToWorklist) {
+    if (liveLocalVariables != null) {
+      s = removeDeadLocalVariables(b, s, liveLocalVariables);
+    }
+    super.addStoreBefore(b, node, s, kind, addBlockToWorklist);
+  }
+
+  /**
+   * Returns a store like the given one, but without information about the local variables that are
+   * dead at the beginning of the given block. A dead variable is kept if a Java expression in an
+   * annotation of a value in the store names it, for instance if a variable has the refined type
+   * {@code @KeyFor("m")}, because the checker may consult the facts about {@code m} to check that
+   * type.
+   *
+   * @param b a block
+   * @param store the store that flows to {@code b}
+   * @param live the live local variables
+   * @return {@code store} itself if it contains no dead variables, or else a copy of it without the
+   *     dead variables
+   */
+  private S removeDeadLocalVariables(Block b, S store, LiveLocalVariables live) {
+    List<LocalVariable> dead = new ArrayList<>();
+    for (LocalVariable var : store.localVariableValues.keySet()) {
+      if (live.isDeadBefore(b, var)) {
+        dead.add(var);
+      }
+    }
+    if (dead.isEmpty()) {
+      return store;
+    }
+    if (dependentTypesHelper.hasDependentAnnotations()) {
+      Set<String> named = namesInAnnotations(store);
+      dead.removeIf(var -> named.contains(var.getElement().getSimpleName().toString()));
+      if (dead.isEmpty()) {
+        return store;
+      }
+    }
+    // Copying is cheap, because the maps of the copy share their structure with the original.
+    S result = store.copy();
+    for (LocalVariable var : dead) {
+      result.localVariableValues.remove(var);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the identifiers in the strings of the annotations of the values in the given store.
+   *
+   * @param store a store
+   * @return the identifiers in the strings of the annotations of the values in {@code store}
+   */
+  private Set<String> namesInAnnotations(S store) {
+    Set<String> result = new HashSet<>();
+    List<Collection<V>> valueCollections =
+        Arrays.asList(
+            store.localVariableValues.values(),
+            store.fieldValues.values(),
+            store.arrayValues.values(),
+            store.methodValues.values(),
+            store.classValues.values());
+    for (Collection<V> values : valueCollections) {
+      for (V value : values) {
+        for (AnnotationMirror anno : value.getAnnotations()) {
+          LiveLocalVariables.addNamesInAnnotation(anno, result);
+        }
+      }
+    }
+    V thisValue = store.thisValue;
+    if (thisValue != null) {
+      for (AnnotationMirror anno : thisValue.getAnnotations()) {
+        LiveLocalVariables.addNamesInAnnotation(anno, result);
+      }
+    }
+    return result;
+  }
+
   /**
    * A list of initial abstract values for the fields.
    *
@@ -1,10 +1,10 @@
 package org.checkerframework.framework.flow;
 
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.StringJoiner;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BinaryOperator;
@@ -12,6 +12,7 @@ import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Name;
+import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.Types;
 import org.checkerframework.checker.nullness.qual.EnsuresNonNullIf;
@@ -33,6 +34,7 @@ import org.checkerframework.dataflow.expression.LocalVariable;
 import org.checkerframework.dataflow.expression.MethodCall;
 import org.checkerframework.dataflow.expression.ThisReference;
 import org.checkerframework.dataflow.qual.SideEffectFree;
+import org.checkerframework.dataflow.util.PersistentHashMap;
 import org.checkerframework.dataflow.util.PurityUtils;
 import org.checkerframework.framework.qual.MonotonicQualifier;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
@@ -41,7 +43,6 @@ import org.checkerframework.javacutil.AnnotationBuilder;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.BugInCF;
 import org.checkerframework.javacutil.Pair;
-import org.plumelib.util.CollectionsPlume;
 import org.plumelib.util.ToStringComparator;
 import org.plumelib.util.UniqueId;
 
@@ -130,24 +131,27 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
    */
   protected CFAbstractStore(CFAbstractAnalysis<V, S, ?> analysis, boolean sequentialSemantics) {
     this.analysis = analysis;
-    localVariableValues = new HashMap<>();
+    localVariableValues = new PersistentHashMap<>();
     thisValue = null;
-    fieldValues = new HashMap<>();
-    methodValues = new HashMap<>();
-    arrayValues = new HashMap<>();
-    classValues = new HashMap<>();
+    fieldValues = new PersistentHashMap<>();
+    methodValues = new PersistentHashMap<>();
+    arrayValues = new PersistentHashMap<>();
+    classValues = new PersistentHashMap<>();
     this.sequentialSemantics = sequentialSemantics;
   }
 
-  /** Copy constructor. */
+  /**
+   * Copy constructor. The maps of the new store share their structure with the maps of {@code
+   * other}, so copying takes constant time.
+   */
   protected CFAbstractStore(CFAbstractStore<V, S> other) {
     this.analysis = other.analysis;
-    localVariableValues = new HashMap<>(other.localVariableValues);
+    localVariableValues = new PersistentHashMap<>(other.localVariableValues);
     thisValue = other.thisValue;
-    fieldValues = new HashMap<>(other.fieldValues);
-    methodValues = new HashMap<>(other.methodValues);
-    arrayValues = new HashMap<>(other.arrayValues);
-    classValues = new HashMap<>(other.classValues);
+    fieldValues = new PersistentHashMap<>(other.fieldValues);
+    methodValues = new PersistentHashMap<>(other.methodValues);
+    arrayValues = new PersistentHashMap<>(other.arrayValues);
+    classValues = new PersistentHashMap<>(other.classValues);
     sequentialSemantics = other.sequentialSemantics;
   }
 
@@ -183,6 +187,11 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
    * @return whether the method is side-effect-free
    */
   protected boolean isSideEffectFree(AnnotatedTypeFactory atypeFactory, ExecutableElement method) {
+    if (atypeFactory instanceof GenericAnnotatedTypeFactory) {
+      return ((GenericAnnotatedTypeFactory<?, ?, ?, ?>) atypeFactory)
+          .getMethodSummary(method)
+          .isSideEffectFree();
+    }
     return PurityUtils.isSideEffectFree(atypeFactory, method);
   }
 
@@ -203,6 +212,10 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
    *       or {@code this}, and {@code f} is final).
    *   <li>Furthermore, if the field has a monotonic annotation, then its information can also be
    *       kept.
+   *   <li>Under {@code -AinferModifiedFields}, if the method's summary lists the fields that it may
+   *       modify (see {@link org.checkerframework.framework.util.MethodSummary#getModifiedFields}),
+   *       then only information about those fields is removed, and information about arrays is
+   *       kept.
    * </ol>
    *
    * Furthermore, if the method is deterministic, we store its result {@code val} in the store.
@@ -216,8 +229,12 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
         || analysis.checker.hasOption("assumePure")
         || isSideEffectFree(atypeFactory, method))) {
 
-      boolean sideEffectsUnrefineAliases =
-          ((GenericAnnotatedTypeFactory) atypeFactory).sideEffectsUnrefineAliases;
+      GenericAnnotatedTypeFactory<?, ?, ?, ?> gatf =
+          (GenericAnnotatedTypeFactory<?, ?, ?, ?>) atypeFactory;
+      boolean sideEffectsUnrefineAliases = gatf.sideEffectsUnrefineAliases;
+      // The fields that the method may modify, or null if it may modify any field or array.
+      @Nullable Set<VariableElement> modifiedFields =
+          sideEffectsUnrefineAliases ? null : gatf.getMethodSummary(method).getModifiedFields();
 
       // update local variables
       // TODO: Also remove if any element/argument to the annotation is not
@@ -235,12 +252,17 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
       if (sideEffectsUnrefineAliases) {
         fieldValues.entrySet().removeIf(e -> !e.getKey().isUnmodifiableByOtherCode());
       } else {
-        Map<FieldAccess, V> newFieldValues =
-            new HashMap<>(CollectionsPlume.mapCapacity(fieldValues));
+        Map<FieldAccess, V> newFieldValues = new PersistentHashMap<>();
         for (Map.Entry<FieldAccess, V> e : fieldValues.entrySet()) {
           FieldAccess fieldAccess = e.getKey();
           V otherVal = e.getValue();
 
+          // case 4: the method does not modify the field
+          if (modifiedFields != null && !modifiedFields.contains(fieldAccess.getField())) {
+            newFieldValues.put(fieldAccess, otherVal);
+            continue;
+          }
+
           // case 3: the field has a monotonic annotation
           if (!((GenericAnnotatedTypeFactory<?, ?, ?, ?>) atypeFactory)
               .getSupportedMonotonicTypeQualifiers()
@@ -284,7 +306,9 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
       }
 
       // update array values
-      arrayValues.clear();
+      if (modifiedFields == null) {
+        arrayValues.clear();
+      }
 
       // update method values
       methodValues.keySet().removeIf(e -> !e.isUnmodifiableByOtherCode());
@@ -1086,20 +1110,10 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
   private S upperBound(S other, boolean shouldWiden) {
     S newStore = analysis.createEmptyStore(sequentialSemantics);
 
-    for (Map.Entry<LocalVariable, V> e : other.localVariableValues.entrySet()) {
-      // local variables that are only part of one store, but not the other are discarded, as one of
-      // store implicitly contains 'top' for that variable.
-      LocalVariable localVar = e.getKey();
-      V thisVal = localVariableValues.get(localVar);
-      if (thisVal != null) {
-        V otherVal = e.getValue();
-        V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-
-        if (mergedVal != null) {
-          newStore.localVariableValues.put(localVar, mergedVal);
-        }
-      }
-    }
+    // Expressions that are only part of one store, but not the other, are discarded, as one store
+    // implicitly contains 'top' for them.
+    upperBoundOfMaps(
+        localVariableValues, other.localVariableValues, newStore.localVariableValues, shouldWiden);
 
     // information about the current object
     {
@@ -1111,57 +1125,50 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
       }
     }
 
-    for (Map.Entry<FieldAccess, V> e : other.fieldValues.entrySet()) {
-      // information about fields that are only part of one store, but not the other are discarded,
-      // as one store implicitly contains 'top' for that field.
-      FieldAccess el = e.getKey();
-      V thisVal = fieldValues.get(el);
-      if (thisVal != null) {
-        V otherVal = e.getValue();
-        V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-        if (mergedVal != null) {
-          newStore.fieldValues.put(el, mergedVal);
-        }
-      }
-    }
-    for (Map.Entry<ArrayAccess, V> e : other.arrayValues.entrySet()) {
-      // information about arrays that are only part of one store, but not the other are discarded,
-      // as one store implicitly contains 'top' for that array access.
-      ArrayAccess el = e.getKey();
-      V thisVal = arrayValues.get(el);
-      if (thisVal != null) {
-        V otherVal = e.getValue();
-        V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-        if (mergedVal != null) {
-          newStore.arrayValues.put(el, mergedVal);
-        }
-      }
-    }
-    for (Map.Entry<MethodCall, V> e : other.methodValues.entrySet()) {
-      // information about methods that are only part of one store, but not the other are discarded,
-      // as one store implicitly contains 'top' for that field.
-      MethodCall el = e.getKey();
-      V thisVal = methodValues.get(el);
-      if (thisVal != null) {
-        V otherVal = e.getValue();
-        V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-        if (mergedVal != null) {
-          newStore.methodValues.put(el, mergedVal);
-        }
-      }
+    upperBoundOfMaps(fieldValues, other.fieldValues, newStore.fieldValues, shouldWiden);
+    upperBoundOfMaps(arrayValues, other.arrayValues, newStore.arrayValues, shouldWiden);
+    upperBoundOfMaps(methodValues, other.methodValues, newStore.methodValues, shouldWiden);
+    upperBoundOfMaps(classValues, other.classValues, newStore.classValues, shouldWiden);
+    return newStore;
+  }
+
+  /**
+   * Adds to {@code result} the upper bound of the values of each key that is in both {@code
+   * thisMap} and {@code otherMap}.
+   *
+   * <p>If both maps are {@link PersistentHashMap}s, the least upper bound skips the entries that
+   * the two maps share, because the least upper bound of a value with itself is that value. This is
+   * not done when widening.
+   *
+   * @param <K> the type of the keys
+   * @param thisMap a map of this store
+   * @param otherMap the corresponding map of the other store
+   * @param result the corresponding map of the new store
+   * @param shouldWiden true if the upper bound should be widened
+   */
+  private <K> void upperBoundOfMaps(
+      Map<K, V> thisMap, Map<K, V> otherMap, Map<K, V> result, boolean shouldWiden) {
+    if (!shouldWiden
+        && thisMap instanceof PersistentHashMap
+        && otherMap instanceof PersistentHashMap) {
+      result.putAll(
+          PersistentHashMap.intersection(
+              (PersistentHashMap<K, V>) thisMap,
+              (PersistentHashMap<K, V>) otherMap,
+              (thisVal, otherVal) -> upperBoundOfValues(otherVal, thisVal, false)));
+      return;
     }
-    for (Map.Entry<ClassName, V> e : other.classValues.entrySet()) {
-      ClassName el = e.getKey();
-      V thisVal = classValues.get(el);
+    for (Map.Entry<K, V> e : otherMap.entrySet()) {
+      K key = e.getKey();
+      V thisVal = thisMap.get(key);
       if (thisVal != null) {
         V otherVal = e.getValue();
         V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
         if (mergedVal != null) {
-          newStore.classValues.put(el, mergedVal);
+          result.put(key, mergedVal);
         }
       }
     }
-    return newStore;
   }
 
   private V upperBoundOfValues(V otherVal, V thisVal, boolean shouldWiden) {
@@ -1175,40 +1182,30 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
    * predicate.
    */
   protected boolean supersetOf(CFAbstractStore<V, S> other) {
-    for (Map.Entry<LocalVariable, V> e : other.localVariableValues.entrySet()) {
-      LocalVariable key = e.getKey();
-      V value = localVariableValues.get(key);
-      if (value == null || !value.equals(e.getValue())) {
-        return false;
-      }
-    }
-    if (!Objects.equals(thisValue, other.thisValue)) {
-      return false;
-    }
-    for (Map.Entry<FieldAccess, V> e : other.fieldValues.entrySet()) {
-      FieldAccess key = e.getKey();
-      V value = fieldValues.get(key);
-      if (value == null || !value.equals(e.getValue())) {
-        return false;
-      }
-    }
-    for (Map.Entry<ArrayAccess, V> e : other.arrayValues.entrySet()) {
-      ArrayAccess key = e.getKey();
-      V value = arrayValues.get(key);
-      if (value == null || !value.equals(e.getValue())) {
-        return false;
-      }
-    }
-    for (Map.Entry<MethodCall, V> e : other.methodValues.entrySet()) {
-      MethodCall key = e.getKey();
-      V value = methodValues.get(key);
-      if (value == null || !value.equals(e.getValue())) {
-        return false;
-      }
+    return supersetOfMap(localVariableValues, other.localVariableValues)
+        && Objects.equals(thisValue, other.thisValue)
+        && supersetOfMap(fieldValues, other.fieldValues)
+        && supersetOfMap(arrayValues, other.arrayValues)
+        && supersetOfMap(methodValues, other.methodValues)
+        && supersetOfMap(classValues, other.classValues);
+  }
+
+  /**
+   * Returns true iff {@code thisMap} contains every entry of {@code otherMap}. If both maps are
+   * {@link PersistentHashMap}s, the entries that they share are skipped.
+   *
+   * @param <K> the type of the keys
+   * @param thisMap a map of this store
+   * @param otherMap the corresponding map of the other store
+   * @return true iff {@code thisMap} contains every entry of {@code otherMap}
+   */
+  private static <K, V> boolean supersetOfMap(Map<K, V> thisMap, Map<K, V> otherMap) {
+    if (thisMap instanceof PersistentHashMap && otherMap instanceof PersistentHashMap) {
+      return ((PersistentHashMap<K, V>) thisMap)
+          .containsAllEntriesOf((PersistentHashMap<K, V>) otherMap);
     }
-    for (Map.Entry<ClassName, V> e : other.classValues.entrySet()) {
-      ClassName key = e.getKey();
-      V value = classValues.get(key);
+    for (Map.Entry<K, V> e : otherMap.entrySet()) {
+      V value = thisMap.get(e.getKey());
       if (value == null || !value.equals(e.getValue())) {
         return false;
       }
@@ -9,7 +9,6 @@ import com.sun.tools.javac.code.Symbol.ClassSymbol;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -59,6 +58,7 @@ import org.checkerframework.dataflow.expression.FieldAccess;
 import org.checkerframework.dataflow.expression.JavaExpression;
 import org.checkerframework.dataflow.expression.LocalVariable;
 import org.checkerframework.dataflow.util.NodeUtils;
+import org.checkerframework.dataflow.util.PersistentHashMap;
 import org.checkerframework.framework.flow.CFAbstractAnalysis.FieldInitialValue;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
 import org.checkerframework.framework.type.AnnotatedTypeMirror;
@@ -70,7 +70,6 @@ import org.checkerframework.framework.util.Contract;
 import org.checkerframework.framework.util.Contract.ConditionalPostcondition;
 import org.checkerframework.framework.util.Contract.Postcondition;
 import org.checkerframework.framework.util.Contract.Precondition;
-import org.checkerframework.framework.util.ContractsFromMethod;
 import org.checkerframework.framework.util.JavaExpressionParseUtil.JavaExpressionParseException;
 import org.checkerframework.framework.util.StringToJavaExpression;
 import org.checkerframework.javacutil.ElementUtils;
@@ -391,7 +390,7 @@ public abstract class CFAbstractTransfer<
       }
 
       // We want the initialization stuff, but need to throw out any refinements.
-      Map<FieldAccess, V> fieldValuesClone = new HashMap<>(store.fieldValues);
+      Map<FieldAccess, V> fieldValuesClone = new PersistentHashMap<>(store.fieldValues);
       for (Map.Entry<FieldAccess, V> fieldValue : fieldValuesClone.entrySet()) {
         AnnotatedTypeMirror declaredType = factory.getAnnotatedType(fieldValue.getKey().getField());
         V lubbedValue =
@@ -532,8 +531,8 @@ public abstract class CFAbstractTransfer<
       CFGMethod methodAst,
       MethodTree methodDeclTree,
       ExecutableElement methodElement) {
-    ContractsFromMethod contractsUtils = analysis.atypeFactory.getContractsFromMethod();
-    Set<Precondition> preconditions = contractsUtils.getPreconditions(methodElement);
+    Set<Precondition> preconditions =
+        analysis.atypeFactory.getMethodSummary(methodElement).getPreconditions();
     StringToJavaExpression stringToJavaExpr =
         stringExpr ->
             StringToJavaExpression.atMethodBody(stringExpr, methodDeclTree, analysis.checker);
@@ -1080,8 +1079,8 @@ public abstract class CFAbstractTransfer<
       S store,
       ExecutableElement methodElement,
       Tree invocationTree) {
-    ContractsFromMethod contractsUtils = analysis.atypeFactory.getContractsFromMethod();
-    Set<Postcondition> postconditions = contractsUtils.getPostconditions(methodElement);
+    Set<Postcondition> postconditions =
+        analysis.atypeFactory.getMethodSummary(methodElement).getPostconditions();
     processPostconditionsAndConditionalPostconditions(
         invocationNode, invocationTree, store, null, postconditions);
   }
@@ -1102,9 +1101,8 @@ public abstract class CFAbstractTransfer<
       Tree invocationTree,
       S thenStore,
       S elseStore) {
-    ContractsFromMethod contractsUtils = analysis.atypeFactory.getContractsFromMethod();
     Set<ConditionalPostcondition> conditionalPostconditions =
-        contractsUtils.getConditionalPostconditions(methodElement);
+        analysis.atypeFactory.getMethodSummary(methodElement).getConditionalPostconditions();
     processPostconditionsAndConditionalPostconditions(
         invocationNode, invocationTree, thenStore, elseStore, conditionalPostconditions);
   }
@@ -55,6 +55,7 @@ public class CFCFGBuilder extends CFGBuilder {
 
     // Subcheckers with dataflow share control-flow graph structure to
     // allow a super-checker to query the stores of a subchecker.
+    GenericAnnotatedTypeFactory<?, ?, ?, ?> sharingGATF = null;
     if (factory instanceof GenericAnnotatedTypeFactory) {
       GenericAnnotatedTypeFactory<?, ?, ?, ?> asGATF =
           (GenericAnnotatedTypeFactory<?, ?, ?, ?>) factory;
@@ -63,22 +64,41 @@ public class CFCFGBuilder extends CFGBuilder {
         if (sharedCFG != null) {
           return sharedCFG;
         }
+        sharingGATF = asGATF;
+      }
+    }
+
+    // Other checkers in the same compilation may have built the graph already.
+    CFGRegistry registry = factory.shouldCache ? CFGRegistry.instance(env) : null;
+    if (registry != null) {
+      ControlFlowGraph registeredCFG =
+          registry.get(
+              root,
+              underlyingAST,
+              checker,
+              factory,
+              assumeAssertionsEnabled,
+              assumeAssertionsDisabled);
+      if (registeredCFG != null) {
+        if (sharingGATF != null) {
+          sharingGATF.addSharedCFGForTree(underlyingAST.getCode(), registeredCFG);
+        }
+        return registeredCFG;
       }
     }
 
     CFTreeBuilder builder = new CFTreeBuilder(env);
-    PhaseOneResult phase1result =
+    CFCFGTranslationPhaseOne phase1 =
         new CFCFGTranslationPhaseOne(
-                builder, checker, factory, assumeAssertionsEnabled, assumeAssertionsDisabled, env)
-            .process(root, underlyingAST);
+            builder, checker, factory, assumeAssertionsEnabled, assumeAssertionsDisabled, env);
+    PhaseOneResult phase1result = phase1.process(root, underlyingAST);
     ControlFlowGraph phase2result = CFGTranslationPhaseTwo.process(phase1result);
     ControlFlowGraph phase3result = CFGTranslationPhaseThree.process(phase2result);
-    if (factory instanceof GenericAnnotatedTypeFactory) {
-      GenericAnnotatedTypeFactory<?, ?, ?, ?> asGATF =
-          (GenericAnnotatedTypeFactory<?, ?, ?, ?>) factory;
-      if (asGATF.hasOrIsSubchecker) {
-        asGATF.addSharedCFGForTree(underlyingAST.getCode(), phase3result);
-      }
+    if (sharingGATF != null) {
+      sharingGATF.addSharedCFGForTree(underlyingAST.getCode(), phase3result);
+    }
+    if (registry != null) {
+      registry.put(root, phase3result, phase1.decisions);
     }
     return phase3result;
   }
@@ -125,6 +145,9 @@ public class CFCFGBuilder extends CFGBuilder {
     /** Type factory to provide types used during CFG building. */
     protected final AnnotatedTypeFactory factory;
 
+    /** The checker-dependent decisions made during the translation. */
+    protected final CFGRegistry.Decisions decisions;
+
     public CFCFGTranslationPhaseOne(
         CFTreeBuilder builder,
         BaseTypeChecker checker,
@@ -135,14 +158,23 @@ public class CFCFGBuilder extends CFGBuilder {
       super(builder, factory, assumeAssertionsEnabled, assumeAssertionsDisabled, env);
       this.checker = checker;
       this.factory = factory;
+      this.decisions = new CFGRegistry.Decisions(assumeAssertionsEnabled, assumeAssertionsDisabled);
     }
 
     @Override
     protected boolean assumeAssertionsEnabledFor(AssertTree tree) {
-      if (assumeAssertionsActivatedForAssertTree(checker, tree)) {
-        return true;
-      }
-      return super.assumeAssertionsEnabledFor(tree);
+      boolean enabled =
+          assumeAssertionsActivatedForAssertTree(checker, tree)
+              || super.assumeAssertionsEnabledFor(tree);
+      decisions.recordAssertion(tree, enabled);
+      return enabled;
+    }
+
+    @Override
+    protected boolean terminatesExecution(Element methodElement) {
+      boolean terminates = super.terminatesExecution(methodElement);
+      decisions.recordTerminatesExecution(methodElement, terminates);
+      return terminates;
     }
 
     @Override
@@ -151,11 +183,13 @@ public class CFCFGBuilder extends CFGBuilder {
       if (enclosingMethod != null) {
         Element methodElement = TreeUtils.elementFromDeclaration(enclosingMethod);
         factory.setEnclosingElementForArtificialTree(tree, methodElement);
+        decisions.recordArtificialTree(tree, methodElement);
       } else {
         ClassTree enclosingClass = TreePathUtil.enclosingClass(getCurrentPath());
         if (enclosingClass != null) {
           Element classElement = TreeUtils.elementFromDeclaration(enclosingClass);
           factory.setEnclosingElementForArtificialTree(tree, classElement);
+          decisions.recordArtificialTree(tree, classElement);
         }
       }
     }
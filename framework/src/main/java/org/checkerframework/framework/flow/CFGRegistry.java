@@ -0,0 +1,280 @@
+package org.checkerframework.framework.flow;
+
+import com.sun.source.tree.AssertTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.Tree;
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import com.sun.tools.javac.util.Context;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.UnderlyingAST;
+import org.checkerframework.dataflow.qual.TerminatesExecution;
+import org.checkerframework.framework.type.AnnotatedTypeFactory;
+import org.checkerframework.framework.type.GenericAnnotatedTypeFactory;
+
+/**
+ * The control flow graphs that have been built during a compilation, shared by all checkers that
+ * run in it. Without the registry, checkers that run as separate annotation processors (say, the
+ * Nullness Checker and the Index Checker) each translate every method to a control flow graph.
+ *
+ * <p>Most of a control flow graph depends only on the code. A few translation decisions depend on
+ * the checker: whether an {@code assert} statement is assumed to be enabled (see {@link
+ * CFCFGBuilder#assumeAssertionsActivatedForAssertTree}), and whether an invoked method is {@link
+ * TerminatesExecution}. The registry records these decisions with each graph, and hands the graph
+ * only to checkers that make the same decisions. A checker that makes different decisions builds
+ * its own specialization of the graph, which is registered next to the first one.
+ *
+ * <p>The subcheckers of a checker additionally share their graphs through {@link
+ * GenericAnnotatedTypeFactory#getSharedCFGForTree}, which guarantees that they all use the same
+ * graph. The registry gives no such guarantee.
+ *
+ * <p>The graphs of a compilation unit are discarded once every type factory that uses the registry
+ * has moved on to another compilation unit. The registry does not keep type factories alive.
+ */
+public final class CFGRegistry {
+
+  /** The key of the registry in the compiler's context. */
+  private static final Context.Key<CFGRegistry> REGISTRY_KEY = new Context.Key<>();
+
+  /**
+   * The registered graphs, by compilation unit and by the code they represent (see {@link
+   * UnderlyingAST#getCode}).
+   */
+  private final Map<CompilationUnitTree, Map<Tree, List<Entry>>> graphs = new IdentityHashMap<>();
+
+  /**
+   * The compilation unit that each type factory that uses the registry is currently processing.
+   * Factories are weak keys, so that the registry, which lives as long as the compilation, does not
+   * retain them. {@link AnnotatedTypeFactory} does not override {@code equals}, so the keys are
+   * compared by identity.
+   */
+  private final Map<AnnotatedTypeFactory, CompilationUnitTree> currentRoots = new WeakHashMap<>();
+
+  /** Use {@link #instance}. */
+  private CFGRegistry() {}
+
+  /**
+   * Returns the registry of the current compilation.
+   *
+   * @param env the processing environment
+   * @return the registry of the compilation that {@code env} belongs to
+   */
+  public static CFGRegistry instance(ProcessingEnvironment env) {
+    Context context = ((JavacProcessingEnvironment) env).getContext();
+    CFGRegistry registry = context.get(REGISTRY_KEY);
+    if (registry == null) {
+      registry = new CFGRegistry();
+      context.put(REGISTRY_KEY, registry);
+    }
+    return registry;
+  }
+
+  /**
+   * Records that the given type factory is now processing the given compilation unit, and discards
+   * the graphs of the compilation units that no type factory is processing any longer.
+   *
+   * @param factory a type factory
+   * @param root the compilation unit that {@code factory} is processing, or null if it is done
+   */
+  public void setRoot(AnnotatedTypeFactory factory, @Nullable CompilationUnitTree root) {
+    if (root == null) {
+      currentRoots.remove(factory);
+    } else {
+      currentRoots.put(factory, root);
+    }
+    Iterator<CompilationUnitTree> iter = graphs.keySet().iterator();
+    while (iter.hasNext()) {
+      if (!currentRoots.containsValue(iter.next())) {
+        iter.remove();
+      }
+    }
+  }
+
+  /**
+   * Returns a registered control flow graph of the given code, if one was built with the same
+   * decisions that the given checker makes.
+   *
+   * @param root the compilation unit that contains the code
+   * @param underlyingAST the code
+   * @param checker the checker that will analyze the graph
+   * @param factory the type factory that will analyze the graph
+   * @param assumeAssertionsEnabled whether the checker assumes that assertions are enabled
+   * @param assumeAssertionsDisabled whether the checker assumes that assertions are disabled
+   * @return a control flow graph of {@code underlyingAST}, or null if none is registered
+   */
+  public @Nullable ControlFlowGraph get(
+      CompilationUnitTree root,
+      UnderlyingAST underlyingAST,
+      BaseTypeChecker checker,
+      AnnotatedTypeFactory factory,
+      boolean assumeAssertionsEnabled,
+      boolean assumeAssertionsDisabled) {
+    Map<Tree, List<Entry>> graphsOfRoot = graphs.get(root);
+    List<Entry> entries = graphsOfRoot == null ? null : graphsOfRoot.get(underlyingAST.getCode());
+    if (entries == null) {
+      return null;
+    }
+    for (Entry entry : entries) {
+      if (entry.cfg.getUnderlyingAST().getKind() == underlyingAST.getKind()
+          && entry.decisions.matches(
+              checker, factory, assumeAssertionsEnabled, assumeAssertionsDisabled)) {
+        entry.decisions.registerArtificialTrees(factory);
+        return entry.cfg;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Registers a control flow graph.
+   *
+   * @param root the compilation unit that contains the code of {@code cfg}
+   * @param cfg a control flow graph
+   * @param decisions the checker-dependent decisions made while building {@code cfg}
+   */
+  public void put(CompilationUnitTree root, ControlFlowGraph cfg, Decisions decisions) {
+    graphs
+        .computeIfAbsent(root, r -> new IdentityHashMap<>())
+        .computeIfAbsent(cfg.getUnderlyingAST().getCode(), c -> new ArrayList<>(1))
+        .add(new Entry(cfg, decisions));
+  }
+
+  /** A registered control flow graph. */
+  private static final class Entry {
+    /** The control flow graph. */
+    final ControlFlowGraph cfg;
+
+    /** The checker-dependent decisions made while building {@link #cfg}. */
+    final Decisions decisions;
+
+    /**
+     * Creates a new entry.
+     *
+     * @param cfg the control flow graph
+     * @param decisions the checker-dependent decisions made while building {@code cfg}
+     */
+    Entry(ControlFlowGraph cfg, Decisions decisions) {
+      this.cfg = cfg;
+      this.decisions = decisions;
+    }
+  }
+
+  /**
+   * The checker-dependent decisions made while building one control flow graph, and the artificial
+   * trees that were created, which every type factory that uses the graph must know about (see
+   * {@link AnnotatedTypeFactory#setEnclosingElementForArtificialTree}).
+   */
+  public static final class Decisions {
+    /** Whether the checker assumed that assertions are enabled. */
+    private final boolean assumeAssertionsEnabled;
+
+    /** Whether the checker assumed that assertions are disabled. */
+    private final boolean assumeAssertionsDisabled;
+
+    /** For each assert statement, whether it was assumed to be enabled. */
+    private final Map<AssertTree, Boolean> assertions = new IdentityHashMap<>();
+
+    /** For each invoked method, whether it terminates execution. */
+    private final Map<Element, Boolean> terminatesExecution = new HashMap<>();
+
+    /** The artificial trees, with their enclosing elements. */
+    private final Map<Tree, Element> artificialTrees = new IdentityHashMap<>();
+
+    /**
+     * Creates an empty set of decisions.
+     *
+     * @param assumeAssertionsEnabled whether the checker assumes that assertions are enabled
+     * @param assumeAssertionsDisabled whether the checker assumes that assertions are disabled
+     */
+    public Decisions(boolean assumeAssertionsEnabled, boolean assumeAssertionsDisabled) {
+      this.assumeAssertionsEnabled = assumeAssertionsEnabled;
+      this.assumeAssertionsDisabled = assumeAssertionsDisabled;
+    }
+
+    /**
+     * Records whether an assert statement is assumed to be enabled.
+     *
+     * @param tree an assert statement
+     * @param enabled whether {@code tree} is assumed to be enabled
+     */
+    void recordAssertion(AssertTree tree, boolean enabled) {
+      assertions.put(tree, enabled);
+    }
+
+    /**
+     * Records whether a method terminates execution.
+     *
+     * @param methodElement an invoked method
+     * @param terminates whether {@code methodElement} terminates execution
+     */
+    void recordTerminatesExecution(Element methodElement, boolean terminates) {
+      terminatesExecution.put(methodElement, terminates);
+    }
+
+    /**
+     * Records an artificial tree.
+     *
+     * @param tree an artificial tree
+     * @param enclosing the element that encloses {@code tree}
+     */
+    void recordArtificialTree(Tree tree, Element enclosing) {
+      artificialTrees.put(tree, enclosing);
+    }
+
+    /**
+     * Returns true if the given checker makes the same decisions.
+     *
+     * @param checker a checker
+     * @param factory the type factory of {@code checker}
+     * @param assumeAssertionsEnabled whether the checker assumes that assertions are enabled
+     * @param assumeAssertionsDisabled whether the checker assumes that assertions are disabled
+     * @return true if {@code checker} makes the decisions recorded here
+     */
+    boolean matches(
+        BaseTypeChecker checker,
+        AnnotatedTypeFactory factory,
+        boolean assumeAssertionsEnabled,
+        boolean assumeAssertionsDisabled) {
+      if (assumeAssertionsEnabled != this.assumeAssertionsEnabled
+          || assumeAssertionsDisabled != this.assumeAssertionsDisabled) {
+        return false;
+      }
+      for (Map.Entry<AssertTree, Boolean> assertion : assertions.entrySet()) {
+        if (CFCFGBuilder.assumeAssertionsActivatedForAssertTree(checker, assertion.getKey())
+            != assertion.getValue()) {
+          return false;
+        }
+      }
+      for (Map.Entry<Element, Boolean> method : terminatesExecution.entrySet()) {
+        boolean terminates =
+            factory.getDeclAnnotation(method.getKey(), TerminatesExecution.class) != null;
+        if (terminates != method.getValue()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Tells the given type factory about the artificial trees.
+     *
+     * @param factory a type factory that uses the control flow graph
+     */
+    void registerArtificialTrees(AnnotatedTypeFactory factory) {
+      for (Map.Entry<Tree, Element> artificialTree : artificialTrees.entrySet()) {
+        factory.setEnclosingElementForArtificialTree(
+            artificialTree.getKey(), artificialTree.getValue());
+      }
+    }
+  }
+}
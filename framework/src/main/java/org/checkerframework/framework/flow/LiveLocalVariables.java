@@ -0,0 +1,293 @@
+package org.checkerframework.framework.flow;
+
+import com.sun.source.tree.AnnotationTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.LambdaExpressionTree;
+import com.sun.source.tree.LiteralTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreeScanner;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.dataflow.analysis.BitSetStore;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.block.Block;
+import org.checkerframework.dataflow.cfg.node.AssignmentNode;
+import org.checkerframework.dataflow.cfg.node.LocalVariableNode;
+import org.checkerframework.dataflow.cfg.node.Node;
+import org.checkerframework.dataflow.cfg.node.VariableDeclarationNode;
+import org.checkerframework.dataflow.expression.LocalVariable;
+import org.checkerframework.javacutil.TreeUtils;
+
+/**
+ * The local variables that are live at the beginning of each block of a control flow graph, that
+ * is, the variables that may be read before they are next assigned. It is used by the sparse
+ * dataflow mode (see {@link CFAbstractAnalysis#isSparse}): information about a local variable
+ * flows only from its definitions to its uses, because it is removed from every store where the
+ * variable is dead.
+ *
+ * <p>Only local variables that are declared in the control flow graph can be dead. Formal
+ * parameters, variables of an enclosing method, and variables that a lambda or a local or
+ * anonymous class captures are always considered live, since a postcondition or the analysis of
+ * another control flow graph may refer to them. So are variables whose names appear in a string in
+ * an annotation in the control flow graph, such as {@code lock} in {@code @GuardedBy("lock")}: a
+ * checker may consult the facts about a variable that a Java expression in a type names, where
+ * the variable itself is not read. {@link #addNamesInAnnotation} finds the names in annotations
+ * that are not written in the control flow graph, such as those of the refined types in a store.
+ */
+public final class LiveLocalVariables {
+
+  /** Matches a Java identifier. */
+  private static final Pattern IDENTIFIER =
+      Pattern.compile("\\p{javaJavaIdentifierStart}\\p{javaJavaIdentifierPart}*");
+
+  /** The local variables that can be dead, each with a dense index. */
+  private final BitSetStore.Domain<Element> candidates = new BitSetStore.Domain<>();
+
+  /** For each block, the indices of the candidate variables that are live at its beginning. */
+  private final IdentityHashMap<Block, BitSet> liveIn = new IdentityHashMap<>();
+
+  /**
+   * Computes the live local variables of a control flow graph.
+   *
+   * @param cfg a control flow graph
+   */
+  public LiveLocalVariables(ControlFlowGraph cfg) {
+    Set<Block> blocks = cfg.getAllBlocks();
+    Tree code = cfg.getUnderlyingAST().getCode();
+    Set<Element> captured = capturedVariables(code);
+    Set<String> namedInAnnotations = namesInAnnotations(code);
+    for (Block b : blocks) {
+      for (Node n : b.getNodes()) {
+        if (n instanceof VariableDeclarationNode) {
+          Element var = TreeUtils.elementFromDeclaration(((VariableDeclarationNode) n).getTree());
+          if (var.getKind() == ElementKind.LOCAL_VARIABLE
+              && !captured.contains(var)
+              && !namedInAnnotations.contains(var.getSimpleName().toString())) {
+            candidates.intern(var);
+          }
+        }
+      }
+    }
+
+    // Initially, the variables that each block reads before assigning them.
+    Map<Block, BitSet> defs = new IdentityHashMap<>(blocks.size());
+    for (Block b : blocks) {
+      BitSet use = new BitSet();
+      BitSet def = new BitSet();
+      computeUsesAndDefs(b, use, def);
+      liveIn.put(b, use);
+      defs.put(b, def);
+    }
+
+    // Iterate to a fixed point.
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (Block b : blocks) {
+        BitSet in = liveIn.get(b);
+        for (Block succ : b.getSuccessors()) {
+          BitSet out = (BitSet) liveIn.get(succ).clone();
+          out.andNot(defs.get(b));
+          out.andNot(in);
+          if (!out.isEmpty()) {
+            in.or(out);
+            changed = true;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Computes the candidate variables that a block reads before assigning them, and the candidate
+   * variables that it assigns.
+   *
+   * @param b a block
+   * @param use where to store the indices of the variables that {@code b} reads before assigning
+   * @param def where to store the indices of the variables that {@code b} assigns
+   */
+  private void computeUsesAndDefs(Block b, BitSet use, BitSet def) {
+    List<Node> nodes = b.getNodes();
+    // The targets of the simple assignments that have been visited. Visiting them does not read the
+    // variable. The target of a compound assignment is also its left operand.
+    Set<Node> assignedTargets = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (int i = nodes.size() - 1; i >= 0; i--) {
+      Node n = nodes.get(i);
+      if (n instanceof AssignmentNode) {
+        AssignmentNode assignment = (AssignmentNode) n;
+        Node target = assignment.getTarget();
+        if (target instanceof LocalVariableNode) {
+          int index = candidates.indexOf(((LocalVariableNode) target).getElement());
+          if (index != -1) {
+            use.clear(index);
+            def.set(index);
+          }
+          Tree.Kind kind = assignment.getTree().getKind();
+          if (kind == Tree.Kind.ASSIGNMENT || kind == Tree.Kind.VARIABLE) {
+            assignedTargets.add(target);
+          }
+        }
+      } else if (n instanceof LocalVariableNode && !assignedTargets.contains(n)) {
+        int index = candidates.indexOf(((LocalVariableNode) n).getElement());
+        if (index != -1) {
+          use.set(index);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the local variables that a lambda expression or a class declared in the given tree
+   * refers to.
+   *
+   * @param code the code of a control flow graph
+   * @return the local variables that lambdas and classes in {@code code} refer to
+   */
+  private static Set<Element> capturedVariables(@Nullable Tree code) {
+    Set<Element> result = new HashSet<>();
+    if (code == null) {
+      return result;
+    }
+    new TreeScanner<Void, Void>() {
+      /** The number of enclosing lambdas and classes within {@code code}. */
+      private int depth = 0;
+
+      @Override
+      public Void visitLambdaExpression(LambdaExpressionTree tree, Void p) {
+        depth++;
+        super.visitLambdaExpression(tree, p);
+        depth--;
+        return null;
+      }
+
+      @Override
+      public Void visitClass(ClassTree tree, Void p) {
+        depth++;
+        super.visitClass(tree, p);
+        depth--;
+        return null;
+      }
+
+      @Override
+      public Void visitIdentifier(IdentifierTree tree, Void p) {
+        if (depth > 0) {
+          Element var = TreeUtils.elementFromUse(tree);
+          if (var != null && var.getKind() == ElementKind.LOCAL_VARIABLE) {
+            result.add(var);
+          }
+        }
+        return null;
+      }
+    }.scan(code, null);
+    return result;
+  }
+
+  /**
+   * Returns the identifiers in the strings of the annotations written in the given tree. They
+   * include every local variable that a Java expression in an annotation names.
+   *
+   * @param code the code of a control flow graph
+   * @return the identifiers in the strings of the annotations in {@code code}
+   */
+  private static Set<String> namesInAnnotations(@Nullable Tree code) {
+    Set<String> result = new HashSet<>();
+    if (code == null) {
+      return result;
+    }
+    new TreeScanner<Void, Void>() {
+      /** The number of enclosing annotations within {@code code}. */
+      private int depth = 0;
+
+      @Override
+      public Void visitAnnotation(AnnotationTree tree, Void p) {
+        depth++;
+        super.visitAnnotation(tree, p);
+        depth--;
+        return null;
+      }
+
+      @Override
+      public Void visitLiteral(LiteralTree tree, Void p) {
+        if (depth > 0 && tree.getValue() instanceof String) {
+          addIdentifiers((String) tree.getValue(), result);
+        }
+        return null;
+      }
+    }.scan(code, null);
+    return result;
+  }
+
+  /**
+   * Adds the identifiers in the string elements of the given annotation to {@code names}. They
+   * include every local variable that a Java expression in the annotation names.
+   *
+   * @param anno an annotation
+   * @param names the set to add the identifiers to
+   */
+  public static void addNamesInAnnotation(AnnotationMirror anno, Set<String> names) {
+    for (AnnotationValue value : anno.getElementValues().values()) {
+      addNamesInValue(value.getValue(), names);
+    }
+  }
+
+  /**
+   * Adds the identifiers in the strings of the given annotation element value to {@code names}.
+   *
+   * @param value the value of an annotation element, or an element of an array value
+   * @param names the set to add the identifiers to
+   */
+  private static void addNamesInValue(Object value, Set<String> names) {
+    if (value instanceof String) {
+      addIdentifiers((String) value, names);
+    } else if (value instanceof List) {
+      for (Object element : (List<?>) value) {
+        if (element instanceof AnnotationValue) {
+          addNamesInValue(((AnnotationValue) element).getValue(), names);
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds the Java identifiers in the given string to {@code names}.
+   *
+   * @param s a string, such as a Java expression
+   * @param names the set to add the identifiers to
+   */
+  private static void addIdentifiers(String s, Set<String> names) {
+    Matcher matcher = IDENTIFIER.matcher(s);
+    while (matcher.find()) {
+      names.add(matcher.group());
+    }
+  }
+
+  /**
+   * Returns true if the given local variable is dead at the beginning of the given block, that is,
+   * if it is assigned before it is read on every path from the block.
+   *
+   * @param b a block of the control flow graph
+   * @param var a local variable
+   * @return true if {@code var} is dead at the beginning of {@code b}
+   */
+  public boolean isDeadBefore(Block b, LocalVariable var) {
+    int index = candidates.indexOf(var.getElement());
+    if (index == -1) {
+      return false;
+    }
+    BitSet in = liveIn.get(b);
+    return in != null && !in.get(index);
+  }
+}
@@ -111,6 +111,9 @@ public abstract class AggregateChecker extends SourceChecker {
       // error was already output. Just quit.
       return;
     }
+    if (replayCachedResults(element, tree)) {
+      return;
+    }
     for (SourceChecker checker : checkers) {
       checker.errsOnLastExit = this.errsOnLastExit;
       checker.typeProcess(element, tree);
@@ -120,6 +123,7 @@ public abstract class AggregateChecker extends SourceChecker {
       }
       this.errsOnLastExit = checker.errsOnLastExit;
     }
+    cacheResults();
   }
 
   @Override
@@ -60,6 +60,7 @@ import javax.tools.Diagnostic;
 import javax.tools.Diagnostic.Kind;
 import org.checkerframework.checker.compilermsgs.qual.CompilerMessageKey;
 import org.checkerframework.checker.formatter.qual.FormatMethod;
+import org.checkerframework.checker.interning.qual.FindDistinct;
 import org.checkerframework.checker.interning.qual.InternedDistinct;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.checker.signature.qual.CanonicalName;
@@ -74,6 +75,8 @@ import org.checkerframework.javacutil.AnnotationProvider;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.BugInCF;
 import org.checkerframework.javacutil.ElementUtils;
+import org.checkerframework.javacutil.Pair;
+import org.checkerframework.javacutil.SegmentedLRUCache;
 import org.checkerframework.javacutil.SystemUtil;
 import org.checkerframework.javacutil.TreePathUtil;
 import org.checkerframework.javacutil.TreeUtils;
@@ -123,6 +126,10 @@ import org.plumelib.util.UtilPlume;
   "assumeDeterministic",
   "assumePure",
 
+  // Soundly infer the fields that a simple, non-overridable method may modify
+  // org.checkerframework.framework.util.MethodSummary
+  "inferModifiedFields",
+
   // Whether to assume that assertions are enabled or disabled
   // org.checkerframework.framework.flow.CFCFGBuilder.CFCFGBuilder
   "assumeAssertionsAreEnabled",
@@ -200,9 +207,21 @@ import org.plumelib.util.UtilPlume;
   "resolveReflection",
 
   // Whether to use whole-program inference. Takes an argument to specify the output format:
-  // "-Ainfer=stubs" or "-Ainfer=jaifs".
+  // "-Ainfer=stubs", "-Ainfer=jaifs", "-Ainfer=ajava", or "-Ainfer=binary".
   "infer",
 
+  // Whether whole-program inference should re-check the program within the same compilation until
+  // the inferred annotations no longer change. "-AinferFixpoint=N" limits the number of rounds.
+  // Requires "-Ainfer=ajava".
+  // org.checkerframework.common.basetype.BaseTypeChecker.runInferenceToFixpoint
+  "inferFixpoint",
+
+  // Whether several javac processes, such as those of a parallel multi-module build, may write
+  // the same ajava files. Each file is locked while it is written, and the annotations that
+  // another process wrote to it are merged with this process's by least upper bound.
+  // Requires "-Ainfer=ajava".
+  "inferConcurrent",
+
   // With each warning, in addition to the concrete error key,
   // output the SuppressWarnings strings that can be used to
   // suppress that warning.
@@ -229,6 +248,15 @@ import org.plumelib.util.UtilPlume;
   // org.checkerframework.framework.type.ElementAnnotationApplier.apply
   "ignoreInvalidAnnotationLocations",
 
+  // Directory in which to store the diagnostics of each class, so that later compilations can
+  // replay them instead of type-checking classes whose dependencies did not change.
+  // org.checkerframework.framework.source.TypeCheckResultCache
+  "resultCache",
+
+  // Whether dataflow analysis should discard information about local variables where they are dead
+  // org.checkerframework.framework.flow.CFAbstractAnalysis.isSparse
+  "sparseDataflow",
+
   ///
   /// Partially-annotated libraries
   ///
@@ -431,6 +459,25 @@ public abstract class SourceChecker extends AbstractTypeProcessor implements Opt
   /** The visitor to use. */
   protected SourceVisitor<?, ?> visitor;
 
+  /**
+   * The cache of type-checking results used by {@code -AresultCache}, or null if that option was
+   * not given. Only the outermost checker has a cache; use {@link #getResultCache} to obtain it.
+   */
+  private @Nullable TypeCheckResultCache resultCache;
+
+  /**
+   * If non-null, diagnostics are not printed but stored here, by compilation unit, so that they can
+   * be printed or discarded later. Whole-program inference with {@code -AinferFixpoint} uses this
+   * to print only the diagnostics of the last round that type-checked each compilation unit.
+   */
+  protected @Nullable Map<CompilationUnitTree, List<Runnable>> deferredMessages = null;
+
+  /**
+   * The caches whose statistics {@link #printStats} prints, with the simple names of the checkers
+   * that use them. Empty unless {@code -AresourceStats} is given; see {@link #registerCache}.
+   */
+  private final List<Pair<String, SegmentedLRUCache<?, ?>>> statisticsCaches = new ArrayList<>();
+
   /**
    * Exceptions to -AwarnUnneededSuppressions processing. No warning about unneeded suppressions is
    * issued if the SuppressWarnings string matches this pattern.
@@ -840,6 +887,9 @@ public abstract class SourceChecker extends AbstractTypeProcessor implements Opt
       if (hasOption("version")) {
         messager.printMessage(Kind.NOTE, "Checker Framework " + getCheckerVersion());
       }
+      if (parentChecker == null && hasOption("resultCache")) {
+        resultCache = createResultCache();
+      }
     } catch (UserError ce) {
       logUserError(ce);
     } catch (TypeSystemError ce) {
@@ -851,6 +901,82 @@ public abstract class SourceChecker extends AbstractTypeProcessor implements Opt
     }
   }
 
+  /**
+   * Creates the cache used by {@code -AresultCache}.
+   *
+   * @return the cache used by {@code -AresultCache}, or null if the options given to this checker
+   *     are incompatible with caching
+   */
+  private @Nullable TypeCheckResultCache createResultCache() {
+    String directory = getOption("resultCache");
+    if (directory == null) {
+      throw new UserError("Must supply an argument to -AresultCache");
+    }
+    // These options have effects beyond the diagnostics for a class, which would be lost if the
+    // class were not type-checked.
+    for (String option :
+        new String[] {"infer", "warnUnneededSuppressions", "cfgviz", "flowdotdir", "ajavaChecks"}) {
+      if (hasOption(option)) {
+        message(Kind.WARNING, "Ignoring -AresultCache because -A%s was supplied", option);
+        return null;
+      }
+    }
+    return new TypeCheckResultCache(this, directory);
+  }
+
+  /**
+   * Returns the cache used by {@code -AresultCache}, which belongs to the outermost checker.
+   *
+   * @return the cache used by {@code -AresultCache}, or null if results are not being cached
+   */
+  protected final @Nullable TypeCheckResultCache getResultCache() {
+    SourceChecker outermost = this;
+    while (outermost.parentChecker != null) {
+      outermost = outermost.parentChecker;
+    }
+    return outermost.resultCache;
+  }
+
+  /**
+   * If this is the outermost checker and the diagnostics for the given class are in the {@code
+   * -AresultCache} cache, prints them and returns true. Otherwise, returns false, and the caller
+   * must type-check the class and then call {@link #cacheResults}.
+   *
+   * <p>Checkers that override {@link #typeProcess} to run other checkers call this at the
+   * beginning of their {@code typeProcess}.
+   *
+   * @param element the class that is about to be type-checked
+   * @param path the path to the class
+   * @return true if the cached diagnostics were printed, so the class need not be type-checked
+   */
+  protected final boolean replayCachedResults(TypeElement element, TreePath path) {
+    if (parentChecker != null || resultCache == null || javacErrored) {
+      return false;
+    }
+    Log log = Log.instance(((JavacProcessingEnvironment) processingEnv).getContext());
+    if (log.nerrors > this.errsOnLastExit) {
+      // Let typeProcess report that javac issued errors.
+      return false;
+    }
+    if (!resultCache.replayOrStartRecording(element, path)) {
+      return false;
+    }
+    // Print the same notes as if the class had been type-checked.
+    printFilenameNote(path.getCompilationUnit());
+    this.errsOnLastExit = log.nerrors;
+    return true;
+  }
+
+  /**
+   * Stores the diagnostics issued since the last call to {@link #replayCachedResults} in the {@code
+   * -AresultCache} cache.
+   */
+  protected final void cacheResults() {
+    if (parentChecker == null && resultCache != null) {
+      resultCache.finishRecording();
+    }
+  }
+
   /**
    * Initialize the checker.
    *
@@ -910,6 +1036,10 @@ public abstract class SourceChecker extends AbstractTypeProcessor implements Opt
   /**
    * Type-check the code using this checker's visitor.
    *
+   * <p>This method is always called on javac's thread, one top-level class at a time. The visitor,
+   * the type factory and its caches, and javac's own symbol tables are all confined to that thread,
+   * so classes cannot be type-checked concurrently within a single compilation.
+   *
    * @see Processor#process(Set, RoundEnvironment)
    */
   @Override
@@ -963,20 +1093,7 @@ public abstract class SourceChecker extends AbstractTypeProcessor implements Opt
     }
     if (p.getCompilationUnit() != currentRoot) {
       setRoot(p.getCompilationUnit());
-      if (hasOption("filenames")) {
-        // TODO: Have a command-line option to turn the timestamps on/off too, because
-        // they are nondeterministic across runs.
-
-        // Add timestamp to indicate how long operations are taking.
-        // Duplicate messages are suppressed, so this might not appear in front of every "
-        // is type-checking " message (when a file takes less than a second to type-check).
-        message(Kind.NOTE, Instant.now().toString());
-        message(
-            Kind.NOTE,
-            "%s is type-checking %s",
-            (Object) this.getClass().getSimpleName(),
-            currentRoot.getSourceFile().getName());
-      }
+      printFilenameNote(currentRoot);
     }
 
     // Visit the attributed tree.
@@ -998,6 +1115,39 @@ public abstract class SourceChecker extends AbstractTypeProcessor implements Opt
     }
   }
 
+  /**
+   * The compilation unit for which {@link #printFilenameNote} last printed a note, or null. It can
+   * differ from {@link #currentRoot} when the diagnostics of a class were replayed from the {@code
+   * -AresultCache} cache.
+   */
+  private @Nullable @InternedDistinct CompilationUnitTree filenameNoteRoot = null;
+
+  /**
+   * If the {@code -Afilenames} command-line option was given, prints a note that this checker is
+   * type-checking the given compilation unit, unless the note was just printed for it.
+   *
+   * @param root the compilation unit that is being type-checked
+   */
+  @SuppressWarnings("interning:assignment") // used in == tests
+  private void printFilenameNote(@FindDistinct CompilationUnitTree root) {
+    if (!hasOption("filenames") || root == filenameNoteRoot) {
+      return;
+    }
+    filenameNoteRoot = root;
+    // TODO: Have a command-line option to turn the timestamps on/off too, because
+    // they are nondeterministic across runs.
+
+    // Add timestamp to indicate how long operations are taking.
+    // Duplicate messages are suppressed, so this might not appear in front of every "
+    // is type-checking " message (when a file takes less than a second to type-check).
+    message(Kind.NOTE, Instant.now().toString());
+    message(
+        Kind.NOTE,
+        "%s is type-checking %s",
+        (Object) this.getClass().getSimpleName(),
+        root.getSourceFile().getName());
+  }
+
   ///////////////////////////////////////////////////////////////////////////
   /// Reporting type-checking errors; most clients use reportError() or reportWarning()
   ///
@@ -1105,6 +1255,10 @@ public abstract class SourceChecker extends AbstractTypeProcessor implements Opt
 
     if (source instanceof Element) {
       messager.printMessage(kind, messageText, (Element) source);
+      TypeCheckResultCache cache = getResultCache();
+      if (cache != null) {
+        cache.invalidate();
+      }
     } else if (source instanceof Tree) {
       printOrStoreMessage(kind, messageText, (Tree) source, currentRoot);
     } else {
@@ -1157,6 +1311,10 @@ public abstract class SourceChecker extends AbstractTypeProcessor implements Opt
       messager = processingEnv.getMessager();
     }
     messager.printMessage(Kind.ERROR, msg);
+    TypeCheckResultCache cache = getResultCache();
+    if (cache != null) {
+      cache.invalidate();
+    }
   }
 
   /**
@@ -1195,8 +1353,18 @@ public abstract class SourceChecker extends AbstractTypeProcessor implements Opt
       Tree source,
       CompilationUnitTree root,
       StackTraceElement[] trace) {
+    if (deferredMessages != null) {
+      deferredMessages
+          .computeIfAbsent(root, r -> new ArrayList<>())
+          .add(() -> printOrStoreMessage(kind, message, source, root, trace));
+      return;
+    }
     Trees.instance(processingEnv).printMessage(kind, message, source, root);
     printStackTrace(trace);
+    TypeCheckResultCache cache = getResultCache();
+    if (cache != null) {
+      cache.record(kind, message, source);
+    }
   }
 
   /**
@@ -2597,6 +2765,30 @@ public abstract class SourceChecker extends AbstractTypeProcessor implements Opt
       System.out.println("  Pool type: " + memoryPool.getType());
       System.out.println("  Peak usage: " + memoryPool.getPeakUsage());
     }
+    if (!statisticsCaches.isEmpty()) {
+      System.out.println("Cache statistics");
+      for (Pair<String, SegmentedLRUCache<?, ?>> cache : statisticsCaches) {
+        System.out.println("  " + cache.first + "." + cache.second.getStatistics());
+      }
+    }
+  }
+
+  /**
+   * Registers a cache whose statistics {@link #printStats} prints. The caches of subcheckers are
+   * registered with the outermost checker. Does nothing unless the {@code -AresourceStats} option
+   * is given.
+   *
+   * @param cache a cache of this checker
+   */
+  public void registerCache(SegmentedLRUCache<?, ?> cache) {
+    if (!hasOption("resourceStats")) {
+      return;
+    }
+    SourceChecker root = this;
+    while (root.parentChecker != null) {
+      root = root.parentChecker;
+    }
+    root.statisticsCaches.add(Pair.of(getClass().getSimpleName(), cache));
   }
 
   ///////////////////////////////////////////////////////////////////////////
@@ -0,0 +1,862 @@
+package org.checkerframework.framework.source;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreeScanner;
+import com.sun.source.util.Trees;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.IntersectionType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.type.WildcardType;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.javacutil.BugInCF;
+import org.checkerframework.javacutil.ElementUtils;
+import org.checkerframework.javacutil.TreeUtils;
+import org.checkerframework.javacutil.UserError;
+
+/**
+ * A persistent, on-disk cache of the diagnostics that a checker issued for each top-level class. It
+ * implements the {@code -AresultCache=dir} command-line option.
+ *
+ * <p>The diagnostics for a class are stored under a key that summarizes everything they can depend
+ * on: the checker and its version, the command-line options, the contents of the {@code -Astubs}
+ * and {@code -Aajava} files, the text of the compilation unit, and the definitions of every class
+ * that the class refers to, and of every class that their signatures refer to, transitively. The
+ * definition of a class consists of its signature (including annotations and private members) and
+ * the contents of the source or class files that javac read it from, so that it also covers method
+ * bodies: some checkers consult the bodies of called methods, for instance to infer their purity
+ * or the fields that they modify. When a later compilation computes the same key, the checker
+ * replays the stored diagnostics instead of type-checking the class.
+ *
+ * <p>The cache directory has a subdirectory per class, named after the class. Storing the
+ * diagnostics of a class deletes the entries of the class that an earlier compilation with the same
+ * checker and options stored, because a changed key makes them useless. Creating the cache deletes
+ * the subdirectories of the classes whose source files no longer exist.
+ *
+ * <p>A class is not cached if checking it issued a diagnostic that is not attached to a tree within
+ * the class, or if the checker crashed.
+ *
+ * <p>Only the outermost checker of a compilation (the one that has no parent checker) owns a cache.
+ * Subcheckers and the checkers of an aggregate checker are covered by their parent's cache, because
+ * a parent checker may query the results of its subcheckers while it type-checks a class.
+ */
+public final class TypeCheckResultCache {
+
+  /** The first bytes of every cache file; changing the file format requires changing this. */
+  private static final int MAGIC = 0xCF2E5C02;
+
+  /**
+   * The number of hexadecimal digits of {@link #compilationKey} that start the name of each cache
+   * file, so that the entries stored with other checkers or options can be told apart.
+   */
+  private static final int COMPILATION_KEY_PREFIX_LENGTH = 16;
+
+  /**
+   * Options that do not affect the diagnostics issued for a class, so they are omitted from the
+   * cache key.
+   */
+  private static final Set<String> IGNORED_OPTIONS =
+      new TreeSet<>(Arrays.asList("resultCache", "filenames", "resourceStats", "version"));
+
+  /** The checker that owns this cache. */
+  private final SourceChecker checker;
+
+  /** The directory that holds one file per cached class. */
+  private final Path directory;
+
+  /** The digest of the part of every key that is the same for all classes in the compilation. */
+  private final byte[] compilationKey;
+
+  /** The start of {@link #compilationKey} in hexadecimal, which starts every cache file name. */
+  private final String compilationKeyPrefix;
+
+  /**
+   * Cache of the digests computed by {@link #definitionDigest}. Declarations do not change during
+   * a compilation, so the definition of a class is digested at most once.
+   */
+  private final Map<TypeElement, byte[]> signatureDigests = new HashMap<>();
+
+  /** The file that will hold the results of the class being type-checked, or null. */
+  private @Nullable Path currentFile = null;
+
+  /** The URI of the source file of the class being type-checked. */
+  private @Nullable URI currentSource = null;
+
+  /** Maps each tree in the class being type-checked to its index in a preorder traversal. */
+  private @Nullable IdentityHashMap<Tree, Integer> currentTreeIndices = null;
+
+  /** The class being type-checked. */
+  private @Nullable TreePath currentPath = null;
+
+  /** The diagnostics recorded so far for the class being type-checked. */
+  private final List<CachedMessage> currentMessages = new ArrayList<>();
+
+  /**
+   * Creates a cache for the given checker, which must be the outermost checker of the compilation.
+   *
+   * @param checker the checker that owns the cache
+   * @param directory the directory that holds the cache files; it is created if it does not exist
+   */
+  public TypeCheckResultCache(SourceChecker checker, String directory) {
+    this.checker = checker;
+    this.directory = Paths.get(directory);
+    try {
+      Files.createDirectories(this.directory);
+    } catch (IOException e) {
+      throw new UserError("Cannot create -AresultCache directory " + directory + ": " + e);
+    }
+    this.compilationKey = computeCompilationKey();
+    this.compilationKeyPrefix =
+        toHex(compilationKey).substring(0, COMPILATION_KEY_PREFIX_LENGTH);
+    evictDeletedSources();
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  /// Replaying and recording
+  ///
+
+  /**
+   * If the diagnostics for the given class are cached, prints them and returns true. Otherwise,
+   * starts recording the diagnostics issued for the class and returns false; the caller must then
+   * type-check the class and call {@link #finishRecording}.
+   *
+   * @param element the class that is about to be type-checked
+   * @param path the path to the class
+   * @return true if the cached diagnostics were printed, so the class need not be type-checked
+   */
+  public boolean replayOrStartRecording(TypeElement element, TreePath path) {
+    currentFile = null;
+    currentSource = null;
+    currentTreeIndices = null;
+    currentPath = null;
+    currentMessages.clear();
+
+    String key;
+    try {
+      key = classKey(element, path.getCompilationUnit());
+    } catch (IOException e) {
+      return false;
+    }
+    Path file =
+        directory
+            .resolve(element.getQualifiedName().toString())
+            .resolve(compilationKeyPrefix + "-" + key);
+    List<CachedMessage> cached = read(file);
+    if (cached != null) {
+      List<Tree> trees = preorder(path.getLeaf());
+      boolean valid = true;
+      for (CachedMessage msg : cached) {
+        if (msg.treeIndex >= trees.size()) {
+          valid = false;
+          break;
+        }
+      }
+      if (valid) {
+        Trees treeUtils = checker.getTreeUtils();
+        CompilationUnitTree root = path.getCompilationUnit();
+        for (CachedMessage msg : cached) {
+          treeUtils.printMessage(msg.kind, msg.message, trees.get(msg.treeIndex), root);
+        }
+        return true;
+      }
+    }
+
+    currentFile = file;
+    currentSource = path.getCompilationUnit().getSourceFile().toUri();
+    currentPath = path;
+    return false;
+  }
+
+  /**
+   * Records a diagnostic that was printed for the class being type-checked.
+   *
+   * @param kind the kind of the diagnostic
+   * @param message the text of the diagnostic, exactly as it was printed
+   * @param source the tree at which the diagnostic was printed
+   */
+  public void record(Diagnostic.Kind kind, String message, Tree source) {
+    if (currentFile == null || currentPath == null) {
+      return;
+    }
+    if (currentTreeIndices == null) {
+      currentTreeIndices = new IdentityHashMap<>();
+      List<Tree> trees = preorder(currentPath.getLeaf());
+      for (int i = 0; i < trees.size(); i++) {
+        currentTreeIndices.put(trees.get(i), i);
+      }
+    }
+    Integer index = currentTreeIndices.get(source);
+    if (index == null) {
+      // The diagnostic is not attached to a tree of this class, so it cannot be replayed.
+      invalidate();
+      return;
+    }
+    currentMessages.add(new CachedMessage(kind, message, index));
+  }
+
+  /**
+   * Prevents the results for the class being type-checked from being cached, for instance because
+   * the checker issued a diagnostic that cannot be replayed or because the checker crashed.
+   */
+  public void invalidate() {
+    currentFile = null;
+  }
+
+  /**
+   * Writes the diagnostics recorded since the last call to {@link #replayOrStartRecording} to the
+   * cache, unless they were invalidated in the meanwhile.
+   */
+  public void finishRecording() {
+    if (currentFile != null && currentSource != null) {
+      write(currentFile, currentSource, currentMessages);
+      deleteSupersededEntries(currentFile);
+    }
+    currentFile = null;
+    currentSource = null;
+    currentTreeIndices = null;
+    currentPath = null;
+    currentMessages.clear();
+  }
+
+  /**
+   * Returns the trees of the given class, in preorder. The order is deterministic for a given
+   * source text, so an index into it identifies the same tree in a later compilation.
+   *
+   * @param classTree a class
+   * @return all trees within the class, in preorder
+   */
+  private static List<Tree> preorder(Tree classTree) {
+    List<Tree> result = new ArrayList<>();
+    new TreeScanner<Void, Void>() {
+      @Override
+      public Void scan(Tree tree, Void p) {
+        if (tree != null) {
+          result.add(tree);
+        }
+        return super.scan(tree, p);
+      }
+    }.scan(classTree, null);
+    return result;
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  /// The cache file format
+  ///
+
+  /** A diagnostic stored in the cache. */
+  private static class CachedMessage {
+    /** The kind of the diagnostic. */
+    final Diagnostic.Kind kind;
+    /** The text of the diagnostic. */
+    final String message;
+    /** The preorder index, within its class, of the tree at which the diagnostic is printed. */
+    final int treeIndex;
+
+    /**
+     * Creates a new CachedMessage.
+     *
+     * @param kind the kind of the diagnostic
+     * @param message the text of the diagnostic
+     * @param treeIndex the preorder index of the tree at which the diagnostic is printed
+     */
+    CachedMessage(Diagnostic.Kind kind, String message, int treeIndex) {
+      this.kind = kind;
+      this.message = message;
+      this.treeIndex = treeIndex;
+    }
+  }
+
+  /**
+   * Reads the diagnostics stored in the given file. The file may be truncated or corrupt, for
+   * instance if a disk filled up, so no length read from it is trusted.
+   *
+   * @param file a cache file
+   * @return the diagnostics stored in the file, or null if the file does not exist or cannot be
+   *     read
+   */
+  private static @Nullable List<CachedMessage> read(Path file) {
+    byte[] contents;
+    try {
+      contents = Files.readAllBytes(file);
+    } catch (IOException e) {
+      return null;
+    }
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(contents))) {
+      if (in.readInt() != MAGIC) {
+        return null;
+      }
+      // The URI of the source file, used only by evictDeletedSources.
+      in.readUTF();
+      int size = in.readInt();
+      // Each message takes at least 10 bytes: the kind, the tree index, and the message length.
+      if (size < 0 || size > in.available() / 10) {
+        return null;
+      }
+      List<CachedMessage> result = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        Diagnostic.Kind kind = Diagnostic.Kind.valueOf(in.readUTF());
+        int treeIndex = in.readInt();
+        int length = in.readInt();
+        if (treeIndex < 0 || length < 0 || length > in.available()) {
+          return null;
+        }
+        byte[] message = new byte[length];
+        in.readFully(message);
+        result.add(new CachedMessage(kind, new String(message, StandardCharsets.UTF_8), treeIndex));
+      }
+      return result;
+    } catch (IOException | IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Reads the URI of the source file of the class whose diagnostics are stored in the given file.
+   *
+   * @param file a cache file
+   * @return the URI of the source file, or null if the file cannot be read
+   */
+  private static @Nullable URI readSource(Path file) {
+    try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+      if (in.readInt() != MAGIC) {
+        return null;
+      }
+      return new URI(in.readUTF());
+    } catch (IOException | URISyntaxException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Writes the given diagnostics to the given file. The file is written atomically, so concurrent
+   * compilations that share the cache directory never observe a partially-written file. Failures
+   * are ignored: they only cause the class to be type-checked again next time.
+   *
+   * @param file a cache file
+   * @param source the URI of the source file of the class
+   * @param messages the diagnostics to store
+   */
+  private static void write(Path file, URI source, List<CachedMessage> messages) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeInt(MAGIC);
+      out.writeUTF(source.toString());
+      out.writeInt(messages.size());
+      for (CachedMessage msg : messages) {
+        out.writeUTF(msg.kind.name());
+        out.writeInt(msg.treeIndex);
+        byte[] message = msg.message.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(message.length);
+        out.write(message);
+      }
+    } catch (IOException e) {
+      throw new BugInCF("Cannot write to a byte array", e);
+    }
+    try {
+      Files.createDirectories(file.getParent());
+      Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+      Files.write(tmp, bytes.toByteArray());
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      // Ignore; the class will be type-checked again by the next compilation.
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  /// Eviction
+  ///
+
+  /**
+   * Deletes the other entries of the class whose entry was just written to the given file that
+   * were stored with the same checker and options. Their keys differ from the current key of the
+   * class, so they would only be used if the class and its dependencies were reverted. Failures are
+   * ignored, because another compilation may be deleting the same files.
+   *
+   * @param file the cache file that was just written
+   */
+  private void deleteSupersededEntries(Path file) {
+    String prefix = compilationKeyPrefix + "-";
+    try (Stream<Path> entries = Files.list(file.getParent())) {
+      for (Path entry : entries.collect(Collectors.toList())) {
+        String name = entry.getFileName().toString();
+        if (name.startsWith(prefix) && !name.endsWith(".tmp") && !entry.equals(file)) {
+          Files.deleteIfExists(entry);
+        }
+      }
+    } catch (IOException e) {
+      // Ignore; the entries only take up space.
+    }
+  }
+
+  /**
+   * Deletes the entries of the classes whose source files no longer exist, because the source files
+   * were deleted or renamed. Failures are ignored, because another compilation may be deleting the
+   * same files.
+   */
+  private void evictDeletedSources() {
+    try (Stream<Path> classDirs = Files.list(directory)) {
+      for (Path classDir : classDirs.collect(Collectors.toList())) {
+        if (Files.isDirectory(classDir) && isSourceDeleted(classDir)) {
+          try (Stream<Path> entries = Files.list(classDir)) {
+            for (Path entry : entries.collect(Collectors.toList())) {
+              Files.deleteIfExists(entry);
+            }
+          }
+          Files.deleteIfExists(classDir);
+        }
+      }
+    } catch (IOException e) {
+      // Ignore; the entries only take up space.
+    }
+  }
+
+  /**
+   * Returns true if the source file of the class whose entries are in the given directory no longer
+   * exists. Only source files in the file system are considered.
+   *
+   * @param classDir the directory that holds the entries of a class
+   * @return true if the source file of the class was deleted
+   * @throws IOException if the directory cannot be read
+   */
+  private static boolean isSourceDeleted(Path classDir) throws IOException {
+    try (Stream<Path> entries = Files.list(classDir)) {
+      for (Path entry : entries.collect(Collectors.toList())) {
+        URI source = readSource(entry);
+        if (source != null) {
+          return "file".equals(source.getScheme()) && !Files.exists(Paths.get(source));
+        }
+      }
+    }
+    return false;
+  }
+
+  ///////////////////////////////////////////////////////////////////////////
+  /// Cache keys
+  ///
+
+  /**
+   * Computes the digest of everything that affects the diagnostics of every class: the checker, its
+   * version, the JDK, the command-line options, and the contents of the stub and ajava files.
+   *
+   * @return the digest of the compilation-wide part of every key
+   */
+  private byte[] computeCompilationKey() {
+    MessageDigest digest = newDigest();
+    update(digest, checker.getClass().getName());
+    update(digest, System.getProperty("java.version"));
+    Properties gitProperties = checker.getProperties(checker.getClass(), "/git.properties", false);
+    update(digest, gitProperties.getProperty("git.build.version", ""));
+    update(digest, gitProperties.getProperty("git.commit.id", ""));
+    // Distinguish locally-built versions of the Checker Framework.
+    CodeSource codeSource = checker.getClass().getProtectionDomain().getCodeSource();
+    URL location = codeSource == null ? null : codeSource.getLocation();
+    if (location != null && "file".equals(location.getProtocol())) {
+      File checkerJar = new File(location.getPath());
+      update(digest, checkerJar.getPath() + ":" + checkerJar.lastModified());
+    }
+
+    ProcessingEnvironment env = checker.getProcessingEnvironment();
+    Map<String, String> options = new TreeMap<>();
+    for (Map.Entry<String, String> option : env.getOptions().entrySet()) {
+      if (!IGNORED_OPTIONS.contains(option.getKey())) {
+        options.put(option.getKey(), option.getValue());
+      }
+    }
+    update(digest, options.toString());
+
+    for (String option : new String[] {"stubs", "ajava"}) {
+      String paths = env.getOptions().get(option);
+      if (paths == null) {
+        continue;
+      }
+      for (String path : paths.split(File.pathSeparator)) {
+        update(digest, path);
+        Path root = Paths.get(path);
+        if (!Files.exists(root)) {
+          // A stub file in checker.jar, which is covered by the version above.
+          continue;
+        }
+        try (Stream<Path> files = Files.walk(root)) {
+          for (Path file :
+              files.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+            update(digest, file.toString());
+            digest.update(Files.readAllBytes(file));
+          }
+        } catch (IOException e) {
+          throw new UserError("Cannot read -A" + option + " file " + path + ": " + e);
+        }
+      }
+    }
+    return digest.digest();
+  }
+
+  /**
+   * Computes the cache key of the given class.
+   *
+   * @param element a top-level class
+   * @param root the compilation unit that contains the class
+   * @return the cache key of the class, which is also the name of its cache file
+   * @throws IOException if the source code of the compilation unit cannot be read
+   */
+  private String classKey(TypeElement element, CompilationUnitTree root) throws IOException {
+    MessageDigest digest = newDigest();
+    digest.update(compilationKey);
+    update(digest, element.getQualifiedName().toString());
+    update(digest, root.getSourceFile().getCharContent(true).toString());
+    for (TypeElement dependency : dependencies(element, root)) {
+      digest.update(definitionDigest(dependency));
+    }
+
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Returns the given bytes in hexadecimal.
+   *
+   * @param bytes some bytes
+   * @return {@code bytes} in hexadecimal
+   */
+  private static String toHex(byte[] bytes) {
+    StringBuilder result = new StringBuilder();
+    for (byte b : bytes) {
+      result.append(String.format("%02x", b));
+    }
+    return result.toString();
+  }
+
+  /**
+   * Returns the top-level classes whose declarations can affect the diagnostics of the given class:
+   * every class that it refers to, explicitly or through the type of an expression, and every class
+   * that the signatures of those classes refer to, transitively. The signatures of the classes in
+   * {@code java.*} packages are not followed, because those classes belong to the JDK, whose
+   * version is part of every key, and refer only to other classes of the JDK.
+   *
+   * @param element a top-level class
+   * @param root the compilation unit that contains the class
+   * @return the dependencies of {@code element}, sorted by name
+   */
+  private Set<TypeElement> dependencies(TypeElement element, CompilationUnitTree root) {
+    Set<TypeElement> result =
+        new TreeSet<>(
+            (t1, t2) -> t1.getQualifiedName().toString().compareTo(t2.getQualifiedName().toString()));
+    Tree classTree = checker.getTreeUtils().getTree(element);
+    if (classTree == null) {
+      return result;
+    }
+    new TreeScanner<Void, Void>() {
+      @Override
+      public Void scan(Tree tree, Void p) {
+        if (tree != null && !(tree instanceof CompilationUnitTree)) {
+          Element elt = TreeUtils.elementFromTree(tree);
+          if (elt != null) {
+            addDependency(elt, result);
+          }
+          if (tree instanceof ExpressionTree) {
+            addDependencies(TreeUtils.typeOf(tree), result);
+          }
+        }
+        return super.scan(tree, p);
+      }
+    }.scan(classTree, null);
+
+    Deque<TypeElement> worklist = new ArrayDeque<>(result);
+    while (!worklist.isEmpty()) {
+      TypeElement type = worklist.pop();
+      if (type.getQualifiedName().toString().startsWith("java.")) {
+        continue;
+      }
+      Set<TypeElement> referenced = new HashSet<>();
+      addSignatureDependencies(type, referenced);
+      for (TypeElement dependency : referenced) {
+        if (result.add(dependency)) {
+          worklist.push(dependency);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Adds the top-level classes that the signature of the given class refers to, as defined by
+   * {@link #appendSignature}, to {@code result}.
+   *
+   * @param type a class
+   * @param result the set of dependencies
+   */
+  private static void addSignatureDependencies(TypeElement type, Set<TypeElement> result) {
+    addAnnotationDependencies(type, result);
+    for (TypeParameterElement typeParam : type.getTypeParameters()) {
+      addAnnotationDependencies(typeParam, result);
+      for (TypeMirror bound : typeParam.getBounds()) {
+        addDependencies(bound, result);
+      }
+    }
+    addDependencies(type.getSuperclass(), result);
+    for (TypeMirror iface : type.getInterfaces()) {
+      addDependencies(iface, result);
+    }
+    for (Element member : type.getEnclosedElements()) {
+      if (member instanceof TypeElement) {
+        addSignatureDependencies((TypeElement) member, result);
+        continue;
+      }
+      addAnnotationDependencies(member, result);
+      addDependencies(member.asType(), result);
+      if (member instanceof ExecutableElement) {
+        for (VariableElement param : ((ExecutableElement) member).getParameters()) {
+          addAnnotationDependencies(param, result);
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds the top-level classes of the annotations of the given element to {@code result}.
+   *
+   * @param elt an element
+   * @param result the set of dependencies
+   */
+  private static void addAnnotationDependencies(Element elt, Set<TypeElement> result) {
+    for (AnnotationMirror anno : elt.getAnnotationMirrors()) {
+      addDependency(anno.getAnnotationType().asElement(), result);
+    }
+  }
+
+  /**
+   * Adds the top-level class that contains the given element to {@code result}.
+   *
+   * @param elt an element
+   * @param result the set of dependencies
+   */
+  private static void addDependency(Element elt, Set<TypeElement> result) {
+    if (elt.getKind() == ElementKind.PACKAGE || ElementUtils.enclosingTypeElement(elt) == null) {
+      return;
+    }
+    result.add(ElementUtils.toplevelEnclosingTypeElement(elt));
+  }
+
+  /**
+   * Adds the top-level classes of the classes mentioned in the given type to {@code result}.
+   *
+   * @param type a type
+   * @param result the set of dependencies
+   */
+  private static void addDependencies(@Nullable TypeMirror type, Set<TypeElement> result) {
+    if (type == null) {
+      return;
+    }
+    if (type.getKind() == TypeKind.DECLARED) {
+      DeclaredType declaredType = (DeclaredType) type;
+      addDependency(declaredType.asElement(), result);
+      for (TypeMirror typeArg : declaredType.getTypeArguments()) {
+        addDependencies(typeArg, result);
+      }
+    } else if (type.getKind() == TypeKind.ARRAY) {
+      addDependencies(((ArrayType) type).getComponentType(), result);
+    } else if (type.getKind() == TypeKind.WILDCARD) {
+      addDependencies(((WildcardType) type).getExtendsBound(), result);
+      addDependencies(((WildcardType) type).getSuperBound(), result);
+    } else if (type.getKind() == TypeKind.EXECUTABLE) {
+      // The bounds of type variables are not followed, because they may refer to the type variable
+      // itself; the bounds of the type parameters of methods are covered here instead.
+      ExecutableType methodType = (ExecutableType) type;
+      for (TypeVariable typeVar : methodType.getTypeVariables()) {
+        addDependencies(typeVar.getUpperBound(), result);
+      }
+      addDependencies(methodType.getReturnType(), result);
+      for (TypeMirror paramType : methodType.getParameterTypes()) {
+        addDependencies(paramType, result);
+      }
+      for (TypeMirror thrownType : methodType.getThrownTypes()) {
+        addDependencies(thrownType, result);
+      }
+    } else if (type.getKind() == TypeKind.INTERSECTION) {
+      for (TypeMirror bound : ((IntersectionType) type).getBounds()) {
+        addDependencies(bound, result);
+      }
+    }
+  }
+
+  /**
+   * Returns the digest of the definition of the given top-level class. It consists of the signature
+   * of the class: its annotations and those of its package, its supertypes and type parameters, and
+   * the annotated types of all its members, including private members and nested classes. It also
+   * consists of the contents of the files that javac read the class and its nested classes from:
+   * the source file if the class is defined in source code, or the class files otherwise. The
+   * contents cover method bodies, and annotations that javac does not expose as elements.
+   *
+   * @param type a top-level class
+   * @return the digest of the definition of {@code type}
+   * @throws IOException if a file that defines {@code type} cannot be read
+   */
+  private byte[] definitionDigest(TypeElement type) throws IOException {
+    byte[] result = signatureDigests.get(type);
+    if (result == null) {
+      StringBuilder signature = new StringBuilder();
+      PackageElement pkg = ElementUtils.enclosingPackage(type);
+      if (pkg != null) {
+        signature.append(pkg.getAnnotationMirrors()).append('\n');
+      }
+      appendSignature(type, signature);
+      MessageDigest digest = newDigest();
+      update(digest, signature.toString());
+      updateWithFiles(digest, type, new HashSet<>());
+      result = digest.digest();
+      signatureDigests.put(type, result);
+    }
+    return result;
+  }
+
+  /**
+   * Adds the contents of the file that javac read the given class from, and of the files of its
+   * nested classes, to the given digest.
+   *
+   * @param digest a message digest
+   * @param type a class
+   * @param visited the files that have already been added to the digest
+   * @throws IOException if one of the files cannot be read
+   */
+  private static void updateWithFiles(MessageDigest digest, TypeElement type, Set<URI> visited)
+      throws IOException {
+    JavaFileObject file = ((ClassSymbol) type).classfile;
+    if (file != null && visited.add(file.toUri())) {
+      update(digest, file.toUri().toString());
+      try (InputStream in = file.openInputStream()) {
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          digest.update(buffer, 0, read);
+        }
+      }
+      digest.update((byte) 0);
+    }
+    for (Element member : type.getEnclosedElements()) {
+      if (member instanceof TypeElement) {
+        updateWithFiles(digest, (TypeElement) member, visited);
+      }
+    }
+  }
+
+  /**
+   * Appends the signature of the given class to {@code sb}.
+   *
+   * @param type a class
+   * @param sb where to append the signature
+   */
+  private static void appendSignature(TypeElement type, StringBuilder sb) {
+    sb.append(type.getAnnotationMirrors())
+        .append(type.getModifiers())
+        .append(type.getKind())
+        .append(' ')
+        .append(type.getQualifiedName());
+    for (TypeParameterElement typeParam : type.getTypeParameters()) {
+      sb.append(' ')
+          .append(typeParam.getAnnotationMirrors())
+          .append(typeParam)
+          .append(typeParam.getBounds());
+    }
+    sb.append(" extends ").append(type.getSuperclass());
+    sb.append(" implements ").append(type.getInterfaces()).append('\n');
+
+    for (Element member : type.getEnclosedElements()) {
+      if (member instanceof TypeElement) {
+        appendSignature((TypeElement) member, sb);
+        continue;
+      }
+      sb.append(member.getAnnotationMirrors())
+          .append(member.getModifiers())
+          .append(member.getKind())
+          .append(' ')
+          .append(member.getSimpleName())
+          .append(' ')
+          .append(member.asType());
+      if (member instanceof VariableElement) {
+        // Constant values are used by, for instance, the Constant Value Checker.
+        sb.append(" = ").append(((VariableElement) member).getConstantValue());
+      } else if (member instanceof ExecutableElement) {
+        ExecutableElement method = (ExecutableElement) member;
+        for (VariableElement param : method.getParameters()) {
+          sb.append(' ').append(param.getAnnotationMirrors()).append(param.asType());
+        }
+        sb.append(" receiver ").append(method.getReceiverType());
+        sb.append(" default ").append(method.getDefaultValue());
+      }
+      sb.append('\n');
+    }
+  }
+
+  /**
+   * Creates a new SHA-256 message digest.
+   *
+   * @return a new SHA-256 message digest
+   */
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new BugInCF("SHA-256 is not supported", e);
+    }
+  }
+
+  /**
+   * Adds the given string, followed by a separator, to the given digest.
+   *
+   * @param digest a message digest
+   * @param s the string to add
+   */
+  private static void update(MessageDigest digest, String s) {
+    digest.update(s.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+  }
+}
@@ -0,0 +1,215 @@
+package org.checkerframework.framework.stub;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.javacutil.BugInCF;
+
+/**
+ * An index of the annotated JDK, which is generated when the Checker Framework is built and stored
+ * next to the annotated JDK. It maps the name of each top-level class to the file that contains its
+ * stub, and lists the {@code package-info.java} files.
+ *
+ * <p>Without the index, {@link AnnotationFileElementTypes} enumerates every entry of checker.jar at
+ * the start of each compilation to find the annotated JDK files. With the index, it reads one
+ * small resource instead, and reads each stub file through the class loader, which keeps
+ * checker.jar open, instead of opening checker.jar again for each file.
+ *
+ * <p>The index is a binary file: the int {@link #MAGIC}, the int {@link #VERSION}, the number of
+ * entries, and then, for each entry, a boolean that is true for a {@code package-info.java} file,
+ * the class name (empty for a {@code package-info.java} file), and the path of the file relative to
+ * the annotated JDK directory, with '/' as separator.
+ */
+public class AnnotatedJdkIndex {
+
+  /** The name of the index file, in the annotated JDK directory. */
+  public static final String INDEX_FILE_NAME = "jdk.index";
+
+  /** The first int of an index file. */
+  private static final int MAGIC = 0x434a4458; // "CJDX"
+
+  /** The version of the index file format. */
+  private static final int VERSION = 1;
+
+  /**
+   * The directory that contains the classes of each module, within the directory of the module.
+   */
+  private static final String CLASSES_DIR = "/share/classes/";
+
+  /**
+   * Map from the fully-qualified name of a top-level class to the path of its stub file, relative
+   * to the annotated JDK directory.
+   */
+  private final Map<String, String> classFiles;
+
+  /** The paths of the {@code package-info.java} files, relative to the annotated JDK directory. */
+  private final List<String> packageInfoFiles;
+
+  /**
+   * Creates an index.
+   *
+   * @param classFiles map from class name to relative path of its stub file
+   * @param packageInfoFiles the relative paths of the {@code package-info.java} files
+   */
+  private AnnotatedJdkIndex(Map<String, String> classFiles, List<String> packageInfoFiles) {
+    this.classFiles = classFiles;
+    this.packageInfoFiles = packageInfoFiles;
+  }
+
+  /**
+   * Returns a map from the fully-qualified name of each top-level class in the annotated JDK to the
+   * path of its stub file, relative to the annotated JDK directory.
+   *
+   * @return map from class name to relative path of its stub file
+   */
+  public Map<String, String> getClassFiles() {
+    return Collections.unmodifiableMap(classFiles);
+  }
+
+  /**
+   * Returns the paths of the {@code package-info.java} files of the annotated JDK, relative to the
+   * annotated JDK directory.
+   *
+   * @return the relative paths of the {@code package-info.java} files
+   */
+  public List<String> getPackageInfoFiles() {
+    return Collections.unmodifiableList(packageInfoFiles);
+  }
+
+  /**
+   * Returns true if the given stub file of the annotated JDK is a {@code package-info.java} file.
+   *
+   * @param relativePath the path of a stub file relative to the annotated JDK directory, with '/'
+   *     as separator
+   * @return true if {@code relativePath} is a {@code package-info.java} file
+   */
+  static boolean isPackageInfo(String relativePath) {
+    return relativePath.equals("package-info.java") || relativePath.endsWith("/package-info.java");
+  }
+
+  /**
+   * Returns the class name for a stub file of the annotated JDK, or null if it is not a class.
+   *
+   * @param relativePath the path of a stub file relative to the annotated JDK directory, with '/'
+   *     as separator, such as {@code src/java.base/share/classes/java/util/List.java}
+   * @return the class name, such as {@code java.util.List}, or null if {@code relativePath} is a
+   *     {@code package-info.java} or {@code module-info.java} file or is not in the {@code
+   *     share/classes} directory of a module
+   */
+  static @Nullable String classNameForPath(String relativePath) {
+    if (isPackageInfo(relativePath) || relativePath.endsWith("module-info.java")) {
+      return null;
+    }
+    int index = relativePath.indexOf(CLASSES_DIR);
+    if (index == -1) {
+      return null;
+    }
+    return relativePath
+        .substring(index + CLASSES_DIR.length())
+        .replace(".java", "")
+        .replace('/', '.');
+  }
+
+  /**
+   * Reads the index of the annotated JDK.
+   *
+   * @param cls a class whose class loader can find the annotated JDK
+   * @return the index, or null if the annotated JDK has no index
+   */
+  public static @Nullable AnnotatedJdkIndex read(Class<?> cls) {
+    InputStream in = cls.getResourceAsStream("/annotated-jdk/" + INDEX_FILE_NAME);
+    if (in == null) {
+      return null;
+    }
+    return read(in);
+  }
+
+  /**
+   * Reads an index of the annotated JDK, and closes the stream.
+   *
+   * @param in the contents of an index file
+   * @return the index, or null if the index was written by a different version of the Checker
+   *     Framework
+   */
+  static @Nullable AnnotatedJdkIndex read(InputStream in) {
+    try (DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+      if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+        // An index written by a different version of the Checker Framework.
+        return null;
+      }
+      int size = data.readInt();
+      Map<String, String> classFiles = new HashMap<>(size * 4 / 3 + 1);
+      List<String> packageInfoFiles = new ArrayList<>();
+      for (int i = 0; i < size; i++) {
+        boolean isPackageInfo = data.readBoolean();
+        String className = data.readUTF();
+        String path = data.readUTF();
+        if (isPackageInfo) {
+          packageInfoFiles.add(path);
+        } else {
+          classFiles.put(className, path);
+        }
+      }
+      return new AnnotatedJdkIndex(classFiles, packageInfoFiles);
+    } catch (IOException e) {
+      throw new BugInCF("cannot read the index of the annotated JDK", e);
+    }
+  }
+
+  /**
+   * Writes the index of the annotated JDK in the given directory. Called when the Checker Framework
+   * is built, after {@link JavaStubifier} has minimized the files. Files that are neither a {@code
+   * package-info.java} file nor in the {@code share/classes} directory of a module are not indexed.
+   *
+   * @param args command-line arguments: the annotated JDK directory
+   */
+  public static void main(String[] args) {
+    if (args.length != 1) {
+      System.err.println("Usage: provide the annotated JDK directory");
+      System.exit(1);
+    }
+    Path root = Paths.get(args[0]);
+    List<String> paths;
+    try (Stream<Path> walk = Files.walk(root)) {
+      paths =
+          walk.filter(p -> Files.isRegularFile(p) && p.toString().endsWith(".java"))
+              .map(p -> root.relativize(p).toString().replace(File.separatorChar, '/'))
+              .filter(p -> isPackageInfo(p) || classNameForPath(p) != null)
+              .sorted()
+              .collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new BugInCF("cannot read the annotated JDK directory " + root, e);
+    }
+
+    Path indexFile = root.resolve(INDEX_FILE_NAME);
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(paths.size());
+      for (String path : paths) {
+        String className = classNameForPath(path);
+        out.writeBoolean(className == null);
+        out.writeUTF(className == null ? "" : className);
+        out.writeUTF(path);
+      }
+    } catch (IOException e) {
+      throw new BugInCF("cannot write " + indexFile, e);
+    }
+  }
+}
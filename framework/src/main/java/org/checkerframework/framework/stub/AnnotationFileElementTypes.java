@@ -1,5 +1,6 @@
 package org.checkerframework.framework.stub;
 
+import com.github.javaparser.ParseProblemException;
 import com.sun.source.tree.CompilationUnitTree;
 import io.github.classgraph.ClassGraph;
 import java.io.File;
@@ -58,7 +59,7 @@ import org.checkerframework.javacutil.TypesUtils;
  */
 public class AnnotationFileElementTypes {
   /** Annotations from annotation files (but not from annotated JDK files). */
-  private final AnnotationFileAnnotations annotationFileAnnos;
+  private AnnotationFileAnnotations annotationFileAnnos;
 
   /**
    * Whether or not a file is currently being parsed. (If one is being parsed, don't try to parse
@@ -211,12 +212,24 @@ public class AnnotationFileElementTypes {
     parsing = false;
   }
 
+  /**
+   * Discards the annotations read from annotation files, so that the files can be parsed again.
+   * Only for an instance that does not read the annotated JDK, such as one that reads ajava files:
+   * the annotated JDK files that have been read already would not be read again.
+   */
+  public void discardAnnotationFileAnnotations() {
+    annotationFileAnnos = new AnnotationFileAnnotations();
+  }
+
   /**
    * Parses the ajava file at {@code ajavaPath} assuming {@code root} represents the compilation
    * unit of that file. Uses {@code root} to get information from javac on specific elements of
    * {@code ajavaPath}, enabling storage of more detailed annotation information than with just the
    * ajava file.
    *
+   * <p>The file is parsed into a full JavaParser AST, which is walked alongside {@code root}; only
+   * the annotations read from it are kept, and the AST is dropped when this method returns.
+   *
    * @param ajavaPath path to an ajava file
    * @param root javac tree for the compilation unit stored in {@code ajavaFile}
    */
@@ -244,15 +257,48 @@ public class AnnotationFileElementTypes {
    * @param fileType the file type of files to parse
    */
   private void parseAnnotationFiles(List<String> annotationFiles, AnnotationFileType fileType) {
-    SourceChecker checker = factory.getChecker();
-    ProcessingEnvironment processingEnv = factory.getProcessingEnv();
+    // Special case when running in jtreg.
+    String base = System.getProperty("test.src");
+    List<@Nullable List<AnnotationFileResource>> allFilesPerPath =
+        new ArrayList<>(annotationFiles.size());
+    List<AnnotationFileResource> resourcesToParse = new ArrayList<>();
     for (String path : annotationFiles) {
-      // Special case when running in jtreg.
-      String base = System.getProperty("test.src");
       String fullPath = (base == null) ? path : base + "/" + path;
-
       List<AnnotationFileResource> allFiles =
           AnnotationFileUtil.allAnnotationFiles(fullPath, fileType);
+      allFilesPerPath.add(allFiles);
+      if (allFiles != null) {
+        resourcesToParse.addAll(allFiles);
+      }
+    }
+    List<String> prefetchedKeys = parseInParallel(resourcesToParse, fileType);
+    try {
+      parseAnnotationFiles(annotationFiles, allFilesPerPath, fileType);
+    } finally {
+      StubUnitCache.discardPrefetched(prefetchedKeys);
+    }
+  }
+
+  /**
+   * Parses the given annotation files, after {@link #parseInParallel} has prefetched them.
+   *
+   * @param annotationFiles list of files and directories to parse
+   * @param allFilesPerPath the files of each element of {@code annotationFiles}, or null for an
+   *     element that was not found
+   * @param fileType the file type of files to parse
+   */
+  private void parseAnnotationFiles(
+      List<String> annotationFiles,
+      List<@Nullable List<AnnotationFileResource>> allFilesPerPath,
+      AnnotationFileType fileType) {
+    SourceChecker checker = factory.getChecker();
+    ProcessingEnvironment processingEnv = factory.getProcessingEnv();
+    // Special case when running in jtreg.
+    String base = System.getProperty("test.src");
+    for (int i = 0; i < annotationFiles.size(); i++) {
+      String path = annotationFiles.get(i);
+      String fullPath = (base == null) ? path : base + "/" + path;
+      List<AnnotationFileResource> allFiles = allFilesPerPath.get(i);
       if (allFiles != null) {
         for (AnnotationFileResource resource : allFiles) {
           InputStream annotationFileStream;
@@ -337,6 +383,36 @@ public class AnnotationFileElementTypes {
     }
   }
 
+  /**
+   * Parses the given annotation files in parallel, on the common fork-join pool, and hands their
+   * ASTs to the {@link StubUnitCache}. Only parsing happens in parallel: the files are processed
+   * later, sequentially and in order, by {@link #parseAnnotationFiles}, which obtains their ASTs
+   * from the cache.
+   *
+   * @param resources the annotation files to parse
+   * @param fileType the file type of the files
+   * @return the keys of the parsed files, to pass to {@link StubUnitCache#discardPrefetched}
+   */
+  private static List<String> parseInParallel(
+      List<AnnotationFileResource> resources, AnnotationFileType fileType) {
+    if (resources.size() < 2) {
+      return Collections.emptyList();
+    }
+    List<String> keys = Collections.synchronizedList(new ArrayList<>(resources.size()));
+    resources.parallelStream()
+        .forEach(
+            resource -> {
+              try (InputStream in = resource.getInputStream()) {
+                keys.add(
+                    StubUnitCache.prefetch(
+                        resource.getDescription(), in, fileType != AnnotationFileType.AJAVA));
+              } catch (IOException | ParseProblemException | BugInCF e) {
+                // The problem is reported when the file is processed.
+              }
+            });
+    return keys;
+  }
+
   /**
    * Returns the annotated type for {@code e} containing only annotations explicitly written in an
    * annotation file or {@code null} if {@code e} does not appear in an annotation file.
@@ -446,6 +522,7 @@ public class AnnotationFileElementTypes {
     if (parsing) {
       throw new BugInCF("parsing while calling injectRecordComponentType");
     }
+    parseEnclosingClass(elt);
 
     if (elt.getKind() == ElementKind.METHOD) {
       if (((ExecutableElement) elt).getParameters().isEmpty()) {
@@ -520,6 +597,18 @@ public class AnnotationFileElementTypes {
 
     ExecutableElement method = (ExecutableElement) elt;
 
+    // A fake override is declared in a supertype of the receiver.
+    if (annotationFileAnnos.hasPendingTypes()) {
+      TypeElement receiverElement = TypesUtils.getTypeElement(receiverType.getUnderlyingType());
+      if (receiverElement != null) {
+        processPendingTypes(getOutermostEnclosingClass(receiverElement));
+        for (TypeElement supertype :
+            ElementUtils.getSuperTypes(receiverElement, factory.getElementUtils())) {
+          processPendingTypes(getOutermostEnclosingClass(supertype));
+        }
+      }
+    }
+
     // This is a list of pairs of (where defined, method type) for fake overrides.  The second
     // element of each pair is currently always an AnnotatedExecutableType.
     List<Pair<TypeMirror, AnnotatedTypeMirror>> candidates =
@@ -598,18 +687,20 @@ public class AnnotationFileElementTypes {
 
   /**
    * Parses the outermost enclosing class of {@code e} if there exists an annotation file for it and
-   * it has not already been parsed.
+   * it has not already been parsed. Also processes the declarations of the class in stub files
+   * whose processing was deferred.
    *
    * @param e element whose outermost enclosing class will be parsed
    */
   private void parseEnclosingClass(Element e) {
-    if (!shouldParseJdk) {
-      return;
-    }
     String className = getOutermostEnclosingClass(e);
     if (className == null || className.isEmpty()) {
       return;
     }
+    processPendingTypes(className);
+    if (!shouldParseJdk) {
+      return;
+    }
     if (jdkStubFiles.containsKey(className)) {
       parseJdkStubFile(jdkStubFiles.get(className));
       jdkStubFiles.remove(className);
@@ -619,6 +710,23 @@ public class AnnotationFileElementTypes {
     }
   }
 
+  /**
+   * Processes the declarations of the given class in stub files whose processing was deferred.
+   *
+   * @param className the fully-qualified name of a top-level class, or null
+   */
+  private void processPendingTypes(@Nullable String className) {
+    if (className == null || !annotationFileAnnos.hasPendingTypes()) {
+      return;
+    }
+    parsing = true;
+    try {
+      annotationFileAnnos.processPendingTypes(className);
+    } finally {
+      parsing = false;
+    }
+  }
+
   /**
    * Returns the fully qualified name of the outermost enclosing class of {@code e} or {@code null}
    * if no such class exists for {@code e}.
@@ -677,19 +785,17 @@ public class AnnotationFileElementTypes {
    * @param jarEntryName name of the jar entry to parse
    */
   private void parseJdkJarEntry(String jarEntryName) {
-    JarURLConnection connection = getJarURLConnectionToJdk();
     parsing = true;
-    try (JarFile jarFile = connection.getJarFile()) {
-      InputStream jdkStub;
-      try {
-        jdkStub = jarFile.getInputStream(jarFile.getJarEntry(jarEntryName));
-      } catch (IOException e) {
-        throw new BugInCF("cannot open the jdk stub file " + jarEntryName, e);
+    // The class loader keeps the jar file open, so reading the entry through it is cheaper than
+    // opening the jar file again.
+    try (InputStream jdkStub = factory.getClass().getResourceAsStream("/" + jarEntryName)) {
+      if (jdkStub == null) {
+        throw new BugInCF("cannot open the jdk stub file " + jarEntryName);
       }
       AnnotationFileParser.parseJdkFileAsStub(
           jarEntryName, jdkStub, factory, factory.getProcessingEnv(), annotationFileAnnos);
     } catch (IOException e) {
-      throw new BugInCF("cannot open the Jar file " + connection.getEntryName(), e);
+      throw new BugInCF("cannot read the jdk stub file " + jarEntryName, e);
     } catch (BugInCF e) {
       throw new BugInCF("Exception while parsing " + jarEntryName + ": " + e.getMessage(), e);
     } finally {
@@ -721,7 +827,8 @@ public class AnnotationFileElementTypes {
 
   /**
    * Walk through the jdk directory and create a mapping, {@link #jdkStubFiles}, from file name to
-   * the class contained with in it. Also, parses all package-info.java files.
+   * the class contained with in it. Also, parses all package-info.java files. If the annotated JDK
+   * has an {@link AnnotatedJdkIndex}, uses it instead of walking through the directory.
    */
   private void prepJdkStubs() {
     if (!shouldParseJdk) {
@@ -735,7 +842,16 @@ public class AnnotationFileElementTypes {
         return;
       }
       throw new BugInCF("JDK not found");
-    } else if (resourceURL.getProtocol().contentEquals("jar")) {
+    }
+    boolean isJar = resourceURL.getProtocol().contentEquals("jar");
+    if (isJar || resourceURL.getProtocol().contentEquals("file")) {
+      AnnotatedJdkIndex index = AnnotatedJdkIndex.read(factory.getClass());
+      if (index != null) {
+        prepJdkFromIndex(index, resourceURL, isJar);
+        return;
+      }
+    }
+    if (isJar) {
       prepJdkFromJar(resourceURL);
     } else if (resourceURL.getProtocol().contentEquals("file")) {
       prepJdkFromFile(resourceURL);
@@ -749,6 +865,49 @@ public class AnnotationFileElementTypes {
     }
   }
 
+  /**
+   * Creates the mapping {@link #jdkStubFiles} or {@link #jdkStubFilesJar} from the index of the
+   * annotated JDK. Also, parses all package-info.java files.
+   *
+   * @param index the index of the annotated JDK
+   * @param resourceURL the URL pointing to the JDK directory
+   * @param isJar true if the JDK directory is in a jar file, false if it is in the file system
+   */
+  private void prepJdkFromIndex(AnnotatedJdkIndex index, URL resourceURL, boolean isJar) {
+    if (isJar) {
+      for (String packageInfo : index.getPackageInfoFiles()) {
+        parseJdkJarEntry("annotated-jdk/" + packageInfo);
+      }
+      for (Map.Entry<String, String> classFile : index.getClassFiles().entrySet()) {
+        String jarEntryName = "annotated-jdk/" + classFile.getValue();
+        if (parseAllJdkFiles) {
+          parseJdkJarEntry(jarEntryName);
+        } else {
+          jdkStubFilesJar.put(classFile.getKey(), jarEntryName);
+        }
+      }
+      return;
+    }
+
+    Path root;
+    try {
+      root = Paths.get(resourceURL.toURI());
+    } catch (URISyntaxException e) {
+      throw new BugInCF("Can parse URL: " + resourceURL.toString(), e);
+    }
+    for (String packageInfo : index.getPackageInfoFiles()) {
+      parseJdkStubFile(root.resolve(packageInfo));
+    }
+    for (Map.Entry<String, String> classFile : index.getClassFiles().entrySet()) {
+      Path path = root.resolve(classFile.getValue());
+      if (parseAllJdkFiles) {
+        parseJdkStubFile(path);
+      } else {
+        jdkStubFiles.put(classFile.getKey(), path);
+      }
+    }
+  }
+
   /**
    * Walk through the JDK directory and create a mapping, {@link #jdkStubFiles}, from file name to
    * the class contained with in it. Also, parses all package-info.java files.
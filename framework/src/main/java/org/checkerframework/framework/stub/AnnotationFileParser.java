@@ -258,6 +258,12 @@ public class AnnotationFileParser {
   /** Whether or not the {@code -AmergeStubsWithSource} command-line argument was passed. */
   private final boolean mergeStubsWithSource;
 
+  /**
+   * Whether to process each top-level type declaration of the file only when an element of the
+   * type is first looked up; see {@link AnnotationFileAnnotations#processPendingTypes}.
+   */
+  private final boolean processTypesLazily;
+
   /**
    * The result of calling AnnotationFileParser.parse: the annotated types and declaration
    * annotations from the file.
@@ -292,6 +298,37 @@ public class AnnotationFileParser {
 
     /** Maps fully qualified record name to information in the stub file. */
     public final Map<String, RecordStub> records = new HashMap<>();
+
+    /**
+     * Map from the fully-qualified name of a top-level type to the declarations of the type that
+     * have been parsed but not yet processed, in the order in which their files were parsed.
+     */
+    private final Map<String, List<Runnable>> pendingTypes = new HashMap<>();
+
+    /**
+     * Returns true if some type declarations have not been processed yet.
+     *
+     * @return true if some type declarations have not been processed yet
+     */
+    public boolean hasPendingTypes() {
+      return !pendingTypes.isEmpty();
+    }
+
+    /**
+     * Processes the declarations of the given top-level type that have been parsed but not yet
+     * processed, copying their annotations to this object. Must be called before the annotations
+     * of the type or its members are looked up.
+     *
+     * @param typeName the fully-qualified name of a top-level type
+     */
+    public void processPendingTypes(String typeName) {
+      List<Runnable> pending = pendingTypes.remove(typeName);
+      if (pending != null) {
+        for (Runnable processor : pending) {
+          processor.run();
+        }
+      }
+    }
   }
 
   /** Information about a record from a stub file. */
@@ -430,6 +467,14 @@ public class AnnotationFileParser {
     this.fromStubFileAnno = AnnotationBuilder.fromClass(elements, FromStubFile.class);
 
     this.mergeStubsWithSource = atypeFactory.getChecker().hasOption("mergeStubsWithSource");
+    // A file is processed eagerly if it may issue warnings about its declarations. The annotated
+    // JDK is already parsed one class at a time, when the class is first used.
+    this.processTypesLazily =
+        fileType == AnnotationFileType.BUILTIN_STUB
+            && !warnIfNotFound
+            && !warnIfStubOverwritesBytecode
+            && !warnIfStubRedundantWithBytecode
+            && !debugAnnotationFileParser;
   }
 
   /**
@@ -705,6 +750,39 @@ public class AnnotationFileParser {
         filename, inputStream, atypeFactory, processingEnv, stubAnnos, AnnotationFileType.JDK_STUB);
   }
 
+  /**
+   * Converts annotations whose names are fully-qualified, such as those in an ajava file written
+   * by whole-program inference, to AnnotationMirrors. Annotations that cannot be converted are
+   * omitted from the result.
+   *
+   * @param filename name of the ajava file that contains the annotations, used only for diagnostic
+   *     messages
+   * @param annotations syntax trees for annotations with fully-qualified names
+   * @param atypeFactory AnnotatedTypeFactory to use
+   * @param processingEnv ProcessingEnvironment to use
+   * @return the AnnotationMirrors for the annotations that are known and could be built
+   */
+  public static List<AnnotationMirror> getFullyQualifiedAnnotations(
+      String filename,
+      List<AnnotationExpr> annotations,
+      AnnotatedTypeFactory atypeFactory,
+      ProcessingEnvironment processingEnv) {
+    if (annotations.isEmpty()) {
+      return Collections.emptyList();
+    }
+    AnnotationFileParser afp =
+        new AnnotationFileParser(filename, atypeFactory, processingEnv, AnnotationFileType.AJAVA);
+    Map<String, TypeElement> allAnnotations = new HashMap<>();
+    List<AnnotationMirror> result = new ArrayList<>(annotations.size());
+    for (AnnotationExpr annotation : annotations) {
+      AnnotationMirror annoMirror = afp.getAnnotation(annotation, allAnnotations);
+      if (annoMirror != null) {
+        result.add(annoMirror);
+      }
+    }
+    return result;
+  }
+
   /**
    * Delegate to the Stub Parser to parse the annotation file to an AST, and save it in {@link
    * #stubUnit}. Also sets {@link #allAnnotations}. Does not copy annotations out of {@link
@@ -718,7 +796,13 @@ public class AnnotationFileParser {
     if (debugAnnotationFileParser) {
       stubDebug(String.format("parsing annotation file %s", filename));
     }
-    stubUnit = JavaParserUtil.parseStubUnit(inputStream);
+    // An ajava file is modified after it is parsed, so it cannot share its AST. An ajava file read
+    // as a stub file is specific to the program being checked, so its AST is not retained.
+    stubUnit =
+        fileType == AnnotationFileType.AJAVA
+            ? JavaParserUtil.parseStubUnit(inputStream)
+            : StubUnitCache.parse(
+                filename, inputStream, fileType != AnnotationFileType.AJAVA_AS_STUB);
 
     // getImportedAnnotations() also modifies importedConstants and importedTypes. This should
     // be refactored to be nicer.
@@ -776,6 +860,24 @@ public class AnnotationFileParser {
       processPackage(pDecl);
     }
 
+    if (processTypesLazily) {
+      if (cu.getTypes() != null) {
+        for (TypeDeclaration<?> typeDeclaration : cu.getTypes()) {
+          processTypeDeclLater(typeDeclaration);
+        }
+      }
+      packageAnnos = null;
+      return;
+    }
+
+    // Preserve the order in which files are processed: process the declarations of earlier files
+    // that have been deferred before the declarations of this file.
+    if (cu.getTypes() != null) {
+      for (TypeDeclaration<?> typeDeclaration : cu.getTypes()) {
+        annotationFileAnnos.processPendingTypes(topLevelTypeName(typeDeclaration));
+      }
+    }
+
     if (fileType.isStub()) {
       if (cu.getTypes() != null) {
         for (TypeDeclaration<?> typeDeclaration : cu.getTypes()) {
@@ -790,6 +892,41 @@ public class AnnotationFileParser {
     packageAnnos = null;
   }
 
+  /**
+   * Defers processing a top-level type declaration until its annotations are first looked up. Only
+   * the information that is needed to look up the declaration is computed now.
+   *
+   * @param typeDecl a top-level type declaration of the compilation unit being processed
+   */
+  private void processTypeDeclLater(TypeDeclaration<?> typeDecl) {
+    List<AnnotationExpr> packageAnnos = this.packageAnnos;
+    FqName typeBeingParsed = this.typeBeingParsed;
+    AnnotationFileAnnotations annotationFileAnnos = this.annotationFileAnnos;
+    annotationFileAnnos
+        .pendingTypes
+        .computeIfAbsent(topLevelTypeName(typeDecl), name -> new ArrayList<>(1))
+        .add(
+            () -> {
+              this.packageAnnos = packageAnnos;
+              this.typeBeingParsed = typeBeingParsed;
+              this.annotationFileAnnos = annotationFileAnnos;
+              // Not processing an ajava file, so ignore the return value.
+              processTypeDecl(typeDecl, null, null);
+              this.packageAnnos = null;
+              this.annotationFileAnnos = null;
+            });
+  }
+
+  /**
+   * Returns the fully-qualified name of a top-level type declaration.
+   *
+   * @param typeDecl a top-level type declaration
+   * @return the fully-qualified name of {@code typeDecl}
+   */
+  private static String topLevelTypeName(TypeDeclaration<?> typeDecl) {
+    return typeDecl.getFullyQualifiedName().orElse(typeDecl.getNameAsString());
+  }
+
   /**
    * Process the given package declaration: copy its annotations to {@code #annotationFileAnnos}.
    *
@@ -0,0 +1,164 @@
+package org.checkerframework.framework.stub;
+
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.ast.StubUnit;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.framework.util.JavaParserUtil;
+import org.checkerframework.javacutil.BugInCF;
+import org.checkerframework.javacutil.CollectionUtils;
+
+/**
+ * A JVM-wide cache of the JavaParser ASTs of annotation files. The checkers of a compound checker
+ * (such as the subcheckers of the Index Checker) and checkers that run in the same JVM read the
+ * same stub files and annotated JDK files; with the cache, each file is parsed once, and each
+ * checker only extracts the annotations of its own type hierarchy from the shared AST.
+ *
+ * <p>An AST is keyed by the name of its file and a hash of its contents, so a file that changes
+ * between compilations is parsed again. The ASTs are softly reachable, so the garbage collector may
+ * reclaim them when memory is low.
+ *
+ * <p>Clients must not modify the returned ASTs. For this reason, ajava files, which are modified
+ * after parsing, are not cached.
+ *
+ * <p>Files that are specific to the program being checked, such as the ajava files passed with
+ * {@code -Aajava}, are not retained: there may be one for every source file, and they are read
+ * only once per checker. They can still be parsed ahead of time, in parallel, by {@link #prefetch};
+ * the AST is then handed to the first {@link #parse} of the file and dropped. A client that
+ * prefetches files must pass the returned keys to {@link #discardPrefetched} once it has parsed
+ * them, so that the ASTs of files that it did not parse are not held forever.
+ */
+public final class StubUnitCache {
+
+  /** The maximum number of ASTs in the cache. */
+  private static final int CACHE_SIZE = 1000;
+
+  /** Map from the name and the hash of the contents of a file to its AST. */
+  private static final Map<String, SoftReference<StubUnit>> cache =
+      Collections.synchronizedMap(CollectionUtils.createLRUCache(CACHE_SIZE));
+
+  /**
+   * ASTs that have been parsed by {@link #prefetch} and not yet returned by {@link #parse}, keyed
+   * like {@link #cache}.
+   */
+  private static final Map<String, StubUnit> prefetched = new ConcurrentHashMap<>();
+
+  /** Do not instantiate. */
+  private StubUnitCache() {
+    throw new Error("Do not instantiate");
+  }
+
+  /**
+   * Returns the AST of an annotation file, parsing it if it is not in the cache.
+   *
+   * @param filename the name of the file, such as its URL
+   * @param inputStream the contents of the file
+   * @param retain whether to keep the AST in the cache for later calls
+   * @return the AST of the file; must not be modified
+   * @throws ParseProblemException if the file has parser errors
+   */
+  public static StubUnit parse(String filename, InputStream inputStream, boolean retain) {
+    byte[] contents = readAllBytes(filename, inputStream);
+    String key = filename + "#" + hash(contents);
+    @Nullable StubUnit result = prefetched.remove(key);
+    if (result == null) {
+      SoftReference<StubUnit> ref = cache.get(key);
+      result = ref == null ? null : ref.get();
+    }
+    if (result == null) {
+      // Two threads may parse the same file concurrently; either result may be cached.
+      result = JavaParserUtil.parseStubUnit(new ByteArrayInputStream(contents));
+    }
+    if (retain) {
+      cache.put(key, new SoftReference<>(result));
+    }
+    return result;
+  }
+
+  /**
+   * Parses an annotation file ahead of time, so that the next call to {@link #parse} for the file
+   * does not have to. Thread-safe.
+   *
+   * @param filename the name of the file, such as its URL
+   * @param inputStream the contents of the file
+   * @param retain whether to keep the AST in the cache after the next call to {@link #parse}
+   * @return the key of the file, to pass to {@link #discardPrefetched}
+   * @throws ParseProblemException if the file has parser errors
+   */
+  public static String prefetch(String filename, InputStream inputStream, boolean retain) {
+    byte[] contents = readAllBytes(filename, inputStream);
+    String key = filename + "#" + hash(contents);
+    SoftReference<StubUnit> ref = cache.get(key);
+    if (ref != null && ref.get() != null) {
+      return key;
+    }
+    StubUnit result = JavaParserUtil.parseStubUnit(new ByteArrayInputStream(contents));
+    if (retain) {
+      cache.put(key, new SoftReference<>(result));
+    } else {
+      prefetched.put(key, result);
+    }
+    return key;
+  }
+
+  /**
+   * Drops the ASTs of the given prefetched files that no call to {@link #parse} has consumed. If
+   * another client prefetched the same file, its next {@link #parse} of the file parses it again.
+   *
+   * @param keys keys returned by {@link #prefetch}
+   */
+  public static void discardPrefetched(Collection<String> keys) {
+    prefetched.keySet().removeAll(keys);
+  }
+
+  /**
+   * Reads the rest of the given stream.
+   *
+   * @param filename the name of the file, for error messages
+   * @param inputStream a stream
+   * @return the bytes that remain in the stream
+   */
+  private static byte[] readAllBytes(String filename, InputStream inputStream) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    try {
+      int n;
+      while ((n = inputStream.read(buffer)) != -1) {
+        out.write(buffer, 0, n);
+      }
+    } catch (IOException e) {
+      throw new BugInCF("cannot read annotation file " + filename, e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Returns a SHA-256 hash of the given bytes, as a hexadecimal string.
+   *
+   * @param contents the bytes to hash
+   * @return the hash of {@code contents}
+   */
+  private static String hash(byte[] contents) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new BugInCF("SHA-256 is not available", e);
+    }
+    StringBuilder result = new StringBuilder();
+    for (byte b : digest.digest(contents)) {
+      result.append(String.format("%02x", b));
+    }
+    return result.toString();
+  }
+}
@@ -347,7 +347,7 @@ public class AnnotatedTypeCopier
   protected void maybeCopyPrimaryAnnotations(
       final AnnotatedTypeMirror source, final AnnotatedTypeMirror dest) {
     if (copyAnnotations) {
-      dest.addAnnotations(source.getAnnotationsField());
+      dest.addAnnotationsOf(source);
     }
   }
 }
@@ -112,7 +112,6 @@ import org.checkerframework.framework.type.visitor.AnnotatedTypeCombiner;
 import org.checkerframework.framework.type.visitor.SimpleAnnotatedTypeScanner;
 import org.checkerframework.framework.util.AnnotatedTypes;
 import org.checkerframework.framework.util.AnnotationFormatter;
-import org.checkerframework.framework.util.AnnotationMirrorSet;
 import org.checkerframework.framework.util.CheckerMain;
 import org.checkerframework.framework.util.DefaultAnnotationFormatter;
 import org.checkerframework.framework.util.FieldInvariants;
@@ -121,12 +120,13 @@ import org.checkerframework.framework.util.typeinference.DefaultTypeArgumentInfe
 import org.checkerframework.framework.util.typeinference.TypeArgInferenceUtil;
 import org.checkerframework.framework.util.typeinference.TypeArgumentInference;
 import org.checkerframework.javacutil.AnnotationBuilder;
+import org.checkerframework.javacutil.AnnotationMirrorSet;
 import org.checkerframework.javacutil.AnnotationProvider;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.BugInCF;
-import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.Pair;
+import org.checkerframework.javacutil.SegmentedLRUCache;
 import org.checkerframework.javacutil.TreePathUtil;
 import org.checkerframework.javacutil.TreeUtils;
 import org.checkerframework.javacutil.TypeAnnotationUtils;
@@ -443,6 +443,12 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
   /** Size of LRU cache if one isn't specified using the atfCacheSize option. */
   private static final int DEFAULT_CACHE_SIZE = 300;
 
+  /**
+   * The estimated memory retained by one entry of a cache of annotated types, in bytes. Used to
+   * convert a percentage of the heap given by {@code -AatfCacheSize} to a number of entries.
+   */
+  private static final int ESTIMATED_CACHE_ENTRY_BYTES = 2048;
+
   /** Mapping from a Tree to its annotated type; defaults have been applied. */
   private final Map<Tree, AnnotatedTypeMirror> classAndMethodTreeCache;
 
@@ -534,14 +540,15 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     this.shouldCache = !checker.hasOption("atfDoNotCache");
     if (shouldCache) {
       int cacheSize = getCacheSize();
-      this.classAndMethodTreeCache = CollectionUtils.createLRUCache(cacheSize);
-      this.fromExpressionTreeCache = CollectionUtils.createLRUCache(cacheSize);
-      this.fromMemberTreeCache = CollectionUtils.createLRUCache(cacheSize);
-      this.fromTypeTreeCache = CollectionUtils.createLRUCache(cacheSize);
-      this.elementCache = CollectionUtils.createLRUCache(cacheSize);
-      this.elementToTreeCache = CollectionUtils.createLRUCache(cacheSize);
+      this.classAndMethodTreeCache = createCache("classAndMethodTreeCache", cacheSize);
+      this.fromExpressionTreeCache = createCache("fromExpressionTreeCache", cacheSize);
+      this.fromMemberTreeCache = createCache("fromMemberTreeCache", cacheSize);
+      this.fromTypeTreeCache = createCache("fromTypeTreeCache", cacheSize);
+      this.elementCache = createCache("elementCache", cacheSize);
+      this.elementToTreeCache = createCache("elementToTreeCache", cacheSize);
       this.annotationClassNames =
-          Collections.synchronizedMap(CollectionUtils.createLRUCache(ANNOTATION_CACHE_SIZE));
+          Collections.synchronizedMap(
+              createCache("annotationClassNames", ANNOTATION_CACHE_SIZE));
     } else {
       this.classAndMethodTreeCache = null;
       this.fromExpressionTreeCache = null;
@@ -572,13 +579,22 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         case "ajava":
           wpiOutputFormat = WholeProgramInference.OutputFormat.AJAVA;
           break;
+        case "binary":
+          wpiOutputFormat = WholeProgramInference.OutputFormat.BINARY;
+          break;
         default:
           throw new UserError(
               "Bad argument -Ainfer="
                   + inferArg
-                  + " should be one of: -Ainfer=jaifs, -Ainfer=stubs, -Ainfer=ajava");
+                  + " should be one of: -Ainfer=jaifs, -Ainfer=stubs, -Ainfer=ajava,"
+                  + " -Ainfer=binary");
       }
-      if (wpiOutputFormat == WholeProgramInference.OutputFormat.AJAVA) {
+      if (checker.hasOption("inferConcurrent")
+          && wpiOutputFormat != WholeProgramInference.OutputFormat.AJAVA) {
+        throw new UserError("-AinferConcurrent requires -Ainfer=ajava");
+      }
+      if (wpiOutputFormat == WholeProgramInference.OutputFormat.AJAVA
+          || wpiOutputFormat == WholeProgramInference.OutputFormat.BINARY) {
         wholeProgramInference =
             new WholeProgramInferenceImplementation<AnnotatedTypeMirror>(
                 this, new WholeProgramInferenceJavaParserStorage(this));
@@ -907,6 +923,27 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     }
   }
 
+  /**
+   * Discards the annotations read from ajava files and the types computed from them, and reads the
+   * ajava files again. Whole-program inference with {@code -AinferFixpoint} calls this between two
+   * rounds, after the inferred annotations have been written to ajava files. The ajava file of the
+   * current compilation unit is read again by the next call to {@link #setRoot}.
+   */
+  public void reloadAjavaFiles() {
+    ajavaTypes.discardAnnotationFileAnnotations();
+    ajavaTypes.parseAjavaFiles();
+    currentFileAjavaTypes = null;
+    cacheDeclAnnos.clear();
+    if (shouldCache) {
+      classAndMethodTreeCache.clear();
+      fromExpressionTreeCache.clear();
+      fromMemberTreeCache.clear();
+      fromTypeTreeCache.clear();
+      elementCache.clear();
+      elementToTreeCache.clear();
+    }
+  }
+
   @SideEffectFree
   @Override
   public String toString() {
@@ -1188,6 +1225,10 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
    * Returns the size for LRU caches. It is either the value supplied via the {@code -AatfCacheSize}
    * option or the default cache size.
    *
+   * <p>The option is either a number of entries, or a percentage of the maximum heap size, such as
+   * {@code -AatfCacheSize=5%}, which is converted to a number of entries using {@link
+   * #ESTIMATED_CACHE_ENTRY_BYTES}.
+   *
    * @return cache size passed as argument to checker or DEFAULT_CACHE_SIZE
    */
   protected int getCacheSize() {
@@ -1195,13 +1236,54 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     if (option == null) {
       return DEFAULT_CACHE_SIZE;
     }
+    return parseCacheSize(option, Runtime.getRuntime().maxMemory());
+  }
+
+  /**
+   * Parses the value of the {@code -AatfCacheSize} option.
+   *
+   * @param option the value of the option: a number of entries, or a percentage of {@code
+   *     maxMemory}
+   * @param maxMemory the maximum heap size, in bytes
+   * @return the number of entries that {@code option} denotes, which is positive
+   * @throws UserError if {@code option} is malformed or not positive
+   */
+  static int parseCacheSize(String option, long maxMemory) {
     try {
-      return Integer.valueOf(option);
+      if (option.endsWith("%")) {
+        double percent = Double.parseDouble(option.substring(0, option.length() - 1));
+        if (!(percent > 0 && percent <= 100)) {
+          throw new UserError("atfCacheSize percentage is not between 0 and 100: " + option);
+        }
+        long budget = (long) (maxMemory * percent / 100);
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, budget / ESTIMATED_CACHE_ENTRY_BYTES));
+      }
+      int size = Integer.parseInt(option);
+      if (size <= 0) {
+        throw new UserError("atfCacheSize is not positive: " + option);
+      }
+      return size;
     } catch (NumberFormatException ex) {
-      throw new UserError("atfCacheSize was not an integer: " + option);
+      throw new UserError("atfCacheSize was not an integer or a percentage: " + option);
     }
   }
 
+  /**
+   * Creates a cache for this type factory. Under {@code -AresourceStats}, the checker prints the
+   * cache's statistics at exit.
+   *
+   * @param <K> the type of keys
+   * @param <V> the type of values
+   * @param name the name of the cache, for statistics
+   * @param size the maximum number of entries
+   * @return a new cache
+   */
+  public <K, V> Map<K, V> createCache(String name, int size) {
+    SegmentedLRUCache<K, V> cache = new SegmentedLRUCache<>(name, size);
+    checker.registerCache(cache);
+    return cache;
+  }
+
   /**
    * Returns an AnnotatedTypeMirror representing the annotated type of {@code elt}.
    *
@@ -1250,8 +1332,11 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     if (tree == null) {
       throw new BugInCF("AnnotatedTypeFactory.getAnnotatedType: null tree");
     }
-    if (shouldCache && classAndMethodTreeCache.containsKey(tree)) {
-      return classAndMethodTreeCache.get(tree).deepCopy();
+    if (shouldCache) {
+      AnnotatedTypeMirror cached = classAndMethodTreeCache.get(tree);
+      if (cached != null) {
+        return cached.deepCopy();
+      }
     }
 
     AnnotatedTypeMirror type;
@@ -1373,6 +1458,19 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
   // They only include qualifiers explicitly inserted by the user.
   // **********************************************************************
 
+  /**
+   * If whole-program inference is enabled, records that the current compilation unit reads the
+   * annotations of the given element, so that it is type-checked again if whole-program inference
+   * changes them. Called before the caches are consulted, because a cache hit is a read too.
+   *
+   * @param elt an element whose annotations are being read
+   */
+  private void recordInferenceDependency(Element elt) {
+    if (wholeProgramInference != null && root != null) {
+      wholeProgramInference.getDependencies().recordRead(elt, root);
+    }
+  }
+
   /**
    * Creates an AnnotatedTypeMirror for {@code elt} that includes: annotations explicitly written on
    * the element and annotations from stub files.
@@ -1385,8 +1483,12 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
    * @return AnnotatedTypeMirror of the element with explicitly-written and stub file annotations
    */
   public AnnotatedTypeMirror fromElement(Element elt) {
-    if (shouldCache && elementCache.containsKey(elt)) {
-      return elementCache.get(elt).deepCopy();
+    recordInferenceDependency(elt);
+    if (shouldCache) {
+      AnnotatedTypeMirror cached = elementCache.get(elt);
+      if (cached != null) {
+        return cached.deepCopy();
+      }
     }
     if (elt.getKind() == ElementKind.PACKAGE) {
       return toAnnotatedType(elt.asType(), false);
@@ -1475,8 +1577,11 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
       throw new BugInCF(
           "AnnotatedTypeFactory.fromMember: not a method or variable declaration: " + tree);
     }
-    if (shouldCache && fromMemberTreeCache.containsKey(tree)) {
-      return fromMemberTreeCache.get(tree).deepCopy();
+    if (shouldCache) {
+      AnnotatedTypeMirror cached = fromMemberTreeCache.get(tree);
+      if (cached != null) {
+        return cached.deepCopy();
+      }
     }
     AnnotatedTypeMirror result = TypeFromTree.fromMember(this, tree);
 
@@ -1567,8 +1672,11 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
    * @see TypeFromExpressionVisitor
    */
   private AnnotatedTypeMirror fromExpression(ExpressionTree tree) {
-    if (shouldCache && fromExpressionTreeCache.containsKey(tree)) {
-      return fromExpressionTreeCache.get(tree).deepCopy();
+    if (shouldCache) {
+      AnnotatedTypeMirror cached = fromExpressionTreeCache.get(tree);
+      if (cached != null) {
+        return cached.deepCopy();
+      }
     }
 
     AnnotatedTypeMirror result = TypeFromTree.fromExpression(this, tree);
@@ -1597,8 +1705,11 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
    * @return the (partially) annotated type of the type in the AST
    */
   /*package private*/ final AnnotatedTypeMirror fromTypeTree(Tree tree) {
-    if (shouldCache && fromTypeTreeCache.containsKey(tree)) {
-      return fromTypeTreeCache.get(tree).deepCopy();
+    if (shouldCache) {
+      AnnotatedTypeMirror cached = fromTypeTreeCache.get(tree);
+      if (cached != null) {
+        return cached.deepCopy();
+      }
     }
 
     AnnotatedTypeMirror result = TypeFromTree.fromTypeTree(this, tree);
@@ -1831,9 +1942,9 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
    */
   public void postTypeVarSubstitution(
       AnnotatedTypeVariable varDecl, AnnotatedTypeVariable varUse, AnnotatedTypeMirror value) {
-    if (!varUse.getAnnotationsField().isEmpty()
-        && !AnnotationUtils.areSame(varUse.getAnnotationsField(), varDecl.getAnnotationsField())) {
-      value.replaceAnnotations(varUse.getAnnotationsField());
+    if (!varUse.getAnnotations().isEmpty()
+        && !AnnotationUtils.areSame(varUse.getAnnotations(), varDecl.getAnnotations())) {
+      value.replaceAnnotations(varUse.getAnnotations());
     }
   }
 
@@ -3440,8 +3551,12 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     if (root == null) {
       return null;
     }
-    if (shouldCache && elementToTreeCache.containsKey(elt)) {
-      return elementToTreeCache.get(elt);
+    if (shouldCache) {
+      // The cache may map an element to null.
+      Tree cached = elementToTreeCache.get(elt);
+      if (cached != null || elementToTreeCache.containsKey(elt)) {
+        return cached;
+      }
     }
 
     // Check for new declarations, outside of the AST.
@@ -3852,6 +3967,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
    * @return all of the declaration annotations on this element, written in stub files, or inherited
    */
   public Set<AnnotationMirror> getDeclAnnotations(Element elt) {
+    recordInferenceDependency(elt);
     Set<AnnotationMirror> cachedValue = cacheDeclAnnos.get(elt);
     if (cachedValue != null) {
       // Found in cache, return result.
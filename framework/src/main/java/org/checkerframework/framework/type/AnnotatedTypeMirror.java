@@ -2,9 +2,11 @@ package org.checkerframework.framework.type;
 
 import com.sun.tools.javac.code.Symbol.MethodSymbol;
 import java.lang.annotation.Annotation;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -137,11 +139,26 @@ public abstract class AnnotatedTypeMirror {
    */
   private int underlyingTypeHashCode = -1;
 
-  /** The annotations on this type. */
+  /**
+   * The annotations on this type. A copy of this type may share the set with this type; see {@link
+   * #annotationsShared}. Code that modifies the set must obtain it from {@link
+   * #mutableAnnotations}. Other code sees it through {@link #annotationsView}.
+   */
   // AnnotationMirror doesn't override Object.hashCode, .equals, so we use
   // the class name of Annotation instead.
   // Caution: Assumes that a type can have at most one AnnotationMirror for any Annotation type.
-  protected final Set<AnnotationMirror> annotations = AnnotationUtils.createAnnotationSet();
+  private Set<AnnotationMirror> annotations = AnnotationUtils.createAnnotationSet();
+
+  /** The unmodifiable view of {@link #annotations}, created lazily by {@link #getAnnotations}. */
+  private @Nullable Set<AnnotationMirror> annotationsView = null;
+
+  /**
+   * True if {@link #annotations} may be shared with another type, in which case it is copied before
+   * it is modified. Deep copies, such as those returned by the caches of {@link
+   * AnnotatedTypeFactory}, share the annotation sets of the original, so that a copy that is only
+   * read never allocates annotation sets.
+   */
+  private boolean annotationsShared = false;
 
   /** The explicitly written annotations on this type. */
   // TODO: use this to cache the result once computed? For generic types?
@@ -312,13 +329,44 @@ public abstract class AnnotatedTypeMirror {
    * @return a unmodifiable set of the annotations on this
    */
   public final Set<AnnotationMirror> getAnnotations() {
-    return Collections.unmodifiableSet(annotations);
+    if (annotationsView == null) {
+      annotationsView = new AnnotationsView();
+    }
+    return annotationsView;
+  }
+
+  /**
+   * An unmodifiable view of the annotations on this type. It reads {@link #annotations} on every
+   * access, so it reflects later modifications of this type even if they replace a shared set.
+   */
+  private class AnnotationsView extends AbstractSet<AnnotationMirror> {
+    @Override
+    public Iterator<AnnotationMirror> iterator() {
+      return Collections.unmodifiableSet(annotations).iterator();
+    }
+
+    @Override
+    public int size() {
+      return annotations.size();
+    }
+
+    @Override
+    public boolean contains(@Nullable Object o) {
+      return annotations.contains(o);
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return annotations.isEmpty();
+    }
   }
 
   /**
    * Returns the annotations on this type; mutations affect this object, because the return type is
    * an alias of the {@code annotations} field. It does not include annotations in deep types (type
-   * arguments, array components, etc).
+   * arguments, array components, etc). Like {@link #mutableAnnotations}, this gives this type its
+   * own copy of the set first if the set is shared with another type, so callers that only read the
+   * annotations should use {@link #getAnnotations} instead.
    *
    * <p>The returned set should not be modified, but for efficiency reasons modification is not
    * prevented. Modifications might break invariants.
@@ -326,9 +374,60 @@ public abstract class AnnotatedTypeMirror {
    * @return the set of the annotations on this; mutations affect this object
    */
   protected final Set<AnnotationMirror> getAnnotationsField() {
+    return mutableAnnotations();
+  }
+
+  /**
+   * Returns the annotations on this type, for modification. If the set is shared with another type,
+   * this type first gets its own copy.
+   *
+   * @return the set of the annotations on this, which is not shared with any other type
+   */
+  protected final Set<AnnotationMirror> mutableAnnotations() {
+    if (annotationsShared) {
+      Set<AnnotationMirror> copy = AnnotationUtils.createAnnotationSet();
+      copy.addAll(annotations);
+      annotations = copy;
+      annotationsShared = false;
+    }
     return annotations;
   }
 
+  /**
+   * Adds the primary annotations of {@code source}, which is being copied, to this type. If this
+   * type has no annotations yet, and adding an annotation to this type has no effect other than
+   * adding it to {@link #annotations}, then the two types share one set until either is modified.
+   * Otherwise, this is the same as {@code addAnnotations(source.getAnnotations())}.
+   *
+   * @param source a type of the same kind and type factory as this
+   */
+  /*package-private*/ final void addAnnotationsOf(AnnotatedTypeMirror source) {
+    if (source.annotations.isEmpty()) {
+      return;
+    }
+    if (annotations.isEmpty() && source.atypeFactory == atypeFactory && !addsToComponents()) {
+      source.annotationsShared = true;
+      this.annotations = source.annotations;
+      this.annotationsShared = true;
+    } else {
+      addAnnotations(source.annotations);
+    }
+  }
+
+  /**
+   * Returns true if {@link #addAnnotation(AnnotationMirror)} does more than add the annotation to
+   * {@link #annotations}, such as propagating it to bounds.
+   *
+   * @return true if adding an annotation to this type may change its component types
+   */
+  private boolean addsToComponents() {
+    return !(this instanceof AnnotatedDeclaredType
+        || this instanceof AnnotatedArrayType
+        || this instanceof AnnotatedPrimitiveType
+        || this instanceof AnnotatedNullType
+        || this instanceof AnnotatedNoType);
+  }
+
   /**
    * Returns the single annotation on this type. It does not include annotations in deep types (type
    * arguments, array components, etc).
@@ -582,7 +681,7 @@ public abstract class AnnotatedTypeMirror {
       throw new BugInCF("AnnotatedTypeMirror.addAnnotation: null argument.");
     }
     if (atypeFactory.isSupportedQualifier(a)) {
-      this.annotations.add(a);
+      mutableAnnotations().add(a);
     } else {
       AnnotationMirror aliased = atypeFactory.canonicalAnnotation(a);
       if (atypeFactory.isSupportedQualifier(aliased)) {
@@ -658,7 +757,7 @@ public abstract class AnnotatedTypeMirror {
   public boolean removeAnnotation(AnnotationMirror a) {
     AnnotationMirror anno = AnnotationUtils.getSame(annotations, a);
     if (anno != null) {
-      return annotations.remove(anno);
+      return mutableAnnotations().remove(anno);
     }
     return false;
   }
@@ -672,7 +771,7 @@ public abstract class AnnotatedTypeMirror {
   public boolean removeAnnotationByClass(Class<? extends Annotation> a) {
     AnnotationMirror anno = atypeFactory.getAnnotationByClass(annotations, a);
     if (anno != null) {
-      return annotations.remove(anno);
+      return mutableAnnotations().remove(anno);
     }
     return false;
   }
@@ -730,7 +829,12 @@ public abstract class AnnotatedTypeMirror {
    * is generally better to use {@link #removeAnnotation(AnnotationMirror)} and similar methods.
    */
   public void clearPrimaryAnnotations() {
-    annotations.clear();
+    if (annotationsShared) {
+      annotations = AnnotationUtils.createAnnotationSet();
+      annotationsShared = false;
+    } else {
+      annotations.clear();
+    }
   }
 
   @SideEffectFree
@@ -1057,7 +1161,7 @@ public abstract class AnnotatedTypeMirror {
       AnnotatedDeclaredType type =
           new AnnotatedDeclaredType(getUnderlyingType(), atypeFactory, declaration);
       if (copyAnnotations) {
-        type.addAnnotations(this.getAnnotationsField());
+        type.addAnnotationsOf(this);
       }
       type.setEnclosingType(getEnclosingType());
       type.setTypeArguments(getTypeArguments());
@@ -1429,7 +1533,7 @@ public abstract class AnnotatedTypeMirror {
     public AnnotatedArrayType shallowCopy(boolean copyAnnotations) {
       AnnotatedArrayType type = new AnnotatedArrayType((ArrayType) underlyingType, atypeFactory);
       if (copyAnnotations) {
-        type.addAnnotations(this.getAnnotationsField());
+        type.addAnnotationsOf(this);
       }
       type.setComponentType(getComponentType());
       return type;
@@ -1593,8 +1697,8 @@ public abstract class AnnotatedTypeMirror {
     // The type of "@Nullable X" has to be "@Nullable X extends @Nullable Object",
     // because otherwise the annotations are inconsistent.
     private void fixupBoundAnnotations() {
-      if (!this.getAnnotationsField().isEmpty()) {
-        Set<AnnotationMirror> newAnnos = this.getAnnotationsField();
+      if (!this.getAnnotations().isEmpty()) {
+        Set<AnnotationMirror> newAnnos = this.getAnnotations();
         if (upperBound != null) {
           upperBound.replaceAnnotations(newAnnos);
         }
@@ -1674,7 +1778,7 @@ public abstract class AnnotatedTypeMirror {
           new AnnotatedTypeVariable(((TypeVariable) underlyingType), atypeFactory, declaration);
 
       if (copyAnnotations) {
-        type.addAnnotations(this.getAnnotationsField());
+        type.addAnnotationsOf(this);
       }
 
       if (!inUpperBounds) {
@@ -1759,7 +1863,7 @@ public abstract class AnnotatedTypeMirror {
     public AnnotatedNoType shallowCopy(boolean copyAnnotations) {
       AnnotatedNoType type = new AnnotatedNoType((NoType) underlyingType, atypeFactory);
       if (copyAnnotations) {
-        type.addAnnotations(this.getAnnotationsField());
+        type.addAnnotationsOf(this);
       }
       return type;
     }
@@ -1801,7 +1905,7 @@ public abstract class AnnotatedTypeMirror {
     public AnnotatedNullType shallowCopy(boolean copyAnnotations) {
       AnnotatedNullType type = new AnnotatedNullType((NullType) underlyingType, atypeFactory);
       if (copyAnnotations) {
-        type.addAnnotations(this.getAnnotationsField());
+        type.addAnnotationsOf(this);
       }
       return type;
     }
@@ -1847,7 +1951,7 @@ public abstract class AnnotatedTypeMirror {
       AnnotatedPrimitiveType type =
           new AnnotatedPrimitiveType((PrimitiveType) underlyingType, atypeFactory);
       if (copyAnnotations) {
-        type.addAnnotations(this.getAnnotationsField());
+        type.addAnnotationsOf(this);
       }
       return type;
     }
@@ -1949,12 +2053,12 @@ public abstract class AnnotatedTypeMirror {
     }
 
     private void fixupBoundAnnotations() {
-      if (!this.getAnnotationsField().isEmpty()) {
+      if (!this.getAnnotations().isEmpty()) {
         if (superBound != null) {
-          superBound.replaceAnnotations(this.getAnnotationsField());
+          superBound.replaceAnnotations(this.getAnnotations());
         }
         if (extendsBound != null) {
-          extendsBound.replaceAnnotations(this.getAnnotationsField());
+          extendsBound.replaceAnnotations(this.getAnnotations());
         }
       }
     }
@@ -2012,7 +2116,7 @@ public abstract class AnnotatedTypeMirror {
       type.setExtendsBound(getExtendsBound().shallowCopy());
       type.setSuperBound(getSuperBound().shallowCopy());
       if (copyAnnotations) {
-        type.addAnnotations(this.getAnnotationsField());
+        type.addAnnotationsOf(this);
       }
 
       type.uninferredTypeArgument = uninferredTypeArgument;
@@ -2099,8 +2203,8 @@ public abstract class AnnotatedTypeMirror {
      * hierarchy.
      */
     private void fixupBoundAnnotations() {
-      if (!this.getAnnotationsField().isEmpty()) {
-        Set<AnnotationMirror> newAnnos = this.getAnnotationsField();
+      if (!this.getAnnotations().isEmpty()) {
+        Set<AnnotationMirror> newAnnos = this.getAnnotations();
         if (bounds != null) {
           for (AnnotatedTypeMirror bound : bounds) {
             if (bound.getKind() != TypeKind.TYPEVAR) {
@@ -2136,7 +2240,7 @@ public abstract class AnnotatedTypeMirror {
       AnnotatedIntersectionType type =
           new AnnotatedIntersectionType((IntersectionType) underlyingType, atypeFactory);
       if (copyAnnotations) {
-        type.addAnnotations(this.getAnnotationsField());
+        type.addAnnotationsOf(this);
       }
       type.bounds = this.bounds;
       return type;
@@ -2243,7 +2347,7 @@ public abstract class AnnotatedTypeMirror {
     public AnnotatedUnionType shallowCopy(boolean copyAnnotations) {
       AnnotatedUnionType type = new AnnotatedUnionType((UnionType) underlyingType, atypeFactory);
       if (copyAnnotations) {
-        type.addAnnotations(this.getAnnotationsField());
+        type.addAnnotationsOf(this);
       }
       type.alternatives = this.alternatives;
       return type;
@@ -197,7 +197,7 @@ public class BoundsInitializer {
    * @return the original primary annotations on {@code type}, or null if none
    */
   private static @Nullable Set<AnnotationMirror> saveAnnotations(final AnnotatedTypeMirror type) {
-    if (!type.getAnnotationsField().isEmpty()) {
+    if (!type.getAnnotations().isEmpty()) {
       final Set<AnnotationMirror> annos = new HashSet<>(type.getAnnotations());
       type.clearPrimaryAnnotations();
       return annos;
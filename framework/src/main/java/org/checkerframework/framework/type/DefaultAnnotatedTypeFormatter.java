@@ -389,7 +389,7 @@ public class DefaultAnnotatedTypeFormatter implements AnnotatedTypeFormatter {
 
       sb.append(
           annoFormatter.formatAnnotationString(
-              type.getAnnotationsField(), currentPrintInvisibleSetting));
+              type.getAnnotations(), currentPrintInvisibleSetting));
 
       sb.append("?");
       if (!visiting.contains(type)) {
@@ -1,13 +1,21 @@
 package org.checkerframework.framework.type;
 
+import com.sun.source.tree.CompilationUnitTree;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.type.WildcardType;
 import javax.lang.model.util.Types;
+import org.checkerframework.checker.interning.qual.EqualsMethod;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.framework.qual.Covariant;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedArrayType;
@@ -77,6 +85,18 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Void>
   /** The Covariant.value field/element. */
   final ExecutableElement covariantValueElement;
 
+  /**
+   * Caches the results of {@link #isSubtype(AnnotatedTypeMirror, AnnotatedTypeMirror)} for the
+   * current compilation unit. Null until the first query, and if the type factory does not cache.
+   */
+  private @Nullable Map<SubtypeQuery, Boolean> subtypeCache;
+
+  /** The compilation unit whose queries are in {@link #subtypeCache}. */
+  private @Nullable CompilationUnitTree subtypeCacheRoot;
+
+  /** Compares the types of the keys of {@link #subtypeCache}. */
+  private final EqualityAtmComparer queryComparer;
+
   /**
    * Creates a DefaultTypeHierarchy.
    *
@@ -102,6 +122,7 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Void>
 
     covariantValueElement =
         TreeUtils.getMethod(Covariant.class, "value", 0, checker.getProcessingEnvironment());
+    queryComparer = new QueryComparer(checker.getProcessingEnvironment().getTypeUtils());
   }
 
   /**
@@ -127,6 +148,30 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Void>
    */
   @Override
   public boolean isSubtype(final AnnotatedTypeMirror subtype, final AnnotatedTypeMirror supertype) {
+    Map<SubtypeQuery, Boolean> cache = getSubtypeCache(subtype.atypeFactory);
+    if (cache == null) {
+      return isSubtypeInAllHierarchies(subtype, supertype);
+    }
+    SubtypeQuery query = new SubtypeQuery(subtype, supertype);
+    Boolean cachedResult = cache.get(query);
+    if (cachedResult != null) {
+      return cachedResult;
+    }
+    boolean result = isSubtypeInAllHierarchies(subtype, supertype);
+    cache.put(query.deepCopy(), result);
+    return result;
+  }
+
+  /**
+   * Returns true if subtype {@literal <:} supertype in every qualifier hierarchy. Does not use
+   * {@link #subtypeCache}.
+   *
+   * @param subtype expected subtype
+   * @param supertype expected supertype
+   * @return true if subtype is a subtype of supertype or equal to it
+   */
+  private boolean isSubtypeInAllHierarchies(
+      final AnnotatedTypeMirror subtype, final AnnotatedTypeMirror supertype) {
     for (final AnnotationMirror top : qualifierHierarchy.getTopAnnotations()) {
       if (!isSubtype(subtype, supertype, top)) {
         return false;
@@ -136,6 +181,195 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Void>
     return true;
   }
 
+  /**
+   * Returns the cache of the results of {@link #isSubtype(AnnotatedTypeMirror,
+   * AnnotatedTypeMirror)}, after emptying it if the compilation unit of the type factory has
+   * changed since the last query.
+   *
+   * @param atypeFactory the type factory of the types being compared
+   * @return the cache of subtyping results, or null if the type factory does not cache
+   */
+  private @Nullable Map<SubtypeQuery, Boolean> getSubtypeCache(AnnotatedTypeFactory atypeFactory) {
+    if (!atypeFactory.shouldCache) {
+      return null;
+    }
+    if (subtypeCache == null) {
+      subtypeCache = atypeFactory.createCache("subtypeCache", atypeFactory.getCacheSize());
+    }
+    if (subtypeCacheRoot != atypeFactory.root) {
+      subtypeCache.clear();
+      subtypeCacheRoot = atypeFactory.root;
+    }
+    return subtypeCache;
+  }
+
+  /**
+   * A query to {@link #isSubtype(AnnotatedTypeMirror, AnnotatedTypeMirror)}: a key in {@link
+   * #subtypeCache}. Two queries are equal if their types are structurally equal, according to
+   * {@link #queryComparer}.
+   */
+  private final class SubtypeQuery {
+    /** The expected subtype. */
+    private final AnnotatedTypeMirror subtype;
+
+    /** The expected supertype. */
+    private final AnnotatedTypeMirror supertype;
+
+    /** The hash code of this, which depends only on the outermost level of both types. */
+    private final int hashCode;
+
+    /**
+     * Creates a query.
+     *
+     * @param subtype the expected subtype
+     * @param supertype the expected supertype
+     */
+    SubtypeQuery(AnnotatedTypeMirror subtype, AnnotatedTypeMirror supertype) {
+      this(subtype, supertype, 31 * shallowHashCode(subtype) + shallowHashCode(supertype));
+    }
+
+    /**
+     * Creates a query with the given hash code.
+     *
+     * @param subtype the expected subtype
+     * @param supertype the expected supertype
+     * @param hashCode the hash code of the query
+     */
+    private SubtypeQuery(AnnotatedTypeMirror subtype, AnnotatedTypeMirror supertype, int hashCode) {
+      this.subtype = subtype;
+      this.supertype = supertype;
+      this.hashCode = hashCode;
+    }
+
+    /**
+     * Returns a query with copies of the types of this, so that the query is not affected by later
+     * side effects on the types of this.
+     *
+     * @return a copy of this query
+     */
+    SubtypeQuery deepCopy() {
+      return new SubtypeQuery(subtype.deepCopy(), supertype.deepCopy(), hashCode);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof SubtypeQuery)) {
+        return false;
+      }
+      SubtypeQuery other = (SubtypeQuery) obj;
+      return hashCode == other.hashCode
+          && subtype.getClass() == other.subtype.getClass()
+          && supertype.getClass() == other.supertype.getClass()
+          && queryComparer.visit(subtype, other.subtype, null)
+          && queryComparer.visit(supertype, other.supertype, null);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /**
+   * Returns a hash code for a type of a {@link SubtypeQuery} that is consistent with {@link
+   * #queryComparer}. Unlike {@link AnnotatedTypeMirror#hashCode}, it neither prints the type nor
+   * visits its component types: it depends only on the kind of the underlying type, the element of
+   * a declared type or type variable, and the annotation types of the primary annotations.
+   *
+   * @param type a type
+   * @return a hash code for {@code type}
+   */
+  private static int shallowHashCode(AnnotatedTypeMirror type) {
+    TypeMirror underlyingType = type.getUnderlyingType();
+    int result = underlyingType.getKind().ordinal();
+    if (underlyingType.getKind() == TypeKind.DECLARED) {
+      result = 31 * result + System.identityHashCode(((DeclaredType) underlyingType).asElement());
+    } else if (underlyingType.getKind() == TypeKind.TYPEVAR) {
+      result = 31 * result + System.identityHashCode(((TypeVariable) underlyingType).asElement());
+    }
+    for (AnnotationMirror anno : type.getAnnotations()) {
+      // Summed, so that the hash code does not depend on the order of the annotations.
+      result += System.identityHashCode(anno.getAnnotationType().asElement());
+    }
+    return result;
+  }
+
+  /**
+   * Compares the types of {@link SubtypeQuery}s. Unlike {@link AnnotatedTypeMirror} equality, which
+   * compares underlying types by identity, compares underlying types with {@link
+   * Types#isSameType}, so that a query finds the result of an earlier query whose types were
+   * created separately. Also compares the properties of types that the visit methods of this class
+   * use: whether a declared type is raw, and whether a wildcard is an uninferred type argument.
+   */
+  private static final class QueryComparer extends EqualityAtmComparer {
+    /** The type utilities, used to compare underlying types. */
+    private final Types types;
+
+    /**
+     * Creates a comparer.
+     *
+     * @param types the type utilities
+     */
+    QueryComparer(Types types) {
+      this.types = types;
+    }
+
+    @Override
+    @EqualsMethod // to make Interning Checker permit the == comparison
+    protected boolean compare(AnnotatedTypeMirror type1, AnnotatedTypeMirror type2) {
+      if (type1 == type2) {
+        return true;
+      }
+      if (type1 == null || type2 == null) {
+        return false;
+      }
+      if (!isSameUnderlyingType(type1.getUnderlyingType(), type2.getUnderlyingType())
+          || !arePrimeAnnosEqual(type1, type2)) {
+        return false;
+      }
+      if (type1 instanceof AnnotatedDeclaredType && type2 instanceof AnnotatedDeclaredType) {
+        return ((AnnotatedDeclaredType) type1).isUnderlyingTypeRaw()
+            == ((AnnotatedDeclaredType) type2).isUnderlyingTypeRaw();
+      }
+      if (type1 instanceof AnnotatedWildcardType && type2 instanceof AnnotatedWildcardType) {
+        return ((AnnotatedWildcardType) type1).isUninferredTypeArgument()
+            == ((AnnotatedWildcardType) type2).isUninferredTypeArgument();
+      }
+      return true;
+    }
+
+    /**
+     * Returns true if the two types are the same type. {@link Types#isSameType} never considers a
+     * wildcard the same as another one, so wildcards are compared by their bounds.
+     *
+     * @param type1 a type, or null for a missing wildcard bound
+     * @param type2 a type, or null for a missing wildcard bound
+     * @return true if {@code type1} and {@code type2} are the same type
+     */
+    @EqualsMethod // to make Interning Checker permit the == comparison
+    private boolean isSameUnderlyingType(@Nullable TypeMirror type1, @Nullable TypeMirror type2) {
+      if (type1 == type2) {
+        return true;
+      }
+      if (type1 == null || type2 == null) {
+        return false;
+      }
+      if (type1.getKind() == TypeKind.WILDCARD || type2.getKind() == TypeKind.WILDCARD) {
+        if (type1.getKind() != type2.getKind()) {
+          return false;
+        }
+        WildcardType wildcard1 = (WildcardType) type1;
+        WildcardType wildcard2 = (WildcardType) type2;
+        return isSameUnderlyingType(wildcard1.getExtendsBound(), wildcard2.getExtendsBound())
+            && isSameUnderlyingType(wildcard1.getSuperBound(), wildcard2.getSuperBound());
+      }
+      return types.isSameType(type1, type2);
+    }
+  }
+
   /**
    * Returns true if {@code subtype <: supertype}, but only for the hierarchy of which {@code top}
    * is the top.
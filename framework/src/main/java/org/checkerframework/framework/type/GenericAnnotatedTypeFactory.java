@@ -31,6 +31,7 @@ import java.util.regex.Pattern;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
@@ -73,6 +74,7 @@ import org.checkerframework.framework.flow.CFAbstractTransfer;
 import org.checkerframework.framework.flow.CFAbstractValue;
 import org.checkerframework.framework.flow.CFAnalysis;
 import org.checkerframework.framework.flow.CFCFGBuilder;
+import org.checkerframework.framework.flow.CFGRegistry;
 import org.checkerframework.framework.flow.CFStore;
 import org.checkerframework.framework.flow.CFTransfer;
 import org.checkerframework.framework.flow.CFValue;
@@ -104,6 +106,7 @@ import org.checkerframework.framework.util.AnnotatedTypes;
 import org.checkerframework.framework.util.Contract;
 import org.checkerframework.framework.util.ContractsFromMethod;
 import org.checkerframework.framework.util.JavaExpressionParseUtil.JavaExpressionParseException;
+import org.checkerframework.framework.util.MethodSummary;
 import org.checkerframework.framework.util.StringToJavaExpression;
 import org.checkerframework.framework.util.defaults.QualifierDefaults;
 import org.checkerframework.framework.util.dependenttypes.DependentTypesHelper;
@@ -112,7 +115,6 @@ import org.checkerframework.framework.util.typeinference.TypeArgInferenceUtil;
 import org.checkerframework.javacutil.AnnotationBuilder;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.BugInCF;
-import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.Pair;
 import org.checkerframework.javacutil.TreePathUtil;
@@ -241,6 +243,12 @@ public abstract class GenericAnnotatedTypeFactory<
    */
   private Map<Tree, AnnotatedTypeMirror> initializerCache;
 
+  /** Caches the summaries of invoked methods. Null if {@link #shouldCache} is false. */
+  private final @Nullable Map<ExecutableElement, MethodSummary> methodSummaryCache;
+
+  /** True if method summaries include the fields that a method may modify. */
+  private final boolean inferModifiedFields;
+
   /**
    * Should the analysis assume that side effects to a value can change the type of aliased
    * references?
@@ -340,12 +348,15 @@ public abstract class GenericAnnotatedTypeFactory<
 
     if (shouldCache) {
       int cacheSize = getCacheSize();
-      flowResultAnalysisCaches = CollectionUtils.createLRUCache(cacheSize);
-      initializerCache = CollectionUtils.createLRUCache(cacheSize);
+      flowResultAnalysisCaches = createCache("flowResultAnalysisCaches", cacheSize);
+      initializerCache = createCache("initializerCache", cacheSize);
+      methodSummaryCache = createCache("methodSummaryCache", cacheSize);
     } else {
       flowResultAnalysisCaches = null;
       initializerCache = null;
+      methodSummaryCache = null;
     }
+    inferModifiedFields = checker.hasOption("inferModifiedFields");
 
     RelevantJavaTypes relevantJavaTypesAnno =
         checker.getClass().getAnnotation(RelevantJavaTypes.class);
@@ -440,6 +451,7 @@ public abstract class GenericAnnotatedTypeFactory<
       this.flowResultAnalysisCaches.clear();
       this.initializerCache.clear();
       this.defaultQualifierForUseTypeAnnotator.clearCache();
+      CFGRegistry.instance(processingEnv).setRoot(this, root);
 
       if (this.checker.getParentChecker() == null) {
         // This is an ultimate parent checker, so after it runs the shared CFG it is using
@@ -458,6 +470,15 @@ public abstract class GenericAnnotatedTypeFactory<
     }
   }
 
+  @Override
+  public void reloadAjavaFiles() {
+    super.reloadAjavaFiles();
+    if (methodSummaryCache != null) {
+      // The contracts and purity of a method may come from an ajava file.
+      methodSummaryCache.clear();
+    }
+  }
+
   /**
    * Clears the caches associated with the shared CFG for the given type factory, if it is safe to
    * do so.
@@ -618,6 +639,18 @@ public abstract class GenericAnnotatedTypeFactory<
     return (FlowAnalysis) new CFAnalysis(checker, (GenericAnnotatedTypeFactory) this);
   }
 
+  /**
+   * Returns true if the flow analysis of this factory may discard information about dead local
+   * variables when the -AsparseDataflow command-line option is supplied; see {@link
+   * CFAbstractAnalysis#isSparse}. A type factory overrides this method to return false if it, or a
+   * client of its stores, needs the refined type of a local variable after the variable's last use.
+   *
+   * @return true if the flow analysis of this factory may be sparse
+   */
+  public boolean supportsSparseDataflow() {
+    return true;
+  }
+
   /**
    * Returns the appropriate transfer function that is used for the org.checkerframework.dataflow
    * analysis.
@@ -695,6 +728,25 @@ public abstract class GenericAnnotatedTypeFactory<
     return contractsUtils;
   }
 
+  /**
+   * Returns the summary of a method: its contracts, its purity, and the fields it may modify.
+   * Summaries are computed once per method.
+   *
+   * @param method a method or constructor
+   * @return the summary of {@code method}
+   */
+  public MethodSummary getMethodSummary(ExecutableElement method) {
+    if (methodSummaryCache == null) {
+      return new MethodSummary(method, this, inferModifiedFields);
+    }
+    MethodSummary summary = methodSummaryCache.get(method);
+    if (summary == null) {
+      summary = new MethodSummary(method, this, inferModifiedFields);
+      methodSummaryCache.put(method, summary);
+    }
+    return summary;
+  }
+
   @Override
   public AnnotatedDeclaredType fromNewClass(NewClassTree newClassTree) {
     AnnotatedDeclaredType superResult = super.fromNewClass(newClassTree);
@@ -1980,10 +2032,8 @@ public abstract class GenericAnnotatedTypeFactory<
 
     VariableElement variableElt = (VariableElement) elt;
     variablesUnderInitialization.add(variableElt);
-    AnnotatedTypeMirror initializerType;
-    if (shouldCache && initializerCache.containsKey(initializer)) {
-      initializerType = initializerCache.get(initializer);
-    } else {
+    AnnotatedTypeMirror initializerType = shouldCache ? initializerCache.get(initializer) : null;
+    if (initializerType == null) {
       // When this method is called by getAnnotatedTypeLhs, flow is turned off.
       // Turn it back on so the type of the initializer is the refined type.
       boolean oldUseFlow = useFlow;
@@ -2271,7 +2321,8 @@ public abstract class GenericAnnotatedTypeFactory<
    * Cache of types found that are relevantTypes or subclass of supported types. Used so that
    * isSubtype doesn't need to be called repeatedly on the same types.
    */
-  private Map<TypeMirror, Boolean> allFoundRelevantTypes = CollectionUtils.createLRUCache(300);
+  private Map<TypeMirror, Boolean> allFoundRelevantTypes =
+      createCache("allFoundRelevantTypes", 300);
 
   /**
    * Returns true if users can write type annotations from this type system on the given Java type.
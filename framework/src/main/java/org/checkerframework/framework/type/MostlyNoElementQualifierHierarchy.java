@@ -92,7 +92,7 @@ public abstract class MostlyNoElementQualifierHierarchy extends ElementQualifier
     if (lub.hasElements()) {
       return leastUpperBoundWithElements(a1, qual1, a2, qual2, lub);
     }
-    return kindToElementlessQualifier.get(lub);
+    return getElementlessQualifier(lub);
   }
 
   /**
@@ -129,7 +129,7 @@ public abstract class MostlyNoElementQualifierHierarchy extends ElementQualifier
     if (glb.hasElements()) {
       return greatestLowerBoundWithElements(a1, qual1, a2, qual2, glb);
     }
-    return kindToElementlessQualifier.get(glb);
+    return getElementlessQualifier(glb);
   }
 
   /**
@@ -45,6 +45,13 @@ public class NoElementQualifierHierarchy implements QualifierHierarchy {
   /** Mapping from {@link QualifierKind} to its corresponding {@link AnnotationMirror}. */
   protected final Map<QualifierKind, AnnotationMirror> kindToAnnotationMirror;
 
+  /**
+   * The annotation mirror of each qualifier kind, indexed by {@link QualifierKind#getOrdinal()}.
+   * Contains the same information as {@link #kindToAnnotationMirror}, but is faster to query. Null
+   * at the ordinals of no qualifier kind.
+   */
+  private final @Nullable AnnotationMirror[] annotationMirrorsByOrdinal;
+
   /** Set of all annotations in all the hierarchies. */
   protected final Set<? extends AnnotationMirror> qualifiers;
 
@@ -59,6 +66,7 @@ public class NoElementQualifierHierarchy implements QualifierHierarchy {
     this.qualifierKindHierarchy = createQualifierKindHierarchy(qualifierClasses);
 
     this.kindToAnnotationMirror = createAnnotationMirrors(elements);
+    this.annotationMirrorsByOrdinal = createAnnotationMirrorsByOrdinal(kindToAnnotationMirror);
     this.qualifiers =
         AnnotationUtils.createUnmodifiableAnnotationSet(kindToAnnotationMirror.values());
 
@@ -99,6 +107,28 @@ public class NoElementQualifierHierarchy implements QualifierHierarchy {
     return Collections.unmodifiableMap(quals);
   }
 
+  /**
+   * Converts a mapping from qualifier kind to annotation mirror to an array indexed by {@link
+   * QualifierKind#getOrdinal()}. Qualifier kinds without an ordinal are left out.
+   *
+   * @param kindToAnnotationMirror a mapping from every qualifier kind to its annotation mirror
+   * @return an array that holds the same information as {@code kindToAnnotationMirror}
+   */
+  @RequiresNonNull("this.qualifierKindHierarchy")
+  private @Nullable AnnotationMirror[] createAnnotationMirrorsByOrdinal(
+      @UnderInitialization NoElementQualifierHierarchy this,
+      Map<QualifierKind, AnnotationMirror> kindToAnnotationMirror) {
+    @Nullable AnnotationMirror[] result =
+        new AnnotationMirror[qualifierKindHierarchy.allQualifierKinds().size()];
+    for (Map.Entry<QualifierKind, AnnotationMirror> entry : kindToAnnotationMirror.entrySet()) {
+      int ordinal = entry.getKey().getOrdinal();
+      if (ordinal >= 0 && ordinal < result.length) {
+        result[ordinal] = entry.getValue();
+      }
+    }
+    return result;
+  }
+
   /**
    * Creates and returns the unmodifiable set of top {@link AnnotationMirror}s.
    *
@@ -152,6 +182,24 @@ public class NoElementQualifierHierarchy implements QualifierHierarchy {
     return kind;
   }
 
+  /**
+   * Returns the annotation mirror for the given qualifier kind.
+   *
+   * @param kind a qualifier kind in this
+   * @return the annotation mirror for {@code kind}
+   */
+  @SuppressWarnings(
+      "nullness:return" // every QualifierKind is a key in its corresponding kindToAnnotationMirror
+  )
+  private AnnotationMirror getAnnotationMirror(QualifierKind kind) {
+    int ordinal = kind.getOrdinal();
+    AnnotationMirror result =
+        ordinal >= 0 && ordinal < annotationMirrorsByOrdinal.length
+            ? annotationMirrorsByOrdinal[ordinal]
+            : null;
+    return result != null ? result : kindToAnnotationMirror.get(kind);
+  }
+
   @Override
   public @Nullable AnnotationMirror findAnnotationInSameHierarchy(
       Collection<? extends AnnotationMirror> annos, AnnotationMirror annotationMirror) {
@@ -177,12 +225,9 @@ public class NoElementQualifierHierarchy implements QualifierHierarchy {
   }
 
   @Override
-  @SuppressWarnings(
-      "nullness:return" // every QualifierKind is a key in its corresponding kindToAnnotationMirror
-  )
   public AnnotationMirror getTopAnnotation(AnnotationMirror start) {
     QualifierKind kind = getQualifierKind(start);
-    return kindToAnnotationMirror.get(kind.getTop());
+    return getAnnotationMirror(kind.getTop());
   }
 
   @Override
@@ -191,12 +236,9 @@ public class NoElementQualifierHierarchy implements QualifierHierarchy {
   }
 
   @Override
-  @SuppressWarnings(
-      "nullness:return" // every QualifierKind is a key in its corresponding kindToAnnotationMirror
-  )
   public AnnotationMirror getBottomAnnotation(AnnotationMirror start) {
     QualifierKind kind = getQualifierKind(start);
-    return kindToAnnotationMirror.get(kind.getBottom());
+    return getAnnotationMirror(kind.getBottom());
   }
 
   @Override
@@ -205,7 +247,7 @@ public class NoElementQualifierHierarchy implements QualifierHierarchy {
     if (poly == null) {
       return null;
     }
-    return kindToAnnotationMirror.get(poly);
+    return getAnnotationMirror(poly);
   }
 
   @Override
@@ -229,7 +271,7 @@ public class NoElementQualifierHierarchy implements QualifierHierarchy {
     if (lub == null) {
       return null;
     }
-    return kindToAnnotationMirror.get(lub);
+    return getAnnotationMirror(lub);
   }
 
   @Override
@@ -240,6 +282,6 @@ public class NoElementQualifierHierarchy implements QualifierHierarchy {
     if (glb == null) {
       return null;
     }
-    return kindToAnnotationMirror.get(glb);
+    return getAnnotationMirror(glb);
   }
 }
@@ -7,26 +7,23 @@ import org.checkerframework.checker.nullness.qual.Nullable;
  * Stores the result of {@link StructuralEqualityComparer} for type arguments.
  *
  * <p>This is similar to {@link SubtypeVisitHistory}, but both true and false results are stored.
+ * Both are stored in one {@link TypePairFlags}, with two bits per qualifier hierarchy.
  */
 public class StructuralEqualityVisitHistory {
 
+  /** The largest index of a qualifier hierarchy: two bits of a {@code long} per hierarchy. */
+  private static final int MAX_HIERARCHY_INDEX = Long.SIZE / 2 - 1;
+
   /**
-   * Types in this history are structurally equal. (Use {@link SubtypeVisitHistory} because it
-   * implements a {@code Map<Pair<AnnotatedTypeMirror, AnnotatedTypeMirror>,
-   * Set<AnnotationMirror>>})
-   */
-  private final SubtypeVisitHistory trueHistory;
-  /**
-   * Types in this history are not structurally equal. (Use {@link SubtypeVisitHistory} because it
-   * implements a {@code Map<Pair<AnnotatedTypeMirror, AnnotatedTypeMirror>,
-   * Set<AnnotationMirror>>})
+   * Maps pairs of types to the results of comparing them. For the hierarchy with index {@code i},
+   * bit {@code 2 * i} is set if the types are structurally equal, and bit {@code 2 * i + 1} is set
+   * if they are not.
    */
-  private final SubtypeVisitHistory falseHistory;
+  private final TypePairFlags history;
 
   /** Creates an empty StructuralEqualityVisitHistory. */
   public StructuralEqualityVisitHistory() {
-    this.trueHistory = new SubtypeVisitHistory();
-    this.falseHistory = new SubtypeVisitHistory();
+    this.history = new TypePairFlags();
   }
 
   /**
@@ -44,12 +41,14 @@ public class StructuralEqualityVisitHistory {
       final AnnotatedTypeMirror type2,
       AnnotationMirror hierarchy,
       boolean result) {
-    if (result) {
-      trueHistory.put(type1, type2, hierarchy, true);
-      falseHistory.remove(type1, type2, hierarchy);
-    } else {
-      falseHistory.put(type1, type2, hierarchy, true);
-      trueHistory.remove(type1, type2, hierarchy);
+    int index = history.hierarchyIndex(hierarchy, true, MAX_HIERARCHY_INDEX);
+    long trueBit = 1L << (2 * index);
+    long falseBit = trueBit << 1;
+    int hashCode = TypePairFlags.hashCode(type1, type2);
+    long flags = history.get(type1, type2, hashCode);
+    long newFlags = (flags & ~(trueBit | falseBit)) | (result ? trueBit : falseBit);
+    if (newFlags != flags) {
+      history.set(type1, type2, hashCode, newFlags);
     }
   }
 
@@ -68,9 +67,15 @@ public class StructuralEqualityVisitHistory {
       final AnnotatedTypeMirror type1,
       final AnnotatedTypeMirror type2,
       AnnotationMirror hierarchy) {
-    if (falseHistory.contains(type1, type2, hierarchy)) {
+    int index = history.hierarchyIndex(hierarchy, false, MAX_HIERARCHY_INDEX);
+    if (index < 0) {
+      return null;
+    }
+    long flags = history.get(type1, type2, TypePairFlags.hashCode(type1, type2));
+    long trueBit = 1L << (2 * index);
+    if ((flags & (trueBit << 1)) != 0) {
       return false;
-    } else if (trueHistory.contains(type1, type2, hierarchy)) {
+    } else if ((flags & trueBit) != 0) {
       return true;
     }
     return null;
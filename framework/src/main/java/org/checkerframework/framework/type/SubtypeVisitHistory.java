@@ -1,11 +1,6 @@
 package org.checkerframework.framework.type;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
-import org.checkerframework.javacutil.Pair;
 
 /**
  * THIS CLASS IS DESIGNED FOR USE WITH DefaultTypeHierarchy, DefaultRawnessComparer, and
@@ -25,14 +20,18 @@ import org.checkerframework.javacutil.Pair;
 // TODO: do we need to clear the history sometimes?
 public class SubtypeVisitHistory {
 
+  /** The largest index of a qualifier hierarchy: one bit of a {@code long} per hierarchy. */
+  private static final int MAX_HIERARCHY_INDEX = Long.SIZE - 1;
+
   /**
-   * The keys are pairs of types; the value is the set of qualifier hierarchy roots for which the
-   * key is in a subtype relationship.
+   * Maps pairs of types to the qualifier hierarchy roots for which the pair is in a subtype
+   * relationship. The bit {@code 1L << i} stands for the hierarchy with index {@code i}.
    */
-  private final Map<Pair<AnnotatedTypeMirror, AnnotatedTypeMirror>, Set<AnnotationMirror>> visited;
+  private final TypePairFlags visited;
 
+  /** Creates an empty SubtypeVisitHistory. */
   public SubtypeVisitHistory() {
-    this.visited = new HashMap<>();
+    this.visited = new TypePairFlags();
   }
 
   /**
@@ -55,15 +54,11 @@ public class SubtypeVisitHistory {
       // Only store information about subtype relations that hold.
       return;
     }
-    Pair<AnnotatedTypeMirror, AnnotatedTypeMirror> key = Pair.of(type1, type2);
-    Set<AnnotationMirror> hit = visited.get(key);
-
-    if (hit != null) {
-      hit.add(currentTop);
-    } else {
-      hit = new HashSet<>();
-      hit.add(currentTop);
-      this.visited.put(key, hit);
+    long bit = 1L << visited.hierarchyIndex(currentTop, true, MAX_HIERARCHY_INDEX);
+    int hashCode = TypePairFlags.hashCode(type1, type2);
+    long flags = visited.get(type1, type2, hashCode);
+    if ((flags & bit) == 0) {
+      visited.set(type1, type2, hashCode, flags | bit);
     }
   }
 
@@ -72,13 +67,15 @@ public class SubtypeVisitHistory {
       final AnnotatedTypeMirror type1,
       final AnnotatedTypeMirror type2,
       AnnotationMirror currentTop) {
-    Pair<AnnotatedTypeMirror, AnnotatedTypeMirror> key = Pair.of(type1, type2);
-    Set<AnnotationMirror> hit = visited.get(key);
-    if (hit != null) {
-      hit.remove(currentTop);
-      if (hit.isEmpty()) {
-        visited.remove(key);
-      }
+    int index = visited.hierarchyIndex(currentTop, false, MAX_HIERARCHY_INDEX);
+    if (index < 0) {
+      return;
+    }
+    long bit = 1L << index;
+    int hashCode = TypePairFlags.hashCode(type1, type2);
+    long flags = visited.get(type1, type2, hashCode);
+    if ((flags & bit) != 0) {
+      visited.set(type1, type2, hashCode, flags & ~bit);
     }
   }
 
@@ -92,13 +89,16 @@ public class SubtypeVisitHistory {
       final AnnotatedTypeMirror type1,
       final AnnotatedTypeMirror type2,
       AnnotationMirror currentTop) {
-    Pair<AnnotatedTypeMirror, AnnotatedTypeMirror> key = Pair.of(type1, type2);
-    Set<AnnotationMirror> hit = visited.get(key);
-    return hit != null && hit.contains(currentTop);
+    int index = visited.hierarchyIndex(currentTop, false, MAX_HIERARCHY_INDEX);
+    if (index < 0) {
+      return false;
+    }
+    long flags = visited.get(type1, type2, TypePairFlags.hashCode(type1, type2));
+    return (flags & (1L << index)) != 0;
   }
 
   @Override
   public String toString() {
-    return "VisitHistory( " + visited + " )";
+    return "VisitHistory( " + visited.toString(1) + " )";
   }
 }
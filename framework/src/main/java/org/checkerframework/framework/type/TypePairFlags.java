@@ -0,0 +1,254 @@
+package org.checkerframework.framework.type;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.lang.model.element.AnnotationMirror;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.javacutil.BugInCF;
+
+/**
+ * A map from pairs of types to sets of flags, used by {@link SubtypeVisitHistory} and {@link
+ * StructuralEqualityVisitHistory}. The flags of a pair are the bits of a {@code long}; the
+ * histories use one or two bits per qualifier hierarchy, numbered by {@link #hierarchyIndex}.
+ *
+ * <p>Pairs are compared like {@code Pair<AnnotatedTypeMirror, AnnotatedTypeMirror>}: the types
+ * are compared with {@link AnnotatedTypeMirror#equals}, so an equivalent pair of types finds the
+ * same flags. The map is an open-addressing hash table with linear probing, so adding, querying,
+ * and removing a pair allocates nothing, unless the table grows.
+ */
+final class TypePairFlags {
+
+  /** The initial number of slots of the table; a power of 2. */
+  private static final int INITIAL_CAPACITY = 16;
+
+  /** The first types of the pairs, indexed by slot; null for empty slots. */
+  private @Nullable AnnotatedTypeMirror[] firstTypes = new AnnotatedTypeMirror[INITIAL_CAPACITY];
+
+  /** The second types of the pairs, indexed by slot. */
+  private @Nullable AnnotatedTypeMirror[] secondTypes = new AnnotatedTypeMirror[INITIAL_CAPACITY];
+
+  /** The hash codes of the pairs, indexed by slot. */
+  private int[] hashCodes = new int[INITIAL_CAPACITY];
+
+  /** The flags of the pairs, indexed by slot; never 0 for a non-empty slot. */
+  private long[] flags = new long[INITIAL_CAPACITY];
+
+  /** The number of pairs in the table. */
+  private int size = 0;
+
+  /**
+   * The tops of the qualifier hierarchies that have been given an index by {@link
+   * #hierarchyIndex}. Compared by identity, because they are the tops of one qualifier hierarchy.
+   */
+  private final List<AnnotationMirror> hierarchies = new ArrayList<>(2);
+
+  /**
+   * Returns the index of the qualifier hierarchy with the given top.
+   *
+   * @param top the top of a qualifier hierarchy
+   * @param add whether to give the hierarchy an index if it does not have one yet
+   * @param maxIndex the largest index that the caller can represent
+   * @return the index of the hierarchy of {@code top}, or -1 if it has none and {@code add} is
+   *     false
+   */
+  int hierarchyIndex(AnnotationMirror top, boolean add, int maxIndex) {
+    for (int i = 0; i < hierarchies.size(); i++) {
+      if (hierarchies.get(i) == top) {
+        return i;
+      }
+    }
+    if (!add) {
+      return -1;
+    }
+    if (hierarchies.size() > maxIndex) {
+      throw new BugInCF("Too many qualifier hierarchies in a visit history: " + hierarchies);
+    }
+    hierarchies.add(top);
+    return hierarchies.size() - 1;
+  }
+
+  /**
+   * Returns the hash code of a pair of types.
+   *
+   * @param type1 the first type
+   * @param type2 the second type
+   * @return the hash code of the pair
+   */
+  static int hashCode(AnnotatedTypeMirror type1, AnnotatedTypeMirror type2) {
+    return 31 * type1.hashCode() + type2.hashCode();
+  }
+
+  /**
+   * Returns the slot of the given pair, or {@code -(slot) - 1} for the empty slot where it would be
+   * inserted.
+   *
+   * @param type1 the first type
+   * @param type2 the second type
+   * @param hashCode the hash code of the pair, from {@link #hashCode(AnnotatedTypeMirror,
+   *     AnnotatedTypeMirror)}
+   * @return the slot of the pair, or {@code -(slot) - 1}
+   */
+  private int find(AnnotatedTypeMirror type1, AnnotatedTypeMirror type2, int hashCode) {
+    int mask = firstTypes.length - 1;
+    int slot = spread(hashCode) & mask;
+    AnnotatedTypeMirror first;
+    while ((first = firstTypes[slot]) != null) {
+      if (hashCodes[slot] == hashCode && first.equals(type1)) {
+        AnnotatedTypeMirror second = secondTypes[slot];
+        if (second != null && second.equals(type2)) {
+          return slot;
+        }
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -slot - 1;
+  }
+
+  /**
+   * Returns the flags of the given pair.
+   *
+   * @param type1 the first type
+   * @param type2 the second type
+   * @param hashCode the hash code of the pair, from {@link #hashCode(AnnotatedTypeMirror,
+   *     AnnotatedTypeMirror)}
+   * @return the flags of the pair, or 0 if the pair is not in the table
+   */
+  long get(AnnotatedTypeMirror type1, AnnotatedTypeMirror type2, int hashCode) {
+    if (size == 0) {
+      return 0;
+    }
+    int slot = find(type1, type2, hashCode);
+    return slot >= 0 ? flags[slot] : 0;
+  }
+
+  /**
+   * Sets the flags of the given pair. Setting the flags to 0 removes the pair from the table.
+   *
+   * @param type1 the first type
+   * @param type2 the second type
+   * @param hashCode the hash code of the pair, from {@link #hashCode(AnnotatedTypeMirror,
+   *     AnnotatedTypeMirror)}
+   * @param newFlags the new flags of the pair
+   */
+  void set(AnnotatedTypeMirror type1, AnnotatedTypeMirror type2, int hashCode, long newFlags) {
+    int slot = find(type1, type2, hashCode);
+    if (slot >= 0) {
+      if (newFlags != 0) {
+        flags[slot] = newFlags;
+      } else {
+        delete(slot);
+      }
+      return;
+    }
+    if (newFlags == 0) {
+      return;
+    }
+    slot = -slot - 1;
+    firstTypes[slot] = type1;
+    secondTypes[slot] = type2;
+    hashCodes[slot] = hashCode;
+    flags[slot] = newFlags;
+    size++;
+    if (4 * size > 3 * firstTypes.length) {
+      resize();
+    }
+  }
+
+  /**
+   * Empties the given slot, and moves later pairs of its probe sequence back so that lookups do
+   * not stop at the empty slot.
+   *
+   * @param slot a non-empty slot
+   */
+  private void delete(int slot) {
+    int mask = firstTypes.length - 1;
+    int gap = slot;
+    int next = (gap + 1) & mask;
+    while (firstTypes[next] != null) {
+      int home = spread(hashCodes[next]) & mask;
+      // Move the pair at next to the gap if its home slot is not cyclically in (gap, next].
+      if (((next - home) & mask) >= ((next - gap) & mask)) {
+        firstTypes[gap] = firstTypes[next];
+        secondTypes[gap] = secondTypes[next];
+        hashCodes[gap] = hashCodes[next];
+        flags[gap] = flags[next];
+        gap = next;
+      }
+      next = (next + 1) & mask;
+    }
+    firstTypes[gap] = null;
+    secondTypes[gap] = null;
+    flags[gap] = 0;
+    size--;
+  }
+
+  /** Doubles the number of slots of the table. */
+  private void resize() {
+    @Nullable AnnotatedTypeMirror[] oldFirstTypes = firstTypes;
+    @Nullable AnnotatedTypeMirror[] oldSecondTypes = secondTypes;
+    int[] oldHashCodes = hashCodes;
+    long[] oldFlags = flags;
+    int capacity = 2 * oldFirstTypes.length;
+    firstTypes = new AnnotatedTypeMirror[capacity];
+    secondTypes = new AnnotatedTypeMirror[capacity];
+    hashCodes = new int[capacity];
+    flags = new long[capacity];
+    int mask = capacity - 1;
+    for (int i = 0; i < oldFirstTypes.length; i++) {
+      if (oldFirstTypes[i] == null) {
+        continue;
+      }
+      int slot = spread(oldHashCodes[i]) & mask;
+      while (firstTypes[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+      firstTypes[slot] = oldFirstTypes[i];
+      secondTypes[slot] = oldSecondTypes[i];
+      hashCodes[slot] = oldHashCodes[i];
+      flags[slot] = oldFlags[i];
+    }
+  }
+
+  /**
+   * Mixes the high bits of a hash code into its low bits, which select the slot.
+   *
+   * @param hashCode a hash code
+   * @return the hash code with its bits mixed
+   */
+  private static int spread(int hashCode) {
+    int h = hashCode * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Returns a description of the pairs in this table and the qualifier hierarchies of each pair.
+   *
+   * @param bitsPerHierarchy the number of flags that the client uses per hierarchy
+   * @return a description of the contents of this table
+   */
+  String toString(int bitsPerHierarchy) {
+    StringBuilder result = new StringBuilder("{");
+    boolean first = true;
+    for (int slot = 0; slot < firstTypes.length; slot++) {
+      if (firstTypes[slot] == null) {
+        continue;
+      }
+      if (!first) {
+        result.append(", ");
+      }
+      first = false;
+      result.append("(").append(firstTypes[slot]).append(", ").append(secondTypes[slot]);
+      result.append(")=[");
+      String separator = "";
+      for (int i = 0; i < hierarchies.size(); i++) {
+        long hierarchyFlags = flags[slot] >>> (i * bitsPerHierarchy);
+        if ((hierarchyFlags & ((1L << bitsPerHierarchy) - 1)) != 0) {
+          result.append(separator).append(hierarchies.get(i));
+          separator = ", ";
+        }
+      }
+      result.append("]");
+    }
+    return result.append("}").toString();
+  }
+}
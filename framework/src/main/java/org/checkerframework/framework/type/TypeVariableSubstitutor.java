@@ -63,9 +63,9 @@ public class TypeVariableSubstitutor {
   protected AnnotatedTypeMirror substituteTypeVariable(
       final AnnotatedTypeMirror argument, final AnnotatedTypeVariable use) {
     final AnnotatedTypeMirror substitute = argument.deepCopy(true);
-    substitute.addAnnotations(argument.getAnnotationsField());
+    substitute.addAnnotations(argument.getAnnotations());
 
-    if (!use.getAnnotationsField().isEmpty()) {
+    if (!use.getAnnotations().isEmpty()) {
       substitute.replaceAnnotations(use.getAnnotations());
     }
 
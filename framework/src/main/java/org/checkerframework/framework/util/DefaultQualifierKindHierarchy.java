@@ -81,6 +81,19 @@ public class DefaultQualifierKindHierarchy implements QualifierKindHierarchy {
    */
   private final Map<QualifierKind, Map<QualifierKind, QualifierKind>> glbs;
 
+  /**
+   * The lubs of qualifier kinds, indexed by ordinal: the lub of the kinds with ordinals {@code i}
+   * and {@code j} is at index {@code i * qualifierKinds.size() + j}. Null for kinds in different
+   * hierarchies. Contains the same information as {@link #lubs}, but is faster to query.
+   */
+  private final @Nullable QualifierKind[] lubTable;
+
+  /**
+   * The glbs of qualifier kinds, indexed like {@link #lubTable}. Contains the same information as
+   * {@link #glbs}, but is faster to query.
+   */
+  private final @Nullable QualifierKind[] glbTable;
+
   @Override
   public Set<? extends QualifierKind> getTops() {
     return tops;
@@ -93,6 +106,10 @@ public class DefaultQualifierKindHierarchy implements QualifierKindHierarchy {
 
   @Override
   public @Nullable QualifierKind leastUpperBound(QualifierKind q1, QualifierKind q2) {
+    int index = tableIndex(q1, q2);
+    if (index != -1) {
+      return lubTable[index];
+    }
     @SuppressWarnings("nullness:dereference.of.nullable") // All QualifierKinds are keys in lubs.
     QualifierKind result = lubs.get(q1).get(q2);
     return result;
@@ -100,11 +117,38 @@ public class DefaultQualifierKindHierarchy implements QualifierKindHierarchy {
 
   @Override
   public @Nullable QualifierKind greatestLowerBound(QualifierKind q1, QualifierKind q2) {
+    int index = tableIndex(q1, q2);
+    if (index != -1) {
+      return glbTable[index];
+    }
     @SuppressWarnings("nullness:dereference.of.nullable") // All QualifierKinds are keys in glbs.
     QualifierKind result = glbs.get(q1).get(q2);
     return result;
   }
 
+  /**
+   * Returns the index of the lub and glb of {@code q1} and {@code q2} in {@link #lubTable} and
+   * {@link #glbTable}, or -1 if either is not a qualifier kind of this hierarchy.
+   *
+   * @param q1 a qualifier kind
+   * @param q2 a qualifier kind
+   * @return the index of the entry for {@code q1} and {@code q2} in the lub and glb tables, or -1
+   */
+  private int tableIndex(QualifierKind q1, QualifierKind q2) {
+    int size = qualifierKinds.size();
+    int ordinal1 = q1.getOrdinal();
+    int ordinal2 = q2.getOrdinal();
+    if (ordinal1 < 0
+        || ordinal1 >= size
+        || ordinal2 < 0
+        || ordinal2 >= size
+        || qualifierKinds.get(ordinal1) != q1
+        || qualifierKinds.get(ordinal2) != q2) {
+      return -1;
+    }
+    return ordinal1 * size + ordinal2;
+  }
+
   @Override
   public List<? extends QualifierKind> allQualifierKinds() {
     return qualifierKinds;
@@ -159,6 +203,9 @@ public class DefaultQualifierKindHierarchy implements QualifierKindHierarchy {
     this.nameToQualifierKind = createQualifierKinds(qualifierClasses);
     this.qualifierKinds = new ArrayList<>(nameToQualifierKind.values());
     Collections.sort(qualifierKinds);
+    for (int i = 0; i < qualifierKinds.size(); i++) {
+      qualifierKinds.get(i).ordinal = i;
+    }
 
     Map<DefaultQualifierKind, Set<DefaultQualifierKind>> directSuperMap = createDirectSuperMap();
     if (bottom != null) {
@@ -172,6 +219,53 @@ public class DefaultQualifierKindHierarchy implements QualifierKindHierarchy {
     this.glbs = createGlbsMap();
 
     verifyHierarchy(directSuperMap);
+
+    this.lubTable = createTable(lubs);
+    this.glbTable = createTable(glbs);
+    initializeSupertypeTables();
+  }
+
+  /**
+   * Converts a map of lubs or glbs, as created by {@link #createLubsMap()}, to a table indexed by
+   * the ordinals of the qualifier kinds.
+   *
+   * @param map a mapping from two qualifier kinds to their lub or glb
+   * @return a table that holds the same information as {@code map}; see {@link #lubTable}
+   */
+  @RequiresNonNull("this.qualifierKinds")
+  private @Nullable QualifierKind[] createTable(
+      @UnderInitialization DefaultQualifierKindHierarchy this,
+      Map<QualifierKind, Map<QualifierKind, QualifierKind>> map) {
+    int size = qualifierKinds.size();
+    @Nullable QualifierKind[] table = new QualifierKind[size * size];
+    for (DefaultQualifierKind qual1 : qualifierKinds) {
+      Map<QualifierKind, QualifierKind> qual1Map = map.get(qual1);
+      if (qual1Map == null) {
+        continue;
+      }
+      for (DefaultQualifierKind qual2 : qualifierKinds) {
+        table[qual1.ordinal * size + qual2.ordinal] = qual1Map.get(qual2);
+      }
+    }
+    return table;
+  }
+
+  /**
+   * Sets {@link DefaultQualifierKind#supertypesByOrdinal} for every qualifier kind, so that {@link
+   * DefaultQualifierKind#isSubtypeOf} no longer searches {@link
+   * DefaultQualifierKind#strictSuperTypes}. Requires that the strict super types of every
+   * qualifier kind have been initialized.
+   */
+  @RequiresNonNull("this.qualifierKinds")
+  private void initializeSupertypeTables(@UnderInitialization DefaultQualifierKindHierarchy this) {
+    for (DefaultQualifierKind qualifierKind : qualifierKinds) {
+      @Nullable DefaultQualifierKind[] supertypes = new DefaultQualifierKind[qualifierKinds.size()];
+      supertypes[qualifierKind.ordinal] = qualifierKind;
+      for (QualifierKind superKind : qualifierKind.getStrictSuperTypes()) {
+        supertypes[superKind.getOrdinal()] = (DefaultQualifierKind) superKind;
+      }
+      qualifierKind.supertypesByOrdinal = supertypes;
+    }
   }
 
   /**
@@ -234,8 +328,9 @@ public class DefaultQualifierKindHierarchy implements QualifierKindHierarchy {
   protected Map<@Interned @CanonicalName String, DefaultQualifierKind> createQualifierKinds(
       @UnderInitialization DefaultQualifierKindHierarchy this,
       Collection<Class<? extends Annotation>> qualifierClasses) {
-    TreeMap<@Interned @CanonicalName String, DefaultQualifierKind> nameToQualifierKind =
-        new TreeMap<>();
+    // A HashMap rather than a TreeMap: this map is queried for every qualifier comparison.
+    Map<@Interned @CanonicalName String, DefaultQualifierKind> nameToQualifierKind =
+        new HashMap<>();
     for (Class<? extends Annotation> clazz : qualifierClasses) {
       @SuppressWarnings("interning") // uniqueness is tested immediately below
       @Interned DefaultQualifierKind qualifierKind = new DefaultQualifierKind(clazz);
@@ -699,6 +794,17 @@ public class DefaultQualifierKindHierarchy implements QualifierKindHierarchy {
     /** True if the annotation class of this has annotation elements/arguments. */
     private final boolean hasElements;
 
+    /** The index of this in {@link DefaultQualifierKindHierarchy#qualifierKinds}. */
+    // Set while creating the QualifierKindHierarchy.
+    private int ordinal = -1;
+
+    /**
+     * Indexed by ordinal: the element for a qualifier kind is that kind if it is this qualifier
+     * kind or a strict super qualifier kind of this, and null otherwise.
+     */
+    // Set at the end of creating the QualifierKindHierarchy.
+    private @Nullable DefaultQualifierKind @MonotonicNonNull [] supertypesByOrdinal;
+
     /** The top of the hierarchy to which this belongs. */
     // Set while creating the QualifierKindHierarchy.
     protected @MonotonicNonNull DefaultQualifierKind top;
@@ -735,6 +841,11 @@ public class DefaultQualifierKindHierarchy implements QualifierKindHierarchy {
       return name;
     }
 
+    @Override
+    public int getOrdinal() {
+      return ordinal;
+    }
+
     @Override
     public Class<? extends Annotation> getAnnotationClass() {
       return clazz;
@@ -805,6 +916,12 @@ public class DefaultQualifierKindHierarchy implements QualifierKindHierarchy {
 
     @Override
     public boolean isSubtypeOf(QualifierKind superQualKind) {
+      if (supertypesByOrdinal != null) {
+        int superOrdinal = superQualKind.getOrdinal();
+        return superOrdinal >= 0
+            && superOrdinal < supertypesByOrdinal.length
+            && supertypesByOrdinal[superOrdinal] == superQualKind;
+      }
       if (strictSuperTypes == null) {
         throw new BugInCF(
             "DefaultQualifierKind#isSubtypeOf: strictSuperTypes was null. Don't call this method"
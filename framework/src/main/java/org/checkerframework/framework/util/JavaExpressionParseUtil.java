@@ -35,6 +35,7 @@ import com.sun.tools.javac.code.Type.ClassType;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.annotation.processing.ProcessingEnvironment;
@@ -66,6 +67,7 @@ import org.checkerframework.dataflow.expression.ValueLiteral;
 import org.checkerframework.framework.source.DiagMessage;
 import org.checkerframework.framework.util.dependenttypes.DependentTypesError;
 import org.checkerframework.javacutil.BugInCF;
+import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.Resolver;
 import org.checkerframework.javacutil.TypesUtils;
@@ -113,6 +115,21 @@ public class JavaExpressionParseUtil {
   /** The replacement for a formal parameter in "#2" syntax. */
   private static final String PARAMETER_REPLACEMENT = PARAMETER_PREFIX + "$1";
 
+  /** The maximum number of entries in {@link #expressionCache}. */
+  private static final int EXPRESSION_CACHE_SIZE = 10000;
+
+  /**
+   * Map from an expression string, as written in an annotation, to its JavaParser AST. The same
+   * strings, such as "#1" or "this.buf.length", are parsed at every use of a method or field whose
+   * type has a dependent type annotation, but only the conversion to a {@link JavaExpression}
+   * depends on the context of the use. The ASTs must not be modified.
+   *
+   * <p>The key does not include the language level, which is the same for the whole JVM; see
+   * {@link JavaParserUtil#getCurrentSourceVersion}.
+   */
+  private static final Map<String, Expression> expressionCache =
+      Collections.synchronizedMap(CollectionUtils.createLRUCache(EXPRESSION_CACHE_SIZE));
+
   /**
    * Parses a string to a {@link JavaExpression}.
    *
@@ -142,25 +159,28 @@ public class JavaExpressionParseUtil {
       ProcessingEnvironment env)
       throws JavaExpressionParseException {
 
-    // Use the current source version to parse with because a JavaExpression could refer to a
-    // variable named "var", which is a keyword in Java 10 and later.
-    LanguageLevel currentSourceVersion = JavaParserUtil.getCurrentSourceVersion(env);
-    String expressionWithParameterNames =
-        StringsPlume.replaceAll(expression, FORMAL_PARAMETER, PARAMETER_REPLACEMENT);
-    Expression expr;
-    try {
-      expr = JavaParserUtil.parseExpression(expressionWithParameterNames, currentSourceVersion);
-    } catch (ParseProblemException e) {
-      String extra = ".";
-      if (!e.getProblems().isEmpty()) {
-        String message = e.getProblems().get(0).getMessage();
-        int newLine = message.indexOf(System.lineSeparator());
-        if (newLine != -1) {
-          message = message.substring(0, newLine);
+    Expression expr = expressionCache.get(expression);
+    if (expr == null) {
+      // Use the current source version to parse with because a JavaExpression could refer to a
+      // variable named "var", which is a keyword in Java 10 and later.
+      LanguageLevel currentSourceVersion = JavaParserUtil.getCurrentSourceVersion(env);
+      String expressionWithParameterNames =
+          StringsPlume.replaceAll(expression, FORMAL_PARAMETER, PARAMETER_REPLACEMENT);
+      try {
+        expr = JavaParserUtil.parseExpression(expressionWithParameterNames, currentSourceVersion);
+      } catch (ParseProblemException e) {
+        String extra = ".";
+        if (!e.getProblems().isEmpty()) {
+          String message = e.getProblems().get(0).getMessage();
+          int newLine = message.indexOf(System.lineSeparator());
+          if (newLine != -1) {
+            message = message.substring(0, newLine);
+          }
+          extra = ". Error message: " + message;
         }
-        extra = ". Error message: " + message;
+        throw constructJavaExpressionParseError(expression, "the expression did not parse" + extra);
       }
-      throw constructJavaExpressionParseError(expression, "the expression did not parse" + extra);
+      expressionCache.put(expression, expr);
     }
 
     JavaExpression result =
@@ -1004,11 +1024,15 @@ public class JavaExpressionParseUtil {
      */
     private @Nullable TypeMirror convertTypeToTypeMirror(Type type) {
       if (type.isClassOrInterfaceType()) {
-        LanguageLevel currentSourceVersion = JavaParserUtil.getCurrentSourceVersion(env);
+        String typeString = type.asString();
+        Expression typeExpr = expressionCache.get(typeString);
         try {
-          return JavaParserUtil.parseExpression(type.asString(), currentSourceVersion)
-              .accept(this, null)
-              .getType();
+          if (typeExpr == null) {
+            LanguageLevel currentSourceVersion = JavaParserUtil.getCurrentSourceVersion(env);
+            typeExpr = JavaParserUtil.parseExpression(typeString, currentSourceVersion);
+            expressionCache.put(typeString, typeExpr);
+          }
+          return typeExpr.accept(this, null).getType();
         } catch (ParseProblemException e) {
           return null;
         }
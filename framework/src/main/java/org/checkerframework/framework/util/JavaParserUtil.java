@@ -15,6 +15,7 @@ import com.github.javaparser.ast.expr.AnnotationExpr;
 import com.github.javaparser.ast.expr.BinaryExpr;
 import com.github.javaparser.ast.expr.Expression;
 import com.github.javaparser.ast.expr.StringLiteralExpr;
+import com.github.javaparser.ast.type.Type;
 import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -191,6 +192,59 @@ public class JavaParserUtil {
     }
   }
 
+  /**
+   * Parses the {@code type}, which may contain annotations, and returns a {@code Type} that
+   * represents it.
+   *
+   * <p>This is like {@code StaticJavaParser.parseType}, but it does not lead to memory leaks
+   * because it creates a new instance of JavaParser each time it is invoked.
+   *
+   * @param type the type string
+   * @return the parsed type
+   * @throws ParseProblemException if the type has parser errors
+   */
+  public static Type parseType(String type) {
+    ParserConfiguration configuration = new ParserConfiguration();
+    configuration.setLanguageLevel(DEFAULT_LANGUAGE_LEVEL);
+    configuration.setStoreTokens(false);
+    configuration.setLexicalPreservationEnabled(false);
+    configuration.setAttributeComments(false);
+    configuration.setDetectOriginalLineSeparator(false);
+    JavaParser javaParser = new JavaParser(configuration);
+    ParseResult<Type> parseResult = javaParser.parseType(type);
+    if (parseResult.isSuccessful() && parseResult.getResult().isPresent()) {
+      return parseResult.getResult().get();
+    } else {
+      throw new ParseProblemException(parseResult.getProblems());
+    }
+  }
+
+  /**
+   * Parses the {@code annotation} and returns an {@code AnnotationExpr} that represents it.
+   *
+   * <p>This is like {@code StaticJavaParser.parseAnnotation}, but it does not lead to memory leaks
+   * because it creates a new instance of JavaParser each time it is invoked.
+   *
+   * @param annotation the annotation string, such as {@code @NonNull}
+   * @return the parsed annotation
+   * @throws ParseProblemException if the annotation has parser errors
+   */
+  public static AnnotationExpr parseAnnotation(String annotation) {
+    ParserConfiguration configuration = new ParserConfiguration();
+    configuration.setLanguageLevel(DEFAULT_LANGUAGE_LEVEL);
+    configuration.setStoreTokens(false);
+    configuration.setLexicalPreservationEnabled(false);
+    configuration.setAttributeComments(false);
+    configuration.setDetectOriginalLineSeparator(false);
+    JavaParser javaParser = new JavaParser(configuration);
+    ParseResult<AnnotationExpr> parseResult = javaParser.parseAnnotation(annotation);
+    if (parseResult.isSuccessful() && parseResult.getResult().isPresent()) {
+      return parseResult.getResult().get();
+    } else {
+      throw new ParseProblemException(parseResult.getProblems());
+    }
+  }
+
   ///
   /// Other methods
   ///
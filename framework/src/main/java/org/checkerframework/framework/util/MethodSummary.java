@@ -0,0 +1,407 @@
+package org.checkerframework.framework.util;
+
+import com.sun.source.tree.AssignmentTree;
+import com.sun.source.tree.BinaryTree;
+import com.sun.source.tree.BlockTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompoundAssignmentTree;
+import com.sun.source.tree.EnhancedForLoopTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.LambdaExpressionTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.TryTree;
+import com.sun.source.tree.UnaryTree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.TreeScanner;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.dataflow.qual.Pure;
+import org.checkerframework.dataflow.util.PurityUtils;
+import org.checkerframework.framework.type.GenericAnnotatedTypeFactory;
+import org.checkerframework.javacutil.ElementUtils;
+import org.checkerframework.javacutil.TreeUtils;
+import org.checkerframework.javacutil.TypesUtils;
+
+/**
+ * What dataflow analysis needs to know about a method at its call sites: its pre- and
+ * postconditions, its purity, and, if known, the fields that it may modify. A summary is computed
+ * once per method; see {@link GenericAnnotatedTypeFactory#getMethodSummary}.
+ */
+public class MethodSummary {
+
+  /** The preconditions of the method. */
+  private final Set<Contract.Precondition> preconditions;
+
+  /** The postconditions of the method. */
+  private final Set<Contract.Postcondition> postconditions;
+
+  /** The conditional postconditions of the method. */
+  private final Set<Contract.ConditionalPostcondition> conditionalPostconditions;
+
+  /** The purity of the method. */
+  private final EnumSet<Pure.Kind> purityKinds;
+
+  /** The fields that the method may modify, or null if any field may be modified. */
+  private final @Nullable Set<VariableElement> modifiedFields;
+
+  /**
+   * Computes the summary of a method.
+   *
+   * @param method a method or constructor
+   * @param factory the type factory whose contracts and annotations to use
+   * @param computeModifiedFields whether to compute the fields that the method may modify; if
+   *     false, {@link #getModifiedFields} returns null
+   */
+  public MethodSummary(
+      ExecutableElement method,
+      GenericAnnotatedTypeFactory<?, ?, ?, ?> factory,
+      boolean computeModifiedFields) {
+    ContractsFromMethod contractsUtils = factory.getContractsFromMethod();
+    this.preconditions = Collections.unmodifiableSet(contractsUtils.getPreconditions(method));
+    this.postconditions = Collections.unmodifiableSet(contractsUtils.getPostconditions(method));
+    this.conditionalPostconditions =
+        Collections.unmodifiableSet(contractsUtils.getConditionalPostconditions(method));
+    this.purityKinds = PurityUtils.getPurityKinds(factory, method);
+    this.modifiedFields = computeModifiedFields ? modifiedFields(method, factory) : null;
+  }
+
+  /**
+   * Returns the preconditions of the method.
+   *
+   * @return the preconditions of the method
+   */
+  public Set<Contract.Precondition> getPreconditions() {
+    return preconditions;
+  }
+
+  /**
+   * Returns the postconditions of the method.
+   *
+   * @return the postconditions of the method
+   */
+  public Set<Contract.Postcondition> getPostconditions() {
+    return postconditions;
+  }
+
+  /**
+   * Returns the conditional postconditions of the method.
+   *
+   * @return the conditional postconditions of the method
+   */
+  public Set<Contract.ConditionalPostcondition> getConditionalPostconditions() {
+    return conditionalPostconditions;
+  }
+
+  /**
+   * Returns true if the method is side-effect-free.
+   *
+   * @return true if the method is side-effect-free
+   */
+  public boolean isSideEffectFree() {
+    return purityKinds.contains(Pure.Kind.SIDE_EFFECT_FREE);
+  }
+
+  /**
+   * Returns the fields that the method may modify, or null if the method may modify any field or
+   * array. If this is non-null, the method modifies no array and calls no method.
+   *
+   * @return the fields that the method may modify, or null if unknown
+   */
+  public @Nullable Set<VariableElement> getModifiedFields() {
+    return modifiedFields;
+  }
+
+  /**
+   * Computes the fields that a method may modify. The result is null unless the method cannot be
+   * overridden, its body is available, and its body neither calls a method nor writes an array
+   * element. That is, only simple methods such as setters are summarized.
+   *
+   * <p>The result is also null for a constructor, which runs the field initializers and initializer
+   * blocks of its class as well as a constructor of the superclass, and if calling the method may
+   * initialize a class whose static initializers run arbitrary code.
+   *
+   * @param method a method or constructor
+   * @param factory the type factory
+   * @return the fields that {@code method} may modify, or null if unknown
+   */
+  private static @Nullable Set<VariableElement> modifiedFields(
+      ExecutableElement method, GenericAnnotatedTypeFactory<?, ?, ?, ?> factory) {
+    if (method.getKind() != ElementKind.METHOD || isOverridable(method)) {
+      return null;
+    }
+    TypeElement enclosingClass = (TypeElement) method.getEnclosingElement();
+    // The first call of a static method initializes its class. When an instance method is called,
+    // its class has already been initialized.
+    if (ElementUtils.isStatic(method) && hasStaticInitializer(enclosingClass, factory)) {
+      return null;
+    }
+    Tree declaration = factory.declarationFromElement(method);
+    if (!(declaration instanceof MethodTree) || ((MethodTree) declaration).getBody() == null) {
+      return null;
+    }
+    ModifiedFieldsScanner scanner = new ModifiedFieldsScanner(enclosingClass, factory);
+    scanner.scan(((MethodTree) declaration).getBody(), null);
+    return scanner.unknown ? null : Collections.unmodifiableSet(scanner.fields);
+  }
+
+  /**
+   * Returns true if initializing the given class may run code other than the assignment of
+   * compile-time constants: if the class or one of its superclasses has a static initializer block
+   * or a static field whose initializer is not a compile-time constant. Also returns true if the
+   * source code of one of these classes is not available.
+   *
+   * @param type a class
+   * @param factory the type factory
+   * @return true if initializing {@code type} may run arbitrary code
+   */
+  private static boolean hasStaticInitializer(
+      TypeElement type, GenericAnnotatedTypeFactory<?, ?, ?, ?> factory) {
+    for (TypeElement t = type;
+        t != null && !TypesUtils.isObject(t.asType());
+        t = ElementUtils.getSuperClass(t)) {
+      Tree declaration = factory.declarationFromElement(t);
+      if (!(declaration instanceof ClassTree)) {
+        return true;
+      }
+      for (Tree member : ((ClassTree) declaration).getMembers()) {
+        if (member.getKind() == Tree.Kind.BLOCK && ((BlockTree) member).isStatic()) {
+          return true;
+        }
+        if (member.getKind() == Tree.Kind.VARIABLE) {
+          VariableTree variable = (VariableTree) member;
+          VariableElement field = TreeUtils.elementFromDeclaration(variable);
+          if (variable.getInitializer() != null
+              && ElementUtils.isStatic(field)
+              && field.getConstantValue() == null) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if the given method may be overridden, in which case a call may execute a
+   * different body.
+   *
+   * @param method a method
+   * @return true if {@code method} may be overridden
+   */
+  private static boolean isOverridable(ExecutableElement method) {
+    Set<Modifier> modifiers = method.getModifiers();
+    if (modifiers.contains(Modifier.STATIC)
+        || modifiers.contains(Modifier.PRIVATE)
+        || modifiers.contains(Modifier.FINAL)) {
+      return false;
+    }
+    Element enclosing = method.getEnclosingElement();
+    return !enclosing.getModifiers().contains(Modifier.FINAL);
+  }
+
+  /**
+   * Collects the fields that a method body assigns. Sets {@link #unknown} if the body calls a
+   * method, explicitly or implicitly, or writes an array element. Reading or writing a static field
+   * of another class is an implicit call if it may run the static initializers of that class. The
+   * bodies of lambdas and local classes are not scanned, because they are not executed by the
+   * method itself.
+   */
+  private static class ModifiedFieldsScanner extends TreeScanner<Void, Void> {
+    /** The class that declares the method, which is initialized while the method runs. */
+    private final TypeElement enclosingClass;
+
+    /** The type factory. */
+    private final GenericAnnotatedTypeFactory<?, ?, ?, ?> factory;
+
+    /** The fields that are assigned. */
+    final Set<VariableElement> fields = new HashSet<>();
+
+    /** True if the body may have side effects other than assigning {@link #fields}. */
+    boolean unknown = false;
+
+    /**
+     * Creates a scanner for the body of a method.
+     *
+     * @param enclosingClass the class that declares the method
+     * @param factory the type factory
+     */
+    ModifiedFieldsScanner(
+        TypeElement enclosingClass, GenericAnnotatedTypeFactory<?, ?, ?, ?> factory) {
+      this.enclosingClass = enclosingClass;
+      this.factory = factory;
+    }
+
+    /**
+     * Sets {@link #unknown} if the given tree uses a static field whose class may not have been
+     * initialized yet and has static initializers.
+     *
+     * @param tree an identifier or member select
+     */
+    private void checkFieldUse(ExpressionTree tree) {
+      Element element = TreeUtils.elementFromUse(tree);
+      if (element == null
+          || element.getKind() != ElementKind.FIELD
+          || !ElementUtils.isStatic(element)
+          || ((VariableElement) element).getConstantValue() != null) {
+        return;
+      }
+      TypeElement fieldClass = (TypeElement) element.getEnclosingElement();
+      // The superclasses of the enclosing class are initialized before it.
+      for (TypeElement t = enclosingClass; t != null; t = ElementUtils.getSuperClass(t)) {
+        if (t.equals(fieldClass)) {
+          return;
+        }
+      }
+      if (hasStaticInitializer(fieldClass, factory)) {
+        unknown = true;
+      }
+    }
+
+    @Override
+    public Void visitIdentifier(IdentifierTree tree, Void p) {
+      checkFieldUse(tree);
+      return super.visitIdentifier(tree, p);
+    }
+
+    @Override
+    public Void visitMemberSelect(MemberSelectTree tree, Void p) {
+      checkFieldUse(tree);
+      return super.visitMemberSelect(tree, p);
+    }
+
+    /**
+     * Records an assignment to the given variable.
+     *
+     * @param variable the left-hand side of an assignment
+     */
+    private void assigned(ExpressionTree variable) {
+      if (variable.getKind() == Tree.Kind.ARRAY_ACCESS) {
+        unknown = true;
+        return;
+      }
+      Element element = TreeUtils.elementFromUse(variable);
+      if (element == null) {
+        unknown = true;
+      } else if (element.getKind() == ElementKind.FIELD) {
+        fields.add((VariableElement) element);
+      }
+    }
+
+    @Override
+    public Void scan(@Nullable Tree tree, Void p) {
+      // There is no need to scan further once the result is unknown.
+      return unknown ? null : super.scan(tree, p);
+    }
+
+    @Override
+    public Void visitAssignment(AssignmentTree tree, Void p) {
+      assigned(tree.getVariable());
+      return super.visitAssignment(tree, p);
+    }
+
+    @Override
+    public Void visitCompoundAssignment(CompoundAssignmentTree tree, Void p) {
+      assigned(tree.getVariable());
+      return super.visitCompoundAssignment(tree, p);
+    }
+
+    @Override
+    public Void visitUnary(UnaryTree tree, Void p) {
+      switch (tree.getKind()) {
+        case PREFIX_INCREMENT:
+        case PREFIX_DECREMENT:
+        case POSTFIX_INCREMENT:
+        case POSTFIX_DECREMENT:
+          assigned(tree.getExpression());
+          break;
+        default:
+          break;
+      }
+      return super.visitUnary(tree, p);
+    }
+
+    @Override
+    public Void visitBinary(BinaryTree tree, Void p) {
+      // String concatenation calls toString() on an operand that is not a string or a primitive.
+      if (tree.getKind() == Tree.Kind.PLUS
+          && TypesUtils.isString(TreeUtils.typeOf(tree))
+          && (!isStringOrPrimitive(tree.getLeftOperand())
+              || !isStringOrPrimitive(tree.getRightOperand()))) {
+        unknown = true;
+        return null;
+      }
+      return super.visitBinary(tree, p);
+    }
+
+    /**
+     * Returns true if the given expression is a string or has a primitive type.
+     *
+     * @param tree an expression
+     * @return true if {@code tree} is a string or has a primitive type
+     */
+    private static boolean isStringOrPrimitive(ExpressionTree tree) {
+      TypeMirror type = TreeUtils.typeOf(tree);
+      return TypesUtils.isString(type)
+          || type.getKind().isPrimitive()
+          || type.getKind() == TypeKind.NULL;
+    }
+
+    @Override
+    public Void visitMethodInvocation(MethodInvocationTree tree, Void p) {
+      unknown = true;
+      return null;
+    }
+
+    @Override
+    public Void visitNewClass(NewClassTree tree, Void p) {
+      unknown = true;
+      return null;
+    }
+
+    @Override
+    public Void visitEnhancedForLoop(EnhancedForLoopTree tree, Void p) {
+      // Iterating over an Iterable calls iterator(), hasNext(), and next().
+      if (TreeUtils.typeOf(tree.getExpression()).getKind() != TypeKind.ARRAY) {
+        unknown = true;
+        return null;
+      }
+      return super.visitEnhancedForLoop(tree, p);
+    }
+
+    @Override
+    public Void visitTry(TryTree tree, Void p) {
+      // A try-with-resources statement calls close().
+      if (!tree.getResources().isEmpty()) {
+        unknown = true;
+        return null;
+      }
+      return super.visitTry(tree, p);
+    }
+
+    @Override
+    public Void visitLambdaExpression(LambdaExpressionTree tree, Void p) {
+      return null;
+    }
+
+    @Override
+    public Void visitClass(ClassTree tree, Void p) {
+      return null;
+    }
+  }
+}
@@ -33,6 +33,20 @@ public @Interned interface QualifierKind extends Comparable<QualifierKind> {
    */
   @Interned @CanonicalName String getName();
 
+  /**
+   * Returns the index of this in {@link QualifierKindHierarchy#allQualifierKinds()}, or -1 if the
+   * implementation does not number its qualifier kinds. The ordinals of the qualifier kinds of a
+   * hierarchy are dense, so they can index arrays. Clients fall back to slower lookups for a
+   * qualifier kind whose ordinal is -1.
+   *
+   * <p>The default implementation returns -1. An implementation should override it.
+   *
+   * @return the index of this in the list of all qualifier kinds of its hierarchy, or -1
+   */
+  default int getOrdinal() {
+    return -1;
+  }
+
   /**
    * Returns the annotation class for this.
    *
@@ -0,0 +1,82 @@
+package org.checkerframework.framework.stub;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests the index of the annotated JDK. */
+public class AnnotatedJdkIndexTest {
+
+  /** The annotated JDK directory of {@link #testWriteAndRead}. */
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testClassNameForPath() {
+    Assert.assertEquals(
+        "java.util.List",
+        AnnotatedJdkIndex.classNameForPath("src/java.base/share/classes/java/util/List.java"));
+    Assert.assertEquals(
+        "java.util.Map",
+        AnnotatedJdkIndex.classNameForPath("java.base/share/classes/java/util/Map.java"));
+    Assert.assertNull(
+        AnnotatedJdkIndex.classNameForPath(
+            "src/java.base/share/classes/java/util/package-info.java"));
+    Assert.assertNull(
+        AnnotatedJdkIndex.classNameForPath("src/java.base/share/classes/module-info.java"));
+    // Files outside the share/classes directory of a module have no class name.
+    Assert.assertNull(AnnotatedJdkIndex.classNameForPath("src/java.base/unix/Foo.java"));
+    Assert.assertNull(AnnotatedJdkIndex.classNameForPath("Foo.java"));
+  }
+
+  @Test
+  public void testIsPackageInfo() {
+    Assert.assertTrue(AnnotatedJdkIndex.isPackageInfo("package-info.java"));
+    Assert.assertTrue(
+        AnnotatedJdkIndex.isPackageInfo("src/java.base/share/classes/java/util/package-info.java"));
+    Assert.assertFalse(AnnotatedJdkIndex.isPackageInfo("src/java.base/my-package-info.java"));
+  }
+
+  /**
+   * The index that {@link AnnotatedJdkIndex#main} writes lists the classes and the {@code
+   * package-info.java} files, and skips the other files.
+   *
+   * @throws IOException if a file cannot be written or read
+   */
+  @Test
+  public void testWriteAndRead() throws IOException {
+    File root = folder.getRoot();
+    String list = "src/java.base/share/classes/java/util/List.java";
+    String packageInfo = "src/java.base/share/classes/java/util/package-info.java";
+    String[] files = {
+      list,
+      packageInfo,
+      "src/java.base/share/classes/module-info.java",
+      "src/java.base/unix/classes/sun/nio/fs/UnixPath.java",
+      "README.java"
+    };
+    for (String file : files) {
+      Path path = root.toPath().resolve(file);
+      Files.createDirectories(path.getParent());
+      Files.write(path, Collections.singletonList("class C {}"));
+    }
+
+    AnnotatedJdkIndex.main(new String[] {root.toString()});
+    AnnotatedJdkIndex index =
+        AnnotatedJdkIndex.read(
+            Files.newInputStream(root.toPath().resolve(AnnotatedJdkIndex.INDEX_FILE_NAME)));
+    Assert.assertNotNull(index);
+    Map<String, String> expected = new HashMap<>();
+    expected.put("java.util.List", list);
+    Assert.assertEquals(expected, index.getClassFiles());
+    Assert.assertEquals(Arrays.asList(packageInfo), index.getPackageInfoFiles());
+  }
+}
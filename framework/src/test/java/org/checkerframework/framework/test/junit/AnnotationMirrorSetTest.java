@@ -0,0 +1,259 @@
+package org.checkerframework.framework.test.junit;
+
+import com.sun.source.util.JavacTask;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import org.checkerframework.javacutil.AnnotationMirrorMap;
+import org.checkerframework.javacutil.AnnotationMirrorSet;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the AnnotationMirrorSet and AnnotationMirrorMap classes, which store small collections in
+ * arrays and switch to a tree when they grow.
+ */
+public class AnnotationMirrorSetTest {
+
+  /** A class annotated with six annotations, whose names are in ascending order. */
+  private static final String SOURCE =
+      String.join(
+          "\n",
+          "@interface A {}",
+          "@interface B {}",
+          "@interface C {}",
+          "@interface D {}",
+          "@interface E {}",
+          "@interface F {}",
+          "@A @B @C @D @E @F class Test {}");
+
+  /** The annotations A to F of {@link #SOURCE}, in ascending order. */
+  private static List<AnnotationMirror> annos;
+
+  /** The annotation A. */
+  private static AnnotationMirror a;
+
+  /** The annotation B. */
+  private static AnnotationMirror b;
+
+  /** The annotation C. */
+  private static AnnotationMirror c;
+
+  /** The annotation D. */
+  private static AnnotationMirror d;
+
+  /** The annotation E. */
+  private static AnnotationMirror e;
+
+  /** The annotation F. */
+  private static AnnotationMirror f;
+
+  /**
+   * Compiles {@link #SOURCE} and reads its annotations.
+   *
+   * @throws IOException if the source cannot be compiled
+   */
+  @BeforeClass
+  public static void readAnnotations() throws IOException {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    JavaFileObject source =
+        new SimpleJavaFileObject(URI.create("string:///Test.java"), JavaFileObject.Kind.SOURCE) {
+          @Override
+          public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return SOURCE;
+          }
+        };
+    JavacTask task =
+        (JavacTask)
+            compiler.getTask(
+                null, null, null, Arrays.asList("-proc:none"), null, Arrays.asList(source));
+    task.analyze();
+    TypeElement test = task.getElements().getTypeElement("Test");
+    annos = new ArrayList<>(test.getAnnotationMirrors());
+    Assert.assertEquals(6, annos.size());
+    a = annos.get(0);
+    b = annos.get(1);
+    c = annos.get(2);
+    d = annos.get(3);
+    e = annos.get(4);
+    f = annos.get(5);
+  }
+
+  /**
+   * Returns a set that contains the given annotations.
+   *
+   * @param elements the annotations to put in the set
+   * @return a set that contains {@code elements}
+   */
+  private static AnnotationMirrorSet set(AnnotationMirror... elements) {
+    return new AnnotationMirrorSet(Arrays.asList(elements));
+  }
+
+  @Test
+  public void testSwitchToTree() {
+    AnnotationMirrorSet set = new AnnotationMirrorSet();
+    // Added out of order, so that the array has to be kept sorted.
+    for (AnnotationMirror anno : Arrays.asList(d, b, a, c)) {
+      Assert.assertTrue(set.add(anno));
+      Assert.assertFalse(set.add(anno));
+    }
+    Assert.assertEquals(Arrays.asList(a, b, c, d), new ArrayList<>(set));
+    // The fifth annotation switches the set to a tree.
+    Assert.assertTrue(set.add(f));
+    Assert.assertTrue(set.add(e));
+    Assert.assertFalse(set.add(e));
+    Assert.assertEquals(annos, new ArrayList<>(set));
+    Assert.assertEquals(6, set.size());
+    Assert.assertTrue(set.contains(e));
+    Assert.assertTrue(set.remove(e));
+    Assert.assertFalse(set.remove(e));
+    Assert.assertFalse(set.contains(e));
+    Assert.assertEquals(set(a, b, c, d, f), set);
+
+    set.clear();
+    Assert.assertTrue(set.isEmpty());
+    Assert.assertTrue(set.add(c));
+    Assert.assertEquals(Arrays.asList(c), new ArrayList<>(set));
+    Assert.assertEquals(Arrays.asList(b), new ArrayList<>(AnnotationMirrorSet.singleElementSet(b)));
+  }
+
+  @Test
+  public void testIteratorFailsFast() {
+    AnnotationMirrorSet set = set(a, b, c, d);
+    Iterator<AnnotationMirror> it = set.iterator();
+    Assert.assertEquals(a, it.next());
+    // Switches the set to a tree, so the array iterator has nothing left to iterate over.
+    set.add(e);
+    try {
+      it.hasNext();
+      Assert.fail("hasNext did not notice the switch to a tree");
+    } catch (ConcurrentModificationException expected) {
+    }
+
+    set = set(a, b);
+    it = set.iterator();
+    set.add(c);
+    try {
+      it.next();
+      Assert.fail("next did not notice the modification");
+    } catch (ConcurrentModificationException expected) {
+    }
+  }
+
+  @Test
+  public void testIteratorRemove() {
+    AnnotationMirrorSet set = set(a, b, c, d);
+    for (Iterator<AnnotationMirror> it = set.iterator(); it.hasNext(); ) {
+      AnnotationMirror anno = it.next();
+      if (anno == b || anno == d) {
+        it.remove();
+      }
+    }
+    Assert.assertEquals(set(a, c), set);
+    Iterator<AnnotationMirror> it = set.iterator();
+    try {
+      it.remove();
+      Assert.fail("remove before next");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @Test
+  public void testNavigation() {
+    // The same queries on the array and on the tree.
+    for (AnnotationMirrorSet set : Arrays.asList(set(b, d), set(b, d, a, c, e))) {
+      set.remove(a);
+      set.remove(c);
+      set.remove(e);
+      Assert.assertEquals(b, set.first());
+      Assert.assertEquals(d, set.last());
+      Assert.assertNull(set.lower(a));
+      Assert.assertNull(set.lower(b));
+      Assert.assertEquals(b, set.lower(c));
+      Assert.assertEquals(b, set.lower(d));
+      Assert.assertEquals(d, set.lower(e));
+      Assert.assertNull(set.floor(a));
+      Assert.assertEquals(b, set.floor(b));
+      Assert.assertEquals(b, set.floor(c));
+      Assert.assertEquals(d, set.floor(e));
+      Assert.assertEquals(b, set.ceiling(a));
+      Assert.assertEquals(d, set.ceiling(c));
+      Assert.assertEquals(d, set.ceiling(d));
+      Assert.assertNull(set.ceiling(e));
+      Assert.assertEquals(b, set.higher(a));
+      Assert.assertEquals(d, set.higher(b));
+      Assert.assertNull(set.higher(d));
+      Assert.assertEquals(b, set.pollFirst());
+      Assert.assertEquals(d, set.pollLast());
+      Assert.assertNull(set.pollFirst());
+      Assert.assertNull(set.pollLast());
+    }
+  }
+
+  @Test
+  public void testViews() {
+    AnnotationMirrorSet set = set(a, b, c, d);
+    Assert.assertEquals(Arrays.asList(a, b), new ArrayList<>(set.headSet(c)));
+    Assert.assertEquals(Arrays.asList(a, b, c), new ArrayList<>(set.headSet(c, true)));
+    Assert.assertEquals(Arrays.asList(c, d), new ArrayList<>(set.tailSet(c)));
+    Assert.assertEquals(Arrays.asList(d), new ArrayList<>(set.tailSet(c, false)));
+    Assert.assertEquals(Arrays.asList(b, c), new ArrayList<>(set.subSet(b, d)));
+    NavigableSet<AnnotationMirror> descending = set.descendingSet();
+    Assert.assertEquals(Arrays.asList(d, c, b, a), new ArrayList<>(descending));
+    // The views write through to the set.
+    set.headSet(c).clear();
+    Assert.assertEquals(Arrays.asList(c, d), new ArrayList<>(set));
+    descending.add(e);
+    Assert.assertTrue(set.contains(e));
+    Assert.assertEquals(e, set.descendingIterator().next());
+  }
+
+  @Test
+  public void testMap() {
+    AnnotationMirrorMap<String> map = new AnnotationMirrorMap<>();
+    for (AnnotationMirror anno : Arrays.asList(d, b, a, c)) {
+      Assert.assertNull(map.put(anno, "1"));
+    }
+    Assert.assertEquals("1", map.put(a, "a"));
+    Assert.assertEquals(Arrays.asList(a, b, c, d), new ArrayList<>(map.keySet()));
+    for (Map.Entry<AnnotationMirror, String> entry : map.entrySet()) {
+      if (entry.getKey() == b) {
+        Assert.assertEquals("1", entry.setValue("b"));
+      }
+    }
+    Assert.assertEquals("b", map.get(b));
+    Assert.assertNull(map.get(e));
+
+    Iterator<Map.Entry<AnnotationMirror, String>> it = map.entrySet().iterator();
+    it.next();
+    // The fifth key switches the map to a tree.
+    map.put(e, "e");
+    try {
+      it.hasNext();
+      Assert.fail("hasNext did not notice the switch to a tree");
+    } catch (ConcurrentModificationException expected) {
+    }
+    map.put(f, "f");
+    Assert.assertEquals(annos, new ArrayList<>(map.keySet()));
+    Assert.assertEquals("b", map.remove(b));
+    Assert.assertFalse(map.containsKey(b));
+
+    AnnotationMirrorMap<String> copy = new AnnotationMirrorMap<>(map);
+    Assert.assertEquals(map, copy);
+    copy.remove(a);
+    Assert.assertTrue(map.containsKey(a));
+  }
+}
@@ -0,0 +1,212 @@
+package org.checkerframework.framework.test.junit;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.ReturnTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreeScanner;
+import com.sun.tools.javac.api.BasicJavacTask;
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.block.Block;
+import org.checkerframework.dataflow.cfg.builder.CFGBuilder;
+import org.checkerframework.dataflow.cfg.node.Node;
+import org.checkerframework.dataflow.expression.LocalVariable;
+import org.checkerframework.framework.flow.LiveLocalVariables;
+import org.checkerframework.javacutil.TreeUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Tests the LiveLocalVariables class, which the -AsparseDataflow option uses to prune stores. */
+public class LiveLocalVariablesTest {
+
+  /** The class under analysis. Each method returns in two branches, which are separate blocks. */
+  private static final String SOURCE =
+      String.join(
+          "\n",
+          "class Test {",
+          "  int branches(boolean b) {",
+          "    int x = 1;",
+          "    int y = 2;",
+          "    if (b) {",
+          "      return x;",
+          "    } else {",
+          "      return y;",
+          "    }",
+          "  }",
+          "  int reassigned(boolean b) {",
+          "    int x = 1;",
+          "    if (b) {",
+          "      x = 3;",
+          "      return x;",
+          "    } else {",
+          "      x += 1;",
+          "      return x;",
+          "    }",
+          "  }",
+          "  int loop(int n) {",
+          "    int sum = 0;",
+          "    int i = 0;",
+          "    while (i < n) {",
+          "      sum += i;",
+          "      i++;",
+          "    }",
+          "    return sum;",
+          "  }",
+          "  Runnable captured(boolean b) {",
+          "    int x = 1;",
+          "    if (b) {",
+          "      return null;",
+          "    } else {",
+          "      return () -> System.out.println(x);",
+          "    }",
+          "  }",
+          "  int named(boolean b) {",
+          "    int lock = 1;",
+          "    int other = 2;",
+          "    @SuppressWarnings(\"lock.other\") int x = 3;",
+          "    if (b) {",
+          "      return x;",
+          "    } else {",
+          "      return lock + other;",
+          "    }",
+          "  }",
+          "}");
+
+  /** The liveness of a method. */
+  private static final class Liveness {
+    /** The live local variables of the method. */
+    final LiveLocalVariables live;
+    /** The local variables and parameters of the method, by name. */
+    final Map<String, LocalVariable> variables = new HashMap<>();
+    /** The blocks that contain the return statements of the method, in order. */
+    final List<Block> returnBlocks = new ArrayList<>();
+
+    /**
+     * Computes the liveness of the given method.
+     *
+     * @param name the name of a method in {@link #SOURCE}
+     */
+    Liveness(String name) {
+      JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+      JavaFileObject source =
+          new SimpleJavaFileObject(URI.create("string:///Test.java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+              return SOURCE;
+            }
+          };
+      JavacTask task =
+          (JavacTask)
+              compiler.getTask(
+                  null, null, null, Arrays.asList("-proc:none"), null, Arrays.asList(source));
+      CompilationUnitTree root;
+      try {
+        root = task.parse().iterator().next();
+        task.analyze();
+      } catch (IOException e) {
+        throw new Error(e);
+      }
+      ProcessingEnvironment env =
+          JavacProcessingEnvironment.instance(((BasicJavacTask) task).getContext());
+      ClassTree classTree = (ClassTree) root.getTypeDecls().get(0);
+      MethodTree method = null;
+      for (Tree member : classTree.getMembers()) {
+        if (member instanceof MethodTree && ((MethodTree) member).getName().contentEquals(name)) {
+          method = (MethodTree) member;
+        }
+      }
+      Assert.assertNotNull(name, method);
+      ControlFlowGraph cfg = CFGBuilder.build(root, method, classTree, env);
+      live = new LiveLocalVariables(cfg);
+      new TreeScanner<Void, Void>() {
+        @Override
+        public Void visitVariable(VariableTree tree, Void p) {
+          variables.put(
+              tree.getName().toString(),
+              new LocalVariable(TreeUtils.elementFromDeclaration(tree)));
+          return super.visitVariable(tree, p);
+        }
+
+        @Override
+        public Void visitReturn(ReturnTree tree, Void p) {
+          Set<Node> nodes = cfg.getNodesCorrespondingToTree(tree);
+          Assert.assertNotNull(tree.toString(), nodes);
+          returnBlocks.add(nodes.iterator().next().getBlock());
+          return super.visitReturn(tree, p);
+        }
+      }.scan(method, null);
+    }
+
+    /**
+     * Returns true if the given variable is dead before the given return statement.
+     *
+     * @param var the name of a variable
+     * @param returnIndex the index of a return statement in the method
+     * @return true if {@code var} is dead before the return statement
+     */
+    boolean isDead(String var, int returnIndex) {
+      return live.isDeadBefore(returnBlocks.get(returnIndex), variables.get(var));
+    }
+  }
+
+  @Test
+  public void testBranches() {
+    Liveness liveness = new Liveness("branches");
+    Assert.assertFalse(liveness.isDead("x", 0));
+    Assert.assertTrue(liveness.isDead("y", 0));
+    Assert.assertTrue(liveness.isDead("x", 1));
+    Assert.assertFalse(liveness.isDead("y", 1));
+    // Formal parameters are never dead, because postconditions can refer to them.
+    Assert.assertFalse(liveness.isDead("b", 0));
+    Assert.assertFalse(liveness.isDead("b", 1));
+  }
+
+  @Test
+  public void testReassigned() {
+    Liveness liveness = new Liveness("reassigned");
+    // A simple assignment does not read the variable, but a compound assignment does.
+    Assert.assertTrue(liveness.isDead("x", 0));
+    Assert.assertFalse(liveness.isDead("x", 1));
+  }
+
+  @Test
+  public void testLoop() {
+    Liveness liveness = new Liveness("loop");
+    Assert.assertFalse(liveness.isDead("sum", 0));
+    Assert.assertTrue(liveness.isDead("i", 0));
+  }
+
+  @Test
+  public void testCaptured() {
+    Liveness liveness = new Liveness("captured");
+    // A variable that a lambda captures is never dead, because the lambda is analyzed separately.
+    Assert.assertFalse(liveness.isDead("x", 0));
+  }
+
+  @Test
+  public void testNamedInAnnotation() {
+    Liveness liveness = new Liveness("named");
+    // A variable that a string in an annotation names is never dead, because a Java expression in
+    // a type may refer to it.
+    Assert.assertFalse(liveness.isDead("lock", 0));
+    Assert.assertFalse(liveness.isDead("other", 0));
+    Assert.assertTrue(liveness.isDead("x", 1));
+  }
+}
@@ -0,0 +1,230 @@
+package org.checkerframework.framework.test.junit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.dataflow.util.PersistentHashMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Tests the PersistentHashMap class, independent of any dataflow analysis. */
+public class PersistentHashMapTest {
+
+  /** A key with a given hash code, so that tests can provoke hash collisions. */
+  private static final class Key {
+    /** The name of the key, which determines equality. */
+    final int name;
+    /** The hash code of the key. */
+    final int hash;
+
+    /**
+     * Creates a key.
+     *
+     * @param name the name of the key
+     * @param hash the hash code of the key
+     */
+    Key(int name, int hash) {
+      this.name = name;
+      this.hash = hash;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object other) {
+      return other instanceof Key && ((Key) other).name == name;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public String toString() {
+      return "Key(" + name + ", " + hash + ")";
+    }
+  }
+
+  @Test
+  public void testPutGetRemove() {
+    PersistentHashMap<Integer, String> map = new PersistentHashMap<>();
+    Assert.assertTrue(map.isEmpty());
+    for (int i = 0; i < 1000; i++) {
+      Assert.assertNull(map.put(i, "v" + i));
+    }
+    Assert.assertEquals(1000, map.size());
+    Assert.assertEquals("v1", map.put(1, "w1"));
+    Assert.assertEquals(1000, map.size());
+    Assert.assertEquals("w1", map.get(1));
+    Assert.assertNull(map.get(1000));
+    Assert.assertNull(map.get(null));
+    Assert.assertNull(map.remove(1000));
+    Assert.assertNull(map.remove(null));
+    for (int i = 0; i < 1000; i += 2) {
+      Assert.assertEquals("v" + i, map.remove(i));
+    }
+    Assert.assertEquals(500, map.size());
+    for (int i = 0; i < 1000; i++) {
+      Assert.assertEquals(i % 2 == 1, map.containsKey(i));
+    }
+    for (int i = 1; i < 1000; i += 2) {
+      map.remove(i);
+    }
+    Assert.assertTrue(map.isEmpty());
+    Assert.assertFalse(map.entrySet().iterator().hasNext());
+  }
+
+  @Test
+  public void testCollisions() {
+    PersistentHashMap<Key, Integer> map = new PersistentHashMap<>();
+    // Keys 0-9 all have the same hash code; keys 10-19 differ only in their high bits.
+    for (int i = 0; i < 10; i++) {
+      map.put(new Key(i, 42), i);
+    }
+    for (int i = 10; i < 20; i++) {
+      map.put(new Key(i, (i << 20) | 42), i);
+    }
+    Assert.assertEquals(20, map.size());
+    for (int i = 0; i < 20; i++) {
+      int hash = i < 10 ? 42 : (i << 20) | 42;
+      Assert.assertEquals(Integer.valueOf(i), map.get(new Key(i, hash)));
+    }
+    Assert.assertNull(map.get(new Key(20, 42)));
+    Assert.assertEquals(Integer.valueOf(3), map.put(new Key(3, 42), 33));
+    Assert.assertEquals(20, map.size());
+
+    // Removing all but one colliding key leaves a map in which the last one is still found.
+    for (int i = 0; i < 9; i++) {
+      Assert.assertEquals(Integer.valueOf(i == 3 ? 33 : i), map.remove(new Key(i, 42)));
+    }
+    Assert.assertNull(map.remove(new Key(0, 42)));
+    Assert.assertEquals(11, map.size());
+    Assert.assertEquals(Integer.valueOf(9), map.get(new Key(9, 42)));
+    Assert.assertEquals(Integer.valueOf(15), map.get(new Key(15, (15 << 20) | 42)));
+
+    PersistentHashMap<Key, Integer> other = new PersistentHashMap<>();
+    other.put(new Key(9, 42), 9);
+    other.put(new Key(0, 42), 0);
+    Assert.assertTrue(map.containsAllEntriesOf(new PersistentHashMap<>(map)));
+    Assert.assertFalse(map.containsAllEntriesOf(other));
+    PersistentHashMap<Key, Integer> both = PersistentHashMap.intersection(map, other, (a, b) -> a);
+    Assert.assertEquals(1, both.size());
+    Assert.assertEquals(Integer.valueOf(9), both.get(new Key(9, 42)));
+  }
+
+  @Test
+  public void testAgainstHashMap() {
+    Random random = new Random(0);
+    PersistentHashMap<Key, Integer> map = new PersistentHashMap<>();
+    Map<Key, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 20000; i++) {
+      int name = random.nextInt(500);
+      // Few distinct hash codes, so that there are many collisions.
+      Key key = new Key(name, name % 97);
+      if (random.nextInt(3) == 0) {
+        Assert.assertEquals(expected.remove(key), map.remove(key));
+      } else {
+        Assert.assertEquals(expected.put(key, i), map.put(key, i));
+      }
+      Assert.assertEquals(expected.size(), map.size());
+    }
+    Assert.assertEquals(expected, map);
+    Assert.assertEquals(map, expected);
+    Assert.assertEquals(expected.hashCode(), map.hashCode());
+  }
+
+  @Test
+  public void testCopiesAreIndependent() {
+    PersistentHashMap<Integer, String> original = new PersistentHashMap<>();
+    for (int i = 0; i < 100; i++) {
+      original.put(i, "v" + i);
+    }
+    PersistentHashMap<Integer, String> copy = new PersistentHashMap<>(original);
+    copy.put(1, "changed");
+    copy.remove(2);
+    copy.put(100, "v100");
+    Assert.assertEquals("v1", original.get(1));
+    Assert.assertEquals("v2", original.get(2));
+    Assert.assertFalse(original.containsKey(100));
+    Assert.assertEquals(100, original.size());
+
+    original.clear();
+    Assert.assertEquals(100, copy.size());
+    Assert.assertEquals("changed", copy.get(1));
+  }
+
+  @Test
+  public void testStructuralSharing() {
+    PersistentHashMap<Integer, String> original = new PersistentHashMap<>();
+    PersistentHashMap<Integer, String> rebuilt = new PersistentHashMap<>();
+    for (int i = 0; i < 1000; i++) {
+      // Distinct string objects, so that only shared leaves are recognized as equal by identity.
+      original.put(i, new String("v" + i));
+      rebuilt.put(i, new String("v" + i));
+    }
+    PersistentHashMap<Integer, String> copy = new PersistentHashMap<>(original);
+    copy.put(7, "changed");
+
+    int[] merges = {0};
+    PersistentHashMap<Integer, String> both =
+        PersistentHashMap.intersection(
+            original,
+            copy,
+            (a, b) -> {
+              merges[0]++;
+              return a.equals(b) ? a : null;
+            });
+    // Only the changed key is merged; the rest of the trie is shared.
+    Assert.assertEquals(1, merges[0]);
+    Assert.assertEquals(999, both.size());
+    Assert.assertFalse(both.containsKey(7));
+
+    both = PersistentHashMap.intersection(original, rebuilt, (a, b) -> a.equals(b) ? a : null);
+    Assert.assertEquals(1000, both.size());
+
+    merges[0] = 0;
+    PersistentHashMap.intersection(
+        original,
+        rebuilt,
+        (a, b) -> {
+          merges[0]++;
+          return a;
+        });
+    Assert.assertEquals(1000, merges[0]);
+
+    Assert.assertTrue(original.containsAllEntriesOf(rebuilt));
+    Assert.assertTrue(rebuilt.containsAllEntriesOf(original));
+    Assert.assertFalse(original.containsAllEntriesOf(copy));
+    Assert.assertFalse(copy.containsAllEntriesOf(original));
+    copy.put(7, "v7");
+    Assert.assertTrue(copy.containsAllEntriesOf(original));
+  }
+
+  @Test
+  public void testIteratorAndEntries() {
+    PersistentHashMap<Integer, String> map = new PersistentHashMap<>();
+    for (int i = 0; i < 100; i++) {
+      map.put(i, "v" + i);
+    }
+    List<Integer> seen = new ArrayList<>();
+    for (Iterator<Map.Entry<Integer, String>> it = map.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry<Integer, String> entry = it.next();
+      seen.add(entry.getKey());
+      // Modifying the map does not invalidate the iterator.
+      map.put(entry.getKey() + 1000, "new");
+      if (entry.getKey() % 2 == 0) {
+        it.remove();
+      } else {
+        entry.setValue("odd");
+      }
+    }
+    Assert.assertEquals(100, seen.size());
+    Assert.assertEquals(150, map.size());
+    Assert.assertEquals("odd", map.get(1));
+    Assert.assertFalse(map.containsKey(2));
+    Assert.assertEquals("new", map.get(1002));
+  }
+}
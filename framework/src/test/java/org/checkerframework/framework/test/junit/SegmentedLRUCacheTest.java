@@ -0,0 +1,124 @@
+package org.checkerframework.framework.test.junit;
+
+import org.checkerframework.javacutil.BugInCF;
+import org.checkerframework.javacutil.SegmentedLRUCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Tests the SegmentedLRUCache class, which the type factories use for their caches. */
+public class SegmentedLRUCacheTest {
+
+  @Test
+  public void testEvictionOrder() {
+    SegmentedLRUCache<Integer, String> cache = new SegmentedLRUCache<>("test", 5);
+    for (int i = 1; i <= 5; i++) {
+      Assert.assertNull(cache.put(i, "v" + i));
+    }
+    Assert.assertEquals(5, cache.size());
+    // Replacing the value of an entry evicts nothing.
+    Assert.assertEquals("v3", cache.put(3, "w3"));
+    Assert.assertEquals(0, cache.getEvictions());
+
+    // The least recently added probationary entry is evicted first.
+    cache.put(6, "v6");
+    Assert.assertFalse(cache.containsKey(1));
+    cache.put(7, "v7");
+    Assert.assertFalse(cache.containsKey(2));
+    Assert.assertEquals(2, cache.getEvictions());
+    Assert.assertEquals(5, cache.size());
+
+    // Removing an entry makes room without an eviction.
+    Assert.assertEquals("w3", cache.remove(3));
+    cache.put(8, "v8");
+    Assert.assertEquals(2, cache.getEvictions());
+    Assert.assertEquals(5, cache.size());
+  }
+
+  @Test
+  public void testScanResistance() {
+    SegmentedLRUCache<Integer, String> cache = new SegmentedLRUCache<>("test", 10);
+    for (int i = 0; i < 8; i++) {
+      cache.put(i, "v" + i);
+      Assert.assertEquals("v" + i, cache.get(i));
+    }
+    // A burst of entries that are used once does not evict the entries that were read.
+    for (int i = 100; i < 200; i++) {
+      cache.put(i, "v" + i);
+    }
+    for (int i = 0; i < 8; i++) {
+      Assert.assertTrue(cache.containsKey(i));
+    }
+    Assert.assertEquals(10, cache.size());
+    Assert.assertEquals(98, cache.getEvictions());
+    Assert.assertTrue(cache.containsKey(199));
+    Assert.assertFalse(cache.containsKey(197));
+  }
+
+  @Test
+  public void testPromotionAndDemotion() {
+    // The protected segment holds 4 of the 5 entries.
+    SegmentedLRUCache<Integer, String> cache = new SegmentedLRUCache<>("test", 5);
+    for (int i = 1; i <= 5; i++) {
+      cache.put(i, "v" + i);
+    }
+    for (int i = 1; i <= 4; i++) {
+      cache.get(i);
+    }
+    // Promoting 5 overflows the protected segment, which demotes its least recently used entry.
+    cache.get(5);
+    cache.put(6, "v6");
+    Assert.assertFalse(cache.containsKey(1));
+    for (int i = 2; i <= 6; i++) {
+      Assert.assertTrue(cache.containsKey(i));
+    }
+
+    // A read of a protected entry makes it the most recently used one, so 3 is demoted next.
+    cache.get(2);
+    cache.get(6);
+    cache.put(7, "v7");
+    Assert.assertFalse(cache.containsKey(3));
+    Assert.assertTrue(cache.containsKey(2));
+  }
+
+  @Test
+  public void testNoProtectedSegment() {
+    // A cache with a single entry has no protected segment; a read keeps the entry probationary.
+    SegmentedLRUCache<Integer, String> cache = new SegmentedLRUCache<>("test", 1);
+    cache.put(1, "v1");
+    Assert.assertEquals("v1", cache.get(1));
+    cache.put(2, "v2");
+    Assert.assertFalse(cache.containsKey(1));
+    Assert.assertEquals("v2", cache.get(2));
+    Assert.assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testStatistics() {
+    SegmentedLRUCache<Integer, String> cache = new SegmentedLRUCache<>("myCache", 2);
+    Assert.assertEquals("myCache", cache.getName());
+    cache.put(1, "v1");
+    cache.put(2, "v2");
+    cache.put(3, "v3");
+    Assert.assertEquals("v3", cache.get(3));
+    Assert.assertEquals("v3", cache.get(3));
+    Assert.assertNull(cache.get(1));
+    // containsKey is not a lookup.
+    Assert.assertTrue(cache.containsKey(2));
+    Assert.assertEquals(2, cache.getHits());
+    Assert.assertEquals(1, cache.getMisses());
+    Assert.assertEquals(1, cache.getEvictions());
+    String statistics = cache.getStatistics();
+    Assert.assertTrue(statistics, statistics.startsWith("myCache: 2/2 entries, 3 lookups, 2 hits"));
+    Assert.assertTrue(statistics, statistics.endsWith(", 1 evictions"));
+
+    // Clearing the cache does not reset the counters.
+    cache.clear();
+    Assert.assertTrue(cache.isEmpty());
+    Assert.assertEquals(2, cache.getHits());
+  }
+
+  @Test(expected = BugInCF.class)
+  public void testNonPositiveCapacity() {
+    new SegmentedLRUCache<Integer, String>("test", 0);
+  }
+}
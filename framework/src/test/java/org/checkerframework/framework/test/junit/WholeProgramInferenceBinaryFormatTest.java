@@ -0,0 +1,208 @@
+package org.checkerframework.framework.test.junit;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.type.Type;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.checkerframework.common.wholeprograminference.WholeProgramInferenceBinaryFormat;
+import org.checkerframework.common.wholeprograminference.WholeProgramInferenceBinaryFormat.Table;
+import org.checkerframework.javacutil.UserError;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests that the binary output format of whole-program inference reads what it wrote. */
+public class WholeProgramInferenceBinaryFormatTest {
+
+  /** The directory of the binary file. */
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  /** The binary file. */
+  private File file;
+
+  /** The ajava representation of the source file, which the tests modify between writes. */
+  private CompilationUnit unit;
+
+  /** The writer of the binary file. */
+  private WholeProgramInferenceBinaryFormat format;
+
+  /** Creates the compilation unit and the writer. */
+  @Before
+  public void setUp() {
+    file = new File(folder.getRoot(), "C.wpi");
+    unit =
+        StaticJavaParser.parse("package p; class C { int f; @B String m(int x) { return null; } }");
+    unit.findFirst(FieldDeclaration.class).get().getVariable(0).setType(type("@A"));
+    setParameterAnnotation("@C");
+    format = new WholeProgramInferenceBinaryFormat();
+  }
+
+  /** Writes {@link #unit} to {@link #file}. */
+  private void write() {
+    format.write(file.getPath(), "C.java", "p.Checker", unit);
+  }
+
+  /**
+   * Reads {@link #file}.
+   *
+   * @return the records of the file
+   */
+  private Map<String, List<String>> read() {
+    Table table = WholeProgramInferenceBinaryFormat.read(file.toPath());
+    Assert.assertEquals("p.Checker", table.checker);
+    Assert.assertEquals("C.java", table.sourceFile);
+    return table.records;
+  }
+
+  /**
+   * Sets the annotation of the parameter of {@code m}.
+   *
+   * @param annotation the annotation, such as {@code @C}
+   */
+  private void setParameterAnnotation(String annotation) {
+    unit.findFirst(Parameter.class).get().setType(type(annotation));
+  }
+
+  /**
+   * Returns an annotated {@code int} type.
+   *
+   * @param annotation the annotation, such as {@code @A}
+   * @return the type {@code annotation int}
+   */
+  private static Type type(String annotation) {
+    return StaticJavaParser.parseType(annotation + " int");
+  }
+
+  /**
+   * Returns the value of the record of an annotated {@code int} type.
+   *
+   * @param annotation the annotation, such as {@code @A}
+   * @return the value of the record of the type {@code annotation int}
+   */
+  private static List<String> value(String annotation) {
+    return Collections.singletonList(type(annotation).toString());
+  }
+
+  @Test
+  public void testWriteAndRead() {
+    write();
+    Map<String, List<String>> expected = new HashMap<>();
+    expected.put("p.C#field:f", value("@A"));
+    expected.put("p.C#m(int)#decl", Collections.singletonList("@B"));
+    expected.put("p.C#m(int)#param0", value("@C"));
+    Assert.assertEquals(expected, read());
+  }
+
+  @Test
+  public void testAppend() {
+    write();
+    long length = file.length();
+    // Writing unchanged records appends nothing.
+    write();
+    Assert.assertEquals(length, file.length());
+
+    setParameterAnnotation("@D");
+    unit.findFirst(FieldDeclaration.class).get().getVariable(0).setType("int");
+    write();
+    Assert.assertTrue(file.length() > length);
+    Map<String, List<String>> expected = new HashMap<>();
+    expected.put("p.C#m(int)#decl", Collections.singletonList("@B"));
+    expected.put("p.C#m(int)#param0", value("@D"));
+    Assert.assertEquals(expected, read());
+
+    // Another writer, as in a later JVM, rewrites the file instead of appending to it.
+    format = new WholeProgramInferenceBinaryFormat();
+    write();
+    Assert.assertTrue(file.length() < length);
+    Assert.assertEquals(expected, read());
+  }
+
+  @Test
+  public void testCompaction() {
+    write();
+    long length = file.length();
+    long maxLength = length;
+    for (int i = 0; i < 100; i++) {
+      setParameterAnnotation(i % 2 == 0 ? "@D" : "@C");
+      write();
+      maxLength = Math.max(maxLength, file.length());
+    }
+    // The file was rewritten when most of its records were overwritten ones.
+    Assert.assertTrue(file.length() < maxLength);
+    setParameterAnnotation("@C");
+    write();
+    Map<String, List<String>> records = read();
+    Assert.assertEquals(3, records.size());
+    Assert.assertEquals(value("@C"), records.get("p.C#m(int)#param0"));
+  }
+
+  /**
+   * A record that was cut off while it was appended is ignored.
+   *
+   * @throws IOException if the file cannot be truncated
+   */
+  @Test
+  public void testTruncated() throws IOException {
+    write();
+    long length = file.length();
+    setParameterAnnotation("@D");
+    write();
+    try (RandomAccessFile f = new RandomAccessFile(file, "rw")) {
+      f.setLength(file.length() - 3);
+    }
+    Assert.assertEquals(value("@C"), read().get("p.C#m(int)#param0"));
+    try (RandomAccessFile f = new RandomAccessFile(file, "rw")) {
+      f.setLength(length);
+    }
+    Assert.assertEquals(3, read().size());
+  }
+
+  /**
+   * A length that exceeds the rest of the file is not trusted, and a negative length makes the
+   * file unreadable.
+   *
+   * @throws IOException if the file cannot be written
+   */
+  @Test
+  public void testCorruptLength() throws IOException {
+    write();
+    long length = file.length();
+    try (RandomAccessFile f = new RandomAccessFile(file, "rw")) {
+      f.seek(length);
+      f.writeInt(Integer.MAX_VALUE);
+      f.write(new byte[16]);
+    }
+    Assert.assertEquals(3, read().size());
+
+    try (RandomAccessFile f = new RandomAccessFile(file, "rw")) {
+      f.seek(length);
+      f.writeInt(-1);
+    }
+    try {
+      read();
+      Assert.fail("No UserError for a negative length");
+    } catch (UserError e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("corrupt"));
+    }
+
+    Files.write(file.toPath(), Arrays.asList("not a binary file"));
+    try {
+      read();
+      Assert.fail("No UserError for a file that is not a binary file");
+    } catch (UserError e) {
+      // expected
+    }
+  }
+}
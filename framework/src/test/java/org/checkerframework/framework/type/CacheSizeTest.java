@@ -0,0 +1,44 @@
+package org.checkerframework.framework.type;
+
+import org.checkerframework.javacutil.UserError;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Tests the parsing of the {@code -AatfCacheSize} option by {@link AnnotatedTypeFactory}. */
+public class CacheSizeTest {
+
+  /** A maximum heap size of 1000 MiB. */
+  private static final long MAX_MEMORY = 1000L * 1024 * 1024;
+
+  @Test
+  public void testNumberOfEntries() {
+    Assert.assertEquals(300, AnnotatedTypeFactory.parseCacheSize("300", MAX_MEMORY));
+    Assert.assertEquals(1, AnnotatedTypeFactory.parseCacheSize("1", MAX_MEMORY));
+  }
+
+  @Test
+  public void testPercentage() {
+    // 1% of 1000 MiB is 10 MiB, which holds 5120 entries of 2 KiB.
+    Assert.assertEquals(5120, AnnotatedTypeFactory.parseCacheSize("1%", MAX_MEMORY));
+    Assert.assertEquals(2560, AnnotatedTypeFactory.parseCacheSize("0.5%", MAX_MEMORY));
+    Assert.assertEquals(512000, AnnotatedTypeFactory.parseCacheSize("100%", MAX_MEMORY));
+    // A tiny heap still gets one entry.
+    Assert.assertEquals(1, AnnotatedTypeFactory.parseCacheSize("1%", 1024));
+    // A huge heap does not overflow.
+    Assert.assertEquals(
+        Integer.MAX_VALUE, AnnotatedTypeFactory.parseCacheSize("100%", Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testMalformed() {
+    String[] malformed = {"", "abc", "1.5", "%", "x%", "0", "-5", "0%", "-1%", "101%"};
+    for (String option : malformed) {
+      try {
+        AnnotatedTypeFactory.parseCacheSize(option, MAX_MEMORY);
+        Assert.fail("No UserError for " + option);
+      } catch (UserError e) {
+        // expected
+      }
+    }
+  }
+}
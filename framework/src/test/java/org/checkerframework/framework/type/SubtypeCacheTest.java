@@ -0,0 +1,106 @@
+package org.checkerframework.framework.type;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import org.checkerframework.framework.testchecker.h1h2checker.H1H2Checker;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedTypeVariable;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the cache of {@link DefaultTypeHierarchy#isSubtype(AnnotatedTypeMirror,
+ * AnnotatedTypeMirror)}.
+ */
+public class SubtypeCacheTest {
+
+  /** Two methods with a type variable each; both type variables are named T. */
+  private static final String SOURCE =
+      String.join(
+          "\n", "class Test {", "  <T> void a(T x) {}", "  <T extends Number> void b(T y) {}", "}");
+
+  /** The type hierarchy of the H1H2 Checker. */
+  private static TypeHierarchy typeHierarchy;
+
+  /** The type of the parameter of method a, the type variable T of a. */
+  private static AnnotatedTypeVariable typeOfA;
+
+  /** The type of the parameter of method b, the type variable T of b. */
+  private static AnnotatedTypeVariable typeOfB;
+
+  /** A checker that records types of its type factory when it finishes. */
+  public static class RecordingChecker extends H1H2Checker {
+    @Override
+    public void typeProcessingOver() {
+      AnnotatedTypeFactory factory = getTypeFactory();
+      typeHierarchy = factory.getTypeHierarchy();
+      TypeElement test = factory.elements.getTypeElement("Test");
+      List<ExecutableElement> methods = ElementFilter.methodsIn(test.getEnclosedElements());
+      typeOfA = (AnnotatedTypeVariable) parameterType(factory, methods.get(0));
+      typeOfB = (AnnotatedTypeVariable) parameterType(factory, methods.get(1));
+      super.typeProcessingOver();
+    }
+  }
+
+  /**
+   * Returns the type of the first parameter of a method.
+   *
+   * @param factory the type factory
+   * @param method a method with a parameter
+   * @return the type of the first parameter of {@code method}
+   */
+  private static AnnotatedTypeMirror parameterType(
+      AnnotatedTypeFactory factory, ExecutableElement method) {
+    return factory.getAnnotatedType(method).getParameterTypes().get(0);
+  }
+
+  /** Runs the {@link RecordingChecker} on {@link #SOURCE}, to create the types. */
+  @BeforeClass
+  public static void createTypes() {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    JavaFileObject source =
+        new SimpleJavaFileObject(URI.create("string:///Test.java"), JavaFileObject.Kind.SOURCE) {
+          @Override
+          public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return SOURCE;
+          }
+        };
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    JavaCompiler.CompilationTask task =
+        compiler.getTask(
+            null,
+            null,
+            diagnostics,
+            Arrays.asList("-proc:only", "-classpath", System.getProperty("java.class.path")),
+            null,
+            Arrays.asList(source));
+    task.setProcessors(Arrays.asList(new RecordingChecker()));
+    Assert.assertTrue(diagnostics.getDiagnostics().toString(), task.call());
+    Assert.assertTrue(typeHierarchy instanceof DefaultTypeHierarchy);
+  }
+
+  @Test
+  public void testSameNamedTypeVariables() {
+    Assert.assertEquals(
+        typeOfA.getUnderlyingType().toString(), typeOfB.getUnderlyingType().toString());
+    // Caches the answers for the type variable of a.
+    Assert.assertTrue(typeHierarchy.isSubtype(typeOfA, typeOfA));
+    Assert.assertTrue(typeHierarchy.isSubtype(typeOfA.deepCopy(), typeOfA.deepCopy()));
+    // The type variable of b prints the same, but is a different type.
+    Assert.assertFalse(typeHierarchy.isSubtype(typeOfB, typeOfA));
+    Assert.assertFalse(typeHierarchy.isSubtype(typeOfA, typeOfB));
+    Assert.assertTrue(typeHierarchy.isSubtype(typeOfB, typeOfB));
+    // The answers for b did not replace those for a.
+    Assert.assertTrue(typeHierarchy.isSubtype(typeOfA, typeOfA));
+    Assert.assertFalse(typeHierarchy.isSubtype(typeOfB, typeOfA));
+  }
+}
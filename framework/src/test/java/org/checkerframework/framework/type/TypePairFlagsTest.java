@@ -0,0 +1,268 @@
+package org.checkerframework.framework.type;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.type.TypeKind;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import org.checkerframework.framework.testchecker.h1h2checker.H1H2Checker;
+import org.checkerframework.javacutil.BugInCF;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests {@link TypePairFlags}, the hash table of {@link SubtypeVisitHistory} and {@link
+ * StructuralEqualityVisitHistory}.
+ */
+public class TypePairFlagsTest {
+
+  /** Unannotated primitive types, all different; every pair of them is a different pair. */
+  private static List<AnnotatedTypeMirror> types;
+
+  /** The tops of the two qualifier hierarchies of the H1H2 Checker. */
+  private static List<AnnotationMirror> tops;
+
+  /** An annotation that is not the top of a hierarchy. */
+  private static AnnotationMirror bottom;
+
+  /** A checker that records types and qualifiers of its type factory when it finishes. */
+  public static class RecordingChecker extends H1H2Checker {
+    @Override
+    public void typeProcessingOver() {
+      AnnotatedTypeFactory factory = getTypeFactory();
+      types = new ArrayList<>();
+      for (TypeKind kind :
+          Arrays.asList(
+              TypeKind.BOOLEAN,
+              TypeKind.BYTE,
+              TypeKind.SHORT,
+              TypeKind.INT,
+              TypeKind.LONG,
+              TypeKind.CHAR,
+              TypeKind.FLOAT,
+              TypeKind.DOUBLE)) {
+        types.add(
+            AnnotatedTypeMirror.createType(factory.types.getPrimitiveType(kind), factory, false));
+      }
+      tops = new ArrayList<>(factory.getQualifierHierarchy().getTopAnnotations());
+      bottom = factory.getQualifierHierarchy().getBottomAnnotations().iterator().next();
+      super.typeProcessingOver();
+    }
+  }
+
+  /** Runs the {@link RecordingChecker} on an empty class, to create types and qualifiers. */
+  @BeforeClass
+  public static void createTypes() {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    JavaFileObject source =
+        new SimpleJavaFileObject(URI.create("string:///Test.java"), JavaFileObject.Kind.SOURCE) {
+          @Override
+          public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return "class Test {}";
+          }
+        };
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    JavaCompiler.CompilationTask task =
+        compiler.getTask(
+            null,
+            null,
+            diagnostics,
+            Arrays.asList("-proc:only", "-classpath", System.getProperty("java.class.path")),
+            null,
+            Arrays.asList(source));
+    task.setProcessors(Arrays.asList(new RecordingChecker()));
+    Assert.assertTrue(diagnostics.getDiagnostics().toString(), task.call());
+    Assert.assertEquals(8, types.size());
+    Assert.assertEquals(2, tops.size());
+  }
+
+  /**
+   * Returns the first type of the pair with the given number.
+   *
+   * @param pair a number less than 64
+   * @return the first type of the pair
+   */
+  private static AnnotatedTypeMirror first(int pair) {
+    return types.get(pair / 8);
+  }
+
+  /**
+   * Returns the second type of the pair with the given number.
+   *
+   * @param pair a number less than 64
+   * @return the second type of the pair
+   */
+  private static AnnotatedTypeMirror second(int pair) {
+    return types.get(pair % 8);
+  }
+
+  /**
+   * Returns the flags of the pair with the given number.
+   *
+   * @param table a table
+   * @param pair a number less than 64
+   * @param hashCode the hash code under which the pair was set
+   * @return the flags of the pair
+   */
+  private static long get(TypePairFlags table, int pair, int hashCode) {
+    return table.get(first(pair), second(pair), hashCode);
+  }
+
+  /**
+   * Sets the flags of the pair with the given number.
+   *
+   * @param table a table
+   * @param pair a number less than 64
+   * @param hashCode the hash code under which to set the pair
+   * @param flags the new flags of the pair
+   */
+  private static void set(TypePairFlags table, int pair, int hashCode, long flags) {
+    table.set(first(pair), second(pair), hashCode, flags);
+  }
+
+  @Test
+  public void testGrowth() {
+    TypePairFlags table = new TypePairFlags();
+    // The table starts with 16 slots, and grows at 13, 25, and 49 pairs.
+    for (int pair = 0; pair < 64; pair++) {
+      int hashCode = TypePairFlags.hashCode(first(pair), second(pair));
+      Assert.assertEquals(0, table.get(first(pair), second(pair), hashCode));
+      set(table, pair, hashCode, pair + 1);
+      for (int earlier = 0; earlier <= pair; earlier++) {
+        int earlierHashCode = TypePairFlags.hashCode(first(earlier), second(earlier));
+        Assert.assertEquals(earlier + 1, get(table, earlier, earlierHashCode));
+      }
+    }
+    // Equal, but not identical, types find the same pair.
+    AnnotatedTypeMirror copy1 = first(9).deepCopy();
+    AnnotatedTypeMirror copy2 = second(9).deepCopy();
+    Assert.assertEquals(10, table.get(copy1, copy2, TypePairFlags.hashCode(copy1, copy2)));
+    // Overwriting flags does not add a pair.
+    set(table, 9, TypePairFlags.hashCode(copy1, copy2), 100);
+    Assert.assertEquals(100, get(table, 9, TypePairFlags.hashCode(copy1, copy2)));
+    Assert.assertEquals(64, table.toString(1).split("\\)=\\[").length - 1);
+  }
+
+  @Test
+  public void testBackwardShiftDeletion() {
+    TypePairFlags table = new TypePairFlags();
+    // Ten pairs in one probe sequence, followed by pairs with a different hash code that may have
+    // been displaced by them.
+    for (int pair = 0; pair < 10; pair++) {
+      set(table, pair, 42, pair + 1);
+    }
+    for (int pair = 10; pair < 12; pair++) {
+      set(table, pair, 43, pair + 1);
+    }
+    // Remove pairs from the start, the middle, and the end of the probe sequence.
+    int[] removed = {0, 5, 9, 10, 3};
+    for (int i = 0; i < removed.length; i++) {
+      int pair = removed[i];
+      set(table, pair, pair < 10 ? 42 : 43, 0);
+      for (int other = 0; other < 12; other++) {
+        boolean isRemoved = false;
+        for (int j = 0; j <= i; j++) {
+          isRemoved |= removed[j] == other;
+        }
+        long expected = isRemoved ? 0 : other + 1;
+        Assert.assertEquals("pair " + other, expected, get(table, other, other < 10 ? 42 : 43));
+      }
+    }
+    // Removing a pair that is not in the table does nothing.
+    set(table, 0, 42, 0);
+    set(table, 20, 42, 0);
+    Assert.assertEquals(2, get(table, 1, 42));
+    // A removed pair can be added again.
+    set(table, 5, 42, 55);
+    Assert.assertEquals(55, get(table, 5, 42));
+  }
+
+  @Test
+  public void testAgainstHashMap() {
+    Random random = new Random(0);
+    TypePairFlags table = new TypePairFlags();
+    Map<Integer, Long> expected = new HashMap<>();
+    for (int i = 0; i < 5000; i++) {
+      int pair = random.nextInt(64);
+      // Few distinct hash codes, so that probe sequences are long and wrap around the table.
+      int hashCode = pair % 5;
+      long flags = random.nextInt(3) == 0 ? 0 : random.nextInt(8) + 1;
+      set(table, pair, hashCode, flags);
+      if (flags == 0) {
+        expected.remove(pair);
+      } else {
+        expected.put(pair, flags);
+      }
+      for (int other = 0; other < 64; other++) {
+        Long otherFlags = expected.get(other);
+        Assert.assertEquals(otherFlags == null ? 0 : otherFlags, get(table, other, other % 5));
+      }
+    }
+  }
+
+  @Test
+  public void testHierarchies() {
+    TypePairFlags table = new TypePairFlags();
+    AnnotationMirror top0 = tops.get(0);
+    AnnotationMirror top1 = tops.get(1);
+    Assert.assertEquals(-1, table.hierarchyIndex(top0, false, 1));
+    Assert.assertEquals(0, table.hierarchyIndex(top0, true, 1));
+    Assert.assertEquals(1, table.hierarchyIndex(top1, true, 1));
+    Assert.assertEquals(0, table.hierarchyIndex(top0, true, 1));
+    Assert.assertEquals(1, table.hierarchyIndex(top1, false, 1));
+    Assert.assertEquals(-1, table.hierarchyIndex(bottom, false, 1));
+
+    // With one bit per hierarchy, bit i is the flag of hierarchy i.
+    set(table, 1, 1, 0b10);
+    String description = table.toString(1);
+    Assert.assertTrue(description, description.contains(top1.toString()));
+    Assert.assertFalse(description, description.contains(top0.toString()));
+    set(table, 1, 1, 0b11);
+    description = table.toString(1);
+    Assert.assertTrue(description, description.contains(top0.toString()));
+    Assert.assertTrue(description, description.contains(top1.toString()));
+
+    // With two bits per hierarchy, bits 0 and 1 belong to hierarchy 0, and bits 2 and 3 to
+    // hierarchy 1.
+    set(table, 1, 1, 0b10);
+    description = table.toString(2);
+    Assert.assertTrue(description, description.contains(top0.toString()));
+    Assert.assertFalse(description, description.contains(top1.toString()));
+    set(table, 1, 1, 0b1000);
+    description = table.toString(2);
+    Assert.assertFalse(description, description.contains(top0.toString()));
+    Assert.assertTrue(description, description.contains(top1.toString()));
+  }
+
+  @Test
+  public void testTooManyHierarchies() {
+    TypePairFlags table = new TypePairFlags();
+    Assert.assertEquals(0, table.hierarchyIndex(tops.get(0), true, 1));
+    Assert.assertEquals(1, table.hierarchyIndex(tops.get(1), true, 1));
+    try {
+      table.hierarchyIndex(bottom, true, 1);
+      Assert.fail("no exception for a third hierarchy");
+    } catch (BugInCF expected) {
+    }
+    // The failed call gave the annotation no index.
+    Assert.assertEquals(-1, table.hierarchyIndex(bottom, false, 1));
+
+    TypePairFlags single = new TypePairFlags();
+    Assert.assertEquals(0, single.hierarchyIndex(tops.get(1), true, 0));
+    try {
+      single.hierarchyIndex(tops.get(0), true, 0);
+      Assert.fail("no exception for a second hierarchy");
+    } catch (BugInCF expected) {
+    }
+  }
+}
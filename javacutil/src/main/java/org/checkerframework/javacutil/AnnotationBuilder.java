@@ -1,6 +1,7 @@
 package org.checkerframework.javacutil;
 
 import java.lang.annotation.Annotation;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -9,6 +10,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.WeakHashMap;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.AnnotationValue;
@@ -250,7 +252,7 @@ public class AnnotationBuilder {
       elementValues.put(annoElement, elementValue);
     }
 
-    AnnotationMirror result = new CheckerFrameworkAnnotationMirror(annoType, elementValues);
+    AnnotationMirror result = intern(new CheckerFrameworkAnnotationMirror(annoType, elementValues));
     return result;
   }
 
@@ -266,7 +268,7 @@ public class AnnotationBuilder {
   public AnnotationMirror build() {
     assertNotBuilt();
     wasBuilt = true;
-    return new CheckerFrameworkAnnotationMirror(annotationType, elementValues);
+    return intern(new CheckerFrameworkAnnotationMirror(annotationType, elementValues));
   }
 
   /**
@@ -655,11 +657,139 @@ public class AnnotationBuilder {
     return new CheckerFrameworkAnnotationValue(obj);
   }
 
-  /** Implementation of AnnotationMirror used by the Checker Framework. */
+  /**
+   * The canonical annotation mirrors that have been built. The value for a key is the mirror of the
+   * key. An entry is removed when its mirror is no longer reachable; the mirror refers to its key,
+   * so the key is reachable as long as the mirror is.
+   */
+  private static final Map<InternKey, WeakReference<CheckerFrameworkAnnotationMirror>> internTable =
+      new WeakHashMap<>();
+
+  /**
+   * Returns the canonical annotation mirror that is the same as the given one according to {@link
+   * AnnotationUtils#areSame(AnnotationMirror, AnnotationMirror)}. Thread-safe.
+   *
+   * @param mirror a newly built annotation mirror
+   * @return a previously built annotation mirror that is the same as {@code mirror}, or {@code
+   *     mirror} itself if there is none
+   */
+  private static CheckerFrameworkAnnotationMirror intern(CheckerFrameworkAnnotationMirror mirror) {
+    InternKey key = new InternKey(mirror);
+    synchronized (internTable) {
+      WeakReference<CheckerFrameworkAnnotationMirror> ref = internTable.get(key);
+      @Nullable CheckerFrameworkAnnotationMirror existing = ref == null ? null : ref.get();
+      if (existing != null) {
+        return existing;
+      }
+      mirror.internKey = key;
+      internTable.put(key, new WeakReference<>(mirror));
+      return mirror;
+    }
+  }
+
+  /**
+   * A key in {@link #internTable}. Two keys are equal if their mirrors are annotations of the same
+   * annotation type element and have the same element values; in particular, mirrors from different
+   * compilations are never equal.
+   */
+  private static final class InternKey {
+    /** The annotation mirror. */
+    private final CheckerFrameworkAnnotationMirror mirror;
+
+    /** The annotation type element of {@link #mirror}. */
+    private final Element annotationElement;
+
+    /** The hash code of this, which is consistent with {@link AnnotationUtils#areSame}. */
+    private final int hashCode;
+
+    /**
+     * Creates the key for an annotation mirror.
+     *
+     * @param mirror an annotation mirror
+     */
+    InternKey(CheckerFrameworkAnnotationMirror mirror) {
+      this.mirror = mirror;
+      this.annotationElement = mirror.getAnnotationType().asElement();
+      Map<? extends ExecutableElement, ? extends AnnotationValue> values =
+          mirror.getElementValues();
+      int result = mirror.annotationName.hashCode();
+      for (ExecutableElement element :
+          ElementFilter.methodsIn(annotationElement.getEnclosedElements())) {
+        AnnotationValue value = values.get(element);
+        if (value == null) {
+          value = element.getDefaultValue();
+        }
+        result = 31 * result + valueHashCode(value);
+      }
+      this.hashCode = result;
+    }
+
+    /**
+     * Returns a hash code for the value of an annotation element. Values that {@link
+     * AnnotationUtils#sameAnnotationValue} considers the same have the same hash code.
+     *
+     * @param value an annotation value, the result of {@link AnnotationValue#getValue()}, or an
+     *     element of an array value
+     * @return a hash code for {@code value}
+     */
+    private static int valueHashCode(@Nullable Object value) {
+      if (value == null) {
+        return 0;
+      } else if (value instanceof AnnotationValue) {
+        return valueHashCode(((AnnotationValue) value).getValue());
+      } else if (value instanceof List<?>) {
+        int result = 1;
+        for (Object elementValue : (List<?>) value) {
+          result = 31 * result + valueHashCode(elementValue);
+        }
+        return result;
+      } else if (value instanceof AnnotationMirror) {
+        return AnnotationUtils.annotationName((AnnotationMirror) value).hashCode();
+      } else if (value instanceof TypeMirror) {
+        // Types are compared structurally, but TypeMirror does not override hashCode.
+        return 0;
+      } else {
+        return value.hashCode();
+      }
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof InternKey)) {
+        return false;
+      }
+      InternKey other = (InternKey) obj;
+      return hashCode == other.hashCode
+          && annotationElement == other.annotationElement
+          && AnnotationUtils.sameElementValues(mirror, other.mirror);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /**
+   * Implementation of AnnotationMirror used by the Checker Framework.
+   *
+   * <p>Instances are canonical: {@link AnnotationBuilder} never returns two instances that are
+   * annotations of the same annotation type element and have the same element values. So, two
+   * instances for the same annotation type element are the same according to {@link
+   * AnnotationUtils#areSame(AnnotationMirror, AnnotationMirror)} if and only if they are identical.
+   */
   /* default visibility to allow access from within package. */
   static class CheckerFrameworkAnnotationMirror implements AnnotationMirror {
     /** The interned toString value. */
     private @Nullable @Interned String toStringVal;
+    /**
+     * The key of this in the intern table, or null if this is not canonical. Keeps the entry for
+     * this in the intern table alive.
+     */
+    private @Nullable InternKey internKey;
     /** The annotation type. */
     private final DeclaredType annotationType;
     /** The element values. */
@@ -688,6 +818,16 @@ public class AnnotationBuilder {
       return annotationType;
     }
 
+    /**
+     * Returns true if this is the canonical instance for its annotation type element and element
+     * values.
+     *
+     * @return true if this is canonical
+     */
+    boolean isCanonical() {
+      return internKey != null;
+    }
+
     @Override
     public Map<? extends ExecutableElement, ? extends AnnotationValue> getElementValues() {
       return Collections.unmodifiableMap(elementValues);
@@ -0,0 +1,355 @@
+package org.checkerframework.javacutil;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.lang.model.element.AnnotationMirror;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A map whose keys are {@link AnnotationMirror}s, ordered by {@link
+ * AnnotationUtils#compareAnnotationMirrors}. Use {@link AnnotationUtils#createAnnotationMap()} to
+ * create one.
+ *
+ * <p>Like {@link AnnotationMirrorSet}, this map stores up to {@link
+ * AnnotationMirrorSet#MAX_ARRAY_SIZE} entries in sorted arrays, and only switches to a {@link
+ * TreeMap} when it grows larger.
+ *
+ * @param <V> the type of the values of this map
+ */
+public class AnnotationMirrorMap<V> extends AbstractMap<AnnotationMirror, V> {
+
+  /** The comparator that orders the keys. */
+  private static final Comparator<AnnotationMirror> COMPARATOR =
+      AnnotationUtils::compareAnnotationMirrors;
+
+  /**
+   * The keys of this map in ascending order, in the first {@link #size} elements. Null until the
+   * first entry is added, and unused once {@link #tree} is non-null.
+   */
+  private @Nullable AnnotationMirror @Nullable [] keys;
+
+  /** The values of this map; the value for {@code keys[i]} is {@code values[i]}. */
+  private @Nullable Object @Nullable [] values;
+
+  /** The number of entries in {@link #keys} and {@link #values}. */
+  private int size;
+
+  /** The entries of this map, once there have been too many for the arrays. */
+  private @Nullable TreeMap<AnnotationMirror, V> tree;
+
+  /** The number of modifications of the arrays, to make iterators fail fast. */
+  private int modCount;
+
+  /** Creates an empty map. */
+  public AnnotationMirrorMap() {}
+
+  /**
+   * Creates a map that contains the entries of the given map.
+   *
+   * @param copy the map whose entries to put in the new map
+   */
+  public AnnotationMirrorMap(Map<AnnotationMirror, ? extends V> copy) {
+    putAll(copy);
+  }
+
+  /**
+   * Returns the index of {@code key} in {@link #keys}, or {@code -(insertion point) - 1} if it is
+   * not in the array. Requires that {@link #tree} is null.
+   *
+   * @param key an annotation
+   * @return the index of {@code key}, or {@code -(insertion point) - 1}
+   */
+  private int indexOf(AnnotationMirror key) {
+    for (int i = 0; i < size; i++) {
+      int cmp = COMPARATOR.compare(keyAt(i), key);
+      if (cmp == 0) {
+        return i;
+      } else if (cmp > 0) {
+        return -i - 1;
+      }
+    }
+    return -size - 1;
+  }
+
+  /**
+   * Returns the key at the given index of {@link #keys}.
+   *
+   * @param index an index less than {@link #size}
+   * @return the key at {@code index}
+   */
+  @SuppressWarnings("nullness") // the first size elements of the array are non-null
+  private AnnotationMirror keyAt(int index) {
+    return keys[index];
+  }
+
+  /**
+   * Returns the value at the given index of {@link #values}.
+   *
+   * @param index an index less than {@link #size}
+   * @return the value at {@code index}
+   */
+  @SuppressWarnings({
+    "unchecked", // only values of type V are stored in the array
+    "nullness" // the array is non-null if size > 0
+  })
+  private V valueAt(int index) {
+    return (V) values[index];
+  }
+
+  /**
+   * Switches this map to a {@link TreeMap}, if it has not switched already.
+   *
+   * @return the {@link TreeMap} that holds the entries of this map
+   */
+  private TreeMap<AnnotationMirror, V> toTree() {
+    if (tree == null) {
+      tree = new TreeMap<>(COMPARATOR);
+      for (int i = 0; i < size; i++) {
+        tree.put(keyAt(i), valueAt(i));
+      }
+      keys = null;
+      values = null;
+      size = 0;
+      modCount++;
+    }
+    return tree;
+  }
+
+  @Override
+  public int size() {
+    return tree == null ? size : tree.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return tree == null ? size == 0 : tree.isEmpty();
+  }
+
+  @Override
+  public boolean containsKey(@Nullable Object key) {
+    if (tree != null) {
+      return tree.containsKey(key);
+    }
+    return key instanceof AnnotationMirror && indexOf((AnnotationMirror) key) >= 0;
+  }
+
+  @Override
+  public @Nullable V get(@Nullable Object key) {
+    if (tree != null) {
+      return tree.get(key);
+    }
+    if (!(key instanceof AnnotationMirror)) {
+      return null;
+    }
+    int index = indexOf((AnnotationMirror) key);
+    return index >= 0 ? valueAt(index) : null;
+  }
+
+  @Override
+  public @Nullable V put(AnnotationMirror key, V value) {
+    if (tree != null) {
+      return tree.put(key, value);
+    }
+    int index = indexOf(key);
+    if (index >= 0) {
+      V oldValue = valueAt(index);
+      assert values != null : "@AssumeAssertion(nullness): size > 0";
+      values[index] = value;
+      return oldValue;
+    }
+    if (size == AnnotationMirrorSet.MAX_ARRAY_SIZE) {
+      return toTree().put(key, value);
+    }
+    if (keys == null || values == null) {
+      keys = new AnnotationMirror[AnnotationMirrorSet.MAX_ARRAY_SIZE];
+      values = new Object[AnnotationMirrorSet.MAX_ARRAY_SIZE];
+    }
+    int insertionPoint = -index - 1;
+    System.arraycopy(keys, insertionPoint, keys, insertionPoint + 1, size - insertionPoint);
+    System.arraycopy(values, insertionPoint, values, insertionPoint + 1, size - insertionPoint);
+    keys[insertionPoint] = key;
+    values[insertionPoint] = value;
+    size++;
+    modCount++;
+    return null;
+  }
+
+  @Override
+  public @Nullable V remove(@Nullable Object key) {
+    if (tree != null) {
+      return tree.remove(key);
+    }
+    if (!(key instanceof AnnotationMirror)) {
+      return null;
+    }
+    int index = indexOf((AnnotationMirror) key);
+    if (index < 0) {
+      return null;
+    }
+    V oldValue = valueAt(index);
+    removeAt(index);
+    return oldValue;
+  }
+
+  /**
+   * Removes the entry at the given index of the arrays.
+   *
+   * @param index an index less than {@link #size}
+   */
+  private void removeAt(int index) {
+    assert keys != null && values != null : "@AssumeAssertion(nullness): size > 0";
+    System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+    System.arraycopy(values, index + 1, values, index, size - index - 1);
+    size--;
+    keys[size] = null;
+    values[size] = null;
+    modCount++;
+  }
+
+  @Override
+  public void clear() {
+    tree = null;
+    keys = null;
+    values = null;
+    size = 0;
+    modCount++;
+  }
+
+  @Override
+  public Set<Map.Entry<AnnotationMirror, V>> entrySet() {
+    if (tree != null) {
+      return tree.entrySet();
+    }
+    return new AbstractSet<Map.Entry<AnnotationMirror, V>>() {
+      @Override
+      public int size() {
+        return AnnotationMirrorMap.this.size();
+      }
+
+      @Override
+      public void clear() {
+        AnnotationMirrorMap.this.clear();
+      }
+
+      @Override
+      public Iterator<Map.Entry<AnnotationMirror, V>> iterator() {
+        if (tree != null) {
+          return tree.entrySet().iterator();
+        }
+        return new EntryIterator();
+      }
+    };
+  }
+
+  /** An iterator over the entries of the arrays of this map. */
+  private class EntryIterator implements Iterator<Map.Entry<AnnotationMirror, V>> {
+    /** The index of the next entry to return. */
+    private int next = 0;
+
+    /** The index of the last entry returned, or -1 if it has been removed. */
+    private int last = -1;
+
+    /** The value of {@link AnnotationMirrorMap#modCount} that this iterator expects. */
+    private int expectedModCount = modCount;
+
+    @Override
+    public boolean hasNext() {
+      if (modCount != expectedModCount) {
+        // The map may have switched to a tree, so size is no longer the number of entries.
+        throw new ConcurrentModificationException();
+      }
+      return next < size;
+    }
+
+    @Override
+    public Map.Entry<AnnotationMirror, V> next() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (next >= size) {
+        throw new NoSuchElementException();
+      }
+      last = next++;
+      return new ArrayEntry(keyAt(last));
+    }
+
+    @Override
+    public void remove() {
+      if (last < 0) {
+        throw new IllegalStateException();
+      }
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      removeAt(last);
+      next = last;
+      last = -1;
+      expectedModCount = modCount;
+    }
+  }
+
+  /** An entry of the arrays of this map. Reads and writes the value in this map. */
+  private class ArrayEntry implements Map.Entry<AnnotationMirror, V> {
+    /** The key of this entry. */
+    private final AnnotationMirror key;
+
+    /**
+     * Creates an entry for the given key.
+     *
+     * @param key a key of this map
+     */
+    ArrayEntry(AnnotationMirror key) {
+      this.key = key;
+    }
+
+    @Override
+    public AnnotationMirror getKey() {
+      return key;
+    }
+
+    @SuppressWarnings("nullness:return") // the key is in the map unless it has been removed
+    @Override
+    public V getValue() {
+      return get(key);
+    }
+
+    @Override
+    public V setValue(V value) {
+      if (!containsKey(key)) {
+        throw new IllegalStateException("entry was removed: " + key);
+      }
+      @SuppressWarnings("nullness:assignment") // the key is in the map
+      V oldValue = put(key, value);
+      return oldValue;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+      Object value = getValue();
+      return key.equals(other.getKey())
+          && (value == null ? other.getValue() == null : value.equals(other.getValue()));
+    }
+
+    @Override
+    public int hashCode() {
+      Object value = getValue();
+      return key.hashCode() ^ (value == null ? 0 : value.hashCode());
+    }
+
+    @Override
+    public String toString() {
+      return key + "=" + getValue();
+    }
+  }
+}
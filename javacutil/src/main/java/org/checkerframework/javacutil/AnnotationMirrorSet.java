@@ -0,0 +1,389 @@
+package org.checkerframework.javacutil;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import javax.lang.model.element.AnnotationMirror;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A sorted set of {@link AnnotationMirror}s, ordered by {@link
+ * AnnotationUtils#compareAnnotationMirrors}. Use {@link AnnotationUtils#createAnnotationSet()} to
+ * create one.
+ *
+ * <p>Most sets of annotations contain one annotation per type hierarchy, so they are small. This
+ * set stores up to {@link #MAX_ARRAY_SIZE} annotations in a sorted array, and only switches to a
+ * {@link TreeSet} when it grows larger. The views returned by {@link #descendingSet}, {@link
+ * #subSet}, {@link #headSet}, and {@link #tailSet} also switch this set to a {@link TreeSet}.
+ */
+public class AnnotationMirrorSet extends AbstractSet<AnnotationMirror>
+    implements NavigableSet<AnnotationMirror> {
+
+  /** The maximum number of annotations that are stored in {@link #array}. */
+  static final int MAX_ARRAY_SIZE = 4;
+
+  /** The comparator that orders the annotations. */
+  private static final Comparator<AnnotationMirror> COMPARATOR =
+      AnnotationUtils::compareAnnotationMirrors;
+
+  /**
+   * The annotations of this set in ascending order, in the first {@link #size} elements. Null
+   * until the first annotation is added, and unused once {@link #tree} is non-null.
+   */
+  private @Nullable AnnotationMirror @Nullable [] array;
+
+  /** The number of annotations in {@link #array}. */
+  private int size;
+
+  /** The annotations of this set, once there have been too many for {@link #array}. */
+  private @Nullable TreeSet<AnnotationMirror> tree;
+
+  /** The number of modifications of {@link #array}, to make iterators fail fast. */
+  private int modCount;
+
+  /** Creates an empty set. */
+  public AnnotationMirrorSet() {}
+
+  /**
+   * Creates a set that contains the given annotations.
+   *
+   * @param annos the annotations to put in the set
+   */
+  public AnnotationMirrorSet(Collection<? extends AnnotationMirror> annos) {
+    addAll(annos);
+  }
+
+  /**
+   * Returns a new set that contains the given annotation.
+   *
+   * @param anno the annotation to put in the set
+   * @return a new set that contains {@code anno}
+   */
+  public static AnnotationMirrorSet singleElementSet(AnnotationMirror anno) {
+    AnnotationMirrorSet result = new AnnotationMirrorSet();
+    result.add(anno);
+    return result;
+  }
+
+  /**
+   * Returns the index of {@code o} in {@link #array}, or {@code -(insertion point) - 1} if it is
+   * not in the array. Requires that {@link #tree} is null.
+   *
+   * @param o an annotation
+   * @return the index of {@code o}, or {@code -(insertion point) - 1}
+   */
+  private int indexOf(AnnotationMirror o) {
+    for (int i = 0; i < size; i++) {
+      int cmp = COMPARATOR.compare(get(i), o);
+      if (cmp == 0) {
+        return i;
+      } else if (cmp > 0) {
+        return -i - 1;
+      }
+    }
+    return -size - 1;
+  }
+
+  /**
+   * Returns the annotation at the given index of {@link #array}.
+   *
+   * @param index an index less than {@link #size}
+   * @return the annotation at {@code index}
+   */
+  @SuppressWarnings("nullness") // the first size elements of the array are non-null
+  private AnnotationMirror get(int index) {
+    return array[index];
+  }
+
+  /**
+   * Switches this set to a {@link TreeSet}, if it has not switched already.
+   *
+   * @return the {@link TreeSet} that holds the annotations of this set
+   */
+  private TreeSet<AnnotationMirror> toTree() {
+    if (tree == null) {
+      tree = new TreeSet<>(COMPARATOR);
+      for (int i = 0; i < size; i++) {
+        tree.add(get(i));
+      }
+      array = null;
+      size = 0;
+      modCount++;
+    }
+    return tree;
+  }
+
+  @Override
+  public int size() {
+    return tree == null ? size : tree.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return tree == null ? size == 0 : tree.isEmpty();
+  }
+
+  @Override
+  public boolean contains(@Nullable Object o) {
+    if (tree != null) {
+      return tree.contains(o);
+    }
+    return o instanceof AnnotationMirror && indexOf((AnnotationMirror) o) >= 0;
+  }
+
+  @Override
+  public boolean add(AnnotationMirror anno) {
+    if (tree != null) {
+      return tree.add(anno);
+    }
+    int index = indexOf(anno);
+    if (index >= 0) {
+      return false;
+    }
+    if (size == MAX_ARRAY_SIZE) {
+      return toTree().add(anno);
+    }
+    if (array == null) {
+      array = new AnnotationMirror[MAX_ARRAY_SIZE];
+    }
+    int insertionPoint = -index - 1;
+    System.arraycopy(array, insertionPoint, array, insertionPoint + 1, size - insertionPoint);
+    array[insertionPoint] = anno;
+    size++;
+    modCount++;
+    return true;
+  }
+
+  @Override
+  public boolean remove(@Nullable Object o) {
+    if (tree != null) {
+      return tree.remove(o);
+    }
+    if (!(o instanceof AnnotationMirror)) {
+      return false;
+    }
+    int index = indexOf((AnnotationMirror) o);
+    if (index < 0) {
+      return false;
+    }
+    removeAt(index);
+    return true;
+  }
+
+  /**
+   * Removes the annotation at the given index of {@link #array}.
+   *
+   * @param index an index less than {@link #size}
+   */
+  private void removeAt(int index) {
+    assert array != null : "@AssumeAssertion(nullness): size > 0";
+    System.arraycopy(array, index + 1, array, index, size - index - 1);
+    size--;
+    array[size] = null;
+    modCount++;
+  }
+
+  @Override
+  public void clear() {
+    tree = null;
+    array = null;
+    size = 0;
+    modCount++;
+  }
+
+  @Override
+  public Iterator<AnnotationMirror> iterator() {
+    if (tree != null) {
+      return tree.iterator();
+    }
+    return new Iterator<AnnotationMirror>() {
+      /** The index of the next annotation to return. */
+      private int next = 0;
+
+      /** The index of the last annotation returned, or -1 if it has been removed. */
+      private int last = -1;
+
+      /** The value of {@link AnnotationMirrorSet#modCount} that this iterator expects. */
+      private int expectedModCount = modCount;
+
+      @Override
+      public boolean hasNext() {
+        if (modCount != expectedModCount) {
+          // The set may have switched to a tree, so size is no longer the number of annotations.
+          throw new ConcurrentModificationException();
+        }
+        return next < size;
+      }
+
+      @Override
+      public AnnotationMirror next() {
+        if (modCount != expectedModCount) {
+          throw new ConcurrentModificationException();
+        }
+        if (next >= size) {
+          throw new NoSuchElementException();
+        }
+        last = next++;
+        return get(last);
+      }
+
+      @Override
+      public void remove() {
+        if (last < 0) {
+          throw new IllegalStateException();
+        }
+        if (modCount != expectedModCount) {
+          throw new ConcurrentModificationException();
+        }
+        removeAt(last);
+        next = last;
+        last = -1;
+        expectedModCount = modCount;
+      }
+    };
+  }
+
+  @Override
+  public Comparator<? super AnnotationMirror> comparator() {
+    return COMPARATOR;
+  }
+
+  @Override
+  public AnnotationMirror first() {
+    if (tree != null) {
+      return tree.first();
+    }
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+    return get(0);
+  }
+
+  @Override
+  public AnnotationMirror last() {
+    if (tree != null) {
+      return tree.last();
+    }
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+    return get(size - 1);
+  }
+
+  @Override
+  public @Nullable AnnotationMirror lower(AnnotationMirror anno) {
+    if (tree != null) {
+      return tree.lower(anno);
+    }
+    int index = indexOf(anno);
+    int lower = index >= 0 ? index - 1 : -index - 2;
+    return lower >= 0 ? get(lower) : null;
+  }
+
+  @Override
+  public @Nullable AnnotationMirror floor(AnnotationMirror anno) {
+    if (tree != null) {
+      return tree.floor(anno);
+    }
+    int index = indexOf(anno);
+    int floor = index >= 0 ? index : -index - 2;
+    return floor >= 0 ? get(floor) : null;
+  }
+
+  @Override
+  public @Nullable AnnotationMirror ceiling(AnnotationMirror anno) {
+    if (tree != null) {
+      return tree.ceiling(anno);
+    }
+    int index = indexOf(anno);
+    int ceiling = index >= 0 ? index : -index - 1;
+    return ceiling < size ? get(ceiling) : null;
+  }
+
+  @Override
+  public @Nullable AnnotationMirror higher(AnnotationMirror anno) {
+    if (tree != null) {
+      return tree.higher(anno);
+    }
+    int index = indexOf(anno);
+    int higher = index >= 0 ? index + 1 : -index - 1;
+    return higher < size ? get(higher) : null;
+  }
+
+  @Override
+  public @Nullable AnnotationMirror pollFirst() {
+    if (tree != null) {
+      return tree.pollFirst();
+    }
+    if (size == 0) {
+      return null;
+    }
+    AnnotationMirror result = get(0);
+    removeAt(0);
+    return result;
+  }
+
+  @Override
+  public @Nullable AnnotationMirror pollLast() {
+    if (tree != null) {
+      return tree.pollLast();
+    }
+    if (size == 0) {
+      return null;
+    }
+    AnnotationMirror result = get(size - 1);
+    removeAt(size - 1);
+    return result;
+  }
+
+  @Override
+  public NavigableSet<AnnotationMirror> descendingSet() {
+    return toTree().descendingSet();
+  }
+
+  @Override
+  public Iterator<AnnotationMirror> descendingIterator() {
+    return descendingSet().iterator();
+  }
+
+  @Override
+  public NavigableSet<AnnotationMirror> subSet(
+      AnnotationMirror fromElement,
+      boolean fromInclusive,
+      AnnotationMirror toElement,
+      boolean toInclusive) {
+    return toTree().subSet(fromElement, fromInclusive, toElement, toInclusive);
+  }
+
+  @Override
+  public NavigableSet<AnnotationMirror> headSet(AnnotationMirror toElement, boolean inclusive) {
+    return toTree().headSet(toElement, inclusive);
+  }
+
+  @Override
+  public NavigableSet<AnnotationMirror> tailSet(AnnotationMirror fromElement, boolean inclusive) {
+    return toTree().tailSet(fromElement, inclusive);
+  }
+
+  @Override
+  public SortedSet<AnnotationMirror> subSet(
+      AnnotationMirror fromElement, AnnotationMirror toElement) {
+    return subSet(fromElement, true, toElement, false);
+  }
+
+  @Override
+  public SortedSet<AnnotationMirror> headSet(AnnotationMirror toElement) {
+    return headSet(toElement, false);
+  }
+
+  @Override
+  public SortedSet<AnnotationMirror> tailSet(AnnotationMirror fromElement) {
+    return tailSet(fromElement, true);
+  }
+}
@@ -24,7 +24,6 @@ import java.util.NavigableSet;
 import java.util.Objects;
 import java.util.Set;
 import java.util.StringJoiner;
-import java.util.TreeMap;
 import java.util.TreeSet;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.AnnotationValue;
@@ -111,6 +110,18 @@ public class AnnotationUtils {
       return false;
     }
 
+    if (a1 instanceof CheckerFrameworkAnnotationMirror
+        && a2 instanceof CheckerFrameworkAnnotationMirror) {
+      CheckerFrameworkAnnotationMirror cfam1 = (CheckerFrameworkAnnotationMirror) a1;
+      CheckerFrameworkAnnotationMirror cfam2 = (CheckerFrameworkAnnotationMirror) a2;
+      if (cfam1.isCanonical()
+          && cfam2.isCanonical()
+          && cfam1.getAnnotationType().asElement() == cfam2.getAnnotationType().asElement()) {
+        // Canonical mirrors for the same annotation are the same only if they are identical.
+        return false;
+      }
+    }
+
     return sameElementValues(a1, a2);
   }
 
@@ -344,6 +355,9 @@ public class AnnotationUtils {
    * @return an ordering over AnnotationMirrors based on their name and values
    */
   public static int compareAnnotationMirrors(AnnotationMirror a1, AnnotationMirror a2) {
+    if (a1 == a2) {
+      return 0;
+    }
     if (!AnnotationUtils.areSameByName(a1, a2)) {
       return annotationName(a1).compareTo(annotationName(a2));
     }
@@ -463,7 +477,7 @@ public class AnnotationUtils {
    * @return a new map with {@link AnnotationMirror} as key
    */
   public static <V> Map<AnnotationMirror, V> createAnnotationMap() {
-    return new TreeMap<>(AnnotationUtils::compareAnnotationMirrors);
+    return new AnnotationMirrorMap<>();
   }
 
   /**
@@ -475,7 +489,7 @@ public class AnnotationUtils {
    * @return a sorted new set to store {@link AnnotationMirror} as element
    */
   public static NavigableSet<AnnotationMirror> createAnnotationSet() {
-    return new TreeSet<>(AnnotationUtils::compareAnnotationMirrors);
+    return new AnnotationMirrorSet();
   }
 
   /**
@@ -490,9 +504,7 @@ public class AnnotationUtils {
    */
   public static NavigableSet<AnnotationMirror> createAnnotationSet(
       Collection<AnnotationMirror> annos) {
-    TreeSet<AnnotationMirror> set = new TreeSet<>(AnnotationUtils::compareAnnotationMirrors);
-    set.addAll(annos);
-    return set;
+    return new AnnotationMirrorSet(annos);
   }
 
   /**
@@ -507,9 +519,7 @@ public class AnnotationUtils {
    */
   public static NavigableSet<AnnotationMirror> createUnmodifiableAnnotationSet(
       Collection<AnnotationMirror> annos) {
-    TreeSet<AnnotationMirror> set = new TreeSet<>(AnnotationUtils::compareAnnotationMirrors);
-    set.addAll(annos);
-    return Collections.unmodifiableNavigableSet(set);
+    return Collections.unmodifiableNavigableSet(new AnnotationMirrorSet(annos));
   }
 
   /**
@@ -0,0 +1,261 @@
+package org.checkerframework.javacutil;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A bounded cache with a segmented LRU eviction policy, which counts its hits, misses, and
+ * evictions.
+ *
+ * <p>A new entry is put in the probationary segment. When it is read again, it is promoted to the
+ * protected segment, which holds most of the capacity. When the protected segment is full, its
+ * least recently used entry is demoted to the probationary segment, and when the cache is full, the
+ * least recently used entry of the probationary segment is evicted. Therefore, unlike with a plain
+ * LRU cache, a burst of entries that are used only once (such as the types of the expressions of a
+ * large method) cannot evict the entries that are used repeatedly (such as the types of the
+ * elements that the method refers to).
+ *
+ * <p>Only {@link #get} counts as a lookup for the statistics; {@link #containsKey} neither counts
+ * nor promotes. Iteration order is unspecified.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public class SegmentedLRUCache<K, V> extends AbstractMap<K, V> {
+
+  /** The name of the cache, for statistics. */
+  private final String name;
+
+  /** The maximum number of entries. */
+  private final int capacity;
+
+  /** The maximum number of entries in {@link #protectedSegment}. */
+  private final int protectedCapacity;
+
+  /** Entries that have been read at most once since they were added or demoted, in LRU order. */
+  private final LinkedHashMap<K, V> probationarySegment;
+
+  /** Entries that have been read at least twice, in LRU order. */
+  private final LinkedHashMap<K, V> protectedSegment;
+
+  /** The number of calls to {@link #get} that found an entry. */
+  private long hits = 0;
+
+  /** The number of calls to {@link #get} that found no entry. */
+  private long misses = 0;
+
+  /** The number of entries that have been evicted to make room for new entries. */
+  private long evictions = 0;
+
+  /**
+   * Creates a cache.
+   *
+   * @param name the name of the cache, for statistics
+   * @param capacity the maximum number of entries; must be positive
+   */
+  public SegmentedLRUCache(String name, int capacity) {
+    if (capacity <= 0) {
+      throw new BugInCF("SegmentedLRUCache %s: capacity must be positive: %d", name, capacity);
+    }
+    this.name = name;
+    this.capacity = capacity;
+    this.protectedCapacity = capacity * 4 / 5;
+    this.probationarySegment = new LinkedHashMap<>(16, .75F, true);
+    this.protectedSegment = new LinkedHashMap<>(16, .75F, true);
+  }
+
+  @Override
+  public @Nullable V get(@Nullable Object key) {
+    V value = protectedSegment.get(key);
+    if (value != null || protectedSegment.containsKey(key)) {
+      hits++;
+      return value;
+    }
+    if (probationarySegment.containsKey(key)) {
+      hits++;
+      @SuppressWarnings("unchecked") // the key is in the map
+      K k = (K) key;
+      value = probationarySegment.remove(k);
+      promote(k, value);
+      return value;
+    }
+    misses++;
+    return null;
+  }
+
+  /**
+   * Moves an entry to the protected segment, demoting the least recently used protected entry if
+   * the protected segment is full.
+   *
+   * @param key the key of the entry
+   * @param value the value of the entry
+   */
+  private void promote(K key, V value) {
+    if (protectedCapacity == 0) {
+      probationarySegment.put(key, value);
+      return;
+    }
+    protectedSegment.put(key, value);
+    if (protectedSegment.size() > protectedCapacity) {
+      Iterator<Map.Entry<K, V>> eldest = protectedSegment.entrySet().iterator();
+      Map.Entry<K, V> demoted = eldest.next();
+      eldest.remove();
+      probationarySegment.put(demoted.getKey(), demoted.getValue());
+    }
+  }
+
+  @Override
+  public boolean containsKey(@Nullable Object key) {
+    return protectedSegment.containsKey(key) || probationarySegment.containsKey(key);
+  }
+
+  @Override
+  public @Nullable V put(K key, V value) {
+    if (protectedSegment.containsKey(key)) {
+      return protectedSegment.put(key, value);
+    }
+    if (probationarySegment.containsKey(key)) {
+      return probationarySegment.put(key, value);
+    }
+    probationarySegment.put(key, value);
+    while (size() > capacity) {
+      LinkedHashMap<K, V> victims =
+          probationarySegment.isEmpty() ? protectedSegment : probationarySegment;
+      Iterator<K> eldest = victims.keySet().iterator();
+      eldest.next();
+      eldest.remove();
+      evictions++;
+    }
+    return null;
+  }
+
+  @Override
+  public @Nullable V remove(@Nullable Object key) {
+    if (protectedSegment.containsKey(key)) {
+      return protectedSegment.remove(key);
+    }
+    return probationarySegment.remove(key);
+  }
+
+  @Override
+  public void clear() {
+    protectedSegment.clear();
+    probationarySegment.clear();
+  }
+
+  @Override
+  public int size() {
+    return protectedSegment.size() + probationarySegment.size();
+  }
+
+  @Override
+  public Set<Map.Entry<K, V>> entrySet() {
+    return new AbstractSet<Map.Entry<K, V>>() {
+      @Override
+      public Iterator<Map.Entry<K, V>> iterator() {
+        return new Iterator<Map.Entry<K, V>>() {
+          /** The iterator over the protected segment. */
+          private final Iterator<Map.Entry<K, V>> protectedIter =
+              protectedSegment.entrySet().iterator();
+
+          /** The iterator over the probationary segment. */
+          private final Iterator<Map.Entry<K, V>> probationaryIter =
+              probationarySegment.entrySet().iterator();
+
+          /** The iterator that returned the last entry. */
+          private @Nullable Iterator<Map.Entry<K, V>> last = null;
+
+          @Override
+          public boolean hasNext() {
+            return protectedIter.hasNext() || probationaryIter.hasNext();
+          }
+
+          @Override
+          public Map.Entry<K, V> next() {
+            if (protectedIter.hasNext()) {
+              last = protectedIter;
+            } else if (probationaryIter.hasNext()) {
+              last = probationaryIter;
+            } else {
+              throw new NoSuchElementException();
+            }
+            return last.next();
+          }
+
+          @Override
+          public void remove() {
+            if (last == null) {
+              throw new IllegalStateException();
+            }
+            last.remove();
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return SegmentedLRUCache.this.size();
+      }
+    };
+  }
+
+  /**
+   * Returns the name of this cache.
+   *
+   * @return the name of this cache
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the number of calls to {@link #get} that found an entry.
+   *
+   * @return the number of hits
+   */
+  public long getHits() {
+    return hits;
+  }
+
+  /**
+   * Returns the number of calls to {@link #get} that found no entry.
+   *
+   * @return the number of misses
+   */
+  public long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Returns the number of entries that have been evicted to make room for new entries.
+   *
+   * @return the number of evictions
+   */
+  public long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * Returns a one-line summary of the statistics of this cache.
+   *
+   * @return a one-line summary of the statistics of this cache
+   */
+  public String getStatistics() {
+    long lookups = hits + misses;
+    return String.format(
+        "%s: %d/%d entries, %d lookups, %d hits (%.1f%%), %d evictions",
+        name,
+        size(),
+        capacity,
+        lookups,
+        hits,
+        lookups == 0 ? 0.0 : 100.0 * hits / lookups,
+        evictions);
+  }
+}
@@ -0,0 +1,193 @@
+package org.checkerframework.javacutil;
+
+import com.sun.source.util.JavacTask;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests that {@link AnnotationBuilder} interns the annotation mirrors it builds: two mirrors are
+ * identical if and only if {@link AnnotationUtils#sameElementValues} considers them the same.
+ */
+public class AnnotationBuilderTest {
+
+  /** An annotation with array, enum, and class literal elements, and a class that uses it. */
+  private static final String SOURCE =
+      String.join(
+          "\n",
+          "enum E { A, B }",
+          "@interface Anno {",
+          "  int[] ints() default {};",
+          "  E e() default E.A;",
+          "  Class<?> c() default Object.class;",
+          "}",
+          "@Anno(ints = {1, 2}, e = E.B, c = String.class) class Test {}");
+
+  /** The processing environment of the compilation of {@link #SOURCE}. */
+  private static ProcessingEnvironment env;
+
+  /** The annotation of class Test in {@link #SOURCE}, as read by javac. */
+  private static AnnotationMirror testAnno;
+
+  /** The enum constant E.A. */
+  private static VariableElement enumA;
+
+  /** The enum constant E.B. */
+  private static VariableElement enumB;
+
+  /** The type Object. */
+  private static TypeMirror objectType;
+
+  /** The type String. */
+  private static TypeMirror stringType;
+
+  /** The type Integer. */
+  private static TypeMirror integerType;
+
+  /** A processor that records the processing environment. */
+  @SupportedAnnotationTypes("*")
+  private static class RecordingProcessor extends AbstractProcessor {
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+      super.init(processingEnv);
+      env = processingEnv;
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+      return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+      return false;
+    }
+  }
+
+  /**
+   * Compiles {@link #SOURCE} and reads its elements and annotation.
+   *
+   * @throws IOException if the source cannot be compiled
+   */
+  @BeforeClass
+  public static void readAnnotation() throws IOException {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    JavaFileObject source =
+        new SimpleJavaFileObject(URI.create("string:///Test.java"), JavaFileObject.Kind.SOURCE) {
+          @Override
+          public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return SOURCE;
+          }
+        };
+    JavacTask task =
+        (JavacTask) compiler.getTask(null, null, null, null, null, Arrays.asList(source));
+    task.setProcessors(Arrays.asList(new RecordingProcessor()));
+    task.analyze();
+    TypeElement test = env.getElementUtils().getTypeElement("Test");
+    testAnno = test.getAnnotationMirrors().get(0);
+    List<VariableElement> constants = new ArrayList<>();
+    for (Element elt : env.getElementUtils().getTypeElement("E").getEnclosedElements()) {
+      if (elt.getKind() == ElementKind.ENUM_CONSTANT) {
+        constants.add((VariableElement) elt);
+      }
+    }
+    enumA = constants.get(0);
+    enumB = constants.get(1);
+    objectType = env.getElementUtils().getTypeElement("java.lang.Object").asType();
+    stringType = env.getElementUtils().getTypeElement("java.lang.String").asType();
+    integerType = env.getElementUtils().getTypeElement("java.lang.Integer").asType();
+  }
+
+  /**
+   * Builds an annotation {@code @Anno}.
+   *
+   * @param ints the value of {@code ints}, or null to use the default
+   * @param e the value of {@code e}, or null to use the default
+   * @param c the value of {@code c}, or null to use the default
+   * @return the annotation
+   */
+  private static AnnotationMirror anno(
+      @Nullable List<Integer> ints, @Nullable VariableElement e, @Nullable TypeMirror c) {
+    AnnotationBuilder builder = new AnnotationBuilder(env, "Anno");
+    if (ints != null) {
+      builder.setValue("ints", ints);
+    }
+    if (e != null) {
+      builder.setValue("e", e);
+    }
+    if (c != null) {
+      builder.setValue("c", c);
+    }
+    return builder.build();
+  }
+
+  @Test
+  public void testEqualAnnotationsAreIdentical() {
+    AnnotationMirror built = anno(Arrays.asList(1, 2), enumB, stringType);
+    Assert.assertSame(built, anno(Arrays.asList(1, 2), enumB, stringType));
+    // A copy of the annotation that javac read from the source.
+    Assert.assertSame(built, new AnnotationBuilder(env, testAnno).build());
+    Assert.assertTrue(AnnotationUtils.areSame(built, testAnno));
+
+    // Explicit default values are the same as omitted ones.
+    AnnotationMirror defaults = anno(null, null, null);
+    Assert.assertSame(defaults, anno(Collections.<Integer>emptyList(), enumA, objectType));
+    Assert.assertNotSame(built, defaults);
+  }
+
+  @Test
+  public void testInterningAgreesWithSameElementValues() {
+    List<AnnotationMirror> annos = new ArrayList<>();
+    for (List<Integer> ints :
+        Arrays.asList(
+            null,
+            Collections.<Integer>emptyList(),
+            Arrays.asList(1, 2),
+            Arrays.asList(2, 1),
+            Arrays.asList(1, 2, 3))) {
+      for (VariableElement e : Arrays.asList(null, enumA, enumB)) {
+        for (TypeMirror c : Arrays.asList(null, objectType, stringType, integerType)) {
+          annos.add(anno(ints, e, c));
+        }
+      }
+    }
+    annos.add(testAnno);
+    for (AnnotationMirror a1 : annos) {
+      for (AnnotationMirror a2 : annos) {
+        boolean same = AnnotationUtils.sameElementValues(a1, a2);
+        if (a1 != testAnno && a2 != testAnno) {
+          Assert.assertEquals(a1 + " and " + a2, same, a1 == a2);
+        }
+        if (same) {
+          Assert.assertSame(
+              a1 + " and " + a2,
+              new AnnotationBuilder(env, a1).build(),
+              new AnnotationBuilder(env, a2).build());
+        }
+      }
+    }
+  }
+}